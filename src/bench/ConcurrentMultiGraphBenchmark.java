@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+
+import graph.ConcurrentMultiGraph;
+import graph.DirectedEdge;
+import graph.Graph.Edge;
+
+/**
+ * Times the ingestion of a graph into a {@link ConcurrentMultiGraph} by 1, 2,
+ * 4 and 8 writer threads. It is not a unit test and is run by hand:
+ * 
+ * <pre>
+ * java bench.ConcurrentMultiGraphBenchmark [order [size [runs]]]
+ * </pre>
+ * 
+ * Each thread adds its share of the vertices, waits for the others, then
+ * adds its share of the edges. With <em>disjoint</em> stripes, the
+ * extremities of the edges of a thread are vertices of its own, so that no
+ * two threads ever take the same lock. With <em>overlapping</em> stripes,
+ * the edges join any two vertices and the threads contend for the locks.
+ * <p>
+ * The stripe of an Integer below 2^16 is its value modulo the number of
+ * stripes, a power of two not smaller than 16. The vertices v such that
+ * v % threads == k therefore fall into stripes of their own, thread k
+ * owning them.
+ */
+public class ConcurrentMultiGraphBenchmark {
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	private final int order;
+	private final int size;
+
+	private ConcurrentMultiGraphBenchmark(int order, int size) {
+		this.order = order;
+		this.size = size;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int order = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 400000;
+		int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		if (order > 1 << 16)
+			throw new IllegalArgumentException(
+					"at most 65536 vertices for the stripes to be disjoint");
+		ConcurrentMultiGraphBenchmark benchmark = new ConcurrentMultiGraphBenchmark(
+				order, size);
+		System.out.println(order + " vertices, " + size + " edges, "
+				+ Runtime.getRuntime().availableProcessors() + " processors");
+		System.out.println("stripes      threads  median ms  edges/s");
+		for (boolean disjoint : new boolean[] { true, false })
+			for (int threads : THREADS) {
+				// the first run warms the JIT up and is not counted
+				long[] times = new long[runs];
+				benchmark.run(threads, disjoint);
+				for (int r = 0; r < runs; r++)
+					times[r] = benchmark.run(threads, disjoint);
+				Arrays.sort(times);
+				long median = times[runs / 2];
+				System.out.printf("%-12s %7d %10.1f %8.0f%n",
+						disjoint ? "disjoint" : "overlapping", threads,
+						median / 1e6, size / (median / 1e9));
+			}
+	}
+
+	/*
+	 * The vertices and the edges of each thread, drawn before the timing.
+	 */
+	private List<List<Edge<Integer>>> edges(int threads, boolean disjoint) {
+		Random random = new Random(threads);
+		List<List<Edge<Integer>>> result = new ArrayList<List<Edge<Integer>>>();
+		for (int k = 0; k < threads; k++) {
+			List<Edge<Integer>> edges = new ArrayList<Edge<Integer>>();
+			// the number of vertices v < order such that v % threads == k
+			int own = (order - k + threads - 1) / threads;
+			for (int i = k; i < size; i += threads) {
+				int u, v;
+				if (disjoint) {
+					u = k + threads * random.nextInt(own);
+					v = k + threads * random.nextInt(own);
+				} else {
+					u = random.nextInt(order);
+					v = random.nextInt(order);
+				}
+				edges.add(new DirectedEdge<Integer>(u, v));
+			}
+			result.add(edges);
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the time in nanoseconds taken to fill a new graph.
+	 */
+	private long run(int threads, boolean disjoint) throws Exception {
+		List<List<Edge<Integer>>> edges = edges(threads, disjoint);
+		ConcurrentMultiGraph<Integer, Edge<Integer>> g = new ConcurrentMultiGraph<Integer, Edge<Integer>>(
+				order, size);
+		CyclicBarrier start = new CyclicBarrier(threads + 1);
+		CyclicBarrier verticesAdded = new CyclicBarrier(threads);
+		Thread[] writers = new Thread[threads];
+		for (int k = 0; k < threads; k++) {
+			int first = k;
+			List<Edge<Integer>> own = edges.get(k);
+			writers[k] = new Thread(() -> {
+				try {
+					start.await();
+					for (int v = first; v < order; v += threads)
+						g.addVertex(v);
+					verticesAdded.await();
+					for (Edge<Integer> e : own)
+						g.addEdge(e);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			writers[k].start();
+		}
+		start.await();
+		long time = System.nanoTime();
+		for (Thread writer : writers)
+			writer.join();
+		time = System.nanoTime() - time;
+		if (g.order() != order || g.size() != size)
+			throw new IllegalStateException("lost vertices or edges");
+		return time;
+	}
+}
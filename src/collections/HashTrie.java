@@ -0,0 +1,419 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package collections;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable map implemented as a hash array mapped trie. The methods
+ * {@link #put(Object, Object)} and {@link #remove(Object)} return a new map
+ * sharing all the unchanged nodes with this one, so an update costs
+ * O(log<sub>32</sub> n) time and memory, and old versions remain valid.
+ * <p>
+ * The map iterates over its keys. Null keys are not allowed.
+ * 
+ * @param <K>
+ *            the type of keys
+ * @param <V>
+ *            the type of values
+ */
+public final class HashTrie<K, V> implements Iterable<K> {
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	private static final HashTrie<?, ?> EMPTY = new HashTrie<Object, Object>(
+			null, 0);
+
+	private abstract static class Node {
+		abstract Leaf find(int shift, int hash, Object key);
+
+		/*
+		 * Returns this node if the mapping is already present, and counts the
+		 * added keys in added[0].
+		 */
+		abstract Node put(int shift, Leaf leaf, int[] added);
+
+		/*
+		 * Returns this node if key is absent, and null if the resulting node is
+		 * empty.
+		 */
+		abstract Node remove(int shift, int hash, Object key);
+
+		abstract int slots();
+
+		abstract Node slot(int i);
+	}
+
+	private static final class Leaf extends Node {
+		final int hash;
+		final Object key;
+		final Object value;
+
+		Leaf(int hash, Object key, Object value) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+
+		Leaf find(int shift, int hash, Object key) {
+			return hash == this.hash && key.equals(this.key) ? this : null;
+		}
+
+		Node put(int shift, Leaf leaf, int[] added) {
+			if (leaf.hash == hash && leaf.key.equals(key))
+				return leaf.value == value ? this : leaf;
+			added[0]++;
+			if (leaf.hash == hash)
+				return new Collision(hash, new Leaf[] { this, leaf });
+			return BitmapNode.pair(shift, this, leaf);
+		}
+
+		Node remove(int shift, int hash, Object key) {
+			return find(shift, hash, key) == null ? this : null;
+		}
+
+		int slots() {
+			return 0;
+		}
+
+		Node slot(int i) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/*
+	 * Leaves whose keys have the same hash code.
+	 */
+	private static final class Collision extends Node {
+		final int hash;
+		final Leaf[] leaves;
+
+		Collision(int hash, Leaf[] leaves) {
+			this.hash = hash;
+			this.leaves = leaves;
+		}
+
+		private int indexOf(Object key) {
+			for (int i = 0; i < leaves.length; i++)
+				if (leaves[i].key.equals(key))
+					return i;
+			return -1;
+		}
+
+		Leaf find(int shift, int hash, Object key) {
+			if (hash != this.hash)
+				return null;
+			int i = indexOf(key);
+			return i < 0 ? null : leaves[i];
+		}
+
+		Node put(int shift, Leaf leaf, int[] added) {
+			if (leaf.hash != hash) {
+				added[0]++;
+				return BitmapNode.pair(shift, this, leaf);
+			}
+			int i = indexOf(leaf.key);
+			Leaf[] copy;
+			if (i < 0) {
+				added[0]++;
+				copy = new Leaf[leaves.length + 1];
+				System.arraycopy(leaves, 0, copy, 0, leaves.length);
+				copy[leaves.length] = leaf;
+			} else if (leaves[i].value == leaf.value)
+				return this;
+			else {
+				copy = leaves.clone();
+				copy[i] = leaf;
+			}
+			return new Collision(hash, copy);
+		}
+
+		Node remove(int shift, int hash, Object key) {
+			int i = hash == this.hash ? indexOf(key) : -1;
+			if (i < 0)
+				return this;
+			if (leaves.length == 2)
+				return leaves[1 - i];
+			Leaf[] copy = new Leaf[leaves.length - 1];
+			System.arraycopy(leaves, 0, copy, 0, i);
+			System.arraycopy(leaves, i + 1, copy, i, copy.length - i);
+			return new Collision(hash, copy);
+		}
+
+		int slots() {
+			return leaves.length;
+		}
+
+		Node slot(int i) {
+			return leaves[i];
+		}
+	}
+
+	/*
+	 * An inner node: bit b of bitmap is set if the node has a child for the
+	 * value b of the next 5 bits of the hash codes. The children are stored in
+	 * the order of the bits.
+	 */
+	private static final class BitmapNode extends Node {
+		final int bitmap;
+		final Node[] children;
+
+		BitmapNode(int bitmap, Node[] children) {
+			this.bitmap = bitmap;
+			this.children = children;
+		}
+
+		/*
+		 * Returns a node containing a and b, whose hash codes differ.
+		 */
+		static Node pair(int shift, Node a, Node b) {
+			int ha = hash(a);
+			int hb = hash(b);
+			int ba = (ha >>> shift) & MASK;
+			int bb = (hb >>> shift) & MASK;
+			if (ba == bb)
+				return new BitmapNode(1 << ba,
+						new Node[] { pair(shift + BITS, a, b) });
+			return new BitmapNode((1 << ba) | (1 << bb),
+					ba < bb ? new Node[] { a, b } : new Node[] { b, a });
+		}
+
+		private static int hash(Node n) {
+			return n instanceof Leaf ? ((Leaf) n).hash : ((Collision) n).hash;
+		}
+
+		private int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		Leaf find(int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0)
+				return null;
+			return children[index(bit)].find(shift + BITS, hash, key);
+		}
+
+		Node put(int shift, Leaf leaf, int[] added) {
+			int bit = 1 << ((leaf.hash >>> shift) & MASK);
+			int i = index(bit);
+			if ((bitmap & bit) == 0) {
+				added[0]++;
+				Node[] copy = new Node[children.length + 1];
+				System.arraycopy(children, 0, copy, 0, i);
+				copy[i] = leaf;
+				System.arraycopy(children, i, copy, i + 1, children.length - i);
+				return new BitmapNode(bitmap | bit, copy);
+			}
+			Node child = children[i].put(shift + BITS, leaf, added);
+			if (child == children[i])
+				return this;
+			Node[] copy = children.clone();
+			copy[i] = child;
+			return new BitmapNode(bitmap, copy);
+		}
+
+		Node remove(int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0)
+				return this;
+			int i = index(bit);
+			Node child = children[i].remove(shift + BITS, hash, key);
+			if (child == children[i])
+				return this;
+			if (child == null) {
+				if (children.length == 1)
+					return null;
+				// a single remaining leaf moves up
+				if (children.length == 2 && !(children[1 - i] instanceof BitmapNode))
+					return children[1 - i];
+				Node[] copy = new Node[children.length - 1];
+				System.arraycopy(children, 0, copy, 0, i);
+				System.arraycopy(children, i + 1, copy, i, copy.length - i);
+				return new BitmapNode(bitmap & ~bit, copy);
+			}
+			if (children.length == 1 && !(child instanceof BitmapNode))
+				return child;
+			Node[] copy = children.clone();
+			copy[i] = child;
+			return new BitmapNode(bitmap, copy);
+		}
+
+		int slots() {
+			return children.length;
+		}
+
+		Node slot(int i) {
+			return children[i];
+		}
+	}
+
+	private final Node root;
+	private final int size;
+
+	private HashTrie(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the empty map.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> HashTrie<K, V> empty() {
+		return (HashTrie<K, V>) EMPTY;
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(Object key) {
+		return root != null && root.find(0, hash(key), key) != null;
+	}
+
+	/**
+	 * Returns the value associated to key, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		Leaf leaf = root == null ? null : root.find(0, hash(key), key);
+		return leaf == null ? null : (V) leaf.value;
+	}
+
+	/**
+	 * Returns a map associating value to key and the other keys to the same
+	 * values as in this map. Returns this map if key is already associated to
+	 * the same (==) value.
+	 */
+	public HashTrie<K, V> put(K key, V value) {
+		Leaf leaf = new Leaf(hash(Objects.requireNonNull(key)), key, value);
+		if (root == null)
+			return new HashTrie<K, V>(leaf, 1);
+		int[] added = new int[1];
+		Node r = root.put(0, leaf, added);
+		return r == root ? this : new HashTrie<K, V>(r, size + added[0]);
+	}
+
+	/**
+	 * Returns a map without key. Returns this map if key is absent.
+	 */
+	public HashTrie<K, V> remove(Object key) {
+		if (root == null)
+			return this;
+		Node r = root.remove(0, hash(key), key);
+		if (r == root)
+			return this;
+		return r == null ? empty() : new HashTrie<K, V>(r, size - 1);
+	}
+
+	/**
+	 * Iterates over the keys, in no particular order.
+	 */
+	public Iterator<K> iterator() {
+		return new LeafIterator<K>(true);
+	}
+
+	/**
+	 * Iterates over the values, in the order of the keys.
+	 */
+	public Iterable<V> values() {
+		return () -> new LeafIterator<V>(false);
+	}
+
+	/**
+	 * Returns an unmodifiable set view of the keys.
+	 */
+	public Set<K> keySet() {
+		return new AbstractSet<K>() {
+			public boolean contains(Object o) {
+				return o != null && containsKey(o);
+			}
+
+			public Iterator<K> iterator() {
+				return HashTrie.this.iterator();
+			}
+
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private class LeafIterator<T> implements Iterator<T> {
+		// the trie has at most 7 levels of bitmap nodes plus a collision node
+		private final Node[] nodes = new Node[8];
+		private final int[] indexes = new int[8];
+		private int depth = -1;
+		private Leaf next;
+		private final boolean keys;
+
+		LeafIterator(boolean keys) {
+			this.keys = keys;
+			if (root instanceof Leaf)
+				next = (Leaf) root;
+			else if (root != null) {
+				nodes[++depth] = root;
+				advance();
+			}
+		}
+
+		private void advance() {
+			next = null;
+			while (depth >= 0) {
+				Node n = nodes[depth];
+				if (indexes[depth] == n.slots()) {
+					depth--;
+					continue;
+				}
+				Node child = n.slot(indexes[depth]++);
+				if (child instanceof Leaf) {
+					next = (Leaf) child;
+					return;
+				}
+				nodes[++depth] = child;
+				indexes[depth] = 0;
+			}
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@SuppressWarnings("unchecked")
+		public T next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			Leaf l = next;
+			advance();
+			return (T) (keys ? l.key : l.value);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A d-ary min-heap of int keys between 0 and a capacity, ordered by double
+ * priorities. The position of each key in the heap is kept in an array, so
+ * that {@link #contains(int)} takes constant time and
+ * {@link #decreaseKey(int, double)} O(log<sub>d</sub> n) time.
+ * <p>
+ * With arity 4, a heap is flatter than a binary heap and the children of a
+ * node are contiguous in memory, which suits the many decrease-key
+ * operations of shortest path algorithms.
+ */
+public final class IndexedHeap {
+
+	private final int arity;
+	// heap[i] is the key at position i, position[key] is -1 if key is absent
+	private int[] heap;
+	private int[] position;
+	private double[] priority;
+	private int size;
+
+	/**
+	 * Create a 4-ary heap for the keys smaller than capacity.
+	 */
+	public IndexedHeap(int capacity) {
+		this(capacity, 4);
+	}
+
+	public IndexedHeap(int capacity, int arity) {
+		if (arity < 2)
+			throw new IllegalArgumentException("arity " + arity + " < 2");
+		this.arity = arity;
+		heap = new int[Math.max(capacity, 1)];
+		position = new int[capacity];
+		priority = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int key) {
+		return position[key] >= 0;
+	}
+
+	/**
+	 * Returns the priority of a key of the heap.
+	 */
+	public double priority(int key) {
+		if (position[key] < 0)
+			throw new NoSuchElementException("key " + key);
+		return priority[key];
+	}
+
+	/**
+	 * Add a key which is not in the heap.
+	 */
+	public void insert(int key, double p) {
+		if (position[key] >= 0)
+			throw new IllegalArgumentException("key " + key + " already in the heap");
+		priority[key] = p;
+		heap[size] = key;
+		position[key] = size;
+		siftUp(size++);
+	}
+
+	/**
+	 * Decrease the priority of a key of the heap.
+	 */
+	public void decreaseKey(int key, double p) {
+		if (position[key] < 0)
+			throw new NoSuchElementException("key " + key);
+		if (p > priority[key])
+			throw new IllegalArgumentException("priority " + p + " > "
+					+ priority[key]);
+		priority[key] = p;
+		siftUp(position[key]);
+	}
+
+	/**
+	 * Insert a key, or decrease its priority if it is in the heap with a
+	 * larger priority.
+	 * 
+	 * @return true if the heap was modified
+	 */
+	public boolean insertOrDecrease(int key, double p) {
+		if (position[key] < 0)
+			insert(key, p);
+		else if (p < priority[key])
+			decreaseKey(key, p);
+		else
+			return false;
+		return true;
+	}
+
+	/**
+	 * Returns the key with the smallest priority.
+	 */
+	public int peek() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return heap[0];
+	}
+
+	/**
+	 * Remove and return the key with the smallest priority.
+	 */
+	public int poll() {
+		int key = peek();
+		position[key] = -1;
+		int last = heap[--size];
+		if (size > 0) {
+			heap[0] = last;
+			position[last] = 0;
+			siftDown(0);
+		}
+		return key;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		int key = heap[i];
+		double p = priority[key];
+		while (i > 0) {
+			int parent = (i - 1) / arity;
+			int k = heap[parent];
+			if (priority[k] <= p)
+				break;
+			heap[i] = k;
+			position[k] = i;
+			i = parent;
+		}
+		heap[i] = key;
+		position[key] = i;
+	}
+
+	private void siftDown(int i) {
+		int key = heap[i];
+		double p = priority[key];
+		while (true) {
+			int first = i * arity + 1;
+			if (first >= size)
+				break;
+			int min = first;
+			int end = Math.min(first + arity, size);
+			for (int c = first + 1; c < end; c++)
+				if (priority[heap[c]] < priority[heap[min]])
+					min = c;
+			if (priority[heap[min]] >= p)
+				break;
+			heap[i] = heap[min];
+			position[heap[i]] = i;
+			i = min;
+		}
+		heap[i] = key;
+		position[key] = i;
+	}
+}
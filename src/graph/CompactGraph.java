@@ -0,0 +1,761 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static graph.Graph.Edge;
+
+import collections.Iterables;
+
+/**
+ * An immutable snapshot of a graph stored in compressed sparse row (CSR)
+ * format.
+ *
+ * Vertices are numbered from 0 to order() - 1 and edges from 0 to size() - 1.
+ * The outgoing edges of the vertex with id v are the edges with ids
+ * outBegin(v) to outEnd(v) - 1, sorted by target id. The incoming arcs of v
+ * are numbered from inBegin(v) to inEnd(v) - 1, sorted by source id, and
+ * inEdge(arc) gives the id of the corresponding edge. Algorithms may use these
+ * int accessors directly to work on flat arrays.
+ *
+ * All the modification methods throw an UnsupportedOperationException.
+ */
+public class CompactGraph<V, E extends Edge<V>> implements IndexedGraph<V, E> {
+
+	private final Object[] vertices;
+	private final Map<V, Integer> ids;
+
+	/*
+	 * Outgoing CSR : the edges with source v are at the indices outOffsets[v]
+	 * to outOffsets[v + 1] - 1 of outTargets and outEdges. The index of an edge
+	 * in these arrays is its id.
+	 *
+	 * Incoming CSR : the arcs with target v are at the indices inOffsets[v] to
+	 * inOffsets[v + 1] - 1 of inSources and inEdges, where inEdges gives the id
+	 * of the edge.
+	 */
+	private final int[] outOffsets;
+	private final int[] outTargets;
+	private final Object[] outEdges;
+	private final int[] inOffsets;
+	private final int[] inSources;
+	private final int[] inEdges;
+
+	private final Set<V> vertexSet = new VertexSet();
+	private final Set<E> edgeSet = new EdgeSet();
+
+	/**
+	 * Create a snapshot with same vertices and edges than g.
+	 *
+	 * @param g
+	 *            the graph to copy
+	 * @throws IllegalArgumentException
+	 *             if an edge of g has an extremity which is not a vertex of g
+	 */
+	public CompactGraph(Graph<V, E> g) {
+		this(g.vertices(), g.edges());
+	}
+
+	/*
+	 * Create a graph with the given vertices and edges. The vertices must be
+	 * distinct. An edge given several times is kept once.
+	 */
+	CompactGraph(Collection<V> vertexCollection, Collection<E> edgeCollection) {
+		int n = vertexCollection.size();
+		vertices = new Object[n];
+		ids = new HashMap<V, Integer>(MultiGraph.capacity(n));
+		int id = 0;
+		for (V v : vertexCollection) {
+			vertices[id] = v;
+			ids.put(v, id++);
+		}
+
+		int m = edgeCollection.size();
+		int[] sources = new int[m];
+		int[] targets = new int[m];
+		Object[] edges = new Object[m];
+		int i = 0;
+		for (E e : edgeCollection) {
+			sources[i] = checkedId(e.source());
+			targets[i] = checkedId(e.target());
+			edges[i++] = e;
+		}
+
+		// Counting sort by target, then stable counting sort by source, so that
+		// the rows of the outgoing CSR are sorted by target.
+		int[] byTarget = new int[m];
+		int[] next = offsets(targets, n);
+		for (i = 0; i < m; i++)
+			byTarget[next[targets[i]]++] = i;
+
+		int[] offsets = offsets(sources, n);
+		int[] csrTargets = new int[m];
+		Object[] csrEdges = new Object[m];
+		next = offsets.clone();
+		for (int k : byTarget) {
+			int arc = next[sources[k]]++;
+			csrTargets[arc] = targets[k];
+			csrEdges[arc] = edges[k];
+		}
+		if (!(edgeCollection instanceof Set<?>)) {
+			m = removeDuplicates(offsets, csrTargets, csrEdges);
+			csrTargets = Arrays.copyOf(csrTargets, m);
+			csrEdges = Arrays.copyOf(csrEdges, m);
+		}
+		outOffsets = offsets;
+		outTargets = csrTargets;
+		outEdges = csrEdges;
+
+		// The edges are now sorted by source, so a stable counting sort by
+		// target sorts the rows of the incoming CSR by source.
+		inOffsets = offsets(outTargets, n);
+		inSources = new int[m];
+		inEdges = new int[m];
+		next = inOffsets.clone();
+		for (int u = 0; u < n; u++) {
+			for (int arc = outOffsets[u]; arc < outOffsets[u + 1]; arc++) {
+				int in = next[outTargets[arc]]++;
+				inSources[in] = u;
+				inEdges[in] = arc;
+			}
+		}
+	}
+
+	/*
+	 * Remove from an outgoing CSR the edges equal to a previous edge and
+	 * returns the new number of edges. Equal edges have the same extremities,
+	 * so they are in the same run of a row.
+	 */
+	private static int removeDuplicates(int[] offsets, int[] targets,
+			Object[] edges) {
+		int write = 0;
+		int begin = 0;
+		for (int u = 0; u < offsets.length - 1; u++) {
+			int end = offsets[u + 1];
+			int rowBegin = write;
+			for (int arc = begin; arc < end; arc++) {
+				boolean duplicate = false;
+				for (int previous = write - 1; previous >= rowBegin
+						&& targets[previous] == targets[arc]; previous--) {
+					if (edges[previous].equals(edges[arc])) {
+						duplicate = true;
+						break;
+					}
+				}
+				if (!duplicate) {
+					targets[write] = targets[arc];
+					edges[write++] = edges[arc];
+				}
+			}
+			begin = end;
+			offsets[u + 1] = write;
+		}
+		return write;
+	}
+
+	private static int[] offsets(int[] keys, int n) {
+		int[] offsets = new int[n + 1];
+		for (int k : keys)
+			offsets[k + 1]++;
+		for (int v = 0; v < n; v++)
+			offsets[v + 1] += offsets[v];
+		return offsets;
+	}
+
+	private int checkedId(Object o) {
+		Integer id = ids.get(o);
+		if (id == null)
+			throw new IllegalArgumentException();
+		return id;
+	}
+
+	/**
+	 * Returns the id of a vertex.
+	 *
+	 * @param vertex
+	 *            a vertex
+	 * @return the id of vertex, or -1 if vertex does not belong to the graph
+	 */
+	public int vertexId(V vertex) {
+		Integer id = ids.get(vertex);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the vertex with a given id.
+	 *
+	 * @param id
+	 *            an id between 0 and order() - 1
+	 * @return the vertex with this id
+	 */
+	@SuppressWarnings("unchecked")
+	public V vertex(int id) {
+		return (V) vertices[id];
+	}
+
+	/**
+	 * Returns the edge with a given id.
+	 *
+	 * @param id
+	 *            an id between 0 and size() - 1
+	 * @return the edge with this id
+	 */
+	@SuppressWarnings("unchecked")
+	public E edge(int id) {
+		return (E) outEdges[id];
+	}
+
+	public int vertexIdBound() {
+		return vertices.length;
+	}
+
+	public int edgeIdBound() {
+		return outEdges.length;
+	}
+
+	/**
+	 * Returns the id of an edge.
+	 *
+	 * @param edge
+	 *            an edge
+	 * @return the id of edge, or -1 if edge does not belong to the graph
+	 */
+	public int edgeId(Object edge) {
+		if (!(edge instanceof Edge<?>))
+			return -1;
+		Edge<?> e = (Edge<?>) edge;
+		Integer source = ids.get(e.source());
+		Integer target = ids.get(e.target());
+		if (source == null || target == null)
+			return -1;
+		for (int arc = lowerBound(source, target); arc < outOffsets[source + 1]
+				&& outTargets[arc] == target; arc++) {
+			if (outEdges[arc].equals(e))
+				return arc;
+		}
+		return -1;
+	}
+
+	/** First id of the outgoing edges of the vertex with id v. */
+	public int outBegin(int v) {
+		return outOffsets[v];
+	}
+
+	/** Last id (exclusive) of the outgoing edges of the vertex with id v. */
+	public int outEnd(int v) {
+		return outOffsets[v + 1];
+	}
+
+	/** Id of the target of the edge with id e. */
+	public int target(int e) {
+		return outTargets[e];
+	}
+
+	/** Id of the source of the edge with id e. */
+	public int source(int e) {
+		int low = 0;
+		int high = vertices.length - 1;
+		// Last vertex whose first outgoing edge is not after e.
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (outOffsets[mid] <= e)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	/** First index of the incoming arcs of the vertex with id v. */
+	public int inBegin(int v) {
+		return inOffsets[v];
+	}
+
+	/** Last index (exclusive) of the incoming arcs of the vertex with id v. */
+	public int inEnd(int v) {
+		return inOffsets[v + 1];
+	}
+
+	/** Id of the source of the incoming arc with index arc. */
+	public int inSource(int arc) {
+		return inSources[arc];
+	}
+
+	/** Id of the edge corresponding to the incoming arc with index arc. */
+	public int inEdge(int arc) {
+		return inEdges[arc];
+	}
+
+	/*
+	 * Index of the first outgoing edge of u whose target is not less than v.
+	 */
+	private int lowerBound(int u, int v) {
+		int low = outOffsets[u];
+		int high = outOffsets[u + 1];
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (outTargets[mid] < v)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private boolean hasArc(int u, int v) {
+		int arc = lowerBound(u, v);
+		return arc < outOffsets[u + 1] && outTargets[arc] == v;
+	}
+
+	/**
+	 * Iterator on the edges whose ids are given by a range of an int array, or
+	 * by the range itself if the array is null.
+	 */
+	private class EdgeIterator implements Iterator<E> {
+		private final int[] edgeIds;
+		private final int end;
+		private final int skippedSource;
+		private int index;
+
+		EdgeIterator(int[] edgeIds, int begin, int end, int skippedSource) {
+			this.edgeIds = edgeIds;
+			this.index = begin;
+			this.end = end;
+			this.skippedSource = skippedSource;
+			skip();
+		}
+
+		/* Loops are skipped in incoming arcs when iterating incident edges. */
+		private void skip() {
+			while (skippedSource >= 0 && index < end
+					&& inSources[index] == skippedSource)
+				index++;
+		}
+
+		public boolean hasNext() {
+			return index < end;
+		}
+
+		public E next() {
+			if (index >= end)
+				throw new NoSuchElementException();
+			E e = edge(edgeIds == null ? index : edgeIds[index]);
+			index++;
+			skip();
+			return e;
+		}
+	}
+
+	/**
+	 * Iterator on the distinct vertices whose ids are given by the union of
+	 * two sorted ranges of int arrays.
+	 */
+	private class VertexIterator implements Iterator<V> {
+		private final int[] a;
+		private final int[] b;
+		private final int aEnd;
+		private final int bEnd;
+		private int i;
+		private int j;
+
+		VertexIterator(int[] a, int aBegin, int aEnd, int[] b, int bBegin,
+				int bEnd) {
+			this.a = a;
+			this.i = aBegin;
+			this.aEnd = aEnd;
+			this.b = b;
+			this.j = bBegin;
+			this.bEnd = bEnd;
+		}
+
+		public boolean hasNext() {
+			return i < aEnd || j < bEnd;
+		}
+
+		public V next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			int v = j >= bEnd || (i < aEnd && a[i] <= b[j]) ? a[i] : b[j];
+			while (i < aEnd && a[i] == v)
+				i++;
+			while (j < bEnd && b[j] == v)
+				j++;
+			return vertex(v);
+		}
+	}
+
+	private class VertexSet extends AbstractSet<V> {
+		@Override
+		public Iterator<V> iterator() {
+			return new Iterator<V>() {
+				int id = 0;
+
+				public boolean hasNext() {
+					return id < vertices.length;
+				}
+
+				public V next() {
+					if (id >= vertices.length)
+						throw new NoSuchElementException();
+					return vertex(id++);
+				}
+			};
+		}
+
+		@Override
+		public Spliterator<V> spliterator() {
+			return Spliterators.spliterator(vertices, Spliterator.DISTINCT
+					| Spliterator.NONNULL | Spliterator.ORDERED
+					| Spliterator.IMMUTABLE);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return ids.containsKey(o);
+		}
+
+		@Override
+		public int size() {
+			return vertices.length;
+		}
+	}
+
+	private class EdgeSet extends AbstractSet<E> {
+		@Override
+		public Iterator<E> iterator() {
+			return new EdgeIterator(null, 0, outEdges.length, -1);
+		}
+
+		@Override
+		public Spliterator<E> spliterator() {
+			return Spliterators.spliterator(outEdges, Spliterator.DISTINCT
+					| Spliterator.NONNULL | Spliterator.ORDERED
+					| Spliterator.IMMUTABLE);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return edgeId(o) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return outEdges.length;
+		}
+	}
+
+	/**
+	 * A compact graph is never modified, its version is 0.
+	 */
+	@Override
+	public long version() {
+		return 0;
+	}
+
+	public boolean addEdge(E edge) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean addVertex(V vertex) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean areNeighbors(V vertex1, V vertex2) {
+		int u = checkedId(vertex1);
+		int v = checkedId(vertex2);
+		return hasArc(u, v) || hasArc(v, u);
+	}
+
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean isEmpty() {
+		return vertices.length == 0;
+	}
+
+	public boolean containsVertex(V vertex) {
+		return ids.containsKey(vertex);
+	}
+
+	public boolean containsEdge(E edge) {
+		return edgeId(edge) >= 0;
+	}
+
+	public boolean removeEdge(E edge) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean removeVertex(V vertex) {
+		throw new UnsupportedOperationException();
+	}
+
+	public Set<V> vertices() {
+		return vertexSet;
+	}
+
+	public Set<E> edges() {
+		return edgeSet;
+	}
+
+	public int size() {
+		return outEdges.length;
+	}
+
+	public int order() {
+		return vertices.length;
+	}
+
+	/**
+	 * The degree of a vertex is the number of incident edges, where a loop is
+	 * counted twice.
+	 */
+	public int degree(V vertex) {
+		int v = checkedId(vertex);
+		return outOffsets[v + 1] - outOffsets[v] + inOffsets[v + 1]
+				- inOffsets[v];
+	}
+
+	public int indegree(V vertex) {
+		int v = checkedId(vertex);
+		return inOffsets[v + 1] - inOffsets[v];
+	}
+
+	public int outdegree(V vertex) {
+		int v = checkedId(vertex);
+		return outOffsets[v + 1] - outOffsets[v];
+	}
+
+	public Iterable<E> incidentEdges(V vertex) {
+		int v = checkedId(vertex);
+		return Iterables.append(
+				() -> new EdgeIterator(null, outOffsets[v], outOffsets[v + 1], -1),
+				() -> new EdgeIterator(inEdges, inOffsets[v], inOffsets[v + 1], v));
+	}
+
+	public Iterable<E> incidentEdges(V vertex1, V vertex2) {
+		checkedId(vertex1);
+		if (vertex1.equals(vertex2))
+			return outgoingEdges(vertex1, vertex1);
+		else
+			return Iterables.append(outgoingEdges(vertex1, vertex2),
+					outgoingEdges(vertex2, vertex1));
+	}
+
+	public Iterable<E> incomingEdges(V vertex) {
+		int v = checkedId(vertex);
+		return () -> new EdgeIterator(inEdges, inOffsets[v], inOffsets[v + 1], -1);
+	}
+
+	public Iterable<E> outgoingEdges(V vertex) {
+		int v = checkedId(vertex);
+		return () -> new EdgeIterator(null, outOffsets[v], outOffsets[v + 1], -1);
+	}
+
+	public Iterable<E> outgoingEdges(V source, V target) {
+		int u = checkedId(source);
+		int v = checkedId(target);
+		int begin = lowerBound(u, v);
+		int end = begin;
+		while (end < outOffsets[u + 1] && outTargets[end] == v)
+			end++;
+		final int last = end;
+		return () -> new EdgeIterator(null, begin, last, -1);
+	}
+
+	public Iterable<V> neighbors(V vertex) {
+		int v = checkedId(vertex);
+		return () -> new VertexIterator(outTargets, outOffsets[v],
+				outOffsets[v + 1], inSources, inOffsets[v], inOffsets[v + 1]);
+	}
+
+	/*
+	 * Calls action on the ids of the neighbors of v, in increasing order,
+	 * until it returns false.
+	 */
+	private boolean forEachNeighborId(int v, IntPredicate action) {
+		int i = outOffsets[v];
+		int j = inOffsets[v];
+		while (i < outOffsets[v + 1] || j < inOffsets[v + 1]) {
+			int w = j >= inOffsets[v + 1]
+					|| (i < outOffsets[v + 1] && outTargets[i] <= inSources[j])
+					? outTargets[i] : inSources[j];
+			while (i < outOffsets[v + 1] && outTargets[i] == w)
+				i++;
+			while (j < inOffsets[v + 1] && inSources[j] == w)
+				j++;
+			if (!action.test(w))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The ids of the neighbors are merged in an array, whose stream is sized
+	 * and split in halves.
+	 */
+	@Override
+	public Stream<V> neighborStream(V vertex) {
+		int v = checkedId(vertex);
+		int[] neighbors = new int[degree(vertex)];
+		int[] n = { 0 };
+		forEachNeighborId(v, w -> {
+			neighbors[n[0]++] = w;
+			return true;
+		});
+		return Arrays.stream(neighbors, 0, n[0]).mapToObj(this::vertex);
+	}
+
+	/*
+	 * Internal iteration directly on the arrays.
+	 */
+
+	@Override
+	public void forEachNeighbor(V vertex, Consumer<? super V> action) {
+		forEachNeighborId(checkedId(vertex), w -> {
+			action.accept(vertex(w));
+			return true;
+		});
+	}
+
+	@Override
+	public boolean forEachNeighborWhile(V vertex, Predicate<? super V> action) {
+		return forEachNeighborId(checkedId(vertex),
+				w -> action.test(vertex(w)));
+	}
+
+	@Override
+	public void forEachSuccessor(V vertex, Consumer<? super V> action) {
+		int v = checkedId(vertex);
+		for (int arc = outOffsets[v]; arc < outOffsets[v + 1]; arc++)
+			if (arc == outOffsets[v] || outTargets[arc] != outTargets[arc - 1])
+				action.accept(vertex(outTargets[arc]));
+	}
+
+	@Override
+	public void forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		int v = checkedId(vertex);
+		for (int arc = outOffsets[v]; arc < outOffsets[v + 1]; arc++)
+			action.accept(edge(arc));
+		for (int arc = inOffsets[v]; arc < inOffsets[v + 1]; arc++)
+			if (inSources[arc] != v)
+				action.accept(edge(inEdges[arc]));
+	}
+
+	@Override
+	public void forEachOutgoingEdge(V vertex, Consumer<? super E> action) {
+		int v = checkedId(vertex);
+		for (int arc = outOffsets[v]; arc < outOffsets[v + 1]; arc++)
+			action.accept(edge(arc));
+	}
+
+	@Override
+	public boolean forEachOutgoingEdgeWhile(V vertex,
+			Predicate<? super E> action) {
+		int v = checkedId(vertex);
+		for (int arc = outOffsets[v]; arc < outOffsets[v + 1]; arc++)
+			if (!action.test(edge(arc)))
+				return false;
+		return true;
+	}
+
+	@Override
+	public void forEachOutgoingEdge(V source, V target,
+			Consumer<? super E> action) {
+		int u = checkedId(source);
+		int v = checkedId(target);
+		for (int arc = lowerBound(u, v); arc < outOffsets[u + 1]
+				&& outTargets[arc] == v; arc++)
+			action.accept(edge(arc));
+	}
+
+	public Iterable<V> predecessors(V vertex) {
+		int v = checkedId(vertex);
+		return () -> new VertexIterator(inSources, inOffsets[v],
+				inOffsets[v + 1], inSources, 0, 0);
+	}
+
+	public Iterable<V> successors(V vertex) {
+		int v = checkedId(vertex);
+		return () -> new VertexIterator(outTargets, outOffsets[v],
+				outOffsets[v + 1], outTargets, 0, 0);
+	}
+
+	public boolean removeAllEdges(Collection<E> edges) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean removeAllVertices(Collection<V> vertices) {
+		throw new UnsupportedOperationException();
+	}
+
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(order() + " vertices + " + size() + " edges" + "\n");
+		for (int v = 0; v < vertices.length; v++) {
+			sb.append(vertices[v] + " : ");
+			for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+				sb.append(outEdges[e] + " ");
+			}
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+	public int hashCode() {
+		return Objects.hash(vertexSet, edgeSet);
+	}
+
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Graph<?, ?>))
+			return false;
+		Graph<?, ?> g = (Graph<?, ?>) o;
+		return g.vertices().equals(vertexSet) && g.edges().equals(edgeSet);
+	}
+
+	@Override
+	public InducedSubgraph<V, E> inducedSubgraph(Set<V> vertices) {
+		return new InducedSubMultiGraph<V, E>(this, vertices);
+	}
+
+	@Override
+	public PartialGraph<V, E> partialGraph(Set<E> edges) {
+		return new PartialMultiGraph<V, E>(this, edges);
+	}
+
+	@Override
+	public Subgraph<V, E> subgraph(Set<V> vertices, Set<E> edges) {
+		return new SubMultiGraph<V, E>(this, vertices, edges);
+	}
+}
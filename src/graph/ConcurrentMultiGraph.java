@@ -0,0 +1,504 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static graph.Graph.Edge;
+
+import collections.Iterables;
+
+/**
+ * A thread-safe multigraph. Any number of threads may add and remove
+ * vertices and edges while others query the graph.
+ * <p>
+ * The adjacency of each vertex is kept in concurrent sets, written only by
+ * threads holding the lock of the stripe of the vertex. Adding or removing an
+ * edge locks the stripes of its two extremities, so that the edge appears in
+ * (or disappears from) all the indexes at once for other writers. Readers do
+ * not lock: the iterables returned by the query methods, as the sets returned
+ * by {@link #vertices()} and {@link #edges()}, are weakly consistent. They
+ * never throw ConcurrentModificationException and may or may not reflect the
+ * modifications made after their creation.
+ */
+public class ConcurrentMultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
+
+	/*
+	 * Indexes of the edges of a vertex, see MultiGraph. The sets of successors
+	 * are given by outgoingMultiEdges.keySet().
+	 */
+	private class Adjacency {
+		final Map<V, Set<E>> outgoingMultiEdges = new ConcurrentHashMap<V, Set<E>>(
+				4);
+		final Set<E> outgoingEdges = newSet();
+		final Set<E> incomingEdges = newSet();
+		final Set<E> incidentEdges = newSet();
+		final Set<V> predecessors = newSet();
+		final Set<V> neighbors = newSet();
+		// set by removeVertex, with the lock of the stripe of the vertex
+		boolean removed;
+	}
+
+	private final ConcurrentHashMap<V, Adjacency> adjacencies;
+	private final Set<E> edges;
+
+	private final Object[] locks;
+
+	/* To avoid concurrent modification on subgraphs. */
+	private final LongAdder modCount = new LongAdder();
+
+	private final Set<V> vertexSet = new AbstractSet<V>() {
+
+		public boolean add(V v) {
+			return addVertex(v);
+		}
+
+		public boolean remove(Object o) {
+			@SuppressWarnings("unchecked")
+			V v = (V) o;
+			return adjacencies.containsKey(o) && removeVertex(v);
+		}
+
+		public boolean contains(Object o) {
+			return adjacencies.containsKey(o);
+		}
+
+		public void clear() {
+			ConcurrentMultiGraph.this.clear();
+		}
+
+		public Iterator<V> iterator() {
+			return unmodifiable(adjacencies.keySet()).iterator();
+		}
+
+		public int size() {
+			return adjacencies.size();
+		}
+	};
+
+	private final Set<E> edgeSet = new AbstractSet<E>() {
+
+		public boolean add(E e) {
+			return addEdge(e);
+		}
+
+		public boolean remove(Object o) {
+			@SuppressWarnings("unchecked")
+			E e = (E) o;
+			return edges.contains(o) && removeEdge(e);
+		}
+
+		public boolean contains(Object o) {
+			return edges.contains(o);
+		}
+
+		public Iterator<E> iterator() {
+			return unmodifiable(edges).iterator();
+		}
+
+		public int size() {
+			return edges.size();
+		}
+	};
+
+	public ConcurrentMultiGraph() {
+		this(0, 0);
+	}
+
+	/**
+	 * Create an empty ConcurrentMultiGraph sized for the given number of
+	 * vertices and edges.
+	 * 
+	 * @param expectedOrder
+	 *            expected number of vertices
+	 * @param expectedSize
+	 *            expected number of edges
+	 */
+	public ConcurrentMultiGraph(int expectedOrder, int expectedSize) {
+		adjacencies = new ConcurrentHashMap<V, Adjacency>(
+				MultiGraph.capacity(expectedOrder));
+		edges = ConcurrentHashMap.newKeySet(MultiGraph.capacity(expectedSize));
+		int stripes = Integer.highestOneBit(
+				Runtime.getRuntime().availableProcessors() * 16 - 1) << 1;
+		locks = new Object[stripes];
+		for (int i = 0; i < stripes; i++)
+			locks[i] = new Object();
+	}
+
+	/**
+	 * Create a new ConcurrentMultiGraph with same vertices and edges than g.
+	 */
+	public ConcurrentMultiGraph(Graph<V, E> g) {
+		this(g.order(), g.size());
+		for (V v : g.vertices())
+			addVertex(v);
+		for (E e : g.edges())
+			addEdge(e);
+	}
+
+	private static <T> Set<T> newSet() {
+		return ConcurrentHashMap.newKeySet(4);
+	}
+
+	private static <T> Set<T> unmodifiable(Set<T> set) {
+		return Collections.unmodifiableSet(set);
+	}
+
+	private int stripe(Object v) {
+		int h = Objects.hashCode(v);
+		return (h ^ (h >>> 16)) & (locks.length - 1);
+	}
+
+	/*
+	 * Returns the adjacency of v, throws IllegalArgumentException if v is not
+	 * a vertex of the graph.
+	 */
+	private Adjacency adjacency(Object v) {
+		Adjacency a = v == null ? null : adjacencies.get(v);
+		if (a == null)
+			throw new IllegalArgumentException();
+		return a;
+	}
+
+	/**
+	 * The version of a graph modified concurrently may be outdated as soon as
+	 * it is returned.
+	 */
+	@Override
+	public long version() {
+		return modCount.sum();
+	}
+
+	/**
+	 * If the vertex is being removed by another thread, waits for the end of
+	 * the removal, then adds the vertex again.
+	 */
+	public boolean addVertex(V vertex) {
+		Object lock = locks[stripe(vertex)];
+		boolean interrupted = false;
+		synchronized (lock) {
+			Adjacency a;
+			while ((a = adjacencies.get(vertex)) != null && a.removed) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			if (a != null)
+				return false;
+			adjacencies.put(vertex, new Adjacency());
+			modCount.increment();
+			return true;
+		}
+	}
+
+	/**
+	 * The stripes of the two extremities are locked in increasing order, so
+	 * that two threads can not wait for each other.
+	 */
+	public boolean addEdge(E edge) {
+		V source = edge.source();
+		V target = edge.target();
+		int i = stripe(source);
+		int j = stripe(target);
+		synchronized (locks[Math.min(i, j)]) {
+			synchronized (locks[Math.max(i, j)]) {
+				return insert(edge, source, target);
+			}
+		}
+	}
+
+	private boolean insert(E e, V source, V target) {
+		Adjacency s = adjacency(source);
+		Adjacency t = adjacency(target);
+		if (s.removed || t.removed)
+			throw new IllegalArgumentException();
+		if (!edges.add(e))
+			return false;
+		modCount.increment();
+		Set<E> multiEdges = s.outgoingMultiEdges.get(target);
+		if (multiEdges == null) {
+			multiEdges = newSet();
+			multiEdges.add(e);
+			s.outgoingMultiEdges.put(target, multiEdges);
+			t.predecessors.add(source);
+			s.neighbors.add(target);
+			t.neighbors.add(source);
+		} else
+			multiEdges.add(e);
+		s.outgoingEdges.add(e);
+		t.incomingEdges.add(e);
+		s.incidentEdges.add(e);
+		t.incidentEdges.add(e);
+		return true;
+	}
+
+	public boolean removeEdge(E edge) {
+		V source = edge.source();
+		V target = edge.target();
+		int i = stripe(source);
+		int j = stripe(target);
+		synchronized (locks[Math.min(i, j)]) {
+			synchronized (locks[Math.max(i, j)]) {
+				return delete(edge, source, target);
+			}
+		}
+	}
+
+	private boolean delete(E e, V source, V target) {
+		if (!edges.remove(e))
+			return false;
+		modCount.increment();
+		Adjacency s = adjacencies.get(source);
+		Adjacency t = adjacencies.get(target);
+		Set<E> multiEdges = s.outgoingMultiEdges.get(target);
+		multiEdges.remove(e);
+		if (multiEdges.isEmpty()) {
+			s.outgoingMultiEdges.remove(target);
+			t.predecessors.remove(source);
+			// source and target stay neighbors if there is an edge from
+			// target to source
+			if (!t.outgoingMultiEdges.containsKey(source)) {
+				s.neighbors.remove(target);
+				t.neighbors.remove(source);
+			}
+		}
+		s.outgoingEdges.remove(e);
+		t.incomingEdges.remove(e);
+		s.incidentEdges.remove(e);
+		t.incidentEdges.remove(e);
+		return true;
+	}
+
+	/**
+	 * The vertex is first marked as removed, so that no edge can be added to it
+	 * anymore, then its incident edges are removed one by one, and finally the
+	 * vertex itself.
+	 */
+	public boolean removeVertex(V vertex) {
+		Adjacency a;
+		synchronized (locks[stripe(vertex)]) {
+			a = vertex == null ? null : adjacencies.get(vertex);
+			if (a == null || a.removed)
+				return false;
+			a.removed = true;
+		}
+		for (E e : new ArrayList<E>(a.incidentEdges))
+			removeEdge(e);
+		Object lock = locks[stripe(vertex)];
+		synchronized (lock) {
+			adjacencies.remove(vertex);
+			modCount.increment();
+			// wake up the threads adding the vertex again
+			lock.notifyAll();
+		}
+		return true;
+	}
+
+	public boolean removeAllEdges(Collection<E> edges) {
+		boolean modified = false;
+		for (E e : new ArrayList<E>(edges))
+			modified |= removeEdge(e);
+		return modified;
+	}
+
+	public boolean removeAllVertices(Collection<V> vertices) {
+		boolean modified = false;
+		for (V v : new ArrayList<V>(vertices))
+			modified |= removeVertex(v);
+		return modified;
+	}
+
+	public void clear() {
+		removeAllVertices(adjacencies.keySet());
+	}
+
+	public boolean areNeighbors(V vertex1, V vertex2) {
+		adjacency(vertex2);
+		return adjacency(vertex1).neighbors.contains(vertex2);
+	}
+
+	public boolean isEmpty() {
+		return adjacencies.isEmpty();
+	}
+
+	public boolean containsVertex(V vertex) {
+		return vertex != null && adjacencies.containsKey(vertex);
+	}
+
+	public boolean containsEdge(E edge) {
+		return edge != null && edges.contains(edge);
+	}
+
+	public Set<V> vertices() {
+		return vertexSet;
+	}
+
+	public Set<E> edges() {
+		return edgeSet;
+	}
+
+	public int size() {
+		return edges.size();
+	}
+
+	public int order() {
+		return adjacencies.size();
+	}
+
+	/**
+	 * The degree of a vertex is the number of incident edges, where a loop is
+	 * counted twice.
+	 */
+	public int degree(V vertex) {
+		Adjacency a = adjacency(vertex);
+		return a.outgoingEdges.size() + a.incomingEdges.size();
+	}
+
+	public int indegree(V vertex) {
+		return adjacency(vertex).incomingEdges.size();
+	}
+
+	public int outdegree(V vertex) {
+		return adjacency(vertex).outgoingEdges.size();
+	}
+
+	public Iterable<E> incidentEdges(V vertex) {
+		return unmodifiable(adjacency(vertex).incidentEdges);
+	}
+
+	public Iterable<E> incidentEdges(V vertex1, V vertex2) {
+		if (Objects.equals(vertex1, vertex2))
+			return outgoingEdges(vertex1, vertex1);
+		return Iterables.append(outgoingEdges(vertex1, vertex2),
+				outgoingEdges(vertex2, vertex1));
+	}
+
+	public Iterable<E> incomingEdges(V vertex) {
+		return unmodifiable(adjacency(vertex).incomingEdges);
+	}
+
+	public Iterable<E> outgoingEdges(V vertex) {
+		return unmodifiable(adjacency(vertex).outgoingEdges);
+	}
+
+	/**
+	 * The returned iterable is bound to the edges linking source to target
+	 * when it is iterated.
+	 */
+	public Iterable<E> outgoingEdges(V source, V target) {
+		Adjacency s = adjacency(source);
+		adjacency(target);
+		return () -> {
+			Set<E> multiEdges = s.outgoingMultiEdges.get(target);
+			return unmodifiable(multiEdges == null
+					? Collections.<E> emptySet() : multiEdges).iterator();
+		};
+	}
+
+	public Iterable<V> neighbors(V vertex) {
+		return unmodifiable(adjacency(vertex).neighbors);
+	}
+
+	@Override
+	public void forEachNeighbor(V vertex, Consumer<? super V> action) {
+		adjacency(vertex).neighbors.forEach(action);
+	}
+
+	@Override
+	public void forEachSuccessor(V vertex, Consumer<? super V> action) {
+		adjacency(vertex).outgoingMultiEdges.keySet().forEach(action);
+	}
+
+	@Override
+	public void forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		adjacency(vertex).incidentEdges.forEach(action);
+	}
+
+	@Override
+	public void forEachOutgoingEdge(V vertex, Consumer<? super E> action) {
+		adjacency(vertex).outgoingEdges.forEach(action);
+	}
+
+	@Override
+	public Stream<V> neighborStream(V vertex) {
+		return adjacency(vertex).neighbors.stream();
+	}
+
+	public Iterable<V> predecessors(V vertex) {
+		return unmodifiable(adjacency(vertex).predecessors);
+	}
+
+	public Iterable<V> successors(V vertex) {
+		return unmodifiable(adjacency(vertex).outgoingMultiEdges.keySet());
+	}
+
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(order() + " vertices + " + size() + " edges" + "\n");
+		for (V v : adjacencies.keySet()) {
+			sb.append(v + " : ");
+			for (E e : adjacencies.get(v).outgoingEdges) {
+				sb.append(e + " ");
+			}
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+	public int hashCode() {
+		return Objects.hash(vertexSet, edgeSet);
+	}
+
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Graph<?, ?>))
+			return false;
+		Graph<?, ?> g = (Graph<?, ?>) o;
+		return g.vertices().equals(vertexSet) && g.edges().equals(edgeSet);
+	}
+
+	@Override
+	public InducedSubgraph<V, E> inducedSubgraph(Set<V> vertices) {
+		return new InducedSubMultiGraph<V, E>(this, vertices);
+	}
+
+	@Override
+	public PartialGraph<V, E> partialGraph(Set<E> edges) {
+		return new PartialMultiGraph<V, E>(this, edges);
+	}
+
+	@Override
+	public Subgraph<V, E> subgraph(Set<V> vertices, Set<E> edges) {
+		return new SubMultiGraph<V, E>(this, vertices, edges);
+	}
+}
@@ -0,0 +1,718 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static graph.Graph.Edge;
+
+import collections.Iterables;
+
+/**
+ * A graph for dense graphs, whose adjacency is stored as a matrix of bits:
+ * the row of a vertex is an array of longs where the bit of each successor
+ * (resp. predecessor) is set. areNeighbors is answered in constant time, and
+ * the neighborhoods of two vertices are intersected or united 64 vertices at
+ * a time.
+ * <p>
+ * The matrix takes order() * order() / 4 bytes, so this graph is only worth
+ * using when a significant part of the pairs of vertices are linked, see
+ * {@link #isDense(int, long)}; {@link GraphBuilder#build()} chooses between
+ * a DenseGraph and a MultiGraph this way. The edges themselves are stored in
+ * lists, so parallel edges are allowed as in a MultiGraph.
+ * 
+ * @param <V>
+ *            type of the vertices
+ * @param <E>
+ *            type of the edges
+ */
+public class DenseGraph<V, E extends Edge<V>> implements IndexedGraph<V, E> {
+
+	private final IdRegistry<V> vertexIds;
+	private final IdRegistry<E> edgeIds;
+
+	/*
+	 * successors[u] has the bit v set when there is an edge from u to v, and
+	 * predecessors[v] has then the bit u set. All the rows have the same
+	 * length, enough for the ids smaller than the number of rows.
+	 */
+	private long[][] successors;
+	private long[][] predecessors;
+	private List<E>[] outgoingEdges;
+	private List<E>[] incomingEdges;
+
+	/* To avoid concurrent modification on subgraphs. */
+	int modCount = 0;
+
+	private final Set<V> vertexSet = new AbstractSet<V>() {
+
+		public boolean add(V v) {
+			return addVertex(v);
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean remove(Object o) {
+			return contains(o) && removeVertex((V) o);
+		}
+
+		public boolean contains(Object o) {
+			return vertexIds.contains(o);
+		}
+
+		public Iterator<V> iterator() {
+			return vertexIds.iterator();
+		}
+
+		@Override
+		public Spliterator<V> spliterator() {
+			return vertexIds.spliterator();
+		}
+
+		public int size() {
+			return vertexIds.size();
+		}
+	};
+
+	private final Set<E> edgeSet = new AbstractSet<E>() {
+
+		public boolean add(E e) {
+			return addEdge(e);
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean remove(Object o) {
+			return contains(o) && removeEdge((E) o);
+		}
+
+		public boolean contains(Object o) {
+			return edgeIds.contains(o);
+		}
+
+		public Iterator<E> iterator() {
+			return edgeIds.iterator();
+		}
+
+		@Override
+		public Spliterator<E> spliterator() {
+			return edgeIds.spliterator();
+		}
+
+		public int size() {
+			return edgeIds.size();
+		}
+	};
+
+	public DenseGraph() {
+		this(64, 0);
+	}
+
+	/**
+	 * Create an empty graph whose matrix has room for expectedOrder vertices.
+	 * 
+	 * @param expectedOrder
+	 *            expected number of vertices
+	 * @param expectedSize
+	 *            expected number of edges
+	 */
+	public DenseGraph(int expectedOrder, int expectedSize) {
+		vertexIds = new IdRegistry<V>(expectedOrder);
+		edgeIds = new IdRegistry<E>(expectedSize);
+		allocate(Math.max(64, expectedOrder));
+	}
+
+	/**
+	 * Create a copy of a graph.
+	 */
+	public DenseGraph(Graph<V, E> g) {
+		this(g.order(), g.size());
+		for (V v : g.vertices())
+			addVertex(v);
+		for (E e : g.edges())
+			addEdge(e);
+	}
+
+	/**
+	 * Tells if a graph with a given order and size is dense enough to be
+	 * stored in a DenseGraph, that is if its vertices have on average at
+	 * least one neighbor in each block of 64 vertices, or if its rows hold in
+	 * one long.
+	 */
+	public static boolean isDense(int order, long size) {
+		return order <= 64 || size * 64 >= (long) order * order;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		int words = (capacity + 63) >>> 6;
+		int rows = words << 6;
+		int oldRows = successors == null ? 0 : successors.length;
+		successors = successors == null ? new long[rows][]
+				: Arrays.copyOf(successors, rows);
+		predecessors = predecessors == null ? new long[rows][]
+				: Arrays.copyOf(predecessors, rows);
+		outgoingEdges = outgoingEdges == null ? (List<E>[]) new List<?>[rows]
+				: Arrays.copyOf(outgoingEdges, rows);
+		incomingEdges = incomingEdges == null ? (List<E>[]) new List<?>[rows]
+				: Arrays.copyOf(incomingEdges, rows);
+		for (int v = 0; v < rows; v++) {
+			if (v < oldRows && successors[v] != null) {
+				successors[v] = Arrays.copyOf(successors[v], words);
+				predecessors[v] = Arrays.copyOf(predecessors[v], words);
+			}
+		}
+	}
+
+	private int words() {
+		return successors.length >>> 6;
+	}
+
+	private static boolean get(long[] row, int v) {
+		return (row[v >>> 6] & (1L << v)) != 0;
+	}
+
+	private int checkedId(Object vertex) {
+		int id = vertexIds.id(vertex);
+		if (id < 0)
+			throw new IllegalArgumentException();
+		return id;
+	}
+
+	/*
+	 * Ids
+	 */
+
+	public int vertexId(V vertex) {
+		return vertexIds.id(vertex);
+	}
+
+	public int edgeId(Object edge) {
+		return edgeIds.id(edge);
+	}
+
+	public V vertex(int id) {
+		return vertexIds.get(id);
+	}
+
+	public E edge(int id) {
+		return edgeIds.get(id);
+	}
+
+	public int vertexIdBound() {
+		return vertexIds.bound();
+	}
+
+	public int edgeIdBound() {
+		return edgeIds.bound();
+	}
+
+	@Override
+	public long version() {
+		return modCount;
+	}
+
+	/*
+	 * Modifications
+	 */
+
+	public boolean addVertex(V vertex) {
+		if (!vertexIds.add(vertex))
+			return false;
+		int v = vertexIds.id(vertex);
+		if (v >= successors.length)
+			allocate(2 * successors.length);
+		if (successors[v] == null) {
+			successors[v] = new long[words()];
+			predecessors[v] = new long[words()];
+			outgoingEdges[v] = new ArrayList<E>();
+			incomingEdges[v] = new ArrayList<E>();
+		}
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * @exception IllegalArgumentException
+	 *                if an extremity of the edge is not a vertex of the graph
+	 */
+	public boolean addEdge(E edge) {
+		int u = checkedId(edge.source());
+		int v = checkedId(edge.target());
+		if (!edgeIds.add(edge))
+			return false;
+		outgoingEdges[u].add(edge);
+		incomingEdges[v].add(edge);
+		successors[u][v >>> 6] |= 1L << v;
+		predecessors[v][u >>> 6] |= 1L << u;
+		modCount++;
+		return true;
+	}
+
+	public boolean removeEdge(E edge) {
+		if (!edgeIds.remove(edge))
+			return false;
+		int u = vertexIds.id(edge.source());
+		int v = vertexIds.id(edge.target());
+		outgoingEdges[u].remove(edge);
+		incomingEdges[v].remove(edge);
+		if (!hasEdge(u, v)) {
+			successors[u][v >>> 6] &= ~(1L << v);
+			predecessors[v][u >>> 6] &= ~(1L << u);
+		}
+		modCount++;
+		return true;
+	}
+
+	private boolean hasEdge(int u, int v) {
+		V target = vertexIds.get(v);
+		for (E e : outgoingEdges[u])
+			if (e.target().equals(target))
+				return true;
+		return false;
+	}
+
+	public boolean removeVertex(V vertex) {
+		int v = vertexIds.id(vertex);
+		if (v < 0)
+			return false;
+		for (Object e : outgoingEdges[v].toArray())
+			edgeSet.remove(e);
+		for (Object e : incomingEdges[v].toArray())
+			edgeSet.remove(e);
+		vertexIds.remove(vertex);
+		modCount++;
+		return true;
+	}
+
+	public boolean removeAllEdges(Collection<E> edges) {
+		boolean modified = false;
+		for (Object o : edges.toArray())
+			modified |= edgeSet.remove(o);
+		return modified;
+	}
+
+	public boolean removeAllVertices(Collection<V> vertices) {
+		boolean modified = false;
+		for (Object o : vertices.toArray())
+			modified |= vertexSet.remove(o);
+		return modified;
+	}
+
+	public void clear() {
+		for (int v = 0; v < vertexIds.bound(); v++) {
+			if (successors[v] != null) {
+				Arrays.fill(successors[v], 0);
+				Arrays.fill(predecessors[v], 0);
+				outgoingEdges[v].clear();
+				incomingEdges[v].clear();
+			}
+		}
+		vertexIds.clear();
+		edgeIds.clear();
+		modCount++;
+	}
+
+	/*
+	 * Queries
+	 */
+
+	public boolean areNeighbors(V vertex1, V vertex2) {
+		return areNeighbors(checkedId(vertex1), checkedId(vertex2));
+	}
+
+	/**
+	 * Test if the vertices with ids u and v are neighbors.
+	 */
+	public boolean areNeighbors(int u, int v) {
+		return get(successors[u], v) || get(predecessors[u], v);
+	}
+
+	/**
+	 * Returns the ids of the neighbors of a vertex.
+	 */
+	public BitSet neighborhood(V vertex) {
+		int v = checkedId(vertex);
+		long[] row = new long[words()];
+		for (int w = 0; w < row.length; w++)
+			row[w] = successors[v][w] | predecessors[v][w];
+		return BitSet.valueOf(row);
+	}
+
+	/**
+	 * Returns the number of vertices which are neighbors of both vertex1 and
+	 * vertex2.
+	 */
+	public int commonNeighborCount(V vertex1, V vertex2) {
+		int u = checkedId(vertex1);
+		int v = checkedId(vertex2);
+		int count = 0;
+		for (int w = 0; w < words(); w++)
+			count += Long.bitCount((successors[u][w] | predecessors[u][w])
+					& (successors[v][w] | predecessors[v][w]));
+		return count;
+	}
+
+	/**
+	 * Returns the vertices which are neighbors of both vertex1 and vertex2.
+	 */
+	public Set<V> commonNeighbors(V vertex1, V vertex2) {
+		int u = checkedId(vertex1);
+		int v = checkedId(vertex2);
+		long[] row = new long[words()];
+		for (int w = 0; w < row.length; w++)
+			row[w] = (successors[u][w] | predecessors[u][w])
+					& (successors[v][w] | predecessors[v][w]);
+		return toSet(row);
+	}
+
+	/**
+	 * Returns the vertices which are neighbors of vertex1 or vertex2.
+	 */
+	public Set<V> neighborhoodUnion(V vertex1, V vertex2) {
+		int u = checkedId(vertex1);
+		int v = checkedId(vertex2);
+		long[] row = new long[words()];
+		for (int w = 0; w < row.length; w++)
+			row[w] = successors[u][w] | predecessors[u][w] | successors[v][w]
+					| predecessors[v][w];
+		return toSet(row);
+	}
+
+	private Set<V> toSet(long[] row) {
+		Set<V> set = new LinkedHashSet<V>();
+		for (Iterator<V> it = new RowIterator(row, null); it.hasNext();)
+			set.add(it.next());
+		return set;
+	}
+
+	/**
+	 * Iterator on the vertices whose bits are set in the union of two rows.
+	 */
+	private class RowIterator implements Iterator<V> {
+		private final long[] a;
+		private final long[] b;
+		private final int expectedModCount = modCount;
+		private int w = -1;
+		private long word;
+
+		RowIterator(long[] a, long[] b) {
+			this.a = a;
+			this.b = b;
+			advance();
+		}
+
+		private void advance() {
+			while (word == 0 && ++w < a.length)
+				word = b == null ? a[w] : a[w] | b[w];
+		}
+
+		public boolean hasNext() {
+			return word != 0;
+		}
+
+		public V next() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (word == 0)
+				throw new NoSuchElementException();
+			int v = (w << 6) + Long.numberOfTrailingZeros(word);
+			word &= word - 1;
+			advance();
+			return vertexIds.get(v);
+		}
+	}
+
+	public boolean isEmpty() {
+		return vertexIds.size() == 0;
+	}
+
+	public boolean containsVertex(V vertex) {
+		return vertexIds.contains(vertex);
+	}
+
+	public boolean containsEdge(E edge) {
+		return edgeIds.contains(edge);
+	}
+
+	public Set<V> vertices() {
+		return vertexSet;
+	}
+
+	public Set<E> edges() {
+		return edgeSet;
+	}
+
+	public int size() {
+		return edgeIds.size();
+	}
+
+	public int order() {
+		return vertexIds.size();
+	}
+
+	/**
+	 * The degree of a vertex is the number of incident edges, where a loop is
+	 * counted twice.
+	 */
+	public int degree(V vertex) {
+		int v = checkedId(vertex);
+		return outgoingEdges[v].size() + incomingEdges[v].size();
+	}
+
+	public int indegree(V vertex) {
+		return incomingEdges[checkedId(vertex)].size();
+	}
+
+	public int outdegree(V vertex) {
+		return outgoingEdges[checkedId(vertex)].size();
+	}
+
+	public Iterable<E> incidentEdges(V vertex) {
+		int v = checkedId(vertex);
+		return Iterables.append(
+				Collections.unmodifiableList(outgoingEdges[v]),
+				Iterables.iterableWithPredicate(
+						Collections.unmodifiableList(incomingEdges[v]),
+						e -> !e.source().equals(vertex)));
+	}
+
+	public Iterable<E> incidentEdges(V vertex1, V vertex2) {
+		checkedId(vertex1);
+		if (vertex1.equals(vertex2))
+			return outgoingEdges(vertex1, vertex1);
+		else
+			return Iterables.append(outgoingEdges(vertex1, vertex2),
+					outgoingEdges(vertex2, vertex1));
+	}
+
+	public Iterable<E> incomingEdges(V vertex) {
+		return Collections.unmodifiableList(incomingEdges[checkedId(vertex)]);
+	}
+
+	public Iterable<E> outgoingEdges(V vertex) {
+		return Collections.unmodifiableList(outgoingEdges[checkedId(vertex)]);
+	}
+
+	public Iterable<E> outgoingEdges(V source, V target) {
+		int u = checkedId(source);
+		int v = checkedId(target);
+		if (!get(successors[u], v))
+			return Collections.emptyList();
+		return Iterables.iterableWithPredicate(
+				Collections.unmodifiableList(outgoingEdges[u]),
+				e -> e.target().equals(target));
+	}
+
+	public Iterable<V> neighbors(V vertex) {
+		int v = checkedId(vertex);
+		return () -> new RowIterator(successors[v], predecessors[v]);
+	}
+
+	/*
+	 * Calls action on the vertices whose bits are set in the union of two
+	 * rows, until it returns false.
+	 */
+	private boolean forEachBit(long[] a, long[] b, Predicate<? super V> action) {
+		for (int w = 0; w < a.length; w++) {
+			for (long word = b == null ? a[w] : a[w] | b[w]; word != 0; word &= word - 1)
+				if (!action.test(vertexIds.get((w << 6) + Long.numberOfTrailingZeros(word))))
+					return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void forEachNeighbor(V vertex, Consumer<? super V> action) {
+		int v = checkedId(vertex);
+		forEachBit(successors[v], predecessors[v], w -> {
+			action.accept(w);
+			return true;
+		});
+	}
+
+	@Override
+	public boolean forEachNeighborWhile(V vertex, Predicate<? super V> action) {
+		int v = checkedId(vertex);
+		return forEachBit(successors[v], predecessors[v], action);
+	}
+
+	@Override
+	public void forEachSuccessor(V vertex, Consumer<? super V> action) {
+		forEachBit(successors[checkedId(vertex)], null, w -> {
+			action.accept(w);
+			return true;
+		});
+	}
+
+	@Override
+	public void forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		int v = checkedId(vertex);
+		outgoingEdges[v].forEach(action);
+		for (E e : incomingEdges[v])
+			if (!e.source().equals(vertex))
+				action.accept(e);
+	}
+
+	@Override
+	public void forEachOutgoingEdge(V vertex, Consumer<? super E> action) {
+		outgoingEdges[checkedId(vertex)].forEach(action);
+	}
+
+	@Override
+	public boolean forEachOutgoingEdgeWhile(V vertex,
+			Predicate<? super E> action) {
+		for (E e : outgoingEdges[checkedId(vertex)])
+			if (!action.test(e))
+				return false;
+		return true;
+	}
+
+	/**
+	 * The stream is sized and split in halves of the row of the vertex.
+	 */
+	@Override
+	public Stream<V> neighborStream(V vertex) {
+		int v = checkedId(vertex);
+		long[] row = new long[words()];
+		for (int w = 0; w < row.length; w++)
+			row[w] = successors[v][w] | predecessors[v][w];
+		return StreamSupport.stream(new RowSpliterator(row, 0, row.length),
+				false);
+	}
+
+	/**
+	 * Spliterator on the vertices whose bits are set in a range of the words
+	 * of a row.
+	 */
+	private class RowSpliterator implements Spliterator<V> {
+		private final long[] row;
+		private int w;
+		private final int end;
+		private long word;
+		private long size;
+
+		RowSpliterator(long[] row, int begin, int end) {
+			this.row = row;
+			this.w = begin;
+			this.end = end;
+			this.word = begin < end ? row[begin] : 0;
+			for (int i = begin; i < end; i++)
+				size += Long.bitCount(row[i]);
+		}
+
+		public boolean tryAdvance(Consumer<? super V> action) {
+			while (word == 0) {
+				if (++w >= end)
+					return false;
+				word = row[w];
+			}
+			int v = (w << 6) + Long.numberOfTrailingZeros(word);
+			word &= word - 1;
+			size--;
+			action.accept(vertexIds.get(v));
+			return true;
+		}
+
+		public Spliterator<V> trySplit() {
+			int mid = (w + 1 + end) >>> 1;
+			if (mid <= w + 1)
+				return null;
+			RowSpliterator prefix = new RowSpliterator(row, w, mid);
+			prefix.word = word;
+			prefix.size -= Long.bitCount(row[w]) - Long.bitCount(word);
+			size -= prefix.size;
+			w = mid;
+			word = row[mid];
+			return prefix;
+		}
+
+		public long estimateSize() {
+			return size;
+		}
+
+		public int characteristics() {
+			return DISTINCT | NONNULL | ORDERED | SIZED | SUBSIZED;
+		}
+	}
+
+	public Iterable<V> predecessors(V vertex) {
+		int v = checkedId(vertex);
+		return () -> new RowIterator(predecessors[v], null);
+	}
+
+	public Iterable<V> successors(V vertex) {
+		int v = checkedId(vertex);
+		return () -> new RowIterator(successors[v], null);
+	}
+
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(order() + " vertices + " + size() + " edges" + "\n");
+		for (V v : vertexSet) {
+			sb.append(v + " : ");
+			for (E e : outgoingEdges(v)) {
+				sb.append(e + " ");
+			}
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+	public int hashCode() {
+		return Objects.hash(vertexSet, edgeSet);
+	}
+
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Graph<?, ?>))
+			return false;
+		Graph<?, ?> g = (Graph<?, ?>) o;
+		return g.vertices().equals(vertexSet) && g.edges().equals(edgeSet);
+	}
+
+	@Override
+	public InducedSubgraph<V, E> inducedSubgraph(Set<V> vertices) {
+		return new InducedSubMultiGraph<V, E>(this, vertices);
+	}
+
+	@Override
+	public PartialGraph<V, E> partialGraph(Set<E> edges) {
+		return new PartialMultiGraph<V, E>(this, edges);
+	}
+
+	@Override
+	public Subgraph<V, E> subgraph(Set<V> vertices, Set<E> edges) {
+		return new SubMultiGraph<V, E>(this, vertices, edges);
+	}
+}
@@ -0,0 +1,393 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+import static graph.Graph.Edge;
+
+/**
+ * Attributes of the edges of a graph, such as weights or capacities, stored
+ * in primitive columns indexed by the ids of the edges. A column is a
+ * {@link ToDoubleFunction} (resp. {@link ToIntFunction}) which can be given
+ * to the algorithms of {@link util.Graphs} without boxing the values.
+ * <p>
+ * The ids of the edges of a {@link MultiGraph} or a {@link CompactGraph} are
+ * the ids given by the graph itself; for other graphs, the ids are given by
+ * the attributes when a value is first set. The value of an edge without
+ * value is the default value of the column. When the id of a removed edge is
+ * given to a new edge, the new edge has the default values, and the values
+ * follow the edges when the graph renumbers them, see
+ * {@link MultiGraph#compactIds()}.
+ * 
+ * @param <E>
+ *            type of the edges
+ */
+public class EdgeAttributes<E extends Edge<?>> {
+
+	private final IndexedGraph<?, ?> indexed;
+	private final IdRegistry<Object> ids;
+	// owners[id] is the edge of the graph whose values are stored at id
+	private Object[] owners;
+	private final Map<String, DoubleColumn> doubleColumns = new HashMap<String, DoubleColumn>();
+	private final Map<String, IntColumn> intColumns = new HashMap<String, IntColumn>();
+
+	public EdgeAttributes(Graph<?, ? extends E> graph) {
+		if (graph instanceof IndexedGraph) {
+			indexed = (IndexedGraph<?, ?>) graph;
+			ids = null;
+			owners = new Object[Math.max(bound(), 4)];
+			listen(indexed);
+		} else {
+			indexed = null;
+			ids = new IdRegistry<Object>(graph.size());
+		}
+	}
+
+	private <V, F extends Edge<V>> void listen(Graph<V, F> graph) {
+		try {
+			graph.addGraphListener(new Renumbering<V, F>(this));
+		} catch (UnsupportedOperationException e) {
+			// the graph does not renumber its edges
+		}
+	}
+
+	/*
+	 * Moves the values of the attributes when the graph renumbers its edges.
+	 * The listener does not keep the attributes from being garbage collected,
+	 * and unregisters itself once they are.
+	 */
+	private static final class Renumbering<V, F extends Edge<V>> implements
+			GraphListener<V, F> {
+
+		private final WeakReference<EdgeAttributes<?>> attributes;
+
+		Renumbering(EdgeAttributes<?> attributes) {
+			this.attributes = new WeakReference<EdgeAttributes<?>>(attributes);
+		}
+
+		private EdgeAttributes<?> attributes(Graph<V, F> graph) {
+			EdgeAttributes<?> a = attributes.get();
+			if (a == null)
+				graph.removeGraphListener(this);
+			return a;
+		}
+
+		@Override
+		public void edgeAdded(Graph<V, F> graph, F edge) {
+			attributes(graph);
+		}
+
+		@Override
+		public void edgeRemoved(Graph<V, F> graph, F edge) {
+			attributes(graph);
+		}
+
+		@Override
+		public void idsCompacted(Graph<V, F> graph, int[] vertexIds,
+				int[] edgeIds) {
+			EdgeAttributes<?> a = attributes(graph);
+			if (a != null)
+				a.renumber(edgeIds);
+		}
+	}
+
+	/**
+	 * Returns the id of an edge, or -1 if it has no id.
+	 */
+	public int id(Object edge) {
+		return indexed == null ? ids.id(edge) : indexed.edgeId(edge);
+	}
+
+	private int newId(Object edge) {
+		if (indexed != null) {
+			int id = indexed.edgeId(edge);
+			if (id < 0)
+				throw new IllegalArgumentException(edge + " is not an edge");
+			return id;
+		}
+		ids.add(edge);
+		return ids.id(edge);
+	}
+
+	private int bound() {
+		return indexed == null ? ids.bound() : indexed.edgeIdBound();
+	}
+
+	/*
+	 * The values stored at id belong to the edge with this id, which has not
+	 * been removed since they were set.
+	 */
+	private boolean owns(int id) {
+		return indexed == null || id < owners.length && owners[id] != null
+				&& owners[id] == indexed.edge(id);
+	}
+
+	/*
+	 * Gives the id to its current edge, resetting the values of a former one.
+	 */
+	private void claim(int id) {
+		if (indexed == null)
+			return;
+		Object edge = indexed.edge(id);
+		if (edge == null)
+			throw new IllegalArgumentException("No edge with id " + id);
+		if (id >= owners.length)
+			owners = Arrays.copyOf(owners, Math.max(owners.length * 2, id + 1));
+		if (owners[id] == edge)
+			return;
+		owners[id] = edge;
+		for (DoubleColumn c : doubleColumns.values())
+			c.reset(id);
+		for (IntColumn c : intColumns.values())
+			c.reset(id);
+	}
+
+	private void renumber(int[] edgeIds) {
+		owners = renumber(owners, edgeIds);
+		for (DoubleColumn c : doubleColumns.values())
+			c.values = renumber(c.values, edgeIds, c.defaultValue);
+		for (IntColumn c : intColumns.values())
+			c.values = renumber(c.values, edgeIds, c.defaultValue);
+	}
+
+	private static Object[] renumber(Object[] a, int[] newIds) {
+		Object[] b = new Object[a.length];
+		for (int id = 0; id < Math.min(a.length, newIds.length); id++)
+			if (newIds[id] >= 0)
+				b[newIds[id]] = a[id];
+		return b;
+	}
+
+	private static double[] renumber(double[] a, int[] newIds,
+			double defaultValue) {
+		double[] b = new double[a.length];
+		Arrays.fill(b, defaultValue);
+		for (int id = 0; id < Math.min(a.length, newIds.length); id++)
+			if (newIds[id] >= 0)
+				b[newIds[id]] = a[id];
+		return b;
+	}
+
+	private static int[] renumber(int[] a, int[] newIds, int defaultValue) {
+		int[] b = new int[a.length];
+		Arrays.fill(b, defaultValue);
+		for (int id = 0; id < Math.min(a.length, newIds.length); id++)
+			if (newIds[id] >= 0)
+				b[newIds[id]] = a[id];
+		return b;
+	}
+
+	/**
+	 * Returns the column of double values with a given name, created with
+	 * the default value 0 if there is no column with this name.
+	 */
+	public DoubleColumn doubles(String name) {
+		return doubles(name, 0);
+	}
+
+	/**
+	 * Returns the column of double values with a given name, created with
+	 * the given default value if there is no column with this name.
+	 */
+	public DoubleColumn doubles(String name, double defaultValue) {
+		DoubleColumn c = doubleColumns.get(name);
+		if (c == null) {
+			c = new DoubleColumn(defaultValue);
+			doubleColumns.put(name, c);
+		}
+		return c;
+	}
+
+	/**
+	 * Returns the column of int values with a given name, created with the
+	 * default value 0 if there is no column with this name.
+	 */
+	public IntColumn ints(String name) {
+		return ints(name, 0);
+	}
+
+	/**
+	 * Returns the column of int values with a given name, created with the
+	 * given default value if there is no column with this name.
+	 */
+	public IntColumn ints(String name, int defaultValue) {
+		IntColumn c = intColumns.get(name);
+		if (c == null) {
+			c = new IntColumn(defaultValue);
+			intColumns.put(name, c);
+		}
+		return c;
+	}
+
+	/**
+	 * Returns a column of double values initialized with the values of a map.
+	 */
+	public static <E extends Edge<?>> EdgeAttributes<E>.DoubleColumn doubles(
+			Graph<?, ? extends E> graph, Map<? extends E, ? extends Number> values) {
+		EdgeAttributes<E>.DoubleColumn c = new EdgeAttributes<E>(graph).doubles("");
+		for (Map.Entry<? extends E, ? extends Number> entry : values.entrySet())
+			c.set(entry.getKey(), entry.getValue().doubleValue());
+		return c;
+	}
+
+	/**
+	 * Returns a column of int values initialized with the values of a map.
+	 */
+	public static <E extends Edge<?>> EdgeAttributes<E>.IntColumn ints(
+			Graph<?, ? extends E> graph, Map<? extends E, ? extends Number> values) {
+		EdgeAttributes<E>.IntColumn c = new EdgeAttributes<E>(graph).ints("");
+		for (Map.Entry<? extends E, ? extends Number> entry : values.entrySet())
+			c.set(entry.getKey(), entry.getValue().intValue());
+		return c;
+	}
+
+	/**
+	 * Returns the values of a function on the edges of a graph as a function
+	 * of their ids in index. If the function is a column of attributes of the
+	 * graph of index, the values are read in the column by id, without
+	 * looking up the edges.
+	 */
+	public static <E> IntToDoubleFunction doublesById(
+			GraphIndex<?, ? extends E> index, ToDoubleFunction<? super E> f) {
+		if (f instanceof EdgeAttributes<?>.DoubleColumn
+				&& ((EdgeAttributes<?>.DoubleColumn) f).indexes(index))
+			return ((EdgeAttributes<?>.DoubleColumn) f)::get;
+		return id -> f.applyAsDouble(index.edge(id));
+	}
+
+	/**
+	 * Same as {@link #doublesById(GraphIndex, ToDoubleFunction)} for int
+	 * values.
+	 */
+	public static <E> IntUnaryOperator intsById(
+			GraphIndex<?, ? extends E> index, ToIntFunction<? super E> f) {
+		if (f instanceof EdgeAttributes<?>.IntColumn
+				&& ((EdgeAttributes<?>.IntColumn) f).indexes(index))
+			return ((EdgeAttributes<?>.IntColumn) f)::get;
+		return id -> f.applyAsInt(index.edge(id));
+	}
+
+	public class DoubleColumn implements ToDoubleFunction<E> {
+		private final double defaultValue;
+		private double[] values;
+
+		private DoubleColumn(double defaultValue) {
+			this.defaultValue = defaultValue;
+			values = new double[Math.max(bound(), 4)];
+			Arrays.fill(values, defaultValue);
+		}
+
+		private boolean indexes(GraphIndex<?, ?> index) {
+			return indexed != null && indexed == index;
+		}
+
+		/**
+		 * Returns the value of the edge with a given id.
+		 */
+		public double get(int id) {
+			return id >= 0 && id < values.length && owns(id) ? values[id]
+					: defaultValue;
+		}
+
+		public double get(Object edge) {
+			return get(id(edge));
+		}
+
+		@Override
+		public double applyAsDouble(E edge) {
+			return get(id(edge));
+		}
+
+		public void set(int id, double value) {
+			claim(id);
+			if (id >= values.length) {
+				int length = values.length;
+				values = Arrays.copyOf(values, Math.max(length * 2, id + 1));
+				Arrays.fill(values, length, values.length, defaultValue);
+			}
+			values[id] = value;
+		}
+
+		public void set(E edge, double value) {
+			set(newId(edge), value);
+		}
+
+		private void reset(int id) {
+			if (id < values.length)
+				values[id] = defaultValue;
+		}
+	}
+
+	public class IntColumn implements ToIntFunction<E> {
+		private final int defaultValue;
+		private int[] values;
+
+		private IntColumn(int defaultValue) {
+			this.defaultValue = defaultValue;
+			values = new int[Math.max(bound(), 4)];
+			Arrays.fill(values, defaultValue);
+		}
+
+		private boolean indexes(GraphIndex<?, ?> index) {
+			return indexed != null && indexed == index;
+		}
+
+		/**
+		 * Returns the value of the edge with a given id.
+		 */
+		public int get(int id) {
+			return id >= 0 && id < values.length && owns(id) ? values[id]
+					: defaultValue;
+		}
+
+		public int get(Object edge) {
+			return get(id(edge));
+		}
+
+		@Override
+		public int applyAsInt(E edge) {
+			return get(id(edge));
+		}
+
+		public void set(int id, int value) {
+			claim(id);
+			if (id >= values.length) {
+				int length = values.length;
+				values = Arrays.copyOf(values, Math.max(length * 2, id + 1));
+				Arrays.fill(values, length, values.length, defaultValue);
+			}
+			values[id] = value;
+		}
+
+		public void set(E edge, int value) {
+			set(newId(edge), value);
+		}
+
+		private void reset(int id) {
+			if (id < values.length)
+				values[id] = defaultValue;
+		}
+	}
+}
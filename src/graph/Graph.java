@@ -18,6 +18,10 @@ package graph;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface Graph<V, E extends Graph.Edge<V>> {
 
@@ -351,4 +355,167 @@ public interface Graph<V, E extends Graph.Edge<V>> {
 	 */
 	Subgraph<V, E> subgraph(Set<V> vertices, Set<E> edges);
 
+	/**
+	 * Returns the version of the graph, a number which changes each time the
+	 * graph is modified, so that results computed on the graph can be reused
+	 * while it does not change.
+	 * 
+	 * @return the version of the graph, or -1 if the graph does not keep track
+	 *         of its modifications
+	 */
+	default long version() {
+		return -1;
+	}
+
+	/**
+	 * Register a listener notified of the modifications of the graph.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 * @throws UnsupportedOperationException
+	 *             if the graph does not support listeners
+	 */
+	default void addGraphListener(GraphListener<V, E> listener) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Unregister a listener.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 * @return true if the listener was registered
+	 */
+	default boolean removeGraphListener(GraphListener<V, E> listener) {
+		return false;
+	}
+
+	/**
+	 * Performs an action for each neighbor of a vertex. Unlike a loop on
+	 * {@link #neighbors(Object)}, the graph may iterate directly on its
+	 * structures, without creating iterables nor iterators.
+	 * 
+	 * @param vertex
+	 *            a vertex of the graph
+	 * @param action
+	 *            action performed for each neighbor
+	 */
+	default void forEachNeighbor(V vertex, Consumer<? super V> action) {
+		for (V w : neighbors(vertex))
+			action.accept(w);
+	}
+
+	/**
+	 * Performs an action for each neighbor of a vertex, until the action
+	 * returns false.
+	 * 
+	 * @param vertex
+	 *            a vertex of the graph
+	 * @param action
+	 *            action performed for each neighbor
+	 * @return false if the iteration was stopped by the action
+	 */
+	default boolean forEachNeighborWhile(V vertex,
+			Predicate<? super V> action) {
+		for (V w : neighbors(vertex))
+			if (!action.test(w))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Performs an action for each successor of a vertex, see
+	 * {@link #forEachNeighbor(Object, Consumer)}.
+	 */
+	default void forEachSuccessor(V vertex, Consumer<? super V> action) {
+		for (V w : successors(vertex))
+			action.accept(w);
+	}
+
+	/**
+	 * Performs an action for each edge incident to a vertex, see
+	 * {@link #forEachNeighbor(Object, Consumer)}.
+	 */
+	default void forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		for (E e : incidentEdges(vertex))
+			action.accept(e);
+	}
+
+	/**
+	 * Performs an action for each outgoing edge of a vertex, see
+	 * {@link #forEachNeighbor(Object, Consumer)}.
+	 */
+	default void forEachOutgoingEdge(V vertex, Consumer<? super E> action) {
+		for (E e : outgoingEdges(vertex))
+			action.accept(e);
+	}
+
+	/**
+	 * Performs an action for each outgoing edge of a vertex, until the action
+	 * returns false.
+	 * 
+	 * @return false if the iteration was stopped by the action
+	 */
+	default boolean forEachOutgoingEdgeWhile(V vertex,
+			Predicate<? super E> action) {
+		for (E e : outgoingEdges(vertex))
+			if (!action.test(e))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Performs an action for each edge from source to target, see
+	 * {@link #forEachNeighbor(Object, Consumer)}.
+	 */
+	default void forEachOutgoingEdge(V source, V target,
+			Consumer<? super E> action) {
+		for (E e : outgoingEdges(source, target))
+			action.accept(e);
+	}
+
+	/**
+	 * Returns a stream of the vertices of the graph. The stream can be made
+	 * parallel; the graph must not be modified while the stream is used.
+	 * 
+	 * @return a stream of the vertices
+	 */
+	default Stream<V> vertexStream() {
+		return vertices().stream();
+	}
+
+	/**
+	 * Returns a stream of the edges of the graph, see {@link #vertexStream()}.
+	 * 
+	 * @return a stream of the edges
+	 */
+	default Stream<E> edgeStream() {
+		return edges().stream();
+	}
+
+	/**
+	 * Returns a stream of the neighbors of a vertex, see
+	 * {@link #vertexStream()}.
+	 * 
+	 * @param vertex
+	 *            a vertex of the graph
+	 * @return a stream of the neighbors of vertex
+	 */
+	default Stream<V> neighborStream(V vertex) {
+		return StreamSupport.stream(neighbors(vertex).spliterator(), false);
+	}
+
+	/**
+	 * Returns dense int ids of the vertices and edges of the graph. The ids
+	 * of a vertex or an edge do not change while it belongs to the graph,
+	 * unless the graph says otherwise. Graphs without ids of their own return
+	 * ids of their current vertices and edges, which are not updated when the
+	 * graph is modified.
+	 * 
+	 * @return the ids of the vertices and edges of the graph
+	 */
+	default GraphIndex<V, E> index() {
+		return new SnapshotIndex<V, E>(this);
+	}
+
 }
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static graph.Graph.Edge;
+
+/**
+ * Builds a graph from batches of vertices and edges.
+ * 
+ * The vertices and edges are only collected when they are added. The
+ * extremities of the edges are checked once, when the graph is built, and the
+ * structures of the graph are created with their final size, so loading a
+ * large graph does not rehash them.
+ * 
+ * <pre>
+ * MultiGraph&lt;V, E&gt; g = new GraphBuilder&lt;V, E&gt;(n, m).addVertices(vertices)
+ * 		.addEdges(edges).buildMultiGraph();
+ * </pre>
+ */
+public class GraphBuilder<V, E extends Edge<V>> {
+
+	private final Set<V> vertices;
+	private final List<E> edges;
+
+	public GraphBuilder() {
+		this(0, 0);
+	}
+
+	/**
+	 * Create a builder for a graph of the given size.
+	 * 
+	 * @param expectedOrder
+	 *            expected number of vertices
+	 * @param expectedSize
+	 *            expected number of edges
+	 */
+	public GraphBuilder(int expectedOrder, int expectedSize) {
+		vertices = new LinkedHashSet<V>(MultiGraph.capacity(expectedOrder));
+		edges = new ArrayList<E>(Math.max(10, expectedSize));
+	}
+
+	public GraphBuilder<V, E> addVertex(V vertex) {
+		vertices.add(vertex);
+		return this;
+	}
+
+	@SafeVarargs
+	public final GraphBuilder<V, E> addVertices(V... vertices) {
+		for (V v : vertices)
+			this.vertices.add(v);
+		return this;
+	}
+
+	public GraphBuilder<V, E> addVertices(Collection<? extends V> vertices) {
+		this.vertices.addAll(vertices);
+		return this;
+	}
+
+	public GraphBuilder<V, E> addVertices(Stream<? extends V> vertices) {
+		vertices.forEachOrdered(this.vertices::add);
+		return this;
+	}
+
+	public GraphBuilder<V, E> addEdge(E edge) {
+		edges.add(edge);
+		return this;
+	}
+
+	@SafeVarargs
+	public final GraphBuilder<V, E> addEdges(E... edges) {
+		for (E e : edges)
+			this.edges.add(e);
+		return this;
+	}
+
+	public GraphBuilder<V, E> addEdges(Collection<? extends E> edges) {
+		this.edges.addAll(edges);
+		return this;
+	}
+
+	public GraphBuilder<V, E> addEdges(Stream<? extends E> edges) {
+		edges.forEachOrdered(this.edges::add);
+		return this;
+	}
+
+	/**
+	 * Number of vertices added until now.
+	 */
+	public int order() {
+		return vertices.size();
+	}
+
+	/**
+	 * Number of edges added until now. An edge added several times is counted
+	 * several times.
+	 */
+	public int size() {
+		return edges.size();
+	}
+
+	private void checkEdges() {
+		for (E e : edges) {
+			if (!(vertices.contains(e.source()) && vertices
+					.contains(e.target())))
+				throw new IllegalArgumentException("Edge " + e
+						+ " has an extremity which is not a vertex");
+		}
+	}
+
+	/**
+	 * Builds a MultiGraph with the vertices and the edges added to this
+	 * builder. The builder can be used again afterwards.
+	 * 
+	 * @return a new MultiGraph
+	 * @throws IllegalArgumentException
+	 *             if an extremity of an edge has not been added as a vertex
+	 */
+	public MultiGraph<V, E> buildMultiGraph() {
+		return buildMultiGraph(false);
+	}
+
+	/**
+	 * Builds a MultiGraph with the vertices and the edges added to this
+	 * builder.
+	 * 
+	 * @param lean
+	 *            memory-lean mode of the graph, see
+	 *            {@link MultiGraph#MultiGraph(boolean)}
+	 * @return a new MultiGraph
+	 * @throws IllegalArgumentException
+	 *             if an extremity of an edge has not been added as a vertex
+	 */
+	public MultiGraph<V, E> buildMultiGraph(boolean lean) {
+		checkEdges();
+		MultiGraph<V, E> g = new MultiGraph<V, E>(vertices.size(),
+				edges.size(), lean);
+		g.load(vertices, edges);
+		return g;
+	}
+
+	/**
+	 * Builds an immutable CompactGraph with the vertices and the edges added
+	 * to this builder, without creating an intermediate MultiGraph.
+	 * 
+	 * @return a new CompactGraph
+	 * @throws IllegalArgumentException
+	 *             if an extremity of an edge has not been added as a vertex
+	 */
+	public CompactGraph<V, E> buildCompactGraph() {
+		return new CompactGraph<V, E>(vertices, edges);
+	}
+
+	/**
+	 * Builds a DenseGraph with the vertices and the edges added to this
+	 * builder.
+	 * 
+	 * @return a new DenseGraph
+	 * @throws IllegalArgumentException
+	 *             if an extremity of an edge has not been added as a vertex
+	 */
+	public DenseGraph<V, E> buildDenseGraph() {
+		checkEdges();
+		DenseGraph<V, E> g = new DenseGraph<V, E>(vertices.size(),
+				edges.size());
+		for (V v : vertices)
+			g.addVertex(v);
+		for (E e : edges)
+			g.addEdge(e);
+		return g;
+	}
+
+	/**
+	 * Builds a DenseGraph if the graph is dense (see
+	 * {@link DenseGraph#isDense(int, long)}), a MultiGraph otherwise.
+	 * 
+	 * @return a new graph
+	 * @throws IllegalArgumentException
+	 *             if an extremity of an edge has not been added as a vertex
+	 */
+	public Graph<V, E> build() {
+		if (DenseGraph.isDense(vertices.size(), edges.size()))
+			return buildDenseGraph();
+		return buildMultiGraph();
+	}
+}
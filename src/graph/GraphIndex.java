@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+/**
+ * Dense int ids of the vertices and edges of a graph, see
+ * {@link Graph#index()}. The ids of the vertices (resp. edges) are between 0
+ * and vertexIdBound() (resp. edgeIdBound()), so that algorithms can store
+ * their state in arrays or bit sets instead of hash maps.
+ * 
+ * @param <V>
+ *            type of the vertices
+ * @param <E>
+ *            type of the edges
+ */
+public interface GraphIndex<V, E> {
+
+	/**
+	 * Returns the id of a vertex, or -1 if it does not belong to the graph.
+	 */
+	int vertexId(V vertex);
+
+	/**
+	 * Returns the id of an edge, or -1 if it does not belong to the graph.
+	 */
+	int edgeId(Object edge);
+
+	/**
+	 * Returns the vertex with a given id, or null if there is none.
+	 */
+	V vertex(int id);
+
+	/**
+	 * Returns the edge with a given id, or null if there is none.
+	 */
+	E edge(int id);
+
+	/**
+	 * Vertex ids are smaller than vertexIdBound().
+	 */
+	int vertexIdBound();
+
+	/**
+	 * Edge ids are smaller than edgeIdBound().
+	 */
+	int edgeIdBound();
+}
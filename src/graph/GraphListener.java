@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import static graph.Graph.Edge;
+
+/**
+ * A listener notified of the modifications of a graph, see
+ * {@link Graph#addGraphListener(GraphListener)}. The methods are called after
+ * the modification, in the thread which made it.
+ * <p>
+ * Operations made of several modifications, as the removal of a vertex with
+ * its incident edges, are enclosed between batchStarted and batchEnded, so
+ * that a listener may postpone its work until the end of the batch. Batches
+ * are not nested.
+ * 
+ * @param <V>
+ *            the type of vertices
+ * @param <E>
+ *            the type of edges
+ */
+public interface GraphListener<V, E extends Edge<V>> {
+
+	default void vertexAdded(Graph<V, E> graph, V vertex) {
+	}
+
+	/**
+	 * Called after the removal of a vertex, whose incident edges have been
+	 * removed before.
+	 */
+	default void vertexRemoved(Graph<V, E> graph, V vertex) {
+	}
+
+	default void edgeAdded(Graph<V, E> graph, E edge) {
+	}
+
+	default void edgeRemoved(Graph<V, E> graph, E edge) {
+	}
+
+	/**
+	 * Called after the vertices and the edges were renumbered, see
+	 * {@link MultiGraph#compactIds()}.
+	 * 
+	 * @param vertexIds
+	 *            the new id of the vertex of each former id, -1 for a free id
+	 * @param edgeIds
+	 *            the new id of the edge of each former id, -1 for a free id
+	 */
+	default void idsCompacted(Graph<V, E> graph, int[] vertexIds,
+			int[] edgeIds) {
+	}
+
+	default void batchStarted(Graph<V, E> graph) {
+	}
+
+	default void batchEnded(Graph<V, E> graph) {
+	}
+}
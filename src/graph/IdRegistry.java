@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A set giving a dense int id to each of its elements. The id of an element
+ * does not change while the element is in the set; the ids of the removed
+ * elements are given to the next added ones, so that the ids stay between 0
+ * and the largest size the set had.
+ * <p>
+ * The ids are found with an open addressing hash table.
+ */
+final class IdRegistry<T> implements Iterable<T> {
+
+	private static final Object[] EMPTY = {};
+
+	// hash table: table[i] is an element and ids[i] its id
+	private Object[] table;
+	private int[] ids;
+	// elements[id] is the element with this id, or null if id is free
+	private Object[] elements = EMPTY;
+	private int[] free = new int[0];
+	private int freeCount;
+	private int bound;
+	private int size;
+	int modCount;
+
+	IdRegistry(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+		table = new Object[capacity];
+		ids = new int[capacity];
+		elements = new Object[Math.max(expectedSize, 4)];
+	}
+
+	private static int hash(Object o) {
+		int h = o.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int slot(Object o) {
+		int mask = table.length - 1;
+		int i = hash(o) & mask;
+		for (Object x; (x = table[i]) != null; i = (i + 1) & mask)
+			if (x.equals(o))
+				return i;
+		return ~i;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Ids are smaller than bound().
+	 */
+	int bound() {
+		return bound;
+	}
+
+	/**
+	 * Returns the id of o, or -1 if o does not belong to the set.
+	 */
+	int id(Object o) {
+		if (o == null)
+			return -1;
+		int i = slot(o);
+		return i < 0 ? -1 : ids[i];
+	}
+
+	/**
+	 * Returns the element with a given id, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	T get(int id) {
+		return id < bound ? (T) elements[id] : null;
+	}
+
+	boolean contains(Object o) {
+		return o != null && slot(o) >= 0;
+	}
+
+	/**
+	 * Add t if it is not in the set yet.
+	 * 
+	 * @return true if t was added
+	 */
+	boolean add(T t) {
+		int i = slot(t);
+		if (i >= 0)
+			return false;
+		int id;
+		if (freeCount > 0)
+			id = free[--freeCount];
+		else {
+			if (bound == elements.length)
+				elements = Arrays.copyOf(elements, bound * 2);
+			id = bound++;
+		}
+		elements[id] = t;
+		table[~i] = t;
+		ids[~i] = id;
+		size++;
+		modCount++;
+		if (size * 2 > table.length)
+			rehash(table.length * 2);
+		return true;
+	}
+
+	/**
+	 * Remove o from the set and free its id.
+	 * 
+	 * @return true if o was removed
+	 */
+	boolean remove(Object o) {
+		int i = o == null ? -1 : slot(o);
+		if (i < 0)
+			return false;
+		int id = ids[i];
+		elements[id] = null;
+		if (freeCount == free.length)
+			free = Arrays.copyOf(free, Math.max(4, freeCount * 2));
+		free[freeCount++] = id;
+		deleteSlot(i);
+		size--;
+		modCount++;
+		return true;
+	}
+
+	/*
+	 * Empty slot i, moving back the following elements of its cluster so that
+	 * they can still be found.
+	 */
+	private void deleteSlot(int i) {
+		int mask = table.length - 1;
+		for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+			int home = hash(table[j]) & mask;
+			// move j to i if home is not cyclically in (i, j]
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				table[i] = table[j];
+				ids[i] = ids[j];
+				i = j;
+			}
+		}
+		table[i] = null;
+	}
+
+	private void rehash(int capacity) {
+		Object[] oldTable = table;
+		int[] oldIds = ids;
+		table = new Object[capacity];
+		ids = new int[capacity];
+		for (int k = 0; k < oldTable.length; k++) {
+			if (oldTable[k] != null) {
+				int i = ~slot(oldTable[k]);
+				table[i] = oldTable[k];
+				ids[i] = oldIds[k];
+			}
+		}
+	}
+
+	/**
+	 * Renumber the elements so that their ids are between 0 and size() - 1,
+	 * keeping their relative order.
+	 * 
+	 * @return the new id of the element of each former id, -1 for a free id
+	 */
+	int[] compact() {
+		int[] renumbering = new int[bound];
+		int id = 0;
+		for (int k = 0; k < bound; k++)
+			if (elements[k] != null) {
+				renumbering[k] = id;
+				elements[id++] = elements[k];
+			} else
+				renumbering[k] = -1;
+		Arrays.fill(elements, id, bound, null);
+		bound = id;
+		freeCount = 0;
+		for (int k = 0; k < bound; k++)
+			ids[slot(elements[k])] = k;
+		modCount++;
+		return renumbering;
+	}
+
+	void clear() {
+		Arrays.fill(table, null);
+		Arrays.fill(elements, 0, bound, null);
+		bound = size = freeCount = 0;
+		modCount++;
+	}
+
+	/**
+	 * Iterates over the elements in the order of their ids. The iterator is
+	 * fail-fast and does not support remove.
+	 */
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private final int expectedModCount = modCount;
+			private int id = skip(0);
+
+			private int skip(int id) {
+				while (id < bound && elements[id] == null)
+					id++;
+				return id;
+			}
+
+			public boolean hasNext() {
+				return id < bound;
+			}
+
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (id >= bound)
+					throw new NoSuchElementException();
+				T t = (T) elements[id];
+				id = skip(id + 1);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * Spliterator on the elements, which splits the range of the ids in two
+	 * halves. Its size is exact when no id is free. It is fail-fast.
+	 */
+	public Spliterator<T> spliterator() {
+		return new IdSpliterator(0, bound, size == bound, modCount);
+	}
+
+	private final class IdSpliterator implements Spliterator<T> {
+		private int id;
+		private final int end;
+		private final boolean exact;
+		private final int expectedModCount;
+
+		IdSpliterator(int id, int end, boolean exact, int expectedModCount) {
+			this.id = id;
+			this.end = end;
+			this.exact = exact;
+			this.expectedModCount = expectedModCount;
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean tryAdvance(Consumer<? super T> action) {
+			while (id < end) {
+				Object o = elements[id++];
+				if (o != null) {
+					action.accept((T) o);
+					if (modCount != expectedModCount)
+						throw new ConcurrentModificationException();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@SuppressWarnings("unchecked")
+		public void forEachRemaining(Consumer<? super T> action) {
+			Object[] elements = IdRegistry.this.elements;
+			for (; id < end; id++)
+				if (elements[id] != null)
+					action.accept((T) elements[id]);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		public Spliterator<T> trySplit() {
+			int mid = (id + end) >>> 1;
+			if (mid <= id)
+				return null;
+			Spliterator<T> prefix = new IdSpliterator(id, mid, exact,
+					expectedModCount);
+			id = mid;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			if (exact || bound == 0)
+				return end - id;
+			return (long) (end - id) * size / bound;
+		}
+
+		public int characteristics() {
+			return DISTINCT | NONNULL | ORDERED | (exact ? SIZED | SUBSIZED : 0);
+		}
+	}
+}
@@ -17,7 +17,6 @@
 package graph;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Set;
 
 import static graph.Graph.Edge;
@@ -25,15 +24,10 @@ import static graph.Graph.Edge;
 class InducedSubMultiGraph<V, E extends Edge<V>> extends
 		SubMultiGraph<V, E> implements InducedSubgraph<V, E> {
 
-	@SuppressWarnings("unchecked")
-	public InducedSubMultiGraph(MultiGraph<V, E> supergraph, Set<V> vertices) {
-		super(supergraph, vertices, (Set<E>) Collections.EMPTY_SET);
-		for (V v : vertices) {
-			for (E e : supergraph.outgoingEdges(v)) {
-				if (vertices.contains(e.target()))
-					super.addEdge(e);
-			}
-		}
+	public InducedSubMultiGraph(Graph<V, E> supergraph, Set<V> vertices) {
+		super(supergraph, true, false);
+		for (V v : vertices)
+			super.addVertex(v);
 	}
 
 	@Override
@@ -41,19 +35,6 @@ class InducedSubMultiGraph<V, E extends Edge<V>> extends
 		throw new UnsupportedOperationException();
 	}
 
-	@Override
-	public boolean addVertex(V vertex) {
-		if (super.addVertex(vertex)) {
-			for (E e : supergraph.incidentEdges(vertex)) {
-				if (vertices().contains(e.getOpposite(vertex))) {
-					super.addEdge(e);
-				}
-			}
-			return true;
-		}
-		return false;
-	}
-
 	@Override
 	public boolean removeAllEdges(Collection<E> edges) {
 		throw new UnsupportedOperationException();
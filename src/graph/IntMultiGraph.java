@@ -0,0 +1,766 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import static graph.Graph.Edge;
+
+import collections.Iterables;
+
+/**
+ * A multigraph whose vertices are the integers from 0 to order() - 1 and
+ * whose edges are identified by int ids. The adjacency of each vertex is
+ * stored in int arrays which grow when needed, so no object is allocated per
+ * vertex or per edge.
+ * 
+ * The ids of removed edges are not reused. Vertices cannot be removed.
+ * 
+ * The method asGraph() gives a read-only view of this graph as a
+ * Graph<Integer, Edge<Integer>> to use the algorithms written for graphs.
+ */
+public class IntMultiGraph {
+
+	private static final int[] EMPTY = new int[0];
+
+	private int order = 0;
+	private int size = 0;
+
+	/*
+	 * Extremities of the edges, indexed by edge id. The source of a removed
+	 * edge is -1.
+	 */
+	private int nEdgeIds = 0;
+	private int[] sources;
+	private int[] targets;
+
+	/*
+	 * Outgoing (resp. incoming) edge ids of each vertex, in the first
+	 * outdegrees[v] (resp. indegrees[v]) cells of outgoingEdges[v] (resp.
+	 * incomingEdges[v]).
+	 */
+	private int[][] outgoingEdges;
+	private int[] outdegrees;
+	private int[][] incomingEdges;
+	private int[] indegrees;
+
+	/* To avoid concurrent modification on views and subgraphs. */
+	int modCount = 0;
+
+	private final GraphView view = new GraphView();
+
+	public IntMultiGraph() {
+		this(0, 0);
+	}
+
+	/**
+	 * Create an empty graph with storage for the given number of vertices and
+	 * edges.
+	 * 
+	 * @param expectedOrder
+	 *            expected number of vertices
+	 * @param expectedSize
+	 *            expected number of edges
+	 */
+	public IntMultiGraph(int expectedOrder, int expectedSize) {
+		int n = Math.max(expectedOrder, 4);
+		int m = Math.max(expectedSize, 4);
+		sources = new int[m];
+		targets = new int[m];
+		outgoingEdges = new int[n][];
+		outdegrees = new int[n];
+		incomingEdges = new int[n][];
+		indegrees = new int[n];
+	}
+
+	/**
+	 * Add a vertex to the graph.
+	 * 
+	 * @return the new vertex, that is the previous order of the graph
+	 */
+	public int addVertex() {
+		if (order == outdegrees.length) {
+			int capacity = order * 2;
+			outgoingEdges = Arrays.copyOf(outgoingEdges, capacity);
+			outdegrees = Arrays.copyOf(outdegrees, capacity);
+			incomingEdges = Arrays.copyOf(incomingEdges, capacity);
+			indegrees = Arrays.copyOf(indegrees, capacity);
+		}
+		outgoingEdges[order] = EMPTY;
+		incomingEdges[order] = EMPTY;
+		modCount++;
+		return order++;
+	}
+
+	/**
+	 * Add n vertices to the graph.
+	 * 
+	 * @param n
+	 *            number of vertices to add
+	 */
+	public void addVertices(int n) {
+		for (int i = 0; i < n; i++)
+			addVertex();
+	}
+
+	private void checkVertex(int v) {
+		if (v < 0 || v >= order)
+			throw new IllegalArgumentException("Vertex " + v
+					+ " does not belong to the graph");
+	}
+
+	private static int[] append(int[] array, int length, int value) {
+		if (length == array.length)
+			array = Arrays.copyOf(array, Math.max(2, length * 2));
+		array[length] = value;
+		return array;
+	}
+
+	private static void delete(int[] array, int length, int value) {
+		for (int i = 0; i < length; i++) {
+			if (array[i] == value) {
+				array[i] = array[length - 1];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Add an edge from source to target.
+	 * 
+	 * @param source
+	 *            a vertex of the graph
+	 * @param target
+	 *            a vertex of the graph
+	 * @return the id of the new edge
+	 * @throws IllegalArgumentException
+	 *             if source or target does not belong to the graph
+	 */
+	public int addEdge(int source, int target) {
+		checkVertex(source);
+		checkVertex(target);
+		if (nEdgeIds == sources.length) {
+			sources = Arrays.copyOf(sources, nEdgeIds * 2);
+			targets = Arrays.copyOf(targets, nEdgeIds * 2);
+		}
+		int e = nEdgeIds++;
+		sources[e] = source;
+		targets[e] = target;
+		outgoingEdges[source] = append(outgoingEdges[source],
+				outdegrees[source]++, e);
+		incomingEdges[target] = append(incomingEdges[target],
+				indegrees[target]++, e);
+		size++;
+		modCount++;
+		return e;
+	}
+
+	/**
+	 * Remove an edge.
+	 * 
+	 * @param e
+	 *            an edge id
+	 * @return true if e was an edge of the graph
+	 */
+	public boolean removeEdge(int e) {
+		if (!containsEdge(e))
+			return false;
+		int source = sources[e];
+		int target = targets[e];
+		delete(outgoingEdges[source], outdegrees[source]--, e);
+		delete(incomingEdges[target], indegrees[target]--, e);
+		sources[e] = -1;
+		size--;
+		modCount++;
+		return true;
+	}
+
+	public boolean containsEdge(int e) {
+		return e >= 0 && e < nEdgeIds && sources[e] >= 0;
+	}
+
+	public boolean containsVertex(int v) {
+		return v >= 0 && v < order;
+	}
+
+	/**
+	 * Number of vertices.
+	 */
+	public int order() {
+		return order;
+	}
+
+	/**
+	 * Number of edges.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Upper bound (exclusive) of the edge ids given until now.
+	 */
+	public int edgeIdBound() {
+		return nEdgeIds;
+	}
+
+	public int source(int e) {
+		return sources[e];
+	}
+
+	public int target(int e) {
+		return targets[e];
+	}
+
+	public int outdegree(int v) {
+		checkVertex(v);
+		return outdegrees[v];
+	}
+
+	public int indegree(int v) {
+		checkVertex(v);
+		return indegrees[v];
+	}
+
+	/**
+	 * The degree of a vertex is the number of incident edges, where a loop is
+	 * counted twice.
+	 */
+	public int degree(int v) {
+		checkVertex(v);
+		return outdegrees[v] + indegrees[v];
+	}
+
+	/**
+	 * Apply action to the id of each outgoing edge of v.
+	 */
+	public void forEachOutgoingEdge(int v, IntConsumer action) {
+		checkVertex(v);
+		int[] edges = outgoingEdges[v];
+		for (int i = 0, n = outdegrees[v]; i < n; i++)
+			action.accept(edges[i]);
+	}
+
+	/**
+	 * Apply action to the id of each incoming edge of v.
+	 */
+	public void forEachIncomingEdge(int v, IntConsumer action) {
+		checkVertex(v);
+		int[] edges = incomingEdges[v];
+		for (int i = 0, n = indegrees[v]; i < n; i++)
+			action.accept(edges[i]);
+	}
+
+	/**
+	 * Apply action to the target of each outgoing edge of v. A successor
+	 * linked to v by several edges is given once per edge.
+	 */
+	public void forEachSuccessor(int v, IntConsumer action) {
+		checkVertex(v);
+		int[] edges = outgoingEdges[v];
+		for (int i = 0, n = outdegrees[v]; i < n; i++)
+			action.accept(targets[edges[i]]);
+	}
+
+	/**
+	 * Apply action to the source of each incoming edge of v. A predecessor
+	 * linked to v by several edges is given once per edge.
+	 */
+	public void forEachPredecessor(int v, IntConsumer action) {
+		checkVertex(v);
+		int[] edges = incomingEdges[v];
+		for (int i = 0, n = indegrees[v]; i < n; i++)
+			action.accept(sources[edges[i]]);
+	}
+
+	/**
+	 * Apply action to the opposite extremity of each incident edge of v. A
+	 * neighbor linked to v by several edges is given once per edge, and v is
+	 * given once per loop.
+	 */
+	public void forEachNeighbor(int v, IntConsumer action) {
+		forEachSuccessor(v, action);
+		int[] edges = incomingEdges[v];
+		for (int i = 0, n = indegrees[v]; i < n; i++) {
+			int source = sources[edges[i]];
+			if (source != v)
+				action.accept(source);
+		}
+	}
+
+	/**
+	 * Returns a read-only view of this graph. The edges of the view are
+	 * created on demand and two edges of the view are equal if they have the
+	 * same id.
+	 * 
+	 * @return this graph as a Graph<Integer, Edge<Integer>>
+	 */
+	public Graph<Integer, Edge<Integer>> asGraph() {
+		return view;
+	}
+
+	/**
+	 * An edge of the view, identified by its id.
+	 */
+	public final class IntEdge implements Edge<Integer> {
+		private final int id;
+		private final int source;
+		private final int target;
+
+		private IntEdge(int id) {
+			this.id = id;
+			this.source = sources[id];
+			this.target = targets[id];
+		}
+
+		public int id() {
+			return id;
+		}
+
+		public Integer source() {
+			return source;
+		}
+
+		public Integer target() {
+			return target;
+		}
+
+		private IntMultiGraph graph() {
+			return IntMultiGraph.this;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof IntMultiGraph.IntEdge))
+				return false;
+			IntEdge e = (IntEdge) o;
+			return e.graph() == graph() && e.id == id;
+		}
+
+		public int hashCode() {
+			return id;
+		}
+
+		public String toString() {
+			return "(" + source + ", " + target + ")";
+		}
+	}
+
+	/**
+	 * Iterator on the edges in the first n cells of an array of edge ids.
+	 */
+	private class EdgeIterator implements Iterator<Edge<Integer>> {
+		private final int[] edges;
+		private final int n;
+		private final int skippedSource;
+		private final int expectedModCount = modCount;
+		private int i = 0;
+
+		EdgeIterator(int[] edges, int n, int skippedSource) {
+			this.edges = edges;
+			this.n = n;
+			this.skippedSource = skippedSource;
+			skip();
+		}
+
+		/* Loops are skipped in incoming edges when iterating incident edges. */
+		private void skip() {
+			while (i < n && sources[edges[i]] == skippedSource)
+				i++;
+		}
+
+		public boolean hasNext() {
+			return i < n;
+		}
+
+		public Edge<Integer> next() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (i >= n)
+				throw new NoSuchElementException();
+			IntEdge e = new IntEdge(edges[i++]);
+			skip();
+			return e;
+		}
+	}
+
+	/**
+	 * Iterator on the distinct extremities of the edges in the first n cells
+	 * of arrays of edge ids.
+	 */
+	private class VertexIterator implements Iterator<Integer> {
+		private final int[][] edges;
+		private final int[] n;
+		private final int[][] extremities;
+		private final Set<Integer> given;
+		private int k = 0;
+		private int i = 0;
+		private int next = -1;
+
+		VertexIterator(int[][] edges, int[] n, int[][] extremities) {
+			this.edges = edges;
+			this.n = n;
+			this.extremities = extremities;
+			int length = 0;
+			for (int l : n)
+				length += l;
+			// Short rows are deduplicated by scanning the previous cells.
+			given = length > 16 ? new HashSet<Integer>() : null;
+		}
+
+		private boolean alreadyGiven(int v) {
+			if (given != null)
+				return !given.add(v);
+			for (int k2 = 0; k2 <= k; k2++)
+				for (int i2 = 0; i2 < (k2 < k ? n[k2] : i - 1); i2++)
+					if (extremities[k2][edges[k2][i2]] == v)
+						return true;
+			return false;
+		}
+
+		public boolean hasNext() {
+			while (next < 0 && k < edges.length) {
+				if (i < n[k]) {
+					int v = extremities[k][edges[k][i++]];
+					if (!alreadyGiven(v))
+						next = v;
+				} else {
+					k++;
+					i = 0;
+				}
+			}
+			return next >= 0;
+		}
+
+		public Integer next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			int v = next;
+			next = -1;
+			return v;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class UnsupportedModificationException extends
+			UnsupportedOperationException {
+		UnsupportedModificationException() {
+			super("The graph view of an IntMultiGraph is read-only");
+		}
+	}
+
+	/**
+	 * The read-only view of the graph. Note that this class is package-private
+	 * so that subgraphs can check its modifications.
+	 */
+	class GraphView implements IndexedGraph<Integer, Edge<Integer>> {
+
+		@Override
+		public long version() {
+			return modCount;
+		}
+
+		public int vertexId(Integer vertex) {
+			return vertex != null && IntMultiGraph.this.containsVertex(vertex)
+					? vertex : -1;
+		}
+
+		public int edgeId(Object edge) {
+			return edges.contains(edge) ? ((IntEdge) edge).id : -1;
+		}
+
+		public Integer vertex(int id) {
+			return IntMultiGraph.this.containsVertex(id) ? id : null;
+		}
+
+		public Edge<Integer> edge(int id) {
+			return IntMultiGraph.this.containsEdge(id) ? new IntEdge(id) : null;
+		}
+
+		public int vertexIdBound() {
+			return order;
+		}
+
+		public int edgeIdBound() {
+			return nEdgeIds;
+		}
+
+		private int vertex(Integer vertex) {
+			if (vertex == null)
+				throw new IllegalArgumentException();
+			checkVertex(vertex);
+			return vertex;
+		}
+
+		private final Set<Integer> vertices = new AbstractSet<Integer>() {
+			@Override
+			public Iterator<Integer> iterator() {
+				return new Iterator<Integer>() {
+					int v = 0;
+
+					public boolean hasNext() {
+						return v < order;
+					}
+
+					public Integer next() {
+						if (v >= order)
+							throw new NoSuchElementException();
+						return v++;
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof Integer
+						&& IntMultiGraph.this.containsVertex((Integer) o);
+			}
+
+			@Override
+			public int size() {
+				return order;
+			}
+		};
+
+		private final Set<Edge<Integer>> edges = new AbstractSet<Edge<Integer>>() {
+			@Override
+			public Iterator<Edge<Integer>> iterator() {
+				return new Iterator<Edge<Integer>>() {
+					private final int expectedModCount = modCount;
+					int e = skip(0);
+
+					private int skip(int e) {
+						while (e < nEdgeIds && sources[e] < 0)
+							e++;
+						return e;
+					}
+
+					public boolean hasNext() {
+						return e < nEdgeIds;
+					}
+
+					public Edge<Integer> next() {
+						if (modCount != expectedModCount)
+							throw new ConcurrentModificationException();
+						if (e >= nEdgeIds)
+							throw new NoSuchElementException();
+						IntEdge edge = new IntEdge(e);
+						e = skip(e + 1);
+						return edge;
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof IntMultiGraph.IntEdge
+						&& ((IntEdge) o).graph() == IntMultiGraph.this
+						&& IntMultiGraph.this.containsEdge(((IntEdge) o).id);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+
+		public boolean addEdge(Edge<Integer> edge) {
+			throw new UnsupportedModificationException();
+		}
+
+		public boolean addVertex(Integer vertex) {
+			throw new UnsupportedModificationException();
+		}
+
+		public boolean areNeighbors(Integer vertex1, Integer vertex2) {
+			int u = vertex(vertex1);
+			int v = vertex(vertex2);
+			// Scan the smallest of the two adjacencies.
+			if (outdegrees[u] + indegrees[u] > outdegrees[v] + indegrees[v]) {
+				int w = u;
+				u = v;
+				v = w;
+			}
+			for (int i = 0; i < outdegrees[u]; i++)
+				if (targets[outgoingEdges[u][i]] == v)
+					return true;
+			for (int i = 0; i < indegrees[u]; i++)
+				if (sources[incomingEdges[u][i]] == v)
+					return true;
+			return false;
+		}
+
+		public void clear() {
+			throw new UnsupportedModificationException();
+		}
+
+		public boolean isEmpty() {
+			return order == 0;
+		}
+
+		public boolean removeEdge(Edge<Integer> edge) {
+			throw new UnsupportedModificationException();
+		}
+
+		public boolean removeVertex(Integer vertex) {
+			throw new UnsupportedModificationException();
+		}
+
+		public Set<Integer> vertices() {
+			return vertices;
+		}
+
+		public Set<Edge<Integer>> edges() {
+			return edges;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int order() {
+			return order;
+		}
+
+		public int degree(Integer vertex) {
+			return IntMultiGraph.this.degree(vertex(vertex));
+		}
+
+		public int indegree(Integer vertex) {
+			return IntMultiGraph.this.indegree(vertex(vertex));
+		}
+
+		public int outdegree(Integer vertex) {
+			return IntMultiGraph.this.outdegree(vertex(vertex));
+		}
+
+		public Iterable<Edge<Integer>> incidentEdges(Integer vertex) {
+			int v = vertex(vertex);
+			return Iterables.append(outgoingEdges(vertex), () -> new EdgeIterator(
+					incomingEdges[v], indegrees[v], v));
+		}
+
+		public Iterable<Edge<Integer>> incidentEdges(Integer vertex1,
+				Integer vertex2) {
+			vertex(vertex1);
+			if (vertex1.equals(vertex2))
+				return outgoingEdges(vertex1, vertex1);
+			else
+				return Iterables.append(outgoingEdges(vertex1, vertex2),
+						outgoingEdges(vertex2, vertex1));
+		}
+
+		public Iterable<Edge<Integer>> incomingEdges(Integer vertex) {
+			int v = vertex(vertex);
+			return () -> new EdgeIterator(incomingEdges[v], indegrees[v], -1);
+		}
+
+		public Iterable<Edge<Integer>> outgoingEdges(Integer vertex) {
+			int v = vertex(vertex);
+			return () -> new EdgeIterator(outgoingEdges[v], outdegrees[v], -1);
+		}
+
+		public Iterable<Edge<Integer>> outgoingEdges(Integer source,
+				Integer target) {
+			vertex(source);
+			int v = vertex(target);
+			return Iterables.iterableWithPredicate(outgoingEdges(source),
+					e -> e.target() == v);
+		}
+
+		public Iterable<Integer> neighbors(Integer vertex) {
+			int v = vertex(vertex);
+			return () -> new VertexIterator(new int[][] { outgoingEdges[v],
+					incomingEdges[v] }, new int[] { outdegrees[v], indegrees[v] },
+					new int[][] { targets, sources });
+		}
+
+		public Iterable<Integer> predecessors(Integer vertex) {
+			int v = vertex(vertex);
+			return () -> new VertexIterator(new int[][] { incomingEdges[v] },
+					new int[] { indegrees[v] }, new int[][] { sources });
+		}
+
+		public Iterable<Integer> successors(Integer vertex) {
+			int v = vertex(vertex);
+			return () -> new VertexIterator(new int[][] { outgoingEdges[v] },
+					new int[] { outdegrees[v] }, new int[][] { targets });
+		}
+
+		public boolean removeAllEdges(Collection<Edge<Integer>> edges) {
+			throw new UnsupportedModificationException();
+		}
+
+		public boolean removeAllVertices(Collection<Integer> vertices) {
+			throw new UnsupportedModificationException();
+		}
+
+		public String toString() {
+			StringBuffer sb = new StringBuffer();
+			sb.append(order() + " vertices + " + size() + " edges" + "\n");
+			for (Integer v : vertices) {
+				sb.append(v + " : ");
+				for (Edge<Integer> e : outgoingEdges(v)) {
+					sb.append(e + " ");
+				}
+				sb.append("\n");
+			}
+			return sb.toString();
+		}
+
+		public int hashCode() {
+			return Objects.hash(vertices, edges);
+		}
+
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof Graph<?, ?>))
+				return false;
+			Graph<?, ?> g = (Graph<?, ?>) o;
+			return g.vertices().equals(vertices) && g.edges().equals(edges);
+		}
+
+		@Override
+		public InducedSubgraph<Integer, Edge<Integer>> inducedSubgraph(
+				Set<Integer> vertices) {
+			return new InducedSubMultiGraph<Integer, Edge<Integer>>(this,
+					vertices);
+		}
+
+		@Override
+		public PartialGraph<Integer, Edge<Integer>> partialGraph(
+				Set<Edge<Integer>> edges) {
+			return new PartialMultiGraph<Integer, Edge<Integer>>(this, edges);
+		}
+
+		@Override
+		public Subgraph<Integer, Edge<Integer>> subgraph(Set<Integer> vertices,
+				Set<Edge<Integer>> edges) {
+			return new SubMultiGraph<Integer, Edge<Integer>>(this, vertices,
+					edges);
+		}
+	}
+}
@@ -16,8 +16,11 @@
  ******************************************************************************/
 package graph;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -25,21 +28,26 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import static graph.Graph.Edge;
 
 import collections.Iterables;
-import collections.Iterators;
 
-public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
+public class MultiGraph<V, E extends Edge<V>> implements IndexedGraph<V, E> {
 
-	private Edges edges = new Edges();
+	private Edges edges;
 
 	/*
 	 * These maps contains all the edges of the graph, organized in different
 	 * ways.
 	 * 
 	 * In outgoingMultiEdges, edges are grouped following their two extremities.
+	 * When there is only one edge from a source to a target, the edge is stored
+	 * directly, otherwise a MultiEdges set is stored.
 	 * 
 	 * In outgoingEdges (resp. incomingEdges) edges are grouped following their
 	 * origin (resp. target).
@@ -47,21 +55,31 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 	 * In incident edges, edges are grouped following each of their extremities.
 	 * That means that this map contains each edge twice except for loops which
 	 * are contained only once.
+	 * 
+	 * In lean mode, the entries of a vertex are created on first use and
+	 * removed when they become empty. Use the methods index and multiEdges to
+	 * read them.
 	 */
-	private Map<V, Map<V, Set<E>>> outgoingMultiEdges = new HashMap<V, Map<V, Set<E>>>();
-	private Map<V, Set<E>> outgoingEdges = new HashMap<V, Set<E>>();
-	private Map<V, Set<E>> incomingEdges = new HashMap<V, Set<E>>();
-	private Map<V, Set<E>> incidentEdges = new HashMap<V, Set<E>>();
+	private Map<V, Map<V, Object>> outgoingMultiEdges;
+	private Map<V, Set<E>> outgoingEdges;
+	private Map<V, Set<E>> incomingEdges;
+	private Map<V, Set<E>> incidentEdges;
 
-	private Vertices vertices = new Vertices();
+	private Vertices vertices;
 	// There is no map successors because the sets of successors are given by
 	// outgoingMultiEdges.get(v).keySet()
-	private Map<V, Set<V>> predecessors = new HashMap<V, Set<V>>();
-	private Map<V, Set<V>> neighbors = new HashMap<V, Set<V>>();
+	private Map<V, Set<V>> predecessors;
+	private Map<V, Set<V>> neighbors;
+
+	private final boolean lean;
 
 	/* To avoid concurrent modification on subgraphs. */
 	int modCount = 0;
 
+	// null when there is no listener, so that modifications only test it
+	private GraphListener<V, E>[] listeners = null;
+	private int batchDepth = 0;
+
 	private class VertexOrEdgeIterator<T> implements Iterator<T> {
 
 		Iterator<T> delegate;
@@ -147,8 +165,64 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 		}
 	}
 
+	/**
+	 * Edges having the same source and the same target, when there are at
+	 * least two of them.
+	 */
 	@SuppressWarnings("serial")
-	private class Edges extends HashSet<E> {
+	private class MultiEdges extends HashSet<E> {
+	}
+
+	/*
+	 * Returns the set associated to v in index, or a shared empty set.
+	 */
+	private static <K, T> Set<T> index(Map<K, Set<T>> index, Object v) {
+		Set<T> set = index.get(v);
+		return set == null ? Collections.<T> emptySet() : set;
+	}
+
+	private void addToIndex(Map<V, Set<E>> index, V v, E e) {
+		index.computeIfAbsent(v, k -> new HashSet<E>()).add(e);
+	}
+
+	private void addVertexToIndex(Map<V, Set<V>> index, V v, V w) {
+		index.computeIfAbsent(v, k -> new HashSet<V>()).add(w);
+	}
+
+	private <T> void removeFromIndex(Map<V, Set<T>> index, V v, Object o) {
+		Set<T> set = index.get(v);
+		set.remove(o);
+		if (lean && set.isEmpty())
+			index.remove(v);
+	}
+
+	/*
+	 * Returns the edges from source to target.
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<E> multiEdges(V source, V target) {
+		Map<V, Object> targets = outgoingMultiEdges.get(source);
+		Object o = targets == null ? null : targets.get(target);
+		if (o == null)
+			return Collections.emptySet();
+		else if (o instanceof MultiGraph<?, ?>.MultiEdges)
+			return (Set<E>) o;
+		else
+			return Collections.singleton((E) o);
+	}
+
+	private boolean hasEdge(V source, V target) {
+		Map<V, Object> targets = outgoingMultiEdges.get(source);
+		return targets != null && targets.containsKey(target);
+	}
+
+	private class Edges extends AbstractSet<E> {
+
+		final IdRegistry<E> ids;
+
+		Edges(int expectedSize) {
+			ids = new IdRegistry<E>(expectedSize);
+		}
 
 		/**
 		 * If the argument is not valid (source vertex and target vertex of the
@@ -167,85 +241,156 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 
 		public boolean add(E e) {
 			checkArgument(e);
-			boolean modified = super.add(e);
-			if (modified) {
+			boolean modified = insert(e);
+			if (modified)
 				modCount++;
+			return modified;
+		}
+
+		/*
+		 * Add e without checking its extremities nor changing modCount.
+		 */
+		boolean insert(E e) {
+			boolean modified = ids.add(e);
+			if (modified) {
 				V source = e.source();
 				V target = e.target();
-				if (!outgoingMultiEdges.get(source).containsKey(target)) {
-					Set<E> me = new HashSet<E>();
-					outgoingMultiEdges.get(source).put(target, me);
+				Map<V, Object> targets = outgoingMultiEdges.computeIfAbsent(
+						source, k -> new HashMap<V, Object>());
+				Object stored = targets.get(target);
+				if (stored == null) {
+					targets.put(target, e);
+					addVertexToIndex(predecessors, target, source);
+					addVertexToIndex(neighbors, source, target);
+					addVertexToIndex(neighbors, target, source);
+				} else if (stored instanceof MultiGraph<?, ?>.MultiEdges) {
+					@SuppressWarnings("unchecked")
+					MultiEdges me = (MultiEdges) stored;
+					me.add(e);
+				} else {
+					MultiEdges me = new MultiEdges();
+					@SuppressWarnings("unchecked")
+					E first = (E) stored;
+					me.add(first);
 					me.add(e);
-					predecessors.get(target).add(source);
-					neighbors.get(source).add(target);
-					neighbors.get(target).add(source);
+					targets.put(target, me);
 				}
-				outgoingEdges.get(source).add(e);
-				incomingEdges.get(target).add(e);
-				incidentEdges.get(source).add(e);
-				incidentEdges.get(target).add(e);
-
+				addToIndex(outgoingEdges, source, e);
+				addToIndex(incomingEdges, target, e);
+				addToIndex(incidentEdges, source, e);
+				addToIndex(incidentEdges, target, e);
+				if (listeners != null)
+					fireEdgeAdded(e);
 			}
 			return modified;
 		}
 
 		public boolean remove(Object o) {
-			boolean modified = super.remove(o);
+			boolean modified = ids.remove(o);
 			if (modified) {
 				modCount++;
 				@SuppressWarnings("unchecked")
-				Edge<V> e = (Edge<V>) o;
+				E e = (E) o;
 				V source = e.source();
 				V target = e.target();
-				Set<E> me = outgoingMultiEdges.get(source).get(target);
-				if (me.size() > 1)
+				Map<V, Object> targets = outgoingMultiEdges.get(source);
+				Object stored = targets.get(target);
+				if (stored instanceof MultiGraph<?, ?>.MultiEdges) {
+					@SuppressWarnings("unchecked")
+					MultiEdges me = (MultiEdges) stored;
 					me.remove(e);
-				else {
-					outgoingMultiEdges.get(source).remove(target);
-					predecessors.get(target).remove(source);
-					neighbors.get(source).remove(target);
-					neighbors.get(target).remove(source);
+					if (me.size() == 1)
+						targets.put(target, me.iterator().next());
+				} else {
+					targets.remove(target);
+					if (lean && targets.isEmpty())
+						outgoingMultiEdges.remove(source);
+					removeFromIndex(predecessors, target, source);
+					// source and target stay neighbors if there is an edge
+					// from target to source
+					if (!hasEdge(target, source)) {
+						removeFromIndex(neighbors, source, target);
+						if (!source.equals(target))
+							removeFromIndex(neighbors, target, source);
+					}
 				}
-				outgoingEdges.get(source).remove(e);
-				incomingEdges.get(target).remove(e);
-				incidentEdges.get(source).remove(e);
-				incidentEdges.get(target).remove(e);
+				removeFromIndex(outgoingEdges, source, e);
+				removeFromIndex(incomingEdges, target, e);
+				removeFromIndex(incidentEdges, source, e);
+				if (!source.equals(target))
+					removeFromIndex(incidentEdges, target, e);
+				if (listeners != null)
+					fireEdgeRemoved(e);
 			}
 			return modified;
 		}
 
 		public void clear() {
+			beginBatch();
 			for (Object o : toArray())
 				remove(o);
+			endBatch();
+		}
+
+		public boolean contains(Object o) {
+			return ids.contains(o);
+		}
+
+		public int size() {
+			return ids.size();
 		}
 
 		public Iterator<E> iterator() {
-			return new EdgeIterator(super.iterator());
+			return new EdgeIterator(ids.iterator());
+		}
+
+		@Override
+		public Spliterator<E> spliterator() {
+			return ids.spliterator();
 		}
 	}
 
-	@SuppressWarnings("serial")
-	private class Vertices extends HashSet<V> {
+	private class Vertices extends AbstractSet<V> {
+
+		final IdRegistry<V> ids;
+
+		Vertices(int expectedOrder) {
+			ids = new IdRegistry<V>(expectedOrder);
+		}
 
 		public boolean add(V v) {
-			boolean modified = super.add(v);
-			if (modified) {
+			boolean modified = insert(v);
+			if (modified)
 				modCount++;
-				outgoingMultiEdges.put(v, new HashMap<V, Set<E>>());
-				outgoingEdges.put(v, new HashSet<E>());
-				incomingEdges.put(v, new HashSet<E>());
-				incidentEdges.put(v, new HashSet<E>());
-				predecessors.put(v, new HashSet<V>());
-				neighbors.put(v, new HashSet<V>());
+			return modified;
+		}
+
+		/*
+		 * Add v without changing modCount.
+		 */
+		boolean insert(V v) {
+			boolean modified = ids.add(v);
+			if (modified) {
+				if (!lean) {
+					outgoingMultiEdges.put(v, new HashMap<V, Object>());
+					outgoingEdges.put(v, new HashSet<E>());
+					incomingEdges.put(v, new HashSet<E>());
+					incidentEdges.put(v, new HashSet<E>());
+					predecessors.put(v, new HashSet<V>());
+					neighbors.put(v, new HashSet<V>());
+				}
+				if (listeners != null)
+					fireVertexAdded(v);
 			}
 			return modified;
 		}
 
 		public boolean remove(Object o) {
-			boolean modified = super.remove(o);
+			boolean modified = ids.remove(o);
 			if (modified) {
 				modCount++;
-				List<E> edgesToRemove = new ArrayList<E>(incidentEdges.get(o));
+				beginBatch();
+				List<E> edgesToRemove = new ArrayList<E>(index(incidentEdges, o));
 				for (E e : edgesToRemove)
 					edges.remove(e);
 				outgoingMultiEdges.remove(o);
@@ -254,34 +399,269 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 				incidentEdges.remove(o);
 				predecessors.remove(o);
 				neighbors.remove(o);
+				if (listeners != null) {
+					@SuppressWarnings("unchecked")
+					V v = (V) o;
+					fireVertexRemoved(v);
+				}
+				endBatch();
 			}
 			return modified;
 		}
 
 		public void clear() {
+			beginBatch();
 			for (Object o : toArray())
 				remove(o);
+			endBatch();
+		}
+
+		public boolean contains(Object o) {
+			return ids.contains(o);
+		}
+
+		public int size() {
+			return ids.size();
 		}
 
 		public Iterator<V> iterator() {
-			return new VertexIterator(super.iterator());
+			return new VertexIterator(ids.iterator());
+		}
+
+		@Override
+		public Spliterator<V> spliterator() {
+			return ids.spliterator();
 		}
 	}
 
 	public MultiGraph() {
+		this(false);
+	}
+
+	/**
+	 * Create an empty MultiGraph.
+	 * 
+	 * @param lean
+	 *            if true, the graph is in memory-lean mode: the structures
+	 *            indexing the edges of a vertex are created when a first edge
+	 *            is added to it, and released when its last edge is removed.
+	 *            This saves memory for graphs with many isolated or sparse
+	 *            vertices, at the cost of slightly slower modifications.
+	 */
+	public MultiGraph(boolean lean) {
+		this(0, 0, lean);
+	}
+
+	/**
+	 * Create an empty MultiGraph whose hash structures are sized for the
+	 * given number of vertices and edges, so that they are not rehashed while
+	 * the graph grows up to this size.
+	 * 
+	 * @param expectedOrder
+	 *            expected number of vertices
+	 * @param expectedSize
+	 *            expected number of edges
+	 * @param lean
+	 *            memory-lean mode, see {@link #MultiGraph(boolean)}
+	 */
+	public MultiGraph(int expectedOrder, int expectedSize, boolean lean) {
+		this.lean = lean;
+		int n = capacity(expectedOrder);
+		edges = new Edges(expectedSize);
+		vertices = new Vertices(expectedOrder);
+		outgoingMultiEdges = new HashMap<V, Map<V, Object>>(n);
+		outgoingEdges = new HashMap<V, Set<E>>(n);
+		incomingEdges = new HashMap<V, Set<E>>(n);
+		incidentEdges = new HashMap<V, Set<E>>(n);
+		predecessors = new HashMap<V, Set<V>>(n);
+		neighbors = new HashMap<V, Set<V>>(n);
+	}
+
+	/*
+	 * Initial capacity of a hash structure containing n elements.
+	 */
+	static int capacity(int n) {
+		return Math.max(16, (int) Math.min(1 << 30, n / 3L * 4 + 1));
 	}
 
 	/** 
 	 * Create a new MultiGraph with same vertices and edges than g. 
 	 **/
 	public MultiGraph(Graph<V, E> g) {
-		this();
+		this(g.order(), g.size(), false);
 		for (V v : g.vertices())
 			addVertex(v);
 		for (E e : g.edges())
 			addEdge(e);
 	}
 
+	@Override
+	public long version() {
+		return modCount;
+	}
+
+	/**
+	 * Returns an immutable compact snapshot of this graph. Later modifications
+	 * of this graph are not reflected in the snapshot.
+	 * 
+	 * @return a CompactGraph with same vertices and edges than this graph
+	 */
+	public CompactGraph<V, E> freeze() {
+		return new CompactGraph<V, E>(this);
+	}
+
+	/**
+	 * Returns the id of a vertex. Vertex ids are dense: they are smaller than
+	 * the largest order the graph had, and the id of a removed vertex is given
+	 * to the next added one.
+	 * 
+	 * @param vertex
+	 *            a vertex
+	 * @return the id of vertex, or -1 if vertex does not belong to the graph
+	 */
+	public int vertexId(V vertex) {
+		return vertices.ids.id(vertex);
+	}
+
+	/**
+	 * Returns the id of an edge. Edge ids are dense, as vertex ids.
+	 * 
+	 * @param edge
+	 *            an edge
+	 * @return the id of edge, or -1 if edge does not belong to the graph
+	 */
+	public int edgeId(Object edge) {
+		return edges.ids.id(edge);
+	}
+
+	/**
+	 * Returns the vertex with a given id, or null if there is none.
+	 */
+	public V vertex(int id) {
+		return vertices.ids.get(id);
+	}
+
+	/**
+	 * Returns the edge with a given id, or null if there is none.
+	 */
+	public E edge(int id) {
+		return edges.ids.get(id);
+	}
+
+	public int vertexIdBound() {
+		return vertices.ids.bound();
+	}
+
+	public int edgeIdBound() {
+		return edges.ids.bound();
+	}
+
+	/**
+	 * Renumber the vertices and the edges so that their ids are between 0 and
+	 * order() - 1 (resp. size() - 1), keeping their relative order. This is a
+	 * modification of the graph: the ids previously returned are no longer
+	 * valid and the subgraphs of the graph can no longer be used.
+	 */
+	public void compactIds() {
+		int[] vertexIds = vertices.ids.compact();
+		int[] edgeIds = edges.ids.compact();
+		modCount++;
+		if (listeners != null)
+			for (GraphListener<V, E> l : listeners)
+				l.idsCompacted(this, vertexIds, edgeIds);
+	}
+
+	/*
+	 * Add vertices and edges whose extremities are known to be vertices of the
+	 * graph, see GraphBuilder.
+	 */
+	void load(Collection<V> vertices, Collection<E> edges) {
+		beginBatch();
+		for (V v : vertices)
+			this.vertices.insert(v);
+		for (E e : edges)
+			this.edges.insert(e);
+		modCount++;
+		endBatch();
+	}
+
+	/**
+	 * Listeners are notified synchronously. A listener must not modify the
+	 * graph.
+	 */
+	@Override
+	public void addGraphListener(GraphListener<V, E> listener) {
+		Objects.requireNonNull(listener);
+		if (listeners == null) {
+			@SuppressWarnings("unchecked")
+			GraphListener<V, E>[] l = (GraphListener<V, E>[]) new GraphListener<?, ?>[] {
+					listener };
+			listeners = l;
+		} else {
+			GraphListener<V, E>[] l = Arrays.copyOf(listeners,
+					listeners.length + 1);
+			l[listeners.length] = listener;
+			listeners = l;
+		}
+	}
+
+	@Override
+	public boolean removeGraphListener(GraphListener<V, E> listener) {
+		if (listeners == null)
+			return false;
+		List<GraphListener<V, E>> l = new ArrayList<GraphListener<V, E>>(
+				Arrays.asList(listeners));
+		if (!l.remove(listener))
+			return false;
+		@SuppressWarnings("unchecked")
+		GraphListener<V, E>[] a = l.isEmpty() ? null
+				: (GraphListener<V, E>[]) l
+						.toArray(new GraphListener<?, ?>[l.size()]);
+		listeners = a;
+		return true;
+	}
+
+	/*
+	 * The listeners are copied on write, so that a listener can unregister
+	 * itself when it is notified.
+	 */
+
+	private void fireVertexAdded(V v) {
+		for (GraphListener<V, E> l : listeners)
+			l.vertexAdded(this, v);
+	}
+
+	private void fireVertexRemoved(V v) {
+		for (GraphListener<V, E> l : listeners)
+			l.vertexRemoved(this, v);
+	}
+
+	private void fireEdgeAdded(E e) {
+		for (GraphListener<V, E> l : listeners)
+			l.edgeAdded(this, e);
+	}
+
+	private void fireEdgeRemoved(E e) {
+		for (GraphListener<V, E> l : listeners)
+			l.edgeRemoved(this, e);
+	}
+
+	/*
+	 * Batches may be nested, only the outermost one is notified.
+	 */
+
+	private void beginBatch() {
+		if (batchDepth++ == 0 && listeners != null)
+			for (GraphListener<V, E> l : listeners)
+				l.batchStarted(this);
+	}
+
+	private void endBatch() {
+		if (--batchDepth == 0 && listeners != null)
+			for (GraphListener<V, E> l : listeners)
+				l.batchEnded(this);
+	}
+
 	public boolean addEdge(E edge) {
 		return edges.add(edge);
 	}
@@ -298,7 +678,7 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 	public boolean areNeighbors(V vertex1, V vertex2) {
 		checkExistingVertex(vertex1);
 		checkExistingVertex(vertex2);
-		return neighbors.get(vertex1).contains(vertex2);
+		return index(neighbors, vertex1).contains(vertex2);
 	}
 
 	public void clear() {
@@ -319,8 +699,8 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 	 */
 	public int degree(V vertex) {
 		checkExistingVertex(vertex);
-		return outgoingEdges.get(vertex).size()
-				+ incomingEdges.get(vertex).size();
+		return index(outgoingEdges, vertex).size()
+				+ index(incomingEdges, vertex).size();
 	}
 
 	public Set<E> edges() {
@@ -329,7 +709,7 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 
 	public Iterable<E> incidentEdges(V vertex) {
 		checkExistingVertex(vertex);
-		return new EdgeIterable(incidentEdges.get(vertex));
+		return new EdgeIterable(index(incidentEdges, vertex));
 	}
 
 	public Iterable<E> incidentEdges(V vertex1, V vertex2) {
@@ -345,12 +725,12 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 
 	public Iterable<E> incomingEdges(V vertex) {
 		checkExistingVertex(vertex);
-		return new EdgeIterable(incomingEdges.get(vertex));
+		return new EdgeIterable(index(incomingEdges, vertex));
 	}
 
 	public int indegree(V vertex) {
 		checkExistingVertex(vertex);
-		return incomingEdges.get(vertex).size();
+		return index(incomingEdges, vertex).size();
 	}
 
 	public boolean isEmpty() {
@@ -359,7 +739,71 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 
 	public Iterable<V> neighbors(V vertex) {
 		checkExistingVertex(vertex);
-		return new VertexIterable(neighbors.get(vertex));
+		return new VertexIterable(index(neighbors, vertex));
+	}
+
+	/*
+	 * Internal iteration directly on the sets of the indexes.
+	 */
+
+	@Override
+	public void forEachNeighbor(V vertex, Consumer<? super V> action) {
+		checkExistingVertex(vertex);
+		index(neighbors, vertex).forEach(action);
+	}
+
+	@Override
+	public boolean forEachNeighborWhile(V vertex,
+			Predicate<? super V> action) {
+		checkExistingVertex(vertex);
+		for (V w : index(neighbors, vertex))
+			if (!action.test(w))
+				return false;
+		return true;
+	}
+
+	@Override
+	public void forEachSuccessor(V vertex, Consumer<? super V> action) {
+		checkExistingVertex(vertex);
+		Map<V, Object> targets = outgoingMultiEdges.get(vertex);
+		if (targets != null)
+			targets.keySet().forEach(action);
+	}
+
+	@Override
+	public void forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		checkExistingVertex(vertex);
+		index(incidentEdges, vertex).forEach(action);
+	}
+
+	@Override
+	public void forEachOutgoingEdge(V vertex, Consumer<? super E> action) {
+		checkExistingVertex(vertex);
+		index(outgoingEdges, vertex).forEach(action);
+	}
+
+	@Override
+	public boolean forEachOutgoingEdgeWhile(V vertex,
+			Predicate<? super E> action) {
+		checkExistingVertex(vertex);
+		for (E e : index(outgoingEdges, vertex))
+			if (!action.test(e))
+				return false;
+		return true;
+	}
+
+	@Override
+	public void forEachOutgoingEdge(V source, V target,
+			Consumer<? super E> action) {
+		checkExistingVertex(source);
+		checkExistingVertex(target);
+		multiEdges(source, target).forEach(action);
+	}
+
+	@Override
+	public Stream<V> neighborStream(V vertex) {
+		checkExistingVertex(vertex);
+		return index(neighbors, vertex).stream();
 	}
 
 	public int order() {
@@ -368,12 +812,12 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 
 	public int outdegree(V vertex) {
 		checkExistingVertex(vertex);
-		return outgoingEdges.get(vertex).size();
+		return index(outgoingEdges, vertex).size();
 	}
 
 	public Iterable<E> outgoingEdges(V vertex) {
 		checkExistingVertex(vertex);
-		return new EdgeIterable(outgoingEdges.get(vertex));
+		return new EdgeIterable(index(outgoingEdges, vertex));
 	}
 
 	public Iterable<E> outgoingEdges(V vertex1, V vertex2) {
@@ -381,9 +825,7 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 		checkExistingVertex(vertex2);
 //		final V v1 = vertex1;
 //		final V v2 = vertex2;
-		return () -> outgoingMultiEdges.get(vertex1).containsKey(vertex2) 
-				? new EdgeIterator(outgoingMultiEdges.get(vertex1).get(vertex2))
-				: Iterators.<E> emptyIterator();
+		return () -> new EdgeIterator(multiEdges(vertex1, vertex2));
 				
 //		return new Iterable<E>() {
 //
@@ -399,20 +841,24 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 
 	public Iterable<V> predecessors(V vertex) {
 		checkExistingVertex(vertex);
-		return new VertexIterable(predecessors.get(vertex));
+		return new VertexIterable(index(predecessors, vertex));
 	}
 
 	public boolean removeAllEdges(Collection<E> edges) {
 		boolean modified = false;
+		beginBatch();
 		for (Object o : edges.toArray())
 			modified |= this.edges.remove(o);
+		endBatch();
 		return modified;
 	}
 
 	public boolean removeAllVertices(Collection<V> vertices) {
 		boolean modified = false;
+		beginBatch();
 		for (Object o : vertices.toArray())
 			modified |= this.vertices.remove(o);
+		endBatch();
 		return modified;
 	}
 
@@ -430,7 +876,9 @@ public class MultiGraph<V, E extends Edge<V>> implements Graph<V, E> {
 
 	public Iterable<V> successors(V vertex) {
 		checkExistingVertex(vertex);
-		return new VertexIterable(outgoingMultiEdges.get(vertex).keySet());
+		Map<V, Object> targets = outgoingMultiEdges.get(vertex);
+		return new VertexIterable(targets == null ? Collections.<V> emptySet()
+				: targets.keySet());
 	}
 
 	public Set<V> vertices() {
@@ -24,8 +24,10 @@ import static graph.Graph.Edge;
 class PartialMultiGraph<V, E extends Edge<V>> extends SubMultiGraph<V, E>
 		implements PartialGraph<V, E> {
 
-	public PartialMultiGraph(MultiGraph<V, E> supergraph, Set<E> edges) {
-		super(supergraph, supergraph.vertices(), edges);
+	public PartialMultiGraph(Graph<V, E> supergraph, Set<E> edges) {
+		super(supergraph, false, true);
+		for (E e : edges)
+			super.addEdge(e);
 	}
 
 	@Override
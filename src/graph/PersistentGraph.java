@@ -0,0 +1,498 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+
+import static graph.Graph.Edge;
+
+import collections.HashTrie;
+import collections.Iterables;
+
+/**
+ * A graph whose states are persistent: {@link #snapshot()} returns in
+ * constant time a copy of the graph which is not affected by later
+ * modifications of this graph, and conversely.
+ * <p>
+ * Every state of the graph is an immutable version made of hash tries (see
+ * {@link HashTrie}); a modification builds a new version sharing all the
+ * unchanged parts with the previous one, in O(log n) time for an edge. The
+ * modifications are serialized, and each one is published atomically: a
+ * reader sees either the whole modification or nothing of it. The iterables
+ * returned by the query methods, and the iterators of {@link #vertices()} and
+ * {@link #edges()}, run over the version current when they were created and
+ * never throw ConcurrentModificationException.
+ * <p>
+ * Long computations, as the ones of {@link util.Graphs}, should work on a
+ * snapshot, so that the graph can be modified meanwhile.
+ */
+public class PersistentGraph<V, E extends Edge<V>> implements Graph<V, E> {
+
+	/*
+	 * Edges of a vertex, organized as in MultiGraph. The sets of successors
+	 * are the keys of outgoingMultiEdges. The sets are tries whose values are
+	 * their keys.
+	 */
+	private static final class Adjacency<V, E> {
+		HashTrie<V, HashTrie<E, E>> outgoingMultiEdges;
+		HashTrie<E, E> outgoingEdges;
+		HashTrie<E, E> incomingEdges;
+		HashTrie<E, E> incidentEdges;
+		HashTrie<V, V> predecessors;
+		HashTrie<V, V> neighbors;
+
+		Adjacency() {
+			outgoingMultiEdges = HashTrie.empty();
+			outgoingEdges = incomingEdges = incidentEdges = HashTrie.empty();
+			predecessors = neighbors = HashTrie.empty();
+		}
+
+		Adjacency(Adjacency<V, E> a) {
+			outgoingMultiEdges = a.outgoingMultiEdges;
+			outgoingEdges = a.outgoingEdges;
+			incomingEdges = a.incomingEdges;
+			incidentEdges = a.incidentEdges;
+			predecessors = a.predecessors;
+			neighbors = a.neighbors;
+		}
+
+		HashTrie<E, E> multiEdges(V target) {
+			HashTrie<E, E> edges = outgoingMultiEdges.get(target);
+			return edges == null ? HashTrie.empty() : edges;
+		}
+	}
+
+	/*
+	 * Adjacencies are never modified once they belong to a published version.
+	 */
+	private static final class Version<V, E> {
+		final HashTrie<V, Adjacency<V, E>> adjacencies;
+		final HashTrie<E, E> edges;
+		final int modCount;
+		// ids of the vertices and edges, computed on first use
+		GraphIndex<V, E> index;
+
+		Version(HashTrie<V, Adjacency<V, E>> adjacencies, HashTrie<E, E> edges,
+				int modCount) {
+			this.adjacencies = adjacencies;
+			this.edges = edges;
+			this.modCount = modCount;
+		}
+	}
+
+	private volatile Version<V, E> current;
+
+	private final Set<V> vertexSet = new AbstractSet<V>() {
+
+		public boolean add(V v) {
+			return addVertex(v);
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean remove(Object o) {
+			return o != null && removeVertex((V) o);
+		}
+
+		public boolean contains(Object o) {
+			return o != null && current.adjacencies.containsKey(o);
+		}
+
+		public void clear() {
+			PersistentGraph.this.clear();
+		}
+
+		public Iterator<V> iterator() {
+			return current.adjacencies.iterator();
+		}
+
+		public int size() {
+			return current.adjacencies.size();
+		}
+	};
+
+	private final Set<E> edgeSet = new AbstractSet<E>() {
+
+		public boolean add(E e) {
+			return addEdge(e);
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean remove(Object o) {
+			return o != null && removeEdge((E) o);
+		}
+
+		public boolean contains(Object o) {
+			return o != null && current.edges.containsKey(o);
+		}
+
+		public Iterator<E> iterator() {
+			return current.edges.iterator();
+		}
+
+		public int size() {
+			return current.edges.size();
+		}
+	};
+
+	public PersistentGraph() {
+		this(new Version<V, E>(HashTrie.empty(), HashTrie.empty(), 0));
+	}
+
+	/**
+	 * Create a new PersistentGraph with same vertices and edges than g.
+	 */
+	public PersistentGraph(Graph<V, E> g) {
+		this();
+		Version<V, E> v = current;
+		for (V vertex : g.vertices())
+			v = withVertex(v, vertex);
+		for (E e : g.edges())
+			v = withEdge(v, e);
+		current = v;
+	}
+
+	private PersistentGraph(Version<V, E> current) {
+		this.current = current;
+	}
+
+	/**
+	 * Returns a copy of this graph, in constant time. The copy and this graph
+	 * can then be modified independently.
+	 * 
+	 * @return a graph with same vertices and edges than this graph
+	 */
+	public PersistentGraph<V, E> snapshot() {
+		return new PersistentGraph<V, E>(current);
+	}
+
+	@Override
+	public long version() {
+		return current.modCount;
+	}
+
+	/**
+	 * Returns the ids of the vertices and edges of the current version of the
+	 * graph. The ids are computed once per version.
+	 */
+	@Override
+	public GraphIndex<V, E> index() {
+		Version<V, E> v = current;
+		if (v.index == null)
+			v.index = new SnapshotIndex<V, E>(new PersistentGraph<V, E>(v));
+		return v.index;
+	}
+
+	/*
+	 * Returns the adjacency of vertex in v, throws IllegalArgumentException if
+	 * vertex is not a vertex of v.
+	 */
+	private static <V, E> Adjacency<V, E> adjacency(Version<V, E> v,
+			Object vertex) {
+		Adjacency<V, E> a = vertex == null ? null : v.adjacencies.get(vertex);
+		if (a == null)
+			throw new IllegalArgumentException();
+		return a;
+	}
+
+	private Adjacency<V, E> adjacency(Object vertex) {
+		return adjacency(current, vertex);
+	}
+
+	/*
+	 * The following methods return the version obtained by a modification of
+	 * v, or v itself if the modification does not change it.
+	 */
+
+	private static <V, E> Version<V, E> withVertex(Version<V, E> v, V vertex) {
+		Objects.requireNonNull(vertex);
+		if (v.adjacencies.containsKey(vertex))
+			return v;
+		return new Version<V, E>(
+				v.adjacencies.put(vertex, new Adjacency<V, E>()), v.edges,
+				v.modCount + 1);
+	}
+
+	private static <V, E extends Edge<V>> Version<V, E> withEdge(
+			Version<V, E> v, E e) {
+		V source = e.source();
+		V target = e.target();
+		Adjacency<V, E> s = new Adjacency<V, E>(adjacency(v, source));
+		adjacency(v, target);
+		// an equal edge already present is not replaced
+		if (v.edges.containsKey(e))
+			return v;
+		HashTrie<E, E> edges = v.edges.put(e, e);
+		HashTrie<E, E> multiEdges = s.multiEdges(target);
+		boolean first = multiEdges.isEmpty();
+		s.outgoingMultiEdges = s.outgoingMultiEdges.put(target,
+				multiEdges.put(e, e));
+		s.outgoingEdges = s.outgoingEdges.put(e, e);
+		s.incidentEdges = s.incidentEdges.put(e, e);
+		if (first)
+			s.neighbors = s.neighbors.put(target, target);
+		// for a loop, s and t are the same adjacency
+		Adjacency<V, E> t = source.equals(target) ? s
+				: new Adjacency<V, E>(adjacency(v, target));
+		t.incomingEdges = t.incomingEdges.put(e, e);
+		t.incidentEdges = t.incidentEdges.put(e, e);
+		if (first) {
+			t.predecessors = t.predecessors.put(source, source);
+			t.neighbors = t.neighbors.put(source, source);
+		}
+		return new Version<V, E>(
+				v.adjacencies.put(source, s).put(target, t), edges,
+				v.modCount + 1);
+	}
+
+	private static <V, E extends Edge<V>> Version<V, E> withoutEdge(
+			Version<V, E> v, Object o) {
+		HashTrie<E, E> edges = v.edges.remove(o);
+		if (edges == v.edges)
+			return v;
+		E e = v.edges.get(o);
+		V source = e.source();
+		V target = e.target();
+		Adjacency<V, E> s = new Adjacency<V, E>(adjacency(v, source));
+		HashTrie<E, E> multiEdges = s.multiEdges(target).remove(e);
+		boolean last = multiEdges.isEmpty();
+		s.outgoingMultiEdges = last ? s.outgoingMultiEdges.remove(target)
+				: s.outgoingMultiEdges.put(target, multiEdges);
+		s.outgoingEdges = s.outgoingEdges.remove(e);
+		s.incidentEdges = s.incidentEdges.remove(e);
+		Adjacency<V, E> t = source.equals(target) ? s
+				: new Adjacency<V, E>(adjacency(v, target));
+		t.incomingEdges = t.incomingEdges.remove(e);
+		t.incidentEdges = t.incidentEdges.remove(e);
+		if (last) {
+			t.predecessors = t.predecessors.remove(source);
+			// source and target stay neighbors if there is an edge from
+			// target to source
+			if (!t.outgoingMultiEdges.containsKey(source)) {
+				s.neighbors = s.neighbors.remove(target);
+				t.neighbors = t.neighbors.remove(source);
+			}
+		}
+		return new Version<V, E>(
+				v.adjacencies.put(source, s).put(target, t), edges,
+				v.modCount + 1);
+	}
+
+	private static <V, E extends Edge<V>> Version<V, E> withoutVertex(
+			Version<V, E> v, Object vertex) {
+		Adjacency<V, E> a = vertex == null ? null : v.adjacencies.get(vertex);
+		if (a == null)
+			return v;
+		for (E e : a.incidentEdges)
+			v = withoutEdge(v, e);
+		return new Version<V, E>(v.adjacencies.remove(vertex), v.edges,
+				v.modCount + 1);
+	}
+
+	public synchronized boolean addVertex(V vertex) {
+		Version<V, E> v = current;
+		current = withVertex(v, vertex);
+		return current != v;
+	}
+
+	public synchronized boolean addEdge(E edge) {
+		Version<V, E> v = current;
+		current = withEdge(v, edge);
+		return current != v;
+	}
+
+	public synchronized boolean removeEdge(E edge) {
+		Version<V, E> v = current;
+		current = withoutEdge(v, edge);
+		return current != v;
+	}
+
+	public synchronized boolean removeVertex(V vertex) {
+		Version<V, E> v = current;
+		current = withoutVertex(v, vertex);
+		return current != v;
+	}
+
+	/**
+	 * The edges are removed all at once.
+	 */
+	public synchronized boolean removeAllEdges(Collection<E> edges) {
+		Version<V, E> v = current;
+		Version<V, E> w = v;
+		for (E e : new ArrayList<E>(edges))
+			w = withoutEdge(w, e);
+		current = w;
+		return w != v;
+	}
+
+	/**
+	 * The vertices are removed all at once.
+	 */
+	public synchronized boolean removeAllVertices(Collection<V> vertices) {
+		Version<V, E> v = current;
+		Version<V, E> w = v;
+		for (V vertex : new ArrayList<V>(vertices))
+			w = withoutVertex(w, vertex);
+		current = w;
+		return w != v;
+	}
+
+	public synchronized void clear() {
+		Version<V, E> v = current;
+		if (!v.adjacencies.isEmpty())
+			current = new Version<V, E>(HashTrie.empty(), HashTrie.empty(),
+					v.modCount + 1);
+	}
+
+	public boolean areNeighbors(V vertex1, V vertex2) {
+		Version<V, E> v = current;
+		adjacency(v, vertex2);
+		return adjacency(v, vertex1).neighbors.containsKey(vertex2);
+	}
+
+	public boolean isEmpty() {
+		return current.adjacencies.isEmpty();
+	}
+
+	public boolean containsVertex(V vertex) {
+		return vertex != null && current.adjacencies.containsKey(vertex);
+	}
+
+	public boolean containsEdge(E edge) {
+		return edge != null && current.edges.containsKey(edge);
+	}
+
+	public Set<V> vertices() {
+		return vertexSet;
+	}
+
+	public Set<E> edges() {
+		return edgeSet;
+	}
+
+	public int size() {
+		return current.edges.size();
+	}
+
+	public int order() {
+		return current.adjacencies.size();
+	}
+
+	/**
+	 * The degree of a vertex is the number of incident edges, where a loop is
+	 * counted twice.
+	 */
+	public int degree(V vertex) {
+		Adjacency<V, E> a = adjacency(vertex);
+		return a.outgoingEdges.size() + a.incomingEdges.size();
+	}
+
+	public int indegree(V vertex) {
+		return adjacency(vertex).incomingEdges.size();
+	}
+
+	public int outdegree(V vertex) {
+		return adjacency(vertex).outgoingEdges.size();
+	}
+
+	public Iterable<E> incidentEdges(V vertex) {
+		return adjacency(vertex).incidentEdges;
+	}
+
+	public Iterable<E> incidentEdges(V vertex1, V vertex2) {
+		Version<V, E> v = current;
+		Adjacency<V, E> a1 = adjacency(v, vertex1);
+		if (vertex1.equals(vertex2))
+			return a1.multiEdges(vertex1);
+		Adjacency<V, E> a2 = adjacency(v, vertex2);
+		return Iterables.append(a1.multiEdges(vertex2),
+				a2.multiEdges(vertex1));
+	}
+
+	public Iterable<E> incomingEdges(V vertex) {
+		return adjacency(vertex).incomingEdges;
+	}
+
+	public Iterable<E> outgoingEdges(V vertex) {
+		return adjacency(vertex).outgoingEdges;
+	}
+
+	public Iterable<E> outgoingEdges(V source, V target) {
+		Version<V, E> v = current;
+		adjacency(v, target);
+		return adjacency(v, source).multiEdges(target);
+	}
+
+	public Iterable<V> neighbors(V vertex) {
+		return adjacency(vertex).neighbors;
+	}
+
+	public Iterable<V> predecessors(V vertex) {
+		return adjacency(vertex).predecessors;
+	}
+
+	public Iterable<V> successors(V vertex) {
+		return adjacency(vertex).outgoingMultiEdges;
+	}
+
+	public String toString() {
+		Version<V, E> v = current;
+		StringBuffer sb = new StringBuffer();
+		sb.append(v.adjacencies.size() + " vertices + " + v.edges.size()
+				+ " edges" + "\n");
+		for (V vertex : v.adjacencies) {
+			sb.append(vertex + " : ");
+			for (E e : v.adjacencies.get(vertex).outgoingEdges) {
+				sb.append(e + " ");
+			}
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+	public int hashCode() {
+		return Objects.hash(vertexSet, edgeSet);
+	}
+
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Graph<?, ?>))
+			return false;
+		Graph<?, ?> g = (Graph<?, ?>) o;
+		return g.vertices().equals(vertexSet) && g.edges().equals(edgeSet);
+	}
+
+	@Override
+	public InducedSubgraph<V, E> inducedSubgraph(Set<V> vertices) {
+		return new InducedSubMultiGraph<V, E>(this, vertices);
+	}
+
+	@Override
+	public PartialGraph<V, E> partialGraph(Set<E> edges) {
+		return new PartialMultiGraph<V, E>(this, edges);
+	}
+
+	@Override
+	public Subgraph<V, E> subgraph(Set<V> vertices, Set<E> edges) {
+		return new SubMultiGraph<V, E>(this, vertices, edges);
+	}
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package graph;
+
+import static graph.Graph.Edge;
+
+/**
+ * Ids given to the vertices and edges of a graph which has no ids of its
+ * own, in the order of iteration. The ids are those of the graph at the time
+ * of the creation of the index.
+ */
+final class SnapshotIndex<V, E extends Edge<V>> implements GraphIndex<V, E> {
+
+	private final IdRegistry<V> vertexIds;
+	private final IdRegistry<E> edgeIds;
+
+	SnapshotIndex(Graph<V, E> g) {
+		vertexIds = new IdRegistry<V>(g.order());
+		edgeIds = new IdRegistry<E>(g.size());
+		for (V v : g.vertices())
+			vertexIds.add(v);
+		for (E e : g.edges())
+			edgeIds.add(e);
+	}
+
+	public int vertexId(V vertex) {
+		return vertexIds.id(vertex);
+	}
+
+	public int edgeId(Object edge) {
+		return edgeIds.id(edge);
+	}
+
+	public V vertex(int id) {
+		return vertexIds.get(id);
+	}
+
+	public E edge(int id) {
+		return edgeIds.get(id);
+	}
+
+	public int vertexIdBound() {
+		return vertexIds.bound();
+	}
+
+	public int edgeIdBound() {
+		return edgeIds.bound();
+	}
+}
@@ -16,79 +16,463 @@
  ******************************************************************************/
 package graph;
 
+import java.util.AbstractSet;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 
 import static graph.Graph.Edge;
 
-class SubMultiGraph<V, E extends Edge<V>> extends MultiGraph<V, E>
-		implements Subgraph<V, E> {
-
-	MultiGraph<V, E> supergraph;
-	private int supergraphModCount;
-
-	public SubMultiGraph(MultiGraph<V, E> supergraph, Set<V> vertices,
+import collections.Iterables;
+import collections.Predicate;
+
+/**
+ * A subgraph which is a view of its supergraph. Its vertices and edges are
+ * stored in bit sets indexed by the ids of the supergraph (see
+ * {@link IndexedGraph}); the queries filter the answers of the supergraph on
+ * the fly. When vertexBits is null, the subgraph contains all the vertices of
+ * the supergraph (partial graph); when edgeBits is null, it contains all the
+ * edges of the supergraph linking its vertices (induced subgraph).
+ * <p>
+ * The supergraph must not be modified while the subgraph is used, otherwise
+ * a ConcurrentModificationException is thrown.
+ */
+class SubMultiGraph<V, E extends Edge<V>> implements Subgraph<V, E> {
+
+	final Graph<V, E> supergraph;
+	private final long supergraphVersion;
+	private final IndexedGraph<V, E> ids;
+	// when the supergraph has no ids, they are given by the subgraph
+	private final IdRegistry<V> localVertexIds;
+	private final IdRegistry<E> localEdgeIds;
+
+	private final BitSet vertexBits;
+	private final BitSet edgeBits;
+	private int order;
+	private int size;
+
+	/* To avoid concurrent modification on subgraphs. */
+	int modCount = 0;
+
+	private final Set<V> vertexSet = new AbstractSet<V>() {
+
+		public boolean add(V v) {
+			return addVertex(v);
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean remove(Object o) {
+			return contains(o) && removeVertex((V) o);
+		}
+
+		public boolean contains(Object o) {
+			testModCount();
+			return hasVertex(o);
+		}
+
+		public Iterator<V> iterator() {
+			testModCount();
+			if (vertexBits == null)
+				return new FilterIterator<V>(supergraph.vertices(), v -> true);
+			return new BitIterator<V>(vertexBits) {
+				V get(int id) {
+					return vertex(id);
+				}
+			};
+		}
+
+		public int size() {
+			return order();
+		}
+	};
+
+	private final Set<E> edgeSet = new AbstractSet<E>() {
+
+		public boolean add(E e) {
+			return addEdge(e);
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean remove(Object o) {
+			return contains(o) && removeEdge((E) o);
+		}
+
+		public boolean contains(Object o) {
+			testModCount();
+			return hasEdge(o);
+		}
+
+		public Iterator<E> iterator() {
+			testModCount();
+			if (edgeBits == null)
+				return new InducedEdgeIterator();
+			return new BitIterator<E>(edgeBits) {
+				E get(int id) {
+					return edge(id);
+				}
+			};
+		}
+
+		public int size() {
+			return SubMultiGraph.this.size();
+		}
+	};
+
+	public SubMultiGraph(Graph<V, E> supergraph, Set<V> vertices,
 			Set<E> edges) {
-		this.supergraph = supergraph;
-		this.supergraphModCount = supergraph.modCount;
+		this(supergraph, true, true);
 		for (V v : vertices)
-			super.addVertex(v);
+			addVertex(v);
 		for (E e : edges)
-			super.addEdge(e);
+			addEdge(e);
+	}
+
+	/*
+	 * Create an empty subgraph, or a partial graph if withVertices is false,
+	 * or an induced subgraph if withEdges is false.
+	 */
+	SubMultiGraph(Graph<V, E> supergraph, boolean withVertices,
+			boolean withEdges) {
+		this.supergraph = supergraph;
+		this.supergraphVersion = supergraph.version();
+		this.ids = ids(supergraph);
+		this.localVertexIds = ids == null ? new IdRegistry<V>(0) : null;
+		this.localEdgeIds = ids == null ? new IdRegistry<E>(0) : null;
+		this.vertexBits = withVertices ? new BitSet() : null;
+		this.edgeBits = withEdges ? new BitSet() : null;
+		this.size = withEdges ? 0 : -1;
+	}
+
+	/*
+	 * The ids of a subgraph are the ones of its supergraph.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <V, E extends Edge<V>> IndexedGraph<V, E> ids(
+			Graph<V, E> g) {
+		if (g instanceof IndexedGraph<?, ?>)
+			return (IndexedGraph<V, E>) g;
+		if (g instanceof SubMultiGraph<?, ?>)
+			return ((SubMultiGraph<V, E>) g).ids;
+		return null;
 	}
 
 	private void testModCount() {
-		if (supergraphModCount != supergraph.modCount)
+		if (supergraphVersion != supergraph.version())
 			throw new ConcurrentModificationException();
 	}
 
 	@Override
-	public boolean addEdge(E edge) {
+	public long version() {
 		testModCount();
-		if (supergraph.containsEdge(edge))
-			return super.addEdge(edge);
-		else
-			throw new IllegalArgumentException();
+		return modCount;
 	}
 
-	@Override
-	public boolean addVertex(V vertex) {
+	/*
+	 * Ids of the vertices and edges of the supergraph, -1 if there is none.
+	 */
+
+	@SuppressWarnings("unchecked")
+	private int vertexId(Object v) {
+		if (ids == null)
+			return localVertexIds.id(v);
+		return v == null ? -1 : ids.vertexId((V) v);
+	}
+
+	private int edgeId(Object e) {
+		return ids == null ? localEdgeIds.id(e) : ids.edgeId(e);
+	}
+
+	private int newVertexId(V v) {
+		if (ids == null)
+			localVertexIds.add(v);
+		return vertexId(v);
+	}
+
+	private int newEdgeId(E e) {
+		if (ids == null)
+			localEdgeIds.add(e);
+		return edgeId(e);
+	}
+
+	private V vertex(int id) {
+		return ids == null ? localVertexIds.get(id) : ids.vertex(id);
+	}
+
+	private E edge(int id) {
+		return ids == null ? localEdgeIds.get(id) : ids.edge(id);
+	}
+
+	/*
+	 * Membership tests.
+	 */
+
+	private boolean hasVertex(Object v) {
+		if (vertexBits == null)
+			return v != null && supergraph.vertices().contains(v);
+		int id = vertexId(v);
+		return id >= 0 && vertexBits.get(id);
+	}
+
+	private boolean hasEdge(Object o) {
+		if (edgeBits != null) {
+			int id = edgeId(o);
+			return id >= 0 && edgeBits.get(id);
+		}
+		if (!(o instanceof Edge<?>) || !supergraph.edges().contains(o))
+			return false;
+		Edge<?> e = (Edge<?>) o;
+		return hasVertex(e.source()) && hasVertex(e.target());
+	}
+
+	/*
+	 * Test if e, an edge of the supergraph, belongs to the subgraph.
+	 */
+	private boolean keeps(E e) {
+		if (edgeBits != null) {
+			int id = edgeId(e);
+			return id >= 0 && edgeBits.get(id);
+		}
+		return hasVertex(e.source()) && hasVertex(e.target());
+	}
+
+	/*
+	 * Test if there is an edge from source to target in the subgraph.
+	 */
+	private boolean linked(V source, V target) {
+		for (E e : supergraph.outgoingEdges(source, target))
+			if (keeps(e))
+				return true;
+		return false;
+	}
+
+	private void checkExistingVertex(Object o) {
 		testModCount();
-		if (supergraph.containsVertex(vertex))
-			return super.addVertex(vertex);
-		else
+		if (!hasVertex(o))
 			throw new IllegalArgumentException();
 	}
 
+	/**
+	 * Iterates over the elements of an iterable which satisfy a predicate.
+	 */
+	private class FilterIterator<T> implements Iterator<T> {
+		private final Iterator<T> it;
+		private final Predicate<T> p;
+		private T next;
+		private boolean hasNext;
+
+		FilterIterator(Iterable<T> iterable, Predicate<T> p) {
+			this.it = iterable.iterator();
+			this.p = p;
+			advance();
+		}
+
+		private void advance() {
+			hasNext = false;
+			while (it.hasNext()) {
+				T t = it.next();
+				if (p.predicate(t)) {
+					next = t;
+					hasNext = true;
+					return;
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			return hasNext;
+		}
+
+		public T next() {
+			if (!hasNext)
+				throw new NoSuchElementException();
+			testModCount();
+			T t = next;
+			advance();
+			return t;
+		}
+	}
+
+	private Iterable<E> filterEdges(Iterable<E> edges) {
+		return () -> new FilterIterator<E>(edges, e -> keeps(e));
+	}
+
+	/*
+	 * In an induced subgraph, the vertices linked by an edge of the supergraph
+	 * are linked in the subgraph.
+	 */
+	private Iterable<V> filterVertices(Iterable<V> vertices,
+			Predicate<V> linked) {
+		Predicate<V> p = edgeBits == null ? v -> hasVertex(v) : linked;
+		return () -> new FilterIterator<V>(vertices, p);
+	}
+
+	private static int count(Iterable<?> iterable) {
+		return Iterables.size(iterable);
+	}
+
+	/**
+	 * Iterates over the ids of the set bits, giving the corresponding
+	 * elements.
+	 */
+	private abstract class BitIterator<T> implements Iterator<T> {
+		private final BitSet bits;
+		private final int expectedModCount = modCount;
+		private int id;
+
+		BitIterator(BitSet bits) {
+			this.bits = bits;
+			this.id = bits.nextSetBit(0);
+		}
+
+		abstract T get(int id);
+
+		public boolean hasNext() {
+			return id >= 0;
+		}
+
+		public T next() {
+			if (id < 0)
+				throw new NoSuchElementException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			testModCount();
+			T t = get(id);
+			id = bits.nextSetBit(id + 1);
+			return t;
+		}
+	}
+
+	/**
+	 * Iterates over the edges of an induced subgraph, via the outgoing edges of
+	 * its vertices.
+	 */
+	private class InducedEdgeIterator implements Iterator<E> {
+		private final Iterator<V> vertices = vertexSet.iterator();
+		private Iterator<E> edges = null;
+		private E next;
+
+		InducedEdgeIterator() {
+			advance();
+		}
+
+		private void advance() {
+			next = null;
+			while (edges == null || !edges.hasNext()) {
+				if (!vertices.hasNext())
+					return;
+				V v = vertices.next();
+				edges = new FilterIterator<E>(supergraph.outgoingEdges(v),
+						e -> hasVertex(e.target()));
+			}
+			next = edges.next();
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public E next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			E e = next;
+			advance();
+			return e;
+		}
+	}
+
 	@Override
-	public boolean removeAllEdges(Collection<E> edges) {
+	public boolean addEdge(E edge) {
 		testModCount();
-		return super.removeAllEdges(edges);
+		if (!supergraph.containsEdge(edge) || !hasVertex(edge.source())
+				|| !hasVertex(edge.target()))
+			throw new IllegalArgumentException();
+		int id = newEdgeId(edge);
+		if (edgeBits.get(id))
+			return false;
+		edgeBits.set(id);
+		size++;
+		modCount++;
+		return true;
 	}
 
 	@Override
-	public boolean removeAllVertices(Collection<V> vertices) {
+	public boolean addVertex(V vertex) {
 		testModCount();
-		return super.removeAllVertices(vertices);
+		if (!supergraph.containsVertex(vertex))
+			throw new IllegalArgumentException();
+		int id = newVertexId(vertex);
+		if (vertexBits.get(id))
+			return false;
+		vertexBits.set(id);
+		order++;
+		if (edgeBits == null)
+			size = -1;
+		modCount++;
+		return true;
 	}
 
 	@Override
 	public boolean removeEdge(E edge) {
 		testModCount();
-		return super.removeEdge(edge);
+		int id = edgeId(edge);
+		if (id < 0 || !edgeBits.get(id))
+			return false;
+		edgeBits.clear(id);
+		size--;
+		modCount++;
+		return true;
 	}
 
 	@Override
 	public boolean removeVertex(V vertex) {
 		testModCount();
-		return super.removeVertex(vertex);
+		int id = vertexId(vertex);
+		if (id < 0 || !vertexBits.get(id))
+			return false;
+		if (edgeBits == null)
+			size = -1;
+		else {
+			for (E e : supergraph.incidentEdges(vertex)) {
+				int edgeId = edgeId(e);
+				if (edgeId >= 0 && edgeBits.get(edgeId)) {
+					edgeBits.clear(edgeId);
+					size--;
+				}
+			}
+		}
+		vertexBits.clear(id);
+		order--;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean removeAllEdges(Collection<E> edges) {
+		boolean modified = false;
+		for (Object o : edges.toArray())
+			modified |= edgeSet.remove(o);
+		return modified;
+	}
+
+	@Override
+	public boolean removeAllVertices(Collection<V> vertices) {
+		boolean modified = false;
+		for (Object o : vertices.toArray())
+			modified |= vertexSet.remove(o);
+		return modified;
 	}
 
 	@Override
 	public boolean areNeighbors(V vertex1, V vertex2) {
-		testModCount();
-		return super.areNeighbors(vertex1, vertex2);
+		checkExistingVertex(vertex1);
+		checkExistingVertex(vertex2);
+		if (edgeBits == null)
+			return supergraph.areNeighbors(vertex1, vertex2);
+		return linked(vertex1, vertex2) || linked(vertex2, vertex1);
 	}
 
 	@Override
@@ -100,109 +484,126 @@ class SubMultiGraph<V, E extends Edge<V>> extends MultiGraph<V, E>
 	@Override
 	public boolean containsEdge(E edge) {
 		testModCount();
-		return super.containsEdge(edge);
+		return hasEdge(edge);
 	}
 
 	@Override
 	public boolean containsVertex(V vertex) {
 		testModCount();
-		return super.containsVertex(vertex);
+		return hasVertex(vertex);
 	}
 
+	/**
+	 * The degree of a vertex is the number of incident edges, where a loop is
+	 * counted twice.
+	 */
 	@Override
 	public int degree(V vertex) {
-		testModCount();
-		return super.degree(vertex);
+		return indegree(vertex) + outdegree(vertex);
 	}
 
 	@Override
 	public Set<E> edges() {
 		testModCount();
-		return super.edges();
+		return edgeSet;
 	}
 
 	@Override
 	public Iterable<E> incidentEdges(V vertex) {
-		testModCount();
-		return super.incidentEdges(vertex);
+		checkExistingVertex(vertex);
+		return filterEdges(supergraph.incidentEdges(vertex));
 	}
 
 	@Override
 	public Iterable<E> incidentEdges(V vertex1, V vertex2) {
-		testModCount();
-		return super.incidentEdges(vertex1, vertex2);
+		checkExistingVertex(vertex1);
+		checkExistingVertex(vertex2);
+		return filterEdges(supergraph.incidentEdges(vertex1, vertex2));
 	}
 
 	@Override
 	public Iterable<E> incomingEdges(V vertex) {
-		testModCount();
-		return super.incomingEdges(vertex);
+		checkExistingVertex(vertex);
+		return filterEdges(supergraph.incomingEdges(vertex));
 	}
 
 	@Override
 	public int indegree(V vertex) {
-		testModCount();
-		return super.indegree(vertex);
+		return count(incomingEdges(vertex));
 	}
 
 	@Override
 	public boolean isEmpty() {
-		testModCount();
-		return super.isEmpty();
+		return order() == 0;
 	}
 
 	@Override
 	public Iterable<V> neighbors(V vertex) {
-		testModCount();
-		return super.neighbors(vertex);
+		checkExistingVertex(vertex);
+		return filterVertices(supergraph.neighbors(vertex),
+				w -> linked(vertex, w) || linked(w, vertex));
 	}
 
 	@Override
 	public int order() {
 		testModCount();
-		return super.order();
+		return vertexBits == null ? supergraph.order() : order;
 	}
 
 	@Override
 	public int outdegree(V vertex) {
-		testModCount();
-		return super.outdegree(vertex);
+		return count(outgoingEdges(vertex));
 	}
 
 	@Override
 	public Iterable<E> outgoingEdges(V vertex) {
-		testModCount();
-		return super.outgoingEdges(vertex);
+		checkExistingVertex(vertex);
+		return filterEdges(supergraph.outgoingEdges(vertex));
 	}
 
 	@Override
 	public Iterable<E> outgoingEdges(V source, V target) {
-		testModCount();
-		return super.outgoingEdges(source, target);
+		checkExistingVertex(source);
+		checkExistingVertex(target);
+		return filterEdges(supergraph.outgoingEdges(source, target));
 	}
 
 	@Override
 	public Iterable<V> predecessors(V vertex) {
-		testModCount();
-		return super.predecessors(vertex);
+		checkExistingVertex(vertex);
+		return filterVertices(supergraph.predecessors(vertex),
+				w -> linked(w, vertex));
 	}
 
+	/**
+	 * The size of an induced subgraph is computed when it is needed after a
+	 * modification of its vertex set.
+	 */
 	@Override
 	public int size() {
 		testModCount();
-		return super.size();
+		if (size < 0) {
+			int s = 0;
+			for (V v : vertexSet)
+				for (E e : supergraph.outgoingEdges(v))
+					if (hasVertex(e.target()))
+						s++;
+			size = s;
+		}
+		return size;
 	}
 
 	@Override
 	public Iterable<V> successors(V vertex) {
-		testModCount();
-		return super.successors(vertex);
+		checkExistingVertex(vertex);
+		return filterVertices(supergraph.successors(vertex),
+				w -> linked(vertex, w));
 	}
 
 	@Override
 	public Set<V> vertices() {
 		testModCount();
-		return super.vertices();
+		return vertexSet;
 	}
 
 	@Override
@@ -211,21 +612,47 @@ class SubMultiGraph<V, E extends Edge<V>> extends MultiGraph<V, E>
 		return supergraph;
 	}
 
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(order() + " vertices + " + size() + " edges" + "\n");
+		for (V v : vertexSet) {
+			sb.append(v + " : ");
+			for (E e : outgoingEdges(v)) {
+				sb.append(e + " ");
+			}
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+	public int hashCode() {
+		return Objects.hash(vertexSet, edgeSet);
+	}
+
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Graph<?, ?>))
+			return false;
+		Graph<?, ?> g = (Graph<?, ?>) o;
+		return g.vertices().equals(vertexSet) && g.edges().equals(edgeSet);
+	}
+
 	@Override
 	public InducedSubgraph<V, E> inducedSubgraph(Set<V> vertices) {
 		testModCount();
-		return super.inducedSubgraph(vertices);
+		return new InducedSubMultiGraph<V, E>(this, vertices);
 	}
 
 	@Override
 	public PartialGraph<V, E> partialGraph(Set<E> edges) {
 		testModCount();
-		return super.partialGraph(edges);
+		return new PartialMultiGraph<V, E>(this, edges);
 	}
 
 	@Override
 	public Subgraph<V, E> subgraph(Set<V> vertices, Set<E> edges) {
 		testModCount();
-		return super.subgraph(vertices, edges);
+		return new SubMultiGraph<V, E>(this, vertices, edges);
 	}
 }
@@ -0,0 +1,109 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.CompactGraph;
+import graph.DirectedEdge;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+import util.Graphs;
+
+public class CompactGraphTest {
+	MultiGraph<String, Edge<String>> g;
+	Edge<String> ab, ab2, bc, cc;
+
+	@Before
+	public void init() {
+		g = new MultiGraph<String, Edge<String>>();
+		g.addVertex("a");
+		g.addVertex("b");
+		g.addVertex("c");
+		g.addVertex("d");
+		ab = new DirectedEdge<String>("a", "b");
+		ab2 = new DirectedEdge<String>("a", "b");
+		bc = new DirectedEdge<String>("b", "c");
+		cc = new DirectedEdge<String>("c", "c");
+		g.addEdge(ab);
+		g.addEdge(ab2);
+		g.addEdge(bc);
+		g.addEdge(cc);
+	}
+
+	@Test
+	public void sameGraph() {
+		CompactGraph<String, Edge<String>> c = g.freeze();
+		assertEquals(g, c);
+		assertEquals(4, c.order());
+		assertEquals(4, c.size());
+		assertEquals(3, c.degree("b"));
+		assertEquals(3, c.degree("c"));
+		assertTrue(c.areNeighbors("b", "a"));
+		assertFalse(c.areNeighbors("a", "c"));
+		assertTrue(c.areNeighbors("c", "c"));
+		assertEquals(2, Iterables.size(c.outgoingEdges("a", "b")));
+		assertEquals(2, Iterables.size(c.neighbors("b")));
+		assertEquals(1, Iterables.size(c.successors("a")));
+		assertEquals(2, Iterables.size(c.incidentEdges("c")));
+		assertEquals(0, Iterables.size(c.incidentEdges("d")));
+	}
+
+	@Test
+	public void snapshotIsNotModified() {
+		CompactGraph<String, Edge<String>> c = g.freeze();
+		g.removeVertex("b");
+		assertEquals(4, c.order());
+		assertTrue(c.containsEdge(bc));
+		assertFalse(c.containsEdge(new DirectedEdge<String>("b", "c")));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void immutable() {
+		g.freeze().addVertex("e");
+	}
+
+	@Test
+	public void intAccessors() {
+		CompactGraph<String, Edge<String>> c = g.freeze();
+		int a = c.vertexId("a");
+		int b = c.vertexId("b");
+		assertEquals(2, c.outEnd(a) - c.outBegin(a));
+		for (int e = c.outBegin(a); e < c.outEnd(a); e++) {
+			assertEquals(b, c.target(e));
+			assertEquals(a, c.source(e));
+		}
+		assertEquals(-1, c.vertexId("e"));
+		assertEquals(bc, c.edge(c.edgeId(bc)));
+	}
+
+	@Test
+	public void streams() {
+		CompactGraph<String, Edge<String>> c = g.freeze();
+		assertEquals(4, c.vertexStream().parallel().count());
+		assertEquals(4, g.edgeStream().parallel().count());
+		assertEquals(2, c.neighborStream("c").count());
+		assertEquals(2, g.neighborStream("c").count());
+	}
+
+	@Test
+	public void algorithms() throws Exception {
+		Graph<String, Edge<String>> c = g.freeze();
+		Map<Edge<String>, Double> weights = new HashMap<Edge<String>, Double>();
+		for (Edge<String> e : c.edges())
+			weights.put(e, 1.0);
+		assertEquals(2.0, Graphs.dijskstra(c, "a", weights).distances.get("c"),
+				0);
+		assertEquals(3, Graphs.breadthFirstSearch(c, "a").size() + 1);
+		assertEquals(3, Graphs.dijskstra(c, "a", "c", weights::get).vertices.size());
+		assertEquals(null, Graphs.dijskstra(c, "a", "d", weights::get));
+	}
+}
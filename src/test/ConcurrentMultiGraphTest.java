@@ -0,0 +1,152 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.ConcurrentMultiGraph;
+import graph.DirectedEdge;
+import graph.Graph.Edge;
+
+public class ConcurrentMultiGraphTest {
+	static final int THREADS = 4;
+
+	/*
+	 * Runs the task in THREADS threads started together, and rethrows the
+	 * first exception thrown by one of them.
+	 */
+	private static void run(Task task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		try {
+			for (int k = 0; k < THREADS; k++) {
+				int thread = k;
+				futures.add(executor.submit(() -> {
+					start.await();
+					task.run(thread);
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : futures)
+				f.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private interface Task {
+		void run(int thread) throws Exception;
+	}
+
+	/*
+	 * The edges of g are in the indexes of their extremities, and conversely.
+	 */
+	private static void assertConsistent(
+			ConcurrentMultiGraph<Integer, Edge<Integer>> g) {
+		int degrees = 0;
+		for (Integer v : g.vertices()) {
+			degrees += g.degree(v);
+			for (Edge<Integer> e : g.outgoingEdges(v)) {
+				assertTrue(g.containsEdge(e));
+				assertTrue(Iterables.fillList(g.incomingEdges(e.target())).contains(e));
+				assertTrue(Iterables.fillList(g.successors(v)).contains(e.target()));
+			}
+			assertEquals(g.degree(v), g.indegree(v) + g.outdegree(v));
+		}
+		for (Edge<Integer> e : g.edges()) {
+			assertTrue(g.containsVertex(e.source()));
+			assertTrue(g.containsVertex(e.target()));
+		}
+		assertEquals(2 * g.size(), degrees);
+	}
+
+	@Test
+	public void ingestion() throws Exception {
+		int n = 2000;
+		ConcurrentMultiGraph<Integer, Edge<Integer>> g = new ConcurrentMultiGraph<Integer, Edge<Integer>>();
+		for (int v = 0; v < n; v++)
+			g.addVertex(v);
+		// each thread adds its edges, all threads sharing the vertices
+		run(thread -> {
+			Random r = new Random(thread);
+			for (int k = 0; k < 5000; k++)
+				g.addEdge(new DirectedEdge<Integer>(r.nextInt(n), r.nextInt(n)));
+			for (int v = thread; v < n; v += THREADS)
+				g.addEdge(new DirectedEdge<Integer>(v, (v + 1) % n));
+		});
+		assertEquals(n, g.order());
+		assertEquals(THREADS * 5000 + n, g.size());
+		assertConsistent(g);
+	}
+
+	@Test
+	public void addAndRemove() throws Exception {
+		int n = 64;
+		ConcurrentMultiGraph<Integer, Edge<Integer>> g = new ConcurrentMultiGraph<Integer, Edge<Integer>>();
+		run(thread -> {
+			Random r = new Random(thread);
+			for (int k = 0; k < 20000; k++) {
+				int v = r.nextInt(n);
+				switch (r.nextInt(4)) {
+				case 0:
+					g.addVertex(v);
+					break;
+				case 1:
+					g.removeVertex(v);
+					break;
+				default:
+					try {
+						g.addEdge(new DirectedEdge<Integer>(v, r.nextInt(n)));
+					} catch (IllegalArgumentException e) {
+						// an extremity is not a vertex, or is being removed
+					}
+				}
+			}
+		});
+		assertConsistent(g);
+	}
+
+	@Test
+	public void addDuringRemoval() throws Exception {
+		for (int round = 0; round < 10; round++) {
+			ConcurrentMultiGraph<Integer, Edge<Integer>> g = new ConcurrentMultiGraph<Integer, Edge<Integer>>();
+			g.addVertex(0);
+			for (int v = 1; v < 20000; v++) {
+				g.addVertex(v);
+				g.addEdge(new DirectedEdge<Integer>(0, v));
+			}
+			AtomicBoolean added = new AtomicBoolean();
+			run(thread -> {
+				if (thread == 0)
+					g.removeVertex(0);
+				else if (thread == 1) {
+					// wait for the removal to start
+					try {
+						while (g.degree(0) == 19999)
+							Thread.yield();
+					} catch (IllegalArgumentException e) {
+						// already removed
+					}
+					added.set(g.addVertex(0));
+				}
+			});
+			assertTrue(added.get());
+			assertTrue(g.containsVertex(0));
+			assertEquals(0, g.degree(0));
+			assertConsistent(g);
+		}
+	}
+}
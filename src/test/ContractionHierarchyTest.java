@@ -0,0 +1,88 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import graph.DirectedEdge;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+import util.ContractionHierarchy;
+import util.Graphs;
+import util.Graphs.Path;
+import util.Graphs.ShortestPaths;
+
+public class ContractionHierarchyTest {
+
+	@Test
+	public void sameDistancesAsDijskstra() throws Exception {
+		Random random = new Random(1);
+		MultiGraph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		Map<Edge<Integer>, Double> weights = new HashMap<Edge<Integer>, Double>();
+		int n = 40;
+		for (int i = 0; i < n; i++)
+			g.addVertex(i);
+		for (int i = 0; i < 3 * n; i++) {
+			Edge<Integer> e = new DirectedEdge<Integer>(random.nextInt(n),
+					random.nextInt(n));
+			g.addEdge(e);
+			weights.put(e, (double) random.nextInt(10));
+		}
+		ContractionHierarchy<Integer> ch = ContractionHierarchy.build(g,
+				weights::get);
+		for (int s = 0; s < n; s++) {
+			ShortestPaths<Integer> sp = Graphs.dijskstra(g, s, weights);
+			for (int t = 0; t < n; t++) {
+				double d = sp.distances.get(t);
+				assertEquals(d, ch.distance(s, t), 0);
+				Path<Integer> p = ch.path(s, t);
+				if (d == Double.POSITIVE_INFINITY)
+					assertNull(p);
+				else {
+					assertEquals(d, p.length, 0);
+					assertEquals(s, (int) p.vertices.get(0));
+					assertEquals(t, (int) p.vertices.get(p.vertices.size() - 1));
+					// p.length is the distance of the search, the path itself
+					// must be made of edges of g adding up to d
+					double length = 0;
+					for (int i = 1; i < p.vertices.size(); i++) {
+						double w = Double.POSITIVE_INFINITY;
+						for (Edge<Integer> e : g.outgoingEdges(p.vertices.get(i - 1),
+								p.vertices.get(i)))
+							w = Math.min(w, weights.get(e));
+						assertTrue(w < Double.POSITIVE_INFINITY);
+						length += w;
+					}
+					assertEquals(d, length, 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void serialization() throws Exception {
+		MultiGraph<String, Edge<String>> g = new MultiGraph<String, Edge<String>>();
+		g.addVertex("a");
+		g.addVertex("b");
+		g.addVertex("c");
+		Edge<String> ab = new DirectedEdge<String>("a", "b");
+		Edge<String> bc = new DirectedEdge<String>("b", "c");
+		g.addEdge(ab);
+		g.addEdge(bc);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ContractionHierarchy.build(g, e -> e == ab ? 1 : 2).write(out);
+		ContractionHierarchy<String> ch = ContractionHierarchy
+				.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(3.0, ch.distance("a", "c"), 0);
+		assertEquals(3, ch.path("a", "c").vertices.size());
+		assertNull(ch.path("c", "a"));
+	}
+}
@@ -0,0 +1,146 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.DenseGraph;
+import graph.DirectedEdge;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.GraphBuilder;
+import graph.MultiGraph;
+
+public class DenseGraphTest {
+
+	private static Set<Integer> neighbors(Graph<Integer, Edge<Integer>> g,
+			int v) {
+		return new HashSet<Integer>(Iterables.fillList(g.neighbors(v)));
+	}
+
+	/*
+	 * The bit rows of the dense graph give the neighborhoods of the
+	 * multigraph.
+	 */
+	private static void assertSameNeighborhoods(
+			DenseGraph<Integer, Edge<Integer>> d,
+			MultiGraph<Integer, Edge<Integer>> g) {
+		assertEquals(g, d);
+		// Integer, not int, since areNeighbors(int, int) takes ids
+		for (Integer u : g.vertices()) {
+			Set<Integer> nu = neighbors(g, u);
+			assertEquals(nu, neighbors(d, u));
+			BitSet bits = new BitSet();
+			for (int w : nu)
+				bits.set(d.vertexId(w));
+			assertEquals(bits, d.neighborhood(u));
+			for (Integer v : g.vertices()) {
+				Set<Integer> common = new HashSet<Integer>(nu);
+				common.retainAll(neighbors(g, v));
+				assertEquals(common, d.commonNeighbors(u, v));
+				assertEquals(common.size(), d.commonNeighborCount(u, v));
+				Set<Integer> union = new HashSet<Integer>(nu);
+				union.addAll(neighbors(g, v));
+				assertEquals(union, d.neighborhoodUnion(u, v));
+				assertEquals(g.areNeighbors(u, v), d.areNeighbors(u, v));
+				assertEquals(g.areNeighbors(u, v), d.areNeighbors(
+						d.vertexId(u), d.vertexId(v)));
+			}
+		}
+	}
+
+	/*
+	 * A graph growing beyond 64 vertices, so that the rows span several
+	 * words, with removals whose ids are reused.
+	 */
+	@Test
+	public void bitRows() {
+		Random r = new Random(12);
+		DenseGraph<Integer, Edge<Integer>> d = new DenseGraph<Integer, Edge<Integer>>();
+		MultiGraph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		for (int n = 0; n < 150; n++) {
+			d.addVertex(n);
+			g.addVertex(n);
+			for (int i = 0; i < 3; i++) {
+				Edge<Integer> e = new DirectedEdge<Integer>(r.nextInt(n + 1),
+						r.nextInt(n + 1));
+				d.addEdge(e);
+				g.addEdge(e);
+			}
+		}
+		assertSameNeighborhoods(d, g);
+		for (int i = 0; i < 40; i++) {
+			int v = r.nextInt(150);
+			d.removeVertex(v);
+			g.removeVertex(v);
+		}
+		for (Edge<Integer> e : Iterables.fillList(g.edges()).subList(0, 50)) {
+			d.removeEdge(e);
+			g.removeEdge(e);
+		}
+		// the new vertices take the ids of the removed ones
+		for (int n = 150; n < 170; n++) {
+			d.addVertex(n);
+			g.addVertex(n);
+			Edge<Integer> e = new DirectedEdge<Integer>(n, 149 - (n - 150));
+			if (g.containsVertex(e.target())) {
+				d.addEdge(e);
+				g.addEdge(e);
+			}
+		}
+		assertTrue(d.vertexIdBound() <= 150);
+		assertSameNeighborhoods(d, g);
+	}
+
+	@Test
+	public void parallelEdges() {
+		DenseGraph<String, Edge<String>> d = new DenseGraph<String, Edge<String>>();
+		d.addVertex("a");
+		d.addVertex("b");
+		Edge<String> ab = new DirectedEdge<String>("a", "b");
+		Edge<String> ab2 = new DirectedEdge<String>("a", "b");
+		d.addEdge(ab);
+		d.addEdge(ab2);
+		assertEquals(2, Iterables.size(d.outgoingEdges("a", "b")));
+		d.removeEdge(ab);
+		assertTrue(d.areNeighbors("b", "a"));
+		d.removeEdge(ab2);
+		assertFalse(d.areNeighbors("a", "b"));
+		assertEquals(0, d.neighborhood("a").cardinality());
+	}
+
+	private static Graph<Integer, Edge<Integer>> build(int order, int size) {
+		GraphBuilder<Integer, Edge<Integer>> builder = new GraphBuilder<Integer, Edge<Integer>>();
+		for (int v = 0; v < order; v++)
+			builder.addVertex(v);
+		for (int i = 0; i < size; i++)
+			builder.addEdge(new DirectedEdge<Integer>(i % order, i / order));
+		return builder.build();
+	}
+
+	/*
+	 * A graph is dense when it has at most 64 vertices or when its vertices
+	 * have on average one neighbor per 64 vertices.
+	 */
+	@Test
+	public void builderChoice() {
+		assertTrue(DenseGraph.isDense(64, 0));
+		assertFalse(DenseGraph.isDense(65, 66));
+		assertTrue(DenseGraph.isDense(640, 6400));
+		assertFalse(DenseGraph.isDense(640, 6399));
+		assertTrue(build(64, 0) instanceof DenseGraph);
+		assertTrue(build(200, 625) instanceof DenseGraph);
+		Graph<Integer, Edge<Integer>> sparse = build(200, 624);
+		assertTrue(sparse instanceof MultiGraph);
+		assertEquals(624, sparse.size());
+		assertEquals(625, build(200, 625).size());
+	}
+}
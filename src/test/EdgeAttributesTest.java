@@ -0,0 +1,118 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.function.IntToDoubleFunction;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import graph.ConcurrentMultiGraph;
+import graph.DirectedEdge;
+import graph.EdgeAttributes;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+import util.Graphs;
+
+public class EdgeAttributesTest {
+	MultiGraph<String, Edge<String>> g;
+	EdgeAttributes<Edge<String>> attributes;
+	EdgeAttributes<Edge<String>>.DoubleColumn weights;
+	Edge<String> ab, bc, ca;
+
+	@Before
+	public void init() {
+		g = new MultiGraph<String, Edge<String>>();
+		g.addVertex("a");
+		g.addVertex("b");
+		g.addVertex("c");
+		ab = new DirectedEdge<String>("a", "b");
+		bc = new DirectedEdge<String>("b", "c");
+		ca = new DirectedEdge<String>("c", "a");
+		g.addEdge(ab);
+		g.addEdge(bc);
+		g.addEdge(ca);
+		attributes = new EdgeAttributes<Edge<String>>(g);
+		weights = attributes.doubles("weight", 1);
+	}
+
+	@Test
+	public void defaultValues() {
+		weights.set(bc, 2.5);
+		assertEquals(1, weights.applyAsDouble(ab), 0);
+		assertEquals(2.5, weights.applyAsDouble(bc), 0);
+		assertEquals(2.5, weights.get(g.edgeId(bc)), 0);
+		assertEquals(0, attributes.ints("capacity").applyAsInt(bc));
+		assertEquals(1, weights.get(-1), 0);
+	}
+
+	@Test
+	public void recycledId() {
+		EdgeAttributes<Edge<String>>.IntColumn capacities = attributes
+				.ints("capacity", 3);
+		weights.set(ab, 42);
+		capacities.set(ab, 8);
+		int id = g.edgeId(ab);
+		g.removeEdge(ab);
+		Edge<String> ab2 = new DirectedEdge<String>("a", "b");
+		g.addEdge(ab2);
+		assertEquals(id, g.edgeId(ab2));
+		assertEquals(1, weights.applyAsDouble(ab2), 0);
+		assertEquals(1, weights.get(id), 0);
+		// setting a column does not bring back the values of ab in the others
+		capacities.set(ab2, 5);
+		assertEquals(1, weights.applyAsDouble(ab2), 0);
+		assertEquals(5, capacities.applyAsInt(ab2));
+	}
+
+	@Test
+	public void compactIds() {
+		weights.set(ab, 42);
+		weights.set(ca, 7);
+		g.removeEdge(ab);
+		g.removeEdge(bc);
+		g.compactIds();
+		assertEquals(0, g.edgeId(ca));
+		assertEquals(7, weights.applyAsDouble(ca), 0);
+		assertEquals(7, weights.get(0), 0);
+		g.addEdge(ab);
+		assertEquals(1, weights.applyAsDouble(ab), 0);
+	}
+
+	@Test
+	public void byId() {
+		weights.set(bc, 2);
+		IntToDoubleFunction w = EdgeAttributes.doublesById(g, weights);
+		assertEquals(2, w.applyAsDouble(g.edgeId(bc)), 0);
+		assertEquals(1, w.applyAsDouble(g.edgeId(ca)), 0);
+		w = EdgeAttributes.doublesById(g, e -> e == bc ? 3.0 : 0.0);
+		assertEquals(3, w.applyAsDouble(g.edgeId(bc)), 0);
+		assertEquals(0, w.applyAsDouble(g.edgeId(ca)), 0);
+	}
+
+	@Test
+	public void notIndexedGraph() {
+		ConcurrentMultiGraph<String, Edge<String>> h = new ConcurrentMultiGraph<String, Edge<String>>();
+		h.addVertex("a");
+		h.addVertex("b");
+		h.addEdge(ab);
+		EdgeAttributes<Edge<String>>.DoubleColumn w = new EdgeAttributes<Edge<String>>(
+				h).doubles("weight", 1);
+		assertEquals(1, w.get(ab), 0);
+		w.set(ab, 4);
+		assertEquals(4, w.applyAsDouble(ab), 0);
+		assertEquals(1, w.applyAsDouble(bc), 0);
+	}
+
+	@Test
+	public void shortestPaths() throws Exception {
+		weights.set(ab, 5);
+		weights.set(bc, 1);
+		weights.set(ca, 1);
+		g.addEdge(new DirectedEdge<String>("a", "c"));
+		assertEquals(1,
+				Graphs.dijskstra(g, "a", weights).distances.get("c"), 0);
+		assertEquals(2, Graphs.bellmanFordQueue(g, "b", weights).distances
+				.get("a"), 0);
+	}
+}
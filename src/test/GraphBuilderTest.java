@@ -0,0 +1,157 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.CompactGraph;
+import graph.DenseGraph;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.GraphBuilder;
+import graph.MultiGraph;
+
+public class GraphBuilderTest {
+	GraphBuilder<String, Edge<String>> builder;
+
+	/*
+	 * An edge with value equality, so that distinct objects can be equal.
+	 */
+	static final class Arc implements Edge<String> {
+		final String source;
+		final String target;
+		final int label;
+
+		Arc(String source, String target, int label) {
+			this.source = source;
+			this.target = target;
+			this.label = label;
+		}
+
+		public String source() {
+			return source;
+		}
+
+		public String target() {
+			return target;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Arc))
+				return false;
+			Arc a = (Arc) o;
+			return source.equals(a.source) && target.equals(a.target)
+					&& label == a.label;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(source, target, label);
+		}
+
+		@Override
+		public String toString() {
+			return source + target + label;
+		}
+	}
+
+	@Before
+	public void init() {
+		builder = new GraphBuilder<String, Edge<String>>(4, 6);
+		builder.addVertices("a", "b").addVertex("c")
+				.addVertices(Arrays.asList("d", "a"));
+		Arc ab = new Arc("a", "b", 0);
+		builder.addEdges(ab, new Arc("a", "b", 1), new Arc("b", "c", 0))
+				.addEdge(new Arc("c", "c", 0))
+				.addEdges(Stream.of(new Arc("a", "b", 0), ab));
+	}
+
+	private static void assertBuilt(Graph<String, Edge<String>> g) {
+		assertEquals(4, g.order());
+		assertEquals(4, g.size());
+		assertEquals(2, Iterables.size(g.outgoingEdges("a", "b")));
+		assertTrue(g.containsEdge(new Arc("c", "c", 0)));
+		assertEquals(3, g.degree("b"));
+		assertEquals(0, g.degree("d"));
+	}
+
+	/*
+	 * The edges added several times, as the same object or as equal ones,
+	 * are kept once whatever the graph built.
+	 */
+	@Test
+	public void duplicateEdges() {
+		assertEquals(4, builder.order());
+		assertEquals(6, builder.size());
+		MultiGraph<String, Edge<String>> g = builder.buildMultiGraph();
+		assertBuilt(g);
+		assertBuilt(builder.buildMultiGraph(true));
+		CompactGraph<String, Edge<String>> c = builder.buildCompactGraph();
+		assertBuilt(c);
+		DenseGraph<String, Edge<String>> d = builder.buildDenseGraph();
+		assertBuilt(d);
+		assertEquals(g, c);
+		assertEquals(g, d);
+	}
+
+	@Test
+	public void insertionOrder() {
+		MultiGraph<String, Edge<String>> g = builder.buildMultiGraph();
+		assertEquals(Arrays.asList("a", "b", "c", "d"),
+				new ArrayList<String>(g.vertices()));
+		for (int id = 0; id < 4; id++)
+			assertEquals("abcd".substring(id, id + 1), g.vertex(id));
+		List<Edge<String>> edges = new ArrayList<Edge<String>>(g.edges());
+		assertEquals(new Arc("a", "b", 0), edges.get(0));
+		assertEquals(new Arc("c", "c", 0), edges.get(3));
+	}
+
+	@Test
+	public void loadedAsOneModification() {
+		assertEquals(0, new MultiGraph<String, Edge<String>>().version());
+		assertEquals(1, builder.buildMultiGraph().version());
+		assertEquals(1, builder.buildMultiGraph(true).version());
+	}
+
+	@Test
+	public void reusable() {
+		MultiGraph<String, Edge<String>> g = builder.buildMultiGraph();
+		g.removeVertex("a");
+		builder.addVertex("e").addEdge(new Arc("d", "e", 0));
+		MultiGraph<String, Edge<String>> h = builder.buildMultiGraph();
+		assertNotSame(g, h);
+		assertEquals(5, h.order());
+		assertEquals(5, h.size());
+		assertFalse(g.containsVertex("e"));
+		// the graph built is an ordinary graph
+		h.addEdge(new Arc("e", "a", 0));
+		assertTrue(h.areNeighbors("a", "e"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingExtremityMultiGraph() {
+		builder.addEdge(new Arc("a", "e", 0)).buildMultiGraph();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingExtremityCompactGraph() {
+		builder.addEdge(new Arc("e", "a", 0)).buildCompactGraph();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingExtremityDenseGraph() {
+		builder.addEdge(new Arc("e", "e", 0)).buildDenseGraph();
+	}
+}
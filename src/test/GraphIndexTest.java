@@ -0,0 +1,209 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import graph.CompactGraph;
+import graph.ConcurrentMultiGraph;
+import graph.DirectedEdge;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.GraphIndex;
+import graph.IntMultiGraph;
+import graph.MultiGraph;
+import graph.PersistentGraph;
+
+public class GraphIndexTest {
+
+	/*
+	 * A vertex whose hash code is chosen, to make collisions.
+	 */
+	static final class Key {
+		final int id;
+
+		Key(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && ((Key) o).id == id;
+		}
+
+		@Override
+		public int hashCode() {
+			return id % 7;
+		}
+
+		@Override
+		public String toString() {
+			return "k" + id;
+		}
+	}
+
+	/*
+	 * The ids of the vertices and edges of g are distinct, below the bounds,
+	 * and give back the vertices and edges.
+	 */
+	private static <V, E extends Edge<V>> void assertConsistent(Graph<V, E> g,
+			GraphIndex<V, E> index) {
+		BitSet ids = new BitSet();
+		for (V v : g.vertices()) {
+			int id = index.vertexId(v);
+			assertTrue(id >= 0 && id < index.vertexIdBound() && !ids.get(id));
+			ids.set(id);
+			assertEquals(v, index.vertex(id));
+		}
+		for (int id = 0; id < index.vertexIdBound(); id++)
+			if (!ids.get(id))
+				assertNull(index.vertex(id));
+		ids.clear();
+		for (E e : g.edges()) {
+			int id = index.edgeId(e);
+			assertTrue(id >= 0 && id < index.edgeIdBound() && !ids.get(id));
+			ids.set(id);
+			assertEquals(e, index.edge(id));
+		}
+		for (int id = 0; id < index.edgeIdBound(); id++)
+			if (!ids.get(id))
+				assertNull(index.edge(id));
+	}
+
+	@Test
+	public void recycledIds() {
+		MultiGraph<String, Edge<String>> g = new MultiGraph<String, Edge<String>>();
+		g.addVertex("a");
+		g.addVertex("b");
+		g.addVertex("c");
+		assertEquals(1, g.vertexId("b"));
+		g.removeVertex("b");
+		assertEquals(-1, g.vertexId("b"));
+		assertNull(g.vertex(1));
+		assertEquals(2, g.vertexId("c"));
+		g.addVertex("d");
+		assertEquals(1, g.vertexId("d"));
+		assertEquals(3, g.vertexIdBound());
+		Edge<String> ad = new DirectedEdge<String>("a", "d");
+		Edge<String> cd = new DirectedEdge<String>("c", "d");
+		g.addEdge(ad);
+		g.addEdge(cd);
+		g.removeEdge(ad);
+		g.addEdge(ad);
+		assertEquals(0, g.edgeId(ad));
+		assertEquals(2, g.edgeIdBound());
+		assertSame(g, g.index());
+	}
+
+	/*
+	 * Random additions and removals of colliding vertices: the ids stay
+	 * consistent and below the largest order.
+	 */
+	@Test
+	public void randomRecycling() {
+		Random r = new Random(11);
+		MultiGraph<Key, Edge<Key>> g = new MultiGraph<Key, Edge<Key>>();
+		int largest = 0;
+		for (int step = 0; step < 20000; step++) {
+			Key k = new Key(r.nextInt(300));
+			if (r.nextInt(3) > 0)
+				g.addVertex(k);
+			else
+				g.removeVertex(k);
+			largest = Math.max(largest, g.order());
+			if (step % 500 == 0)
+				assertConsistent(g, g.index());
+		}
+		assertTrue(g.vertexIdBound() <= largest);
+		assertConsistent(g, g.index());
+	}
+
+	@Test
+	public void compactIds() {
+		MultiGraph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		for (int v = 0; v < 10; v++)
+			g.addVertex(v);
+		for (int v = 0; v < 9; v++)
+			g.addEdge(new DirectedEdge<Integer>(v, v + 1));
+		g.removeVertex(2);
+		g.removeVertex(5);
+		List<Integer> before = new ArrayList<Integer>(g.vertices());
+		g.compactIds();
+		assertEquals(8, g.vertexIdBound());
+		assertEquals(5, g.edgeIdBound());
+		assertEquals(before, new ArrayList<Integer>(g.vertices()));
+		for (int id = 0; id < 8; id++)
+			assertEquals(before.get(id), g.vertex(id));
+		assertConsistent(g, g.index());
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void failFastVertices() {
+		MultiGraph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		g.addVertex(0);
+		g.addVertex(1);
+		Iterator<Integer> i = g.vertices().iterator();
+		i.next();
+		g.addVertex(2);
+		i.next();
+	}
+
+	@Test
+	public void vertexStream() {
+		MultiGraph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		for (int v = 0; v < 1000; v++)
+			g.addVertex(v);
+		for (int v = 0; v < 1000; v += 3)
+			g.removeVertex(v);
+		assertEquals(g.order(), g.vertexStream().parallel().count());
+		assertEquals(g.vertices().stream().mapToLong(v -> v).sum(), g
+				.vertexStream().parallel().mapToLong(v -> v).sum());
+	}
+
+	@Test
+	public void otherGraphs() {
+		MultiGraph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		for (int v = 0; v < 20; v++)
+			g.addVertex(v);
+		for (int v = 0; v < 40; v++)
+			g.addEdge(new DirectedEdge<Integer>(v % 20, v * 7 % 20));
+		g.removeVertex(3);
+		CompactGraph<Integer, Edge<Integer>> c = g.freeze();
+		assertEquals(c.order(), c.index().vertexIdBound());
+		assertEquals(c.size(), c.index().edgeIdBound());
+		assertConsistent(c, c.index());
+		ConcurrentMultiGraph<Integer, Edge<Integer>> concurrent = new ConcurrentMultiGraph<Integer, Edge<Integer>>();
+		for (int v : g.vertices())
+			concurrent.addVertex(v);
+		for (Edge<Integer> e : g.edges())
+			concurrent.addEdge(e);
+		assertConsistent(concurrent, concurrent.index());
+		PersistentGraph<Integer, Edge<Integer>> p = new PersistentGraph<Integer, Edge<Integer>>(
+				g);
+		GraphIndex<Integer, Edge<Integer>> index = p.index();
+		assertConsistent(p, index);
+		// computed once per version
+		assertSame(index, p.index());
+		p.addVertex(20);
+		assertNotSame(index, p.index());
+		assertConsistent(p, p.index());
+		IntMultiGraph ig = new IntMultiGraph();
+		ig.addVertices(5);
+		int e = ig.addEdge(0, 1);
+		ig.addEdge(1, 2);
+		ig.removeEdge(e);
+		assertConsistent(ig.asGraph(), ig.asGraph().index());
+		assertNull(ig.asGraph().index().edge(e));
+	}
+}
@@ -0,0 +1,160 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import graph.DirectedEdge;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.GraphListener;
+import graph.MultiGraph;
+
+public class GraphListenerTest {
+	MultiGraph<String, Edge<String>> g;
+	Edge<String> ab, bc, bb;
+	Recorder recorder;
+
+	/*
+	 * Records the notifications as strings.
+	 */
+	class Recorder implements GraphListener<String, Edge<String>> {
+		final List<String> events = new ArrayList<String>();
+
+		public void vertexAdded(Graph<String, Edge<String>> graph, String v) {
+			assertSame(g, graph);
+			events.add("+" + v);
+		}
+
+		public void vertexRemoved(Graph<String, Edge<String>> graph, String v) {
+			assertFalse(graph.containsVertex(v));
+			events.add("-" + v);
+		}
+
+		public void edgeAdded(Graph<String, Edge<String>> graph,
+				Edge<String> e) {
+			assertTrue(graph.containsEdge(e));
+			events.add("+" + e.source() + e.target());
+		}
+
+		public void edgeRemoved(Graph<String, Edge<String>> graph,
+				Edge<String> e) {
+			assertFalse(graph.containsEdge(e));
+			events.add("-" + e.source() + e.target());
+		}
+
+		public void idsCompacted(Graph<String, Edge<String>> graph,
+				int[] vertexIds, int[] edgeIds) {
+			events.add(Arrays.toString(vertexIds) + Arrays.toString(edgeIds));
+		}
+
+		public void batchStarted(Graph<String, Edge<String>> graph) {
+			events.add("[");
+		}
+
+		public void batchEnded(Graph<String, Edge<String>> graph) {
+			events.add("]");
+		}
+
+		void assertEvents(String... expected) {
+			assertEquals(Arrays.asList(expected), events);
+			events.clear();
+		}
+	}
+
+	@Before
+	public void init() {
+		g = new MultiGraph<String, Edge<String>>();
+		recorder = new Recorder();
+		g.addGraphListener(recorder);
+		g.addVertex("a");
+		g.addVertex("b");
+		g.addVertex("c");
+		ab = new DirectedEdge<String>("a", "b");
+		bc = new DirectedEdge<String>("b", "c");
+		bb = new DirectedEdge<String>("b", "b");
+		g.addEdge(ab);
+		g.addEdge(bc);
+		g.addEdge(bb);
+		recorder.assertEvents("+a", "+b", "+c", "+ab", "+bc", "+bb");
+	}
+
+	@Test
+	public void noEventWithoutModification() {
+		g.addVertex("a");
+		g.addEdge(ab);
+		g.removeVertex("d");
+		g.removeEdge(new DirectedEdge<String>("a", "b"));
+		recorder.assertEvents();
+	}
+
+	@Test
+	public void edgesRemovedBeforeTheirVertex() {
+		g.removeVertex("b");
+		assertEquals("[", recorder.events.get(0));
+		assertEquals("-b", recorder.events.get(4));
+		assertEquals("]", recorder.events.get(5));
+		assertTrue(recorder.events.containsAll(Arrays.asList("-ab", "-bc",
+				"-bb")));
+		recorder.events.clear();
+		g.removeVertex("a");
+		recorder.assertEvents("[", "-a", "]");
+	}
+
+	/*
+	 * Only the outermost batch is notified.
+	 */
+	@Test
+	public void nestedBatches() {
+		g.removeAllVertices(Arrays.asList("a", "c"));
+		recorder.assertEvents("[", "-ab", "-a", "-bc", "-c", "]");
+		g.removeAllEdges(Arrays.asList(bb));
+		recorder.assertEvents("[", "-bb", "]");
+		g.addEdge(bb);
+		recorder.events.clear();
+		g.clear();
+		recorder.assertEvents("[", "-bb", "-b", "]");
+	}
+
+	@Test
+	public void compaction() {
+		g.removeVertex("a");
+		recorder.events.clear();
+		g.compactIds();
+		recorder.assertEvents("[-1, 0, 1][-1, 0, 1]");
+	}
+
+	@Test
+	public void unregisterWhenNotified() {
+		Recorder other = new Recorder();
+		g.addGraphListener(new GraphListener<String, Edge<String>>() {
+			public void vertexAdded(Graph<String, Edge<String>> graph,
+					String v) {
+				assertTrue(graph.removeGraphListener(this));
+			}
+		});
+		g.addGraphListener(other);
+		g.addVertex("d");
+		g.addVertex("e");
+		recorder.assertEvents("+d", "+e");
+		other.assertEvents("+d", "+e");
+		assertTrue(g.removeGraphListener(recorder));
+		assertFalse(g.removeGraphListener(recorder));
+		g.addVertex("f");
+		recorder.assertEvents();
+		other.assertEvents("+f");
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void unsupported() {
+		g.freeze().addGraphListener(recorder);
+	}
+}
@@ -0,0 +1,128 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import graph.DirectedEdge;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+import graph.PartialGraph;
+import util.Graphs.ShortestPaths;
+import util.GraphsCache;
+
+public class GraphsCacheTest {
+	MultiGraph<String, Edge<String>> g;
+	Map<Edge<String>, Double> weights;
+	GraphsCache cache;
+
+	@Before
+	public void init() {
+		g = new MultiGraph<String, Edge<String>>();
+		g.addVertex("a");
+		g.addVertex("b");
+		g.addVertex("c");
+		weights = new HashMap<Edge<String>, Double>();
+		addEdge("a", "b", 1);
+		addEdge("b", "c", 2);
+		cache = new GraphsCache(2);
+	}
+
+	private void addEdge(String s, String t, double w) {
+		Edge<String> e = new DirectedEdge<String>(s, t);
+		g.addEdge(e);
+		weights.put(e, w);
+	}
+
+	@Test
+	public void sameResultWhileUnchanged() throws Exception {
+		ShortestPaths<String> sp = cache.dijskstra(g, "a", weights);
+		ShortestPaths<String> sp2 = cache.dijskstra(g, "a", weights);
+		assertEquals(sp.distances, sp2.distances);
+		assertEquals(3.0, sp.distances.get("c"), 0);
+		assertNotSame(sp, cache.dijskstra(g, "b", weights));
+		assertEquals(1, cache.hits());
+		assertEquals(2, cache.misses());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void unmodifiableResult() throws Exception {
+		cache.dijskstra(g, "a", weights);
+		cache.dijskstra(g, "a", weights).distances.put("c", 0.0);
+	}
+
+	@Test
+	public void ownTree() {
+		PartialGraph<String, Edge<String>> tree = cache.breadthFirstSearch(g,
+				"a");
+		tree.removeEdge(tree.edges().iterator().next());
+		assertEquals(2, cache.breadthFirstSearch(g, "a").size());
+		assertEquals(1, cache.hits());
+	}
+
+	@Test
+	public void evictedOnModification() throws Exception {
+		cache.dijskstra(g, "a", weights);
+		cache.isConnected(g);
+		assertEquals(2, cache.size());
+		g.addVertex("d");
+		assertEquals(0, cache.size());
+		cache.isConnected(g);
+		g.removeVertex("d");
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void collectedGraph() throws Exception {
+		MultiGraph<String, Edge<String>> h = new MultiGraph<String, Edge<String>>();
+		h.addVertex("a");
+		cache.isConnected(h);
+		assertEquals(1, cache.size());
+		WeakReference<Object> reference = new WeakReference<Object>(h);
+		h = null;
+		for (int i = 0; i < 20 && reference.get() != null; i++) {
+			System.gc();
+			Thread.yield();
+		}
+		assertNull(reference.get());
+		// the reference may be queued shortly after being cleared
+		for (int i = 0; i < 100 && cache.size() > 0; i++)
+			Thread.sleep(10);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void outdatedAfterModification() throws Exception {
+		assertTrue(cache.isConnected(g));
+		g.addVertex("d");
+		assertFalse(cache.isConnected(g));
+		ShortestPaths<String> sp = cache.dijskstra(g, "a", weights);
+		addEdge("a", "c", 1);
+		assertEquals(1.0, cache.dijskstra(g, "a", weights).distances.get("c"),
+				0);
+		assertNotSame(sp, cache.dijskstra(g, "a", weights));
+		assertEquals(1, cache.hits());
+	}
+
+	@Test
+	public void leastRecentlyUsedEvicted() {
+		cache.breadthFirstSearch(g, "a");
+		cache.breadthFirstSearch(g, "b");
+		cache.breadthFirstSearch(g, "a");
+		cache.breadthFirstSearch(g, "c");
+		assertEquals(2, cache.size());
+		cache.breadthFirstSearch(g, "a");
+		assertEquals(2, cache.hits());
+		cache.breadthFirstSearch(g, "b");
+		assertEquals(2, cache.hits());
+	}
+}
@@ -0,0 +1,139 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import collections.HashTrie;
+
+public class HashTrieTest {
+
+	/*
+	 * A key whose hash code is chosen, so that keys collide.
+	 */
+	static final class Key {
+		final int id;
+		final int hash;
+
+		Key(int id, int hash) {
+			this.id = id;
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && ((Key) o).id == id;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return "k" + id;
+		}
+	}
+
+	private static <K, V> void assertSameMap(Map<K, V> expected,
+			HashTrie<K, V> trie) {
+		assertEquals(expected.size(), trie.size());
+		assertEquals(expected.isEmpty(), trie.isEmpty());
+		for (Map.Entry<K, V> e : expected.entrySet())
+			assertEquals(e.getValue(), trie.get(e.getKey()));
+		assertEquals(expected.keySet(), new HashSet<K>(trie.keySet()));
+	}
+
+	@Test
+	public void putAndRemove() {
+		HashTrie<String, Integer> t = HashTrie.empty();
+		t = t.put("a", 1).put("b", 2).put("c", 3);
+		assertEquals(3, t.size());
+		assertEquals(2, (int) t.get("b"));
+		assertNull(t.get("d"));
+		t = t.put("b", 4);
+		assertEquals(3, t.size());
+		assertEquals(4, (int) t.get("b"));
+		t = t.remove("a").remove("b").remove("c");
+		assertTrue(t.isEmpty());
+		assertFalse(t.containsKey("a"));
+	}
+
+	@Test
+	public void collisions() {
+		HashTrie<Key, Integer> t = HashTrie.empty();
+		Map<Key, Integer> m = new HashMap<Key, Integer>();
+		// 3 keys per hash code, some hash codes differing in high bits only
+		for (int i = 0; i < 60; i++) {
+			Key k = new Key(i, (i / 3) << 27 | (i / 3));
+			t = t.put(k, i);
+			m.put(k, i);
+		}
+		assertSameMap(m, t);
+		for (int i = 0; i < 60; i += 2) {
+			t = t.remove(new Key(i, (i / 3) << 27 | (i / 3)));
+			m.remove(new Key(i, (i / 3) << 27 | (i / 3)));
+			assertSameMap(m, t);
+		}
+		// absent key with a colliding hash code
+		assertSame(t, t.remove(new Key(1000, 0)));
+		assertNull(t.get(new Key(1000, 1)));
+	}
+
+	@Test
+	public void unchangedMapReturned() {
+		Integer one = 1000;
+		HashTrie<String, Integer> t = HashTrie.<String, Integer> empty().put(
+				"a", one).put("b", 2);
+		assertSame(t, t.put("a", one));
+		assertSame(t, t.remove("c"));
+		assertSame(HashTrie.empty(), t.remove("a").remove("b"));
+	}
+
+	@Test
+	public void persistence() {
+		Random r = new Random(6);
+		List<HashTrie<Key, Integer>> versions = new ArrayList<HashTrie<Key, Integer>>();
+		List<Map<Key, Integer>> maps = new ArrayList<Map<Key, Integer>>();
+		HashTrie<Key, Integer> t = HashTrie.empty();
+		Map<Key, Integer> m = new HashMap<Key, Integer>();
+		for (int step = 0; step < 3000; step++) {
+			int id = r.nextInt(500);
+			// few hash codes, so that collisions and deep tries occur
+			Key k = new Key(id, id % 97 * 0x01010101);
+			if (r.nextInt(3) == 0) {
+				t = t.remove(k);
+				m.remove(k);
+			} else {
+				t = t.put(k, step);
+				m.put(k, step);
+			}
+			if (step % 100 == 0) {
+				versions.add(t);
+				maps.add(new HashMap<Key, Integer>(m));
+			}
+		}
+		// the old versions are not affected by the later updates
+		for (int i = 0; i < versions.size(); i++)
+			assertSameMap(maps.get(i), versions.get(i));
+		assertSameMap(m, t);
+		int n = 0;
+		for (Integer v : t.values()) {
+			assertTrue(m.containsValue(v));
+			n++;
+		}
+		assertEquals(m.size(), n);
+	}
+}
@@ -0,0 +1,112 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Test;
+
+import collections.IndexedHeap;
+
+public class IndexedHeapTest {
+
+	/*
+	 * Random insertions, decreases and polls, checked against a priority
+	 * queue of the same keys.
+	 */
+	private void randomOperations(int arity) {
+		Random r = new Random(arity);
+		int capacity = 300;
+		IndexedHeap heap = new IndexedHeap(capacity, arity);
+		double[] priority = new double[capacity];
+		PriorityQueue<Integer> expected = new PriorityQueue<Integer>(
+				(a, b) -> Double.compare(priority[a], priority[b]));
+		for (int step = 0; step < 20000; step++) {
+			int key = r.nextInt(capacity);
+			int op = r.nextInt(3);
+			if (op == 0 && !heap.contains(key)) {
+				priority[key] = r.nextDouble();
+				heap.insert(key, priority[key]);
+				expected.add(key);
+			} else if (op == 1 && heap.contains(key)) {
+				double p = priority[key] * r.nextDouble();
+				expected.remove(key);
+				priority[key] = p;
+				heap.decreaseKey(key, p);
+				expected.add(key);
+				assertEquals(p, heap.priority(key), 0);
+			} else if (op == 2 && !heap.isEmpty()) {
+				int x = expected.poll();
+				int k = heap.poll();
+				assertEquals(priority[x], priority[k], 0);
+				assertFalse(heap.contains(k));
+				// keys of equal priorities may be polled in any order
+				if (k != x) {
+					expected.remove(k);
+					expected.add(x);
+				}
+			}
+			assertEquals(expected.size(), heap.size());
+		}
+		double last = Double.NEGATIVE_INFINITY;
+		while (!heap.isEmpty()) {
+			double p = heap.priority(heap.peek());
+			assertTrue(p >= last);
+			last = priority[heap.poll()];
+		}
+	}
+
+	@Test
+	public void binary() {
+		randomOperations(2);
+	}
+
+	@Test
+	public void quaternary() {
+		randomOperations(4);
+	}
+
+	@Test
+	public void insertOrDecrease() {
+		IndexedHeap heap = new IndexedHeap(4);
+		assertTrue(heap.insertOrDecrease(1, 5));
+		assertTrue(heap.insertOrDecrease(2, 3));
+		assertFalse(heap.insertOrDecrease(1, 6));
+		assertTrue(heap.insertOrDecrease(1, 2));
+		assertEquals(1, heap.poll());
+		assertEquals(2, heap.poll());
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void clear() {
+		IndexedHeap heap = new IndexedHeap(10);
+		for (int k = 0; k < 10; k++)
+			heap.insert(k, -k);
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		for (int k = 0; k < 10; k++)
+			assertFalse(heap.contains(k));
+		// the keys can be inserted again
+		heap.insert(3, 1);
+		heap.insert(7, 0);
+		assertEquals(7, heap.poll());
+		assertEquals(3, heap.poll());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void increaseRejected() {
+		IndexedHeap heap = new IndexedHeap(2);
+		heap.insert(0, 1);
+		heap.decreaseKey(0, 2);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void pollEmpty() {
+		new IndexedHeap(2, 2).poll();
+	}
+}
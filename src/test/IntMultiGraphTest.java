@@ -0,0 +1,145 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.IntMultiGraph;
+import util.Graphs;
+import util.RandomGraphs;
+
+public class IntMultiGraphTest {
+	IntMultiGraph g;
+	int ab, ab2, bc, cc;
+
+	@Before
+	public void init() {
+		g = new IntMultiGraph();
+		g.addVertices(4);
+		ab = g.addEdge(0, 1);
+		ab2 = g.addEdge(0, 1);
+		bc = g.addEdge(1, 2);
+		cc = g.addEdge(2, 2);
+	}
+
+	private static List<Integer> collect(Consumer<IntConsumer> forEach) {
+		List<Integer> list = new ArrayList<Integer>();
+		forEach.accept(list::add);
+		Collections.sort(list);
+		return list;
+	}
+
+	@Test
+	public void adjacency() {
+		assertEquals(4, g.order());
+		assertEquals(4, g.size());
+		assertEquals(Arrays.asList(0, 1, 2, 3), Arrays.asList(ab, ab2, bc, cc));
+		assertEquals(1, g.source(bc));
+		assertEquals(2, g.target(bc));
+		assertEquals(3, g.degree(1));
+		assertEquals(3, g.degree(2));
+		assertEquals(1, g.outdegree(2));
+		assertEquals(Arrays.asList(ab, ab2), collect(a -> g.forEachOutgoingEdge(0, a)));
+		assertEquals(Arrays.asList(ab, ab2), collect(a -> g.forEachIncomingEdge(1, a)));
+		assertEquals(Arrays.asList(1, 1), collect(a -> g.forEachSuccessor(0, a)));
+		assertEquals(Arrays.asList(0, 0), collect(a -> g.forEachPredecessor(1, a)));
+		assertEquals(Arrays.asList(0, 0, 2), collect(a -> g.forEachNeighbor(1, a)));
+		// a loop gives its vertex once
+		assertEquals(Arrays.asList(1, 2), collect(a -> g.forEachNeighbor(2, a)));
+		assertEquals(Collections.emptyList(), collect(a -> g.forEachNeighbor(3, a)));
+	}
+
+	@Test
+	public void removedIdsAreNotReused() {
+		assertTrue(g.removeEdge(ab));
+		assertFalse(g.removeEdge(ab));
+		assertFalse(g.containsEdge(ab));
+		assertTrue(g.containsEdge(ab2));
+		assertEquals(3, g.size());
+		assertEquals(Arrays.asList(ab2), collect(a -> g.forEachOutgoingEdge(0, a)));
+		assertEquals(Arrays.asList(ab2), collect(a -> g.forEachIncomingEdge(1, a)));
+		assertEquals(4, g.addEdge(1, 0));
+		assertEquals(5, g.edgeIdBound());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownVertex() {
+		g.addEdge(0, 4);
+	}
+
+	@Test
+	public void view() throws Exception {
+		Graph<Integer, Edge<Integer>> view = g.asGraph();
+		assertEquals(4, view.order());
+		assertEquals(4, view.size());
+		assertEquals(2, Iterables.size(view.outgoingEdges(0, 1)));
+		assertTrue(view.areNeighbors(2, 2));
+		assertFalse(view.areNeighbors(0, 2));
+		Edge<Integer> e = view.index().edge(bc);
+		assertEquals(bc, view.index().edgeId(e));
+		// edges are created on demand and equal by id
+		assertNotSame(e, view.index().edge(bc));
+		assertEquals(e, view.index().edge(bc));
+		assertTrue(view.edges().contains(e));
+		g.removeEdge(bc);
+		assertFalse(view.edges().contains(e));
+		assertEquals(3, view.size());
+		assertEquals(1, Graphs.breadthFirstSearch(view, 0).size());
+		g.addEdge(2, 3);
+		g.addEdge(1, 3);
+		assertEquals(2.0, Graphs.dijskstra(view, 0, edge -> 1).distances.get(3), 0);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void readOnlyView() {
+		g.asGraph().addVertex(4);
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void failFastView() {
+		Iterator<Edge<Integer>> i = g.asGraph().edges().iterator();
+		i.next();
+		g.addEdge(3, 3);
+		i.next();
+	}
+
+	@Test
+	public void randomGraphs() {
+		RandomGraphs.setRandom(new Random(2));
+		IntMultiGraph tree = RandomGraphs.randomIntTree(50);
+		assertEquals(50, tree.order());
+		assertEquals(49, tree.size());
+		assertEquals(49, Graphs.breadthFirstSearch(tree.asGraph(), 0).size());
+		// the graphs are the same as the ones built from the int graphs
+		RandomGraphs.setRandom(new Random(2));
+		Graph<Integer, Edge<Integer>> t = RandomGraphs.randomTree(50);
+		assertEquals(tree.size(), t.size());
+		for (int e = 0; e < tree.edgeIdBound(); e++)
+			assertTrue(t.areNeighbors(tree.source(e), tree.target(e)));
+		RandomGraphs.setRandom(new Random(3));
+		IntMultiGraph d = RandomGraphs.randomIntDirectedGraph(30, 0.2);
+		RandomGraphs.setRandom(new Random(3));
+		Graph<Integer, Edge<Integer>> h = RandomGraphs.randomDirectedGraph(30,
+				0.2);
+		assertEquals(d.size(), h.size());
+		for (int e = 0; e < d.edgeIdBound(); e++)
+			assertTrue(h.areNeighbors(d.source(e), d.target(e)));
+	}
+}
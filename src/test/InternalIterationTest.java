@@ -0,0 +1,118 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.ConcurrentMultiGraph;
+import graph.DenseGraph;
+import graph.DirectedEdge;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+import graph.PersistentGraph;
+
+public class InternalIterationTest {
+	List<Graph<Integer, Edge<Integer>>> graphs;
+
+	/*
+	 * The same random graph, with parallel edges and loops, in each
+	 * implementation.
+	 */
+	@Before
+	public void init() {
+		Random r = new Random(14);
+		MultiGraph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		MultiGraph<Integer, Edge<Integer>> lean = new MultiGraph<Integer, Edge<Integer>>(
+				true);
+		ConcurrentMultiGraph<Integer, Edge<Integer>> c = new ConcurrentMultiGraph<Integer, Edge<Integer>>();
+		for (int v = 0; v < 25; v++) {
+			g.addVertex(v);
+			lean.addVertex(v);
+			c.addVertex(v);
+		}
+		for (int i = 0; i < 150; i++) {
+			Edge<Integer> e = new DirectedEdge<Integer>(r.nextInt(25),
+					r.nextInt(25));
+			g.addEdge(e);
+			lean.addEdge(e);
+			c.addEdge(e);
+		}
+		graphs = Arrays.asList(g, lean, c, g.freeze(),
+				new DenseGraph<Integer, Edge<Integer>>(g),
+				new PersistentGraph<Integer, Edge<Integer>>(g),
+				g.partialGraph(g.edges()), g.inducedSubgraph(g.vertices()));
+	}
+
+	/*
+	 * The elements given to the action, sorted.
+	 */
+	private static <T> List<String> collect(Consumer<Consumer<T>> forEach) {
+		List<String> list = new ArrayList<String>();
+		forEach.accept(t -> list.add(t.toString()));
+		list.sort(null);
+		return list;
+	}
+
+	private static List<String> sorted(Iterable<?> iterable) {
+		List<String> list = new ArrayList<String>();
+		for (Object o : iterable)
+			list.add(o.toString());
+		list.sort(null);
+		return list;
+	}
+
+	@Test
+	public void sameAsIterables() {
+		for (Graph<Integer, Edge<Integer>> g : graphs)
+			for (int u : g.vertices()) {
+				assertEquals(sorted(g.neighbors(u)),
+						collect(a -> g.forEachNeighbor(u, a)));
+				assertEquals(sorted(g.successors(u)),
+						collect(a -> g.forEachSuccessor(u, a)));
+				assertEquals(sorted(g.incidentEdges(u)),
+						collect(a -> g.forEachIncidentEdge(u, a)));
+				assertEquals(sorted(g.outgoingEdges(u)),
+						collect(a -> g.forEachOutgoingEdge(u, a)));
+				for (int v : g.vertices())
+					assertEquals(sorted(g.outgoingEdges(u, v)),
+							collect(a -> g.forEachOutgoingEdge(u, v, a)));
+			}
+	}
+
+	@Test
+	public void earlyExit() {
+		for (Graph<Integer, Edge<Integer>> g : graphs)
+			for (int u : g.vertices()) {
+				int neighbors = Iterables.size(g.neighbors(u));
+				int[] count = { 0 };
+				assertTrue(g.forEachNeighborWhile(u, w -> ++count[0] > 0));
+				assertEquals(neighbors, count[0]);
+				count[0] = 0;
+				assertEquals(neighbors < 2, g.forEachNeighborWhile(u,
+						w -> ++count[0] < 2));
+				assertEquals(Math.min(neighbors, 2), count[0]);
+				int outdegree = g.outdegree(u);
+				count[0] = 0;
+				assertTrue(g.forEachOutgoingEdgeWhile(u, e -> ++count[0] > 0));
+				assertEquals(outdegree, count[0]);
+				count[0] = 0;
+				if (outdegree > 0)
+					assertFalse(g.forEachOutgoingEdgeWhile(u, e -> {
+						count[0]++;
+						return false;
+					}));
+				assertEquals(Math.min(outdegree, 1), count[0]);
+			}
+	}
+}
@@ -0,0 +1,228 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import graph.DirectedEdge;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+import util.Graphs;
+import util.Graphs.FlowResults;
+import util.MaxFlowSolver;
+import util.NotLegalFlowException;
+
+public class MaxFlowTest {
+	MultiGraph<String, Edge<String>> g;
+	Map<Edge<String>, Integer> capacities;
+
+	// the network of Cormen et al., with a maximum flow of value 23
+	@Before
+	public void init() {
+		g = new MultiGraph<String, Edge<String>>();
+		capacities = new HashMap<Edge<String>, Integer>();
+		for (String v : new String[] { "s", "v1", "v2", "v3", "v4", "t" })
+			g.addVertex(v);
+		addEdge("s", "v1", 16);
+		addEdge("s", "v2", 13);
+		addEdge("v2", "v1", 4);
+		addEdge("v1", "v3", 12);
+		addEdge("v3", "v2", 9);
+		addEdge("v2", "v4", 14);
+		addEdge("v4", "v3", 7);
+		addEdge("v3", "t", 20);
+		addEdge("v4", "t", 4);
+	}
+
+	private Edge<String> addEdge(String s, String t, int c) {
+		Edge<String> e = new DirectedEdge<String>(s, t);
+		g.addEdge(e);
+		capacities.put(e, c);
+		return e;
+	}
+
+	private void assertMaximum(FlowResults<Edge<String>> fr) {
+		assertEquals(23, fr.value);
+		// the edges of the cut are saturated forward, empty backward
+		int cut = 0;
+		for (Edge<String> e : fr.minimumCut)
+			cut += fr.maximumFlow.get(e);
+		assertEquals(23, cut);
+		assertEquals(4, fr.minimumCut.size());
+		for (Edge<String> e : g.edges())
+			assertTrue(fr.maximumFlow.get(e) <= capacities.get(e));
+	}
+
+	@Test
+	public void dinic() {
+		assertMaximum(Graphs.dinic(g, "s", "t", capacities::get));
+	}
+
+	@Test
+	public void edmondsKarp() {
+		assertMaximum(Graphs.fordFulkersonV02(g, "s", "t", capacities));
+	}
+
+	@Test
+	public void pushRelabel() {
+		assertMaximum(Graphs.pushRelabel(g, "s", "t", capacities::get));
+	}
+
+	private Edge<String> edge(String s, String t) {
+		for (Edge<String> e : g.edges())
+			if (e.source().equals(s) && e.target().equals(t))
+				return e;
+		return null;
+	}
+
+	@Test
+	public void warmStart() {
+		MaxFlowSolver<String, Edge<String>> solver = new MaxFlowSolver<String, Edge<String>>(
+				g, "s", "t", capacities::get);
+		assertMaximum(solver.solve());
+		solver.setCapacity(edge("v3", "t"), 10);
+		assertEquals(14, solver.value());
+		assertEquals(14, solver.solve().value);
+		solver.removeEdge(edge("v4", "t"));
+		assertEquals(10, solver.solve().value);
+		solver.addEdge(new DirectedEdge<String>("s", "t"), 5);
+		FlowResults<Edge<String>> fr = solver.solve();
+		assertEquals(15, fr.value);
+		assertEquals(9, fr.maximumFlow.size());
+	}
+
+	@Test
+	public void warmStartAfterRemovals() {
+		MaxFlowSolver<String, Edge<String>> solver = new MaxFlowSolver<String, Edge<String>>(
+				g, "s", "t", capacities::get);
+		solver.solve();
+		List<Edge<String>> edges = new ArrayList<Edge<String>>(g.edges());
+		// more than half of the edges, so that the others are renumbered
+		for (String[] st : new String[][] { { "s", "v2" }, { "v2", "v1" },
+				{ "v3", "v2" }, { "v2", "v4" }, { "v4", "v3" } }) {
+			Edge<String> e = edge(st[0], st[1]);
+			solver.removeEdge(e);
+			g.removeEdge(e);
+			capacities.remove(e);
+			edges.remove(e);
+		}
+		// the last edge first, its number changing
+		Collections.reverse(edges);
+		int c = 3;
+		for (Edge<String> e : edges) {
+			solver.setCapacity(e, c);
+			capacities.put(e, c++);
+			assertEquals(capacities.get(e), (Integer) solver.capacity(e));
+			assertEquals(Graphs.dinic(g, "s", "t", capacities::get).value,
+					solver.solve().value);
+		}
+	}
+
+	@Test
+	public void lowerBounds() throws NotLegalFlowException {
+		Map<Edge<String>, Integer> b = new HashMap<Edge<String>, Integer>();
+		for (Edge<String> e : g.edges())
+			b.put(e, 0);
+		b.put(edge("v4", "v3"), 7);
+		FlowResults<Edge<String>> fr = Graphs.networkLowerUpperBound(g, "s",
+				"t", b, capacities);
+		assertMaximum(fr);
+		assertEquals(7, (int) fr.maximumFlow.get(edge("v4", "v3")));
+		// v1 receives at least 20 but sends at most 12
+		b.put(edge("s", "v1"), 16);
+		b.put(edge("v2", "v1"), 4);
+		try {
+			Graphs.networkLowerUpperBound(g, "s", "t", b, capacities);
+			fail();
+		} catch (NotLegalFlowException e) {
+		}
+	}
+
+	/*
+	 * The flow respects the capacities and is conserved at every vertex but
+	 * s and t, its value leaves s, and the cut separates t from s, its edges
+	 * being saturated forward and empty backward.
+	 */
+	private static <V, E extends Edge<V>> void assertLegalFlow(
+			MultiGraph<V, E> g, V s, V t, Map<E, Integer> c,
+			FlowResults<E> fr) {
+		Map<V, Integer> excess = new HashMap<V, Integer>();
+		for (V v : g.vertices())
+			excess.put(v, 0);
+		for (E e : g.edges()) {
+			int f = fr.maximumFlow.getOrDefault(e, 0);
+			assertTrue(0 <= f && f <= c.get(e));
+			excess.put(e.source(), excess.get(e.source()) - f);
+			excess.put(e.target(), excess.get(e.target()) + f);
+		}
+		for (V v : g.vertices())
+			if (!v.equals(s) && !v.equals(t))
+				assertEquals(0, (int) excess.get(v));
+		assertEquals(-fr.value, (int) excess.get(s));
+		int cut = 0;
+		for (E e : fr.minimumCut) {
+			int f = fr.maximumFlow.getOrDefault(e, 0);
+			assertTrue(f == 0 || f == c.get(e));
+			cut += f;
+		}
+		assertEquals(fr.value, cut);
+		Set<V> reached = new HashSet<V>(Collections.singleton(s));
+		for (boolean grown = true; grown;) {
+			grown = false;
+			for (E e : g.edges())
+				if (!fr.minimumCut.contains(e) && reached.contains(e.source()))
+					grown |= reached.add(e.target());
+		}
+		assertTrue(!reached.contains(t));
+	}
+
+	/*
+	 * Random networks with parallel edges, loops and zero capacities, large
+	 * enough for the gap heuristic and the global relabelling of push-relabel
+	 * to apply; in some of them the sink cannot be reached.
+	 */
+	@Test
+	public void randomNetworks() {
+		Random r = new Random(22);
+		for (int round = 0; round < 60; round++) {
+			int n = 2 + r.nextInt(round < 30 ? 10 : 400);
+			MultiGraph<Integer, Edge<Integer>> h = new MultiGraph<Integer, Edge<Integer>>();
+			Map<Edge<Integer>, Integer> c = new HashMap<Edge<Integer>, Integer>();
+			for (int v = 0; v < n; v++)
+				h.addVertex(v);
+			int s = 0, t = n - 1;
+			boolean unreachable = round % 10 == 0;
+			for (int i = r.nextInt(6 * n); i > 0; i--) {
+				int u = r.nextInt(n), v = r.nextInt(n);
+				if (unreachable && v == t)
+					continue;
+				Edge<Integer> e = new DirectedEdge<Integer>(u, v);
+				h.addEdge(e);
+				c.put(e, r.nextInt(4) == 0 ? 0 : r.nextInt(20));
+			}
+			List<FlowResults<Edge<Integer>>> results = new ArrayList<FlowResults<Edge<Integer>>>();
+			results.add(Graphs.dinic(h, s, t, c::get));
+			results.add(Graphs.pushRelabel(h, s, t, c::get));
+			results.add(Graphs.fordFulkersonV02(h, s, t, c));
+			results.add(Graphs.fordFulkersonV01(h, s, t, null, c));
+			for (FlowResults<Edge<Integer>> fr : results) {
+				assertEquals(results.get(0).value, fr.value);
+				assertLegalFlow(h, s, t, c, fr);
+			}
+			if (unreachable)
+				assertEquals(0, results.get(0).value);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.DirectedEdge;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+
+public class MultiGraphTest {
+
+	private static <T> Set<T> set(Iterable<T> iterable) {
+		return new HashSet<T>(Iterables.fillList(iterable));
+	}
+
+	private static void assertSameAdjacency(MultiGraph<Integer, Edge<Integer>> g,
+			MultiGraph<Integer, Edge<Integer>> h) {
+		assertEquals(g, h);
+		assertEquals(g.order(), h.order());
+		assertEquals(g.size(), h.size());
+		for (int u : g.vertices()) {
+			assertEquals(g.degree(u), h.degree(u));
+			assertEquals(g.indegree(u), h.indegree(u));
+			assertEquals(g.outdegree(u), h.outdegree(u));
+			assertEquals(set(g.neighbors(u)), set(h.neighbors(u)));
+			assertEquals(set(g.successors(u)), set(h.successors(u)));
+			assertEquals(set(g.predecessors(u)), set(h.predecessors(u)));
+			assertEquals(set(g.incidentEdges(u)), set(h.incidentEdges(u)));
+			assertEquals(set(g.outgoingEdges(u)), set(h.outgoingEdges(u)));
+			assertEquals(set(g.incomingEdges(u)), set(h.incomingEdges(u)));
+			for (int v : g.vertices()) {
+				assertEquals(g.areNeighbors(u, v), h.areNeighbors(u, v));
+				assertEquals(set(g.outgoingEdges(u, v)),
+						set(h.outgoingEdges(u, v)));
+				assertEquals(set(g.incidentEdges(u, v)),
+						set(h.incidentEdges(u, v)));
+			}
+		}
+	}
+
+	/*
+	 * The same random modifications on a lean graph and a default one.
+	 */
+	@Test
+	public void leanMode() {
+		Random r = new Random(3);
+		MultiGraph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		MultiGraph<Integer, Edge<Integer>> lean = new MultiGraph<Integer, Edge<Integer>>(
+				true);
+		List<Edge<Integer>> edges = new ArrayList<Edge<Integer>>();
+		for (int step = 0; step < 3000; step++) {
+			int n = 12;
+			int u = r.nextInt(n), v = r.nextInt(n);
+			switch (r.nextInt(6)) {
+			case 0:
+				assertEquals(g.addVertex(u), lean.addVertex(u));
+				break;
+			case 1:
+				assertEquals(g.removeVertex(u), lean.removeVertex(u));
+				break;
+			case 2:
+			case 3:
+				if (g.containsVertex(u) && g.containsVertex(v)) {
+					Edge<Integer> e = new DirectedEdge<Integer>(u, v);
+					assertTrue(g.addEdge(e));
+					assertTrue(lean.addEdge(e));
+					edges.add(e);
+				}
+				break;
+			default:
+				if (!edges.isEmpty()) {
+					Edge<Integer> e = edges.remove(r.nextInt(edges.size()));
+					assertEquals(g.removeEdge(e), lean.removeEdge(e));
+				}
+			}
+			if (step % 50 == 0)
+				assertSameAdjacency(g, lean);
+		}
+		assertSameAdjacency(g, lean);
+	}
+
+	@Test
+	public void isolatedVertex() {
+		MultiGraph<String, Edge<String>> g = new MultiGraph<String, Edge<String>>(
+				true);
+		g.addVertex("a");
+		g.addVertex("b");
+		assertEquals(0, g.degree("a"));
+		assertFalse(g.incidentEdges("a").iterator().hasNext());
+		assertFalse(g.areNeighbors("a", "b"));
+		Edge<String> ab = new DirectedEdge<String>("a", "b");
+		g.addEdge(ab);
+		g.removeEdge(ab);
+		assertEquals(0, g.degree("b"));
+		assertFalse(g.neighbors("b").iterator().hasNext());
+		assertFalse(g.predecessors("b").iterator().hasNext());
+		assertEquals(2, g.order());
+	}
+
+	/*
+	 * The neighbor relation remains while an edge in either direction or a
+	 * parallel edge links the vertices.
+	 */
+	@Test
+	public void neighborsAfterRemoval() {
+		for (boolean lean : new boolean[] { false, true }) {
+			MultiGraph<String, Edge<String>> g = new MultiGraph<String, Edge<String>>(
+					lean);
+			g.addVertex("a");
+			g.addVertex("b");
+			Edge<String> ab = new DirectedEdge<String>("a", "b");
+			Edge<String> ab2 = new DirectedEdge<String>("a", "b");
+			Edge<String> ba = new DirectedEdge<String>("b", "a");
+			g.addEdge(ab);
+			g.addEdge(ab2);
+			g.addEdge(ba);
+			g.removeEdge(ab);
+			assertTrue(g.areNeighbors("a", "b"));
+			assertEquals(1, Iterables.size(g.outgoingEdges("a", "b")));
+			g.removeEdge(ab2);
+			assertTrue(g.areNeighbors("a", "b"));
+			assertTrue(g.areNeighbors("b", "a"));
+			assertEquals(0, Iterables.size(g.successors("a")));
+			assertEquals(1, Iterables.size(g.predecessors("a")));
+			g.removeEdge(ba);
+			assertFalse(g.areNeighbors("a", "b"));
+			assertEquals(0, Iterables.size(g.neighbors("a")));
+		}
+	}
+}
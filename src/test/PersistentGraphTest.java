@@ -0,0 +1,147 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.DirectedEdge;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+import graph.PersistentGraph;
+
+public class PersistentGraphTest {
+	PersistentGraph<String, Edge<String>> g;
+	Edge<String> ab, ba, bc, cc;
+
+	/*
+	 * Edges equal when they have the same extremities and label.
+	 */
+	static final class Arc implements Edge<String> {
+		final String source;
+		final String target;
+		final int label;
+
+		Arc(String source, String target, int label) {
+			this.source = source;
+			this.target = target;
+			this.label = label;
+		}
+
+		public String source() {
+			return source;
+		}
+
+		public String target() {
+			return target;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Arc))
+				return false;
+			Arc a = (Arc) o;
+			return source.equals(a.source) && target.equals(a.target)
+					&& label == a.label;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(source, target, label);
+		}
+	}
+
+	@Before
+	public void init() {
+		g = new PersistentGraph<String, Edge<String>>();
+		g.addVertex("a");
+		g.addVertex("b");
+		g.addVertex("c");
+		ab = new DirectedEdge<String>("a", "b");
+		ba = new DirectedEdge<String>("b", "a");
+		bc = new DirectedEdge<String>("b", "c");
+		cc = new DirectedEdge<String>("c", "c");
+		g.addEdge(ab);
+		g.addEdge(ba);
+		g.addEdge(bc);
+		g.addEdge(cc);
+	}
+
+	@Test
+	public void sameAsMultiGraph() {
+		MultiGraph<String, Edge<String>> m = new MultiGraph<String, Edge<String>>(
+				g);
+		assertEquals(m, g);
+		for (String v : m.vertices()) {
+			assertEquals(m.degree(v), g.degree(v));
+			assertEquals(m.indegree(v), g.indegree(v));
+			assertEquals(Iterables.size(m.neighbors(v)),
+					Iterables.size(g.neighbors(v)));
+		}
+		assertTrue(g.areNeighbors("c", "c"));
+		assertEquals(2, Iterables.size(g.incidentEdges("a", "b")));
+	}
+
+	@Test
+	public void equalEdgeNotAddedTwice() {
+		g.addEdge(new Arc("a", "c", 1));
+		long version = g.version();
+		assertFalse(g.addEdge(new Arc("a", "c", 1)));
+		assertEquals(version, g.version());
+		assertEquals(5, g.size());
+		assertTrue(g.addEdge(new Arc("a", "c", 2)));
+		assertEquals(2, Iterables.size(g.outgoingEdges("a", "c")));
+		assertTrue(g.removeEdge(new Arc("a", "c", 1)));
+		assertEquals(1, Iterables.size(g.outgoingEdges("a", "c")));
+		assertTrue(g.areNeighbors("a", "c"));
+	}
+
+	@Test
+	public void neighborsAfterRemoval() {
+		g.removeEdge(ab);
+		// a and b stay neighbors through ba
+		assertTrue(g.areNeighbors("a", "b"));
+		assertEquals(0, Iterables.size(g.predecessors("b")));
+		g.removeEdge(ba);
+		assertFalse(g.areNeighbors("a", "b"));
+		g.removeVertex("c");
+		assertEquals(0, g.size());
+		assertEquals(0, g.degree("b"));
+	}
+
+	@Test
+	public void snapshotIsolation() {
+		PersistentGraph<String, Edge<String>> s = g.snapshot();
+		assertEquals(g, s);
+		g.removeVertex("b");
+		g.addVertex("d");
+		assertEquals(3, s.order());
+		assertEquals(4, s.size());
+		assertTrue(s.containsEdge(ab));
+		assertEquals(1, g.size());
+		s.addEdge(new DirectedEdge<String>("a", "c"));
+		assertFalse(g.containsVertex("b"));
+		assertEquals(1, g.size());
+		assertEquals(5, s.size());
+	}
+
+	@Test
+	public void iteratorOnVersion() {
+		Iterator<Edge<String>> it = g.edges().iterator();
+		Iterable<Edge<String>> out = g.outgoingEdges("b");
+		g.removeVertex("b");
+		int n = 0;
+		while (it.hasNext()) {
+			it.next();
+			n++;
+		}
+		assertEquals(4, n);
+		assertEquals(2, Iterables.size(out));
+	}
+}
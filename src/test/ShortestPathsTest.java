@@ -0,0 +1,440 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import graph.DirectedEdge;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+import util.Graphs;
+import util.Graphs.DistanceMatrix;
+import util.Graphs.Path;
+import util.Graphs.ShortestPaths;
+import util.Graphs.ShortestPathsMatrices;
+import util.NegativeCircuitException;
+import util.NegativeEdgeException;
+
+public class ShortestPathsTest {
+	static final double EPSILON = 1e-9;
+
+	MultiGraph<Integer, Edge<Integer>> g;
+	Map<Edge<Integer>, Double> weights;
+
+	/*
+	 * A random graph with parallel edges and loops, the weights being drawn
+	 * between min and max.
+	 */
+	private void randomGraph(Random r, int n, int m, double min, double max) {
+		g = new MultiGraph<Integer, Edge<Integer>>();
+		weights = new HashMap<Edge<Integer>, Double>();
+		for (int v = 0; v < n; v++)
+			g.addVertex(v);
+		for (int i = 0; i < m; i++)
+			addEdge(r.nextInt(n), r.nextInt(n),
+					min + (max - min) * r.nextDouble());
+	}
+
+	private Edge<Integer> addEdge(int u, int v, double w) {
+		Edge<Integer> e = new DirectedEdge<Integer>(u, v);
+		g.addEdge(e);
+		weights.put(e, w);
+		return e;
+	}
+
+	/*
+	 * The smallest weight of an edge from u to v, infinity if there is none.
+	 */
+	private double weight(int u, int v) {
+		double w = Double.POSITIVE_INFINITY;
+		for (Edge<Integer> e : g.outgoingEdges(u, v))
+			w = Math.min(w, weights.get(e));
+		return w;
+	}
+
+	/*
+	 * Weights base + p(u) - p(v), with a non negative base and a random
+	 * potential p: many edges are negative but no circuit is.
+	 */
+	private void potentialGraph(Random r, int n, int m) {
+		double[] p = new double[n];
+		for (int v = 0; v < n; v++)
+			p[v] = 20 * r.nextDouble();
+		randomGraph(r, n, 0, 0, 0);
+		for (int i = 0; i < m; i++) {
+			int u = r.nextInt(n), v = r.nextInt(n);
+			addEdge(u, v, 5 * r.nextDouble() + p[u] - p[v]);
+		}
+	}
+
+	/*
+	 * Whether a negative circuit can be reached from s: the distances still
+	 * decrease after n rounds of relaxation.
+	 */
+	private boolean negativeCircuitFrom(int s) {
+		int n = g.order();
+		double[] d = new double[n];
+		Arrays.fill(d, Double.POSITIVE_INFINITY);
+		d[s] = 0;
+		boolean modified = true;
+		for (int i = 0; i <= n && modified; i++) {
+			modified = false;
+			for (Edge<Integer> e : g.edges())
+				if (d[e.source()] + weights.get(e) < d[e.target()]) {
+					d[e.target()] = d[e.source()] + weights.get(e);
+					modified = true;
+				}
+		}
+		return modified;
+	}
+
+	/*
+	 * Consecutive vertices of the circuit, the last and the first included,
+	 * are joined by edges whose total weight is negative.
+	 */
+	private void assertNegativeCircuit(List<?> circuit) {
+		assertFalse(circuit.isEmpty());
+		double sum = 0;
+		for (int i = 0; i < circuit.size(); i++)
+			sum += weight((Integer) circuit.get(i),
+					(Integer) circuit.get((i + 1) % circuit.size()));
+		assertTrue(sum < 0);
+	}
+
+	private void assertDistances(Map<Integer, Double> expected,
+			Map<Integer, Double> actual) {
+		for (int v : g.vertices())
+			assertEquals(expected.get(v), actual.get(v), EPSILON);
+	}
+
+	/*
+	 * The predecessors give shortest paths: each one is followed by an edge
+	 * whose weight is the difference of the distances.
+	 */
+	private void assertTree(int source, ShortestPaths<Integer> sp) {
+		assertEquals(0, sp.distances.get(source), 0);
+		for (int v : g.vertices()) {
+			Integer u = sp.predecessors.get(v);
+			if (u == null)
+				assertTrue(v == source
+						|| sp.distances.get(v) == Double.POSITIVE_INFINITY);
+			else
+				assertEquals(sp.distances.get(v),
+						sp.distances.get(u) + weight(u, v), EPSILON);
+		}
+	}
+
+	/*
+	 * The path is made of edges of the graph and has the given length.
+	 */
+	private void assertPath(int s, int t, double length, Path<Integer> p) {
+		if (length == Double.POSITIVE_INFINITY) {
+			assertNull(p);
+			return;
+		}
+		List<Integer> vertices = p.vertices;
+		assertEquals(s, (int) vertices.get(0));
+		assertEquals(t, (int) vertices.get(vertices.size() - 1));
+		double sum = 0;
+		for (int i = 1; i < vertices.size(); i++)
+			sum += weight(vertices.get(i - 1), vertices.get(i));
+		assertEquals(length, sum, EPSILON);
+		assertEquals(length, p.length, EPSILON);
+	}
+
+	/*
+	 * The matrix gives the distances computed by Bellman-Ford's algorithm
+	 * from every vertex, and its paths are shortest paths.
+	 */
+	private void assertMatrix(DistanceMatrix<Integer> m) throws Exception {
+		assertEquals(g.order(), m.order());
+		for (int s : g.vertices()) {
+			ShortestPaths<Integer> expected = Graphs.bellmanFord(g, s, weights);
+			for (int t : g.vertices()) {
+				double d = expected.distances.get(t);
+				assertEquals(d, m.distance(s, t), EPSILON);
+				assertPath(s, t, d, m.path(s, t));
+				Integer u = m.predecessor(s, t);
+				if (u != null)
+					assertEquals(d, m.distance(s, u) + weight(u, t), EPSILON);
+			}
+		}
+	}
+
+	@Test
+	public void dijskstra() throws Exception {
+		Random r = new Random(15);
+		for (int round = 0; round < 50; round++) {
+			randomGraph(r, 1 + r.nextInt(60), r.nextInt(300), 0, 10);
+			int s = r.nextInt(g.order());
+			ShortestPaths<Integer> expected = Graphs.bellmanFord(g, s, weights);
+			ShortestPaths<Integer> sp = Graphs.dijskstra(g, s, weights);
+			assertDistances(expected.distances, sp.distances);
+			assertTree(s, sp);
+			int t = r.nextInt(g.order());
+			assertPath(s, t, expected.distances.get(t),
+					Graphs.dijskstra(g, s, t, weights::get));
+		}
+	}
+
+	@Test
+	public void bidirectionalDijskstra() throws Exception {
+		Random r = new Random(16);
+		for (int round = 0; round < 50; round++) {
+			randomGraph(r, 1 + r.nextInt(60), r.nextInt(200), 0, 10);
+			for (int k = 0; k < 5; k++) {
+				int s = r.nextInt(g.order());
+				int t = r.nextInt(g.order());
+				assertPath(s, t,
+						Graphs.dijskstra(g, s, weights).distances.get(t),
+						Graphs.bidirectionalDijskstra(g, s, t, weights::get));
+			}
+		}
+	}
+
+	/*
+	 * The first vertex settled by both searches is on a path of length 10,
+	 * the shortest path has length 9.
+	 */
+	@Test
+	public void bidirectionalMeeting() throws Exception {
+		randomGraph(new Random(), 5, 0, 0, 0);
+		int s = 0, m = 1, p = 2, q = 3, t = 4;
+		addEdge(s, m, 5);
+		addEdge(m, t, 5);
+		addEdge(s, p, 3);
+		addEdge(p, q, 3);
+		addEdge(q, t, 3);
+		Path<Integer> path = Graphs.bidirectionalDijskstra(g, s, t,
+				weights::get);
+		assertPath(s, t, 9, path);
+		assertEquals(4, path.vertices.size());
+		assertPath(s, s, 0, Graphs.bidirectionalDijskstra(g, s, s,
+				weights::get));
+		assertNull(Graphs.bidirectionalDijskstra(g, t, s, weights::get));
+	}
+
+	/*
+	 * With weights between 1 and 10, a delta of 0.5 makes every edge heavy and
+	 * a delta of 100 every edge light; the default delta mixes both.
+	 */
+	@Test
+	public void deltaStepping() throws Exception {
+		Random r = new Random(18);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int round = 0; round < 30; round++) {
+				randomGraph(r, 1 + r.nextInt(100), r.nextInt(500), 1, 10);
+				int s = r.nextInt(g.order());
+				ShortestPaths<Integer> expected = Graphs.dijskstra(g, s,
+						weights);
+				for (double delta : new double[] { 0.5, 100, 0 }) {
+					ShortestPaths<Integer> sp = Graphs.deltaStepping(g, s,
+							weights::get, delta, pool);
+					assertDistances(expected.distances, sp.distances);
+					assertTree(s, sp);
+				}
+				// zero weights are light whatever delta is
+				addEdge(r.nextInt(g.order()), r.nextInt(g.order()), 0);
+				ShortestPaths<Integer> sp = Graphs.deltaStepping(g, s,
+						weights::get);
+				assertDistances(Graphs.dijskstra(g, s, weights).distances,
+						sp.distances);
+				assertTree(s, sp);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(expected = NegativeEdgeException.class)
+	public void deltaSteppingNegativeEdge() throws Exception {
+		randomGraph(new Random(18), 10, 30, 1, 10);
+		addEdge(3, 4, -1);
+		Graphs.deltaStepping(g, 0, weights::get);
+	}
+
+	@Test
+	public void bellmanFordQueue() throws Exception {
+		Random r = new Random(19);
+		for (int round = 0; round < 50; round++) {
+			potentialGraph(r, 1 + r.nextInt(60), r.nextInt(300));
+			int s = r.nextInt(g.order());
+			ShortestPaths<Integer> sp = Graphs.bellmanFordQueue(g, s, weights);
+			assertDistances(Graphs.bellmanFord(g, s, weights).distances,
+					sp.distances);
+			assertTree(s, sp);
+		}
+	}
+
+	@Test
+	public void bellmanFordQueueNegativeCircuit() throws Exception {
+		Random r = new Random(19);
+		int found = 0;
+		for (int round = 0; round < 200; round++) {
+			randomGraph(r, 1 + r.nextInt(40), r.nextInt(100), -3, 10);
+			int s = r.nextInt(g.order());
+			boolean expected = negativeCircuitFrom(s);
+			try {
+				ShortestPaths<Integer> sp = Graphs.bellmanFordQueue(g, s,
+						weights);
+				assertFalse(expected);
+				assertTree(s, sp);
+			} catch (NegativeCircuitException e) {
+				assertTrue(expected);
+				assertNegativeCircuit(e.circuit());
+				found++;
+			}
+		}
+		assertTrue(found > 0);
+	}
+
+	/*
+	 * Orders above the side of the blocks (64), with an incomplete last
+	 * block.
+	 */
+	@Test
+	public void floydWarshallMatrix() throws Exception {
+		Random r = new Random(20);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int n : new int[] { 1, 63, 64, 65, 150, 200 }) {
+				potentialGraph(r, n, 5 * n);
+				assertMatrix(Graphs.floydWarshallMatrix(g, weights::get, pool));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void floydWarshall() throws Exception {
+		randomGraph(new Random(20), 130, 600, 0, 10);
+		DistanceMatrix<Integer> m = Graphs.floydWarshallMatrix(g,
+				weights::get);
+		ShortestPathsMatrices<Integer> spm = Graphs.floydWarshall(g, weights);
+		for (int s : g.vertices())
+			for (int t : g.vertices()) {
+				assertEquals(m.distance(s, t), spm.distances.get(s).get(t), 0);
+				assertEquals(m.predecessor(s, t), spm.predecessors.get(s)
+						.get(t));
+			}
+	}
+
+	/*
+	 * A negative circuit across three blocks, and a negative loop.
+	 */
+	@Test
+	public void floydWarshallNegativeCircuit() throws Exception {
+		potentialGraph(new Random(20), 150, 600);
+		addEdge(10, 100, -50);
+		addEdge(100, 140, 1);
+		addEdge(140, 10, 1);
+		try {
+			Graphs.floydWarshallMatrix(g, weights::get);
+			fail();
+		} catch (NegativeCircuitException e) {
+			assertNegativeCircuit(e.circuit());
+		}
+		potentialGraph(new Random(20), 150, 600);
+		addEdge(90, 90, -1);
+		try {
+			Graphs.floydWarshallMatrix(g, weights::get);
+			fail();
+		} catch (NegativeCircuitException e) {
+			assertEquals(Arrays.asList(90), e.circuit());
+		}
+	}
+
+	@Test
+	public void johnson() throws Exception {
+		Random r = new Random(21);
+		for (int round = 0; round < 20; round++) {
+			if (round % 2 == 0)
+				potentialGraph(r, 1 + r.nextInt(50), r.nextInt(250));
+			else
+				randomGraph(r, 1 + r.nextInt(50), r.nextInt(250), 0, 10);
+			assertMatrix(Graphs.johnson(g, weights::get));
+		}
+	}
+
+	@Test
+	public void johnsonRows() throws Exception {
+		potentialGraph(new Random(21), 40, 200);
+		Map<Integer, Map<Integer, Double>> rows = new ConcurrentHashMap<Integer, Map<Integer, Double>>();
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			Graphs.johnson(g, weights::get, (index, source, distances, predecessors) -> {
+				Map<Integer, Double> row = new HashMap<Integer, Double>();
+				for (int id = 0; id < distances.length; id++)
+					row.put(index.vertex(id), distances[id]);
+				assertTrue(rows.put(source, row) == null);
+			}, pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(g.order(), rows.size());
+		for (int s : g.vertices())
+			assertDistances(Graphs.bellmanFord(g, s, weights).distances,
+					rows.get(s));
+	}
+
+	@Test
+	public void johnsonNegativeCircuit() throws Exception {
+		potentialGraph(new Random(21), 30, 100);
+		addEdge(7, 12, -30);
+		addEdge(12, 20, 1);
+		addEdge(20, 7, 1);
+		try {
+			Graphs.johnson(g, weights::get);
+			fail();
+		} catch (NegativeCircuitException e) {
+			assertNegativeCircuit(e.circuit());
+		}
+	}
+
+	/*
+	 * Points in the unit square, the weight of an edge being at least the
+	 * distance between its ends, so that the euclidean distance to the
+	 * target is a consistent heuristic.
+	 */
+	@Test
+	public void aStar() throws Exception {
+		Random r = new Random(17);
+		for (int round = 0; round < 30; round++) {
+			int n = 1 + r.nextInt(80);
+			double[] x = new double[n], y = new double[n];
+			for (int v = 0; v < n; v++) {
+				x[v] = r.nextDouble();
+				y[v] = r.nextDouble();
+			}
+			randomGraph(r, n, 0, 0, 0);
+			for (int i = r.nextInt(4 * n); i > 0; i--) {
+				int u = r.nextInt(n), v = r.nextInt(n);
+				addEdge(u, v, Math.hypot(x[u] - x[v], y[u] - y[v])
+						* (1 + r.nextDouble()));
+			}
+			for (int k = 0; k < 5; k++) {
+				int s = r.nextInt(n);
+				int t = r.nextInt(n);
+				assertPath(s, t,
+						Graphs.dijskstra(g, s, weights).distances.get(t),
+						Graphs.aStar(g, s, t, weights::get,
+								Graphs.euclideanHeuristic(t, v -> x[v],
+										v -> y[v])));
+			}
+		}
+	}
+}
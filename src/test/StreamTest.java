@@ -0,0 +1,160 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import graph.CompactGraph;
+import graph.DenseGraph;
+import graph.DirectedEdge;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.MultiGraph;
+
+public class StreamTest {
+	MultiGraph<Integer, Edge<Integer>> g;
+	MultiGraph<Integer, Edge<Integer>> lean;
+	DenseGraph<Integer, Edge<Integer>> dense;
+
+	/*
+	 * The same random graph on 200 vertices, so that the bit rows have four
+	 * words, with parallel edges and loops.
+	 */
+	@Before
+	public void init() {
+		Random r = new Random(13);
+		g = new MultiGraph<Integer, Edge<Integer>>();
+		lean = new MultiGraph<Integer, Edge<Integer>>(true);
+		dense = new DenseGraph<Integer, Edge<Integer>>();
+		for (int v = 0; v < 200; v++) {
+			g.addVertex(v);
+			lean.addVertex(v);
+			dense.addVertex(v);
+		}
+		for (int i = 0; i < 1500; i++) {
+			Edge<Integer> e = new DirectedEdge<Integer>(r.nextInt(200),
+					r.nextInt(200));
+			g.addEdge(e);
+			lean.addEdge(e);
+			dense.addEdge(e);
+		}
+	}
+
+	private void removeVertices() {
+		for (int v = 0; v < 200; v += 7) {
+			g.removeVertex(v);
+			lean.removeVertex(v);
+			dense.removeVertex(v);
+		}
+	}
+
+	private List<Graph<Integer, Edge<Integer>>> graphs() {
+		return Arrays.<Graph<Integer, Edge<Integer>>> asList(g, lean, dense,
+				g.freeze());
+	}
+
+	private static List<String> sorted(Stream<?> stream) {
+		return stream.map(Object::toString).sorted()
+				.collect(Collectors.toList());
+	}
+
+	private static List<String> sorted(Iterable<?> iterable) {
+		List<String> list = new ArrayList<String>();
+		for (Object o : iterable)
+			list.add(o.toString());
+		list.sort(null);
+		return list;
+	}
+
+	/*
+	 * Splits the spliterator down to single elements, checking the sizes of
+	 * the parts, and returns the elements in the order of the parts.
+	 */
+	private static <T> List<T> split(Spliterator<T> s) {
+		List<T> elements = new ArrayList<T>();
+		long size = s.estimateSize();
+		Spliterator<T> prefix = s.trySplit();
+		if (prefix == null)
+			s.forEachRemaining(elements::add);
+		else {
+			if (s.hasCharacteristics(Spliterator.SUBSIZED))
+				assertEquals(size, prefix.estimateSize() + s.estimateSize());
+			elements.addAll(split(prefix));
+			// advance one element before splitting again
+			s.tryAdvance(elements::add);
+			elements.addAll(split(s));
+		}
+		if (s.hasCharacteristics(Spliterator.SIZED))
+			assertEquals(size, elements.size());
+		return elements;
+	}
+
+	private static void assertStreams(Graph<Integer, Edge<Integer>> h) {
+		assertEquals(sorted(h.vertices()), sorted(h.vertexStream().parallel()));
+		assertEquals(sorted(h.edges()), sorted(h.edgeStream().parallel()));
+		assertEquals(new ArrayList<Integer>(h.vertices()),
+				split(h.vertexStream().spliterator()));
+		assertEquals(sorted(h.edges()),
+				sorted(split(h.edgeStream().spliterator())));
+		for (int v : h.vertices()) {
+			List<String> neighbors = sorted(h.neighbors(v));
+			assertEquals(neighbors, sorted(h.neighborStream(v).parallel()));
+			assertEquals(neighbors,
+					sorted(split(h.neighborStream(v).spliterator())));
+		}
+	}
+
+	@Test
+	public void streams() {
+		for (Graph<Integer, Edge<Integer>> h : graphs())
+			assertStreams(h);
+	}
+
+	@Test
+	public void streamsAfterRemovals() {
+		removeVertices();
+		for (Graph<Integer, Edge<Integer>> h : graphs())
+			assertStreams(h);
+	}
+
+	/*
+	 * The vertex and edge streams are sized when no id is free.
+	 */
+	@Test
+	public void exactSizes() {
+		for (Graph<Integer, Edge<Integer>> h : graphs()) {
+			assertEquals(200, h.vertexStream().spliterator()
+					.getExactSizeIfKnown());
+			assertEquals(h.size(), h.edgeStream().spliterator()
+					.getExactSizeIfKnown());
+		}
+		removeVertices();
+		assertEquals(-1, g.vertexStream().spliterator().getExactSizeIfKnown());
+		assertEquals(-1, dense.vertexStream().spliterator()
+				.getExactSizeIfKnown());
+		CompactGraph<Integer, Edge<Integer>> c = g.freeze();
+		assertEquals(c.order(), c.vertexStream().spliterator()
+				.getExactSizeIfKnown());
+		g.compactIds();
+		assertEquals(g.order(), g.vertexStream().spliterator()
+				.getExactSizeIfKnown());
+		assertEquals(g.size(), g.edgeStream().spliterator()
+				.getExactSizeIfKnown());
+		for (Graph<Integer, Edge<Integer>> h : Arrays
+				.<Graph<Integer, Edge<Integer>>> asList(dense, c))
+			for (int v : h.vertices())
+				assertEquals(h.neighborStream(v).count(), h.neighborStream(v)
+						.spliterator().getExactSizeIfKnown());
+		assertTrue(g.vertexStream().parallel().allMatch(g::containsVertex));
+	}
+}
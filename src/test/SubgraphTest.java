@@ -0,0 +1,237 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import collections.Iterables;
+import graph.ConcurrentMultiGraph;
+import graph.DirectedEdge;
+import graph.Graph;
+import graph.Graph.Edge;
+import graph.InducedSubgraph;
+import graph.MultiGraph;
+import graph.PartialGraph;
+import graph.Subgraph;
+
+public class SubgraphTest {
+	MultiGraph<Integer, Edge<Integer>> g;
+
+	@Before
+	public void init() {
+		Random r = new Random(7);
+		g = new MultiGraph<Integer, Edge<Integer>>();
+		for (int v = 0; v < 30; v++)
+			g.addVertex(v);
+		for (int i = 0; i < 120; i++)
+			g.addEdge(new DirectedEdge<Integer>(r.nextInt(30), r.nextInt(30)));
+	}
+
+	private static <T> Set<T> set(Iterable<T> iterable) {
+		return new HashSet<T>(Iterables.fillList(iterable));
+	}
+
+	/*
+	 * The graph with the given vertices and the given edges of g.
+	 */
+	private MultiGraph<Integer, Edge<Integer>> copy(Set<Integer> vertices,
+			Set<Edge<Integer>> edges) {
+		MultiGraph<Integer, Edge<Integer>> h = new MultiGraph<Integer, Edge<Integer>>();
+		for (int v : vertices)
+			h.addVertex(v);
+		for (Edge<Integer> e : edges)
+			h.addEdge(e);
+		return h;
+	}
+
+	private static void assertSameGraph(Graph<Integer, Edge<Integer>> expected,
+			Graph<Integer, Edge<Integer>> view) {
+		assertEquals(expected.order(), view.order());
+		assertEquals(expected.size(), view.size());
+		assertEquals(expected.vertices(), view.vertices());
+		assertEquals(expected.edges(), view.edges());
+		assertEquals(expected.edges(), set(view.edges()));
+		for (int u : expected.vertices()) {
+			assertTrue(view.containsVertex(u));
+			assertEquals(expected.degree(u), view.degree(u));
+			assertEquals(expected.outdegree(u), view.outdegree(u));
+			assertEquals(set(expected.neighbors(u)), set(view.neighbors(u)));
+			assertEquals(set(expected.successors(u)), set(view.successors(u)));
+			assertEquals(set(expected.predecessors(u)),
+					set(view.predecessors(u)));
+			assertEquals(set(expected.incidentEdges(u)),
+					set(view.incidentEdges(u)));
+			for (int v : expected.vertices())
+				assertEquals(expected.areNeighbors(u, v),
+						view.areNeighbors(u, v));
+		}
+		for (Edge<Integer> e : expected.edges())
+			assertTrue(view.containsEdge(e));
+	}
+
+	private Set<Integer> someVertices(Random r) {
+		Set<Integer> vertices = new HashSet<Integer>();
+		for (int v : g.vertices())
+			if (r.nextBoolean())
+				vertices.add(v);
+		return vertices;
+	}
+
+	private Set<Edge<Integer>> someEdges(Random r, Graph<Integer, Edge<Integer>> h) {
+		Set<Edge<Integer>> edges = new HashSet<Edge<Integer>>();
+		for (Edge<Integer> e : h.edges())
+			if (r.nextBoolean())
+				edges.add(e);
+		return edges;
+	}
+
+	private static Set<Edge<Integer>> induced(Graph<Integer, Edge<Integer>> h,
+			Set<Integer> vertices) {
+		Set<Edge<Integer>> edges = new HashSet<Edge<Integer>>();
+		for (Edge<Integer> e : h.edges())
+			if (vertices.contains(e.source()) && vertices.contains(e.target()))
+				edges.add(e);
+		return edges;
+	}
+
+	@Test
+	public void views() {
+		Random r = new Random(7);
+		for (int round = 0; round < 20; round++) {
+			Set<Integer> vertices = someVertices(r);
+			assertSameGraph(copy(vertices, induced(g, vertices)),
+					g.inducedSubgraph(vertices));
+			Set<Edge<Integer>> edges = someEdges(r, g);
+			assertSameGraph(copy(g.vertices(), edges), g.partialGraph(edges));
+			Set<Edge<Integer>> subEdges = induced(g, vertices);
+			subEdges.retainAll(edges);
+			assertSameGraph(copy(vertices, subEdges),
+					g.subgraph(vertices, subEdges));
+		}
+	}
+
+	@Test
+	public void viewsOfViews() {
+		Random r = new Random(8);
+		for (int round = 0; round < 20; round++) {
+			Set<Edge<Integer>> edges = someEdges(r, g);
+			PartialGraph<Integer, Edge<Integer>> partial = g.partialGraph(edges);
+			Set<Integer> vertices = someVertices(r);
+			Set<Edge<Integer>> expected = induced(partial, vertices);
+			InducedSubgraph<Integer, Edge<Integer>> induced = partial
+					.inducedSubgraph(vertices);
+			assertSameGraph(copy(vertices, expected), induced);
+			Set<Edge<Integer>> some = someEdges(r, induced);
+			assertSameGraph(copy(vertices, some), induced.partialGraph(some));
+		}
+	}
+
+	@Test
+	public void modifications() {
+		Set<Integer> vertices = new HashSet<Integer>(Arrays.asList(0, 1, 2,
+				3));
+		Subgraph<Integer, Edge<Integer>> s = g.subgraph(vertices,
+				new HashSet<Edge<Integer>>());
+		Edge<Integer> e = null;
+		for (Edge<Integer> f : g.edges())
+			if (vertices.contains(f.source()) && vertices.contains(f.target()))
+				e = f;
+		assertTrue(s.addEdge(e));
+		assertFalse(s.addEdge(e));
+		assertEquals(1, s.size());
+		assertTrue(s.removeVertex(e.source()));
+		assertEquals(0, s.size());
+		assertEquals(3, s.order());
+		// the supergraph is not modified
+		assertTrue(g.containsEdge(e));
+		assertEquals(30, g.order());
+		try {
+			s.addVertex(30);
+			fail();
+		} catch (IllegalArgumentException ex) {
+		}
+		InducedSubgraph<Integer, Edge<Integer>> induced = g
+				.inducedSubgraph(vertices);
+		int size = induced.size();
+		induced.removeVertex(0);
+		assertEquals(induced(g, induced.vertices()).size(), induced.size());
+		induced.addVertex(0);
+		assertEquals(size, induced.size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void partialGraphKeepsVertices() {
+		g.partialGraph(new HashSet<Edge<Integer>>()).removeVertex(0);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void inducedSubgraphKeepsEdges() {
+		InducedSubgraph<Integer, Edge<Integer>> s = g.inducedSubgraph(g
+				.vertices());
+		s.removeEdge(s.edges().iterator().next());
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void supergraphModified() {
+		PartialGraph<Integer, Edge<Integer>> s = g.partialGraph(g.edges());
+		g.addVertex(30);
+		s.order();
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void iteratorFailFast() {
+		PartialGraph<Integer, Edge<Integer>> s = g.partialGraph(g.edges());
+		Iterator<Edge<Integer>> i = s.edges().iterator();
+		s.removeEdge(i.next());
+		i.next();
+	}
+
+	@Test
+	public void viewOfViewFailFast() {
+		InducedSubgraph<Integer, Edge<Integer>> s = g.inducedSubgraph(g
+				.vertices());
+		PartialGraph<Integer, Edge<Integer>> p = s.partialGraph(s.edges());
+		s.removeVertex(0);
+		try {
+			p.size();
+			fail();
+		} catch (ConcurrentModificationException ex) {
+		}
+		p = g.inducedSubgraph(g.vertices()).partialGraph(g.edges());
+		g.removeVertex(0);
+		try {
+			p.vertices().contains(1);
+			fail();
+		} catch (ConcurrentModificationException ex) {
+		}
+	}
+
+	/*
+	 * A graph without ids: the subgraph gives its own ids.
+	 */
+	@Test
+	public void localIds() {
+		ConcurrentMultiGraph<Integer, Edge<Integer>> c = new ConcurrentMultiGraph<Integer, Edge<Integer>>();
+		for (int v : g.vertices())
+			c.addVertex(v);
+		for (Edge<Integer> e : g.edges())
+			c.addEdge(e);
+		Random r = new Random(9);
+		Set<Integer> vertices = someVertices(r);
+		assertSameGraph(copy(vertices, induced(g, vertices)),
+				c.inducedSubgraph(vertices));
+		Set<Edge<Integer>> edges = someEdges(r, g);
+		assertSameGraph(copy(g.vertices(), edges), c.partialGraph(edges));
+	}
+}
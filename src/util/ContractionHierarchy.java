@@ -0,0 +1,695 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+import collections.IndexedHeap;
+import graph.Graph;
+import util.Graphs.Path;
+
+import static graph.Graph.Edge;
+
+/**
+ * A contraction hierarchy of a weighted graph, answering point to point
+ * shortest path queries much faster than {@link Graphs#dijskstra}.
+ * <p>
+ * The vertices are contracted one after the other: a contracted vertex is
+ * removed from the graph and shortcuts are added between its neighbors when
+ * it lies on their only shortest path. The hierarchy keeps the edges and the
+ * shortcuts, each one leading either upward (to a vertex contracted later) or
+ * downward. A query is a bidirectional Dijskstra's search using only the
+ * upward arcs from the source and the downward arcs to the target, which
+ * explores a few hundred vertices on road-like graphs; the shortcuts of the
+ * path found are then unpacked into edges of the graph.
+ * <p>
+ * The preprocessing contracts at each round an independent set of vertices
+ * in parallel, using the common fork/join pool. The hierarchy is a snapshot:
+ * it does not follow the modifications of the graph or of the weights. It is
+ * serializable when the vertices are, see {@link #write(OutputStream)} and
+ * {@link #read(InputStream)}. The queries can be run concurrently.
+ */
+public final class ContractionHierarchy<V> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Object[] vertices;
+	private final HashMap<V, Integer> ids;
+	// arcs of the hierarchy, first and second are the arcs replaced by a
+	// shortcut, -1 for an edge of the graph
+	private final int[] tail;
+	private final int[] head;
+	private final double[] weight;
+	private final int[] first;
+	private final int[] second;
+	// arcs to a vertex contracted later, by tail
+	private final int[] upStart;
+	private final int[] up;
+	// arcs from a vertex contracted later, by head
+	private final int[] downStart;
+	private final int[] down;
+	private final int shortcuts;
+
+	private transient ThreadLocal<Search> searches;
+
+	private ContractionHierarchy(Builder b, HashMap<V, Integer> ids) {
+		int n = b.n;
+		int m = b.arcs;
+		this.vertices = b.vertices;
+		this.ids = ids;
+		this.tail = Arrays.copyOf(b.tail, m);
+		this.head = Arrays.copyOf(b.head, m);
+		this.weight = Arrays.copyOf(b.weight, m);
+		this.first = Arrays.copyOf(b.first, m);
+		this.second = Arrays.copyOf(b.second, m);
+		this.shortcuts = m - b.edges;
+		upStart = new int[n + 1];
+		downStart = new int[n + 1];
+		for (int a = 0; a < m; a++)
+			if (b.rank[tail[a]] < b.rank[head[a]])
+				upStart[tail[a] + 1]++;
+			else if (b.rank[tail[a]] > b.rank[head[a]])
+				downStart[head[a] + 1]++;
+		for (int v = 0; v < n; v++) {
+			upStart[v + 1] += upStart[v];
+			downStart[v + 1] += downStart[v];
+		}
+		up = new int[upStart[n]];
+		down = new int[downStart[n]];
+		int[] u = Arrays.copyOf(upStart, n);
+		int[] d = Arrays.copyOf(downStart, n);
+		for (int a = 0; a < m; a++)
+			if (b.rank[tail[a]] < b.rank[head[a]])
+				up[u[tail[a]]++] = a;
+			else if (b.rank[tail[a]] > b.rank[head[a]])
+				down[d[head[a]]++] = a;
+		searches = ThreadLocal.withInitial(Search::new);
+	}
+
+	/**
+	 * Build the contraction hierarchy of a graph.
+	 * 
+	 * @param g
+	 *            graph
+	 * @param weights
+	 *            for each edge of g, distance between the origin and the target
+	 *            of the edge. The weights must be not negative.
+	 * @throws NegativeEdgeException
+	 *             if an edge has a negative weight
+	 */
+	public static <V, E extends Edge<V>> ContractionHierarchy<V> build(
+			Graph<V, E> g, ToDoubleFunction<? super E> weights)
+			throws NegativeEdgeException {
+		HashMap<V, Integer> ids = new HashMap<V, Integer>();
+		Object[] vertices = new Object[g.order()];
+		for (V v : g.vertices()) {
+			vertices[ids.size()] = v;
+			ids.put(v, ids.size());
+		}
+		Builder b = new Builder(vertices, g.size());
+		for (E e : g.edges()) {
+			double w = weights.applyAsDouble(e);
+			if (w < 0)
+				throw new NegativeEdgeException(e, w);
+			int s = ids.get(e.source());
+			int t = ids.get(e.target());
+			if (s != t)
+				b.addArc(s, t, w, -1, -1);
+		}
+		b.edges = b.arcs;
+		b.contract();
+		return new ContractionHierarchy<V>(b, ids);
+	}
+
+	/**
+	 * Returns the number of vertices.
+	 */
+	public int order() {
+		return vertices.length;
+	}
+
+	/**
+	 * Returns the number of shortcuts added by the preprocessing.
+	 */
+	public int shortcuts() {
+		return shortcuts;
+	}
+
+	/**
+	 * Returns the length of a shortest path from source to target, infinity
+	 * if target cannot be reached from source.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if source or target is not a vertex of the graph
+	 */
+	public double distance(V source, V target) {
+		Search s = searches.get();
+		try {
+			s.run(id(source), id(target));
+			return s.mu;
+		} finally {
+			s.reset();
+		}
+	}
+
+	/**
+	 * Returns a shortest path from source to target, or null if target cannot
+	 * be reached from source.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if source or target is not a vertex of the graph
+	 */
+	public Path<V> path(V source, V target) {
+		Search s = searches.get();
+		try {
+			int t = id(target);
+			s.run(id(source), t);
+			if (s.meeting < 0)
+				return null;
+			// arcs of the path in the hierarchy
+			List<Integer> arcs = new ArrayList<Integer>();
+			for (int v = s.meeting; s.forwardArc[v] >= 0; v = tail[s.forwardArc[v]])
+				arcs.add(s.forwardArc[v]);
+			int[] stack = new int[16];
+			int size = 0;
+			for (int v = s.meeting; s.backwardArc[v] >= 0; v = head[s.backwardArc[v]]) {
+				if (size == stack.length)
+					stack = Arrays.copyOf(stack, 2 * size);
+				stack[size++] = s.backwardArc[v];
+			}
+			// the stack holds the arcs to unpack, the last one first
+			for (int i = size - 1, j = 0; i > j; i--, j++) {
+				int a = stack[i];
+				stack[i] = stack[j];
+				stack[j] = a;
+			}
+			for (int a : arcs) {
+				if (size == stack.length)
+					stack = Arrays.copyOf(stack, 2 * size);
+				stack[size++] = a;
+			}
+			List<V> path = new ArrayList<V>();
+			path.add(source);
+			while (size > 0) {
+				int a = stack[--size];
+				if (first[a] < 0)
+					path.add(vertex(head[a]));
+				else {
+					if (size + 2 > stack.length)
+						stack = Arrays.copyOf(stack, 2 * stack.length);
+					stack[size++] = second[a];
+					stack[size++] = first[a];
+				}
+			}
+			return new Path<V>(s.mu, path);
+		} finally {
+			s.reset();
+		}
+	}
+
+	/**
+	 * Write the hierarchy to a stream, to be read by {@link #read(InputStream)}.
+	 */
+	public void write(OutputStream out) throws IOException {
+		ObjectOutputStream o = new ObjectOutputStream(out);
+		o.writeObject(this);
+		o.flush();
+	}
+
+	/**
+	 * Read a hierarchy written by {@link #write(OutputStream)}.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V> ContractionHierarchy<V> read(InputStream in)
+			throws IOException, ClassNotFoundException {
+		return (ContractionHierarchy<V>) new ObjectInputStream(in).readObject();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		searches = ThreadLocal.withInitial(Search::new);
+	}
+
+	private int id(V v) {
+		Integer id = ids.get(v);
+		if (id == null)
+			throw new IllegalArgumentException("Unknown vertex " + v);
+		return id;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V vertex(int id) {
+		return (V) vertices[id];
+	}
+
+	/*
+	 * State of a query, reused by the queries of a thread.
+	 */
+	private final class Search {
+		final double[] forward = new double[vertices.length];
+		final double[] backward = new double[vertices.length];
+		final int[] forwardArc = new int[vertices.length];
+		final int[] backwardArc = new int[vertices.length];
+		final IndexedHeap forwardHeap = new IndexedHeap(vertices.length);
+		final IndexedHeap backwardHeap = new IndexedHeap(vertices.length);
+		int[] touched = new int[16];
+		int touchedSize;
+		double mu;
+		int meeting;
+
+		Search() {
+			Arrays.fill(forward, Double.POSITIVE_INFINITY);
+			Arrays.fill(backward, Double.POSITIVE_INFINITY);
+			Arrays.fill(forwardArc, -1);
+			Arrays.fill(backwardArc, -1);
+		}
+
+		void run(int s, int t) {
+			mu = s == t ? 0 : Double.POSITIVE_INFINITY;
+			meeting = s == t ? s : -1;
+			reach(s, true, 0, -1);
+			reach(t, false, 0, -1);
+			while (true) {
+				boolean f = !forwardHeap.isEmpty()
+						&& forwardHeap.priority(forwardHeap.peek()) < mu;
+				boolean b = !backwardHeap.isEmpty()
+						&& backwardHeap.priority(backwardHeap.peek()) < mu;
+				if (f && b)
+					f = forwardHeap.priority(forwardHeap.peek()) <= backwardHeap
+							.priority(backwardHeap.peek());
+				else if (!b && !f)
+					return;
+				if (f)
+					settle(forwardHeap.poll(), true);
+				else
+					settle(backwardHeap.poll(), false);
+			}
+		}
+
+		/*
+		 * Relax the upward arcs of u in the forward search, the downward ones
+		 * in the backward search, unless u is stalled: reached with a
+		 * shorter distance from a vertex contracted later.
+		 */
+		void settle(int u, boolean isForward) {
+			double[] d = isForward ? forward : backward;
+			int[] stalling = isForward ? down : up;
+			int[] stallingStart = isForward ? downStart : upStart;
+			for (int i = stallingStart[u]; i < stallingStart[u + 1]; i++) {
+				int a = stalling[i];
+				if (d[isForward ? tail[a] : head[a]] + weight[a] < d[u])
+					return;
+			}
+			int[] arcs = isForward ? up : down;
+			int[] start = isForward ? upStart : downStart;
+			for (int i = start[u]; i < start[u + 1]; i++) {
+				int a = arcs[i];
+				int v = isForward ? head[a] : tail[a];
+				double dv = d[u] + weight[a];
+				if (dv < d[v])
+					reach(v, isForward, dv, a);
+			}
+		}
+
+		void reach(int v, boolean isForward, double dv, int a) {
+			if (forward[v] == Double.POSITIVE_INFINITY
+					&& backward[v] == Double.POSITIVE_INFINITY) {
+				if (touchedSize == touched.length)
+					touched = Arrays.copyOf(touched, 2 * touchedSize);
+				touched[touchedSize++] = v;
+			}
+			if (isForward) {
+				forward[v] = dv;
+				forwardArc[v] = a;
+				forwardHeap.insertOrDecrease(v, dv);
+			} else {
+				backward[v] = dv;
+				backwardArc[v] = a;
+				backwardHeap.insertOrDecrease(v, dv);
+			}
+			if (forward[v] + backward[v] < mu) {
+				mu = forward[v] + backward[v];
+				meeting = v;
+			}
+		}
+
+		void reset() {
+			for (int i = 0; i < touchedSize; i++) {
+				int v = touched[i];
+				forward[v] = backward[v] = Double.POSITIVE_INFINITY;
+				forwardArc[v] = backwardArc[v] = -1;
+			}
+			touchedSize = 0;
+			forwardHeap.clear();
+			backwardHeap.clear();
+		}
+	}
+
+	/*
+	 * The graph during the contraction, with the arcs of the hierarchy built
+	 * so far.
+	 */
+	private static final class Builder {
+		// vertices settled by a witness search before giving up
+		static final int SETTLED_LIMIT = 500;
+
+		final Object[] vertices;
+		final int n;
+		int arcs;
+		int edges;
+		int[] tail;
+		int[] head;
+		double[] weight;
+		int[] first;
+		int[] second;
+		// arcs of each vertex between vertices not yet contracted
+		final int[][] out;
+		final int[][] in;
+		final int[] outSize;
+		final int[] inSize;
+		final boolean[] contracted;
+		final int[] rank;
+		// last contracted vertex of which each vertex was updated as neighbor
+		final int[] updated;
+		final ThreadLocal<Witness> witnesses = ThreadLocal
+				.withInitial(Witness::new);
+
+		Builder(Object[] vertices, int size) {
+			this.vertices = vertices;
+			n = vertices.length;
+			int capacity = Math.max(2 * size, 16);
+			tail = new int[capacity];
+			head = new int[capacity];
+			weight = new double[capacity];
+			first = new int[capacity];
+			second = new int[capacity];
+			out = new int[n][];
+			in = new int[n][];
+			outSize = new int[n];
+			inSize = new int[n];
+			contracted = new boolean[n];
+			rank = new int[n];
+			updated = new int[n];
+			Arrays.fill(updated, -1);
+		}
+
+		void addArc(int s, int t, double w, int a, int b) {
+			if (arcs == tail.length) {
+				int capacity = 2 * arcs;
+				tail = Arrays.copyOf(tail, capacity);
+				head = Arrays.copyOf(head, capacity);
+				weight = Arrays.copyOf(weight, capacity);
+				first = Arrays.copyOf(first, capacity);
+				second = Arrays.copyOf(second, capacity);
+			}
+			tail[arcs] = s;
+			head[arcs] = t;
+			weight[arcs] = w;
+			first[arcs] = a;
+			second[arcs] = b;
+			out[s] = add(out[s], outSize[s]++, arcs);
+			in[t] = add(in[t], inSize[t]++, arcs);
+			arcs++;
+		}
+
+		static int[] add(int[] list, int size, int x) {
+			if (list == null)
+				list = new int[4];
+			else if (size == list.length)
+				list = Arrays.copyOf(list, 2 * size);
+			list[size] = x;
+			return list;
+		}
+
+		/*
+		 * The priority of a vertex is its edge difference (shortcuts added
+		 * minus arcs removed by its contraction) plus the number of its
+		 * contracted neighbors and its level, so that the contraction is
+		 * spread over the graph. At each round the vertices whose priority is
+		 * smaller than the priority of their neighbors are contracted in
+		 * parallel.
+		 */
+		void contract() {
+			double[] priority = new double[n];
+			int[] deleted = new int[n];
+			int[] level = new int[n];
+			boolean[] dirty = new boolean[n];
+			boolean[] round = new boolean[n];
+			Arrays.fill(dirty, true);
+			int[] remaining = IntStream.range(0, n).toArray();
+			int next = 0;
+			while (remaining.length > 0) {
+				IntStream.of(remaining).parallel().filter(v -> dirty[v])
+						.forEach(v -> {
+							Witness w = witnesses.get();
+							int s = w.contract(v, null, null);
+							priority[v] = s - w.degree + deleted[v] + level[v];
+							dirty[v] = false;
+						});
+				int[] selected = IntStream.of(remaining).parallel()
+						.filter(v -> isLocalMinimum(v, priority)).toArray();
+				for (int v : selected)
+					round[v] = true;
+				Shortcuts[] shortcuts = new Shortcuts[selected.length];
+				IntStream.range(0, selected.length).parallel().forEach(i -> {
+					shortcuts[i] = new Shortcuts();
+					witnesses.get().contract(selected[i], round, shortcuts[i]);
+				});
+				for (int i = 0; i < selected.length; i++) {
+					int v = selected[i];
+					rank[v] = next++;
+					contracted[v] = true;
+					round[v] = false;
+					Shortcuts s = shortcuts[i];
+					for (int j = 0; j < s.size; j++)
+						addArc(s.tail[j], s.head[j], s.weight[j], s.first[j],
+								s.second[j]);
+					for (int j = 0; j < outSize[v]; j++)
+						update(head[out[v][j]], v, deleted, level, dirty);
+					for (int j = 0; j < inSize[v]; j++)
+						update(tail[in[v][j]], v, deleted, level, dirty);
+				}
+				remaining = IntStream.of(remaining).filter(v -> !contracted[v])
+						.toArray();
+			}
+		}
+
+		boolean isLocalMinimum(int v, double[] priority) {
+			for (int i = 0; i < outSize[v]; i++)
+				if (precedes(head[out[v][i]], v, priority))
+					return false;
+			for (int i = 0; i < inSize[v]; i++)
+				if (precedes(tail[in[v][i]], v, priority))
+					return false;
+			return true;
+		}
+
+		/*
+		 * Ties are broken by a hash of the ids rather than by the ids, which
+		 * would contract a path one vertex per round.
+		 */
+		boolean precedes(int u, int v, double[] priority) {
+			if (u == v || contracted[u])
+				return false;
+			if (priority[u] != priority[v])
+				return priority[u] < priority[v];
+			int hu = Integer.reverse(u * 0x9E3779B9);
+			int hv = Integer.reverse(v * 0x9E3779B9);
+			return hu != hv ? hu < hv : u < v;
+		}
+
+		/*
+		 * Update a neighbor u of the contracted vertex v, and remove its arcs
+		 * to the contracted vertices.
+		 */
+		void update(int u, int v, int[] deleted, int[] level, boolean[] dirty) {
+			if (contracted[u] || updated[u] == v)
+				return;
+			updated[u] = v;
+			deleted[u]++;
+			level[u] = Math.max(level[u], level[v] + 1);
+			dirty[u] = true;
+			outSize[u] = retain(out[u], outSize[u], head);
+			inSize[u] = retain(in[u], inSize[u], tail);
+		}
+
+		int retain(int[] list, int size, int[] ends) {
+			int k = 0;
+			for (int i = 0; i < size; i++)
+				if (!contracted[ends[list[i]]])
+					list[k++] = list[i];
+			return k;
+		}
+
+		/*
+		 * Witness searches of a thread: local Dijskstra's searches looking
+		 * for a path avoiding the contracted vertex between two of its
+		 * neighbors.
+		 */
+		final class Witness {
+			final double[] distance = new double[n];
+			final IndexedHeap heap = new IndexedHeap(n);
+			// arc of minimum weight from each in-neighbor and to each
+			// out-neighbor of the contracted vertex
+			final int[] inArc = new int[n];
+			final int[] outArc = new int[n];
+			int[] touched = new int[16];
+			int touchedSize;
+			int[] inNeighbors = new int[16];
+			int[] outNeighbors = new int[16];
+			int degree;
+
+			Witness() {
+				Arrays.fill(distance, Double.POSITIVE_INFINITY);
+				Arrays.fill(inArc, -1);
+				Arrays.fill(outArc, -1);
+			}
+
+			/*
+			 * Returns the number of shortcuts needed to contract v, added to
+			 * shortcuts if not null. The witness paths avoid the vertices of
+			 * round, contracted at the same time.
+			 */
+			int contract(int v, boolean[] round, Shortcuts shortcuts) {
+				int ni = 0;
+				for (int i = 0; i < inSize[v]; i++) {
+					int a = in[v][i];
+					int x = tail[a];
+					if (inArc[x] < 0) {
+						inNeighbors = add(inNeighbors, ni++, x);
+						inArc[x] = a;
+					} else if (weight[a] < weight[inArc[x]])
+						inArc[x] = a;
+				}
+				int no = 0;
+				for (int i = 0; i < outSize[v]; i++) {
+					int a = out[v][i];
+					int y = head[a];
+					if (outArc[y] < 0) {
+						outNeighbors = add(outNeighbors, no++, y);
+						outArc[y] = a;
+					} else if (weight[a] < weight[outArc[y]])
+						outArc[y] = a;
+				}
+				degree = ni + no;
+				int count = 0;
+				for (int i = 0; i < ni; i++) {
+					int x = inNeighbors[i];
+					double limit = -1;
+					for (int j = 0; j < no; j++)
+						if (outNeighbors[j] != x)
+							limit = Math.max(limit, weight[inArc[x]]
+									+ weight[outArc[outNeighbors[j]]]);
+					if (limit < 0)
+						continue;
+					search(x, v, round, limit, outArc[x] < 0 ? no : no - 1);
+					for (int j = 0; j < no; j++) {
+						int y = outNeighbors[j];
+						double d = weight[inArc[x]] + weight[outArc[y]];
+						if (y != x && distance[y] > d) {
+							count++;
+							if (shortcuts != null)
+								shortcuts.add(x, y, d, inArc[x], outArc[y]);
+						}
+					}
+					for (int j = 0; j < touchedSize; j++)
+						distance[touched[j]] = Double.POSITIVE_INFINITY;
+					touchedSize = 0;
+				}
+				for (int i = 0; i < ni; i++)
+					inArc[inNeighbors[i]] = -1;
+				for (int j = 0; j < no; j++)
+					outArc[outNeighbors[j]] = -1;
+				return count;
+			}
+
+			/*
+			 * Search from source until the targets, the out-neighbors of the
+			 * contracted vertex, are settled.
+			 */
+			void search(int source, int avoided, boolean[] round, double limit,
+					int targets) {
+				distance[source] = 0;
+				touched = add(touched, touchedSize++, source);
+				heap.insert(source, 0);
+				int settled = 0;
+				while (!heap.isEmpty() && targets > 0) {
+					int u = heap.poll();
+					if (distance[u] > limit || ++settled > SETTLED_LIMIT)
+						break;
+					if (outArc[u] >= 0 && u != source)
+						targets--;
+					for (int i = 0; i < outSize[u]; i++) {
+						int a = out[u][i];
+						int y = head[a];
+						if (y == avoided || contracted[y] || round != null
+								&& round[y])
+							continue;
+						double d = distance[u] + weight[a];
+						if (d < distance[y]) {
+							if (distance[y] == Double.POSITIVE_INFINITY)
+								touched = add(touched, touchedSize++, y);
+							distance[y] = d;
+							heap.insertOrDecrease(y, d);
+						}
+					}
+				}
+				heap.clear();
+			}
+		}
+	}
+
+	/*
+	 * Shortcuts found by the contraction of a vertex.
+	 */
+	private static final class Shortcuts {
+		int[] tail = new int[4];
+		int[] head = new int[4];
+		double[] weight = new double[4];
+		int[] first = new int[4];
+		int[] second = new int[4];
+		int size;
+
+		void add(int s, int t, double w, int a, int b) {
+			if (size == tail.length) {
+				tail = Arrays.copyOf(tail, 2 * size);
+				head = Arrays.copyOf(head, 2 * size);
+				weight = Arrays.copyOf(weight, 2 * size);
+				first = Arrays.copyOf(first, 2 * size);
+				second = Arrays.copyOf(second, 2 * size);
+			}
+			tail[size] = s;
+			head[size] = t;
+			weight[size] = w;
+			first[size] = a;
+			second[size] = b;
+			size++;
+		}
+	}
+}
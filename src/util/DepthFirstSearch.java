@@ -19,6 +19,7 @@ package util;
 import java.awt.Color;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import graph.Graph;
 
@@ -85,15 +86,19 @@ public class DepthFirstSearch {
 		DepthFirstSearchDataImpl<V> vData = (DepthFirstSearchDataImpl<V>) map
 				.get(v);
 		vData.color = Color.GRAY;
-		Iterable<V> neighbors = directed ? g.successors(v) : g.neighbors(v);
-		for (V w : neighbors) {
+		int t = time;
+		Consumer<V> visit = w -> {
 			DepthFirstSearchDataImpl<V> wData = (DepthFirstSearchDataImpl<V>) map
 					.get(w);
 			if (wData.color == Color.WHITE) {
 				wData.father = v;
-				visitDFS(g, w, time, map, directed);
+				visitDFS(g, w, t, map, directed);
 			}
-		}
+		};
+		if (directed)
+			g.forEachSuccessor(v, visit);
+		else
+			g.forEachNeighbor(v, visit);
 		vData.color = Color.BLACK;
 		vData.last = time++;
 	}
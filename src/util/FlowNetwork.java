@@ -0,0 +1,609 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package util;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+import graph.EdgeAttributes;
+import graph.Graph;
+import graph.GraphIndex;
+
+/**
+ * A flow network on int arrays, with its residual network. Edge i goes from
+ * tail[i] to head[i] with a flow between lower[i] and upper[i]. It gives the
+ * two arcs 2i and 2i + 1 of the residual network: arc 2i in the direction of
+ * the edge, with a residual capacity upper[i] - flow, and arc 2i + 1 in the
+ * opposite direction, with a residual capacity flow - lower[i]. The arcs
+ * leaving each vertex are contiguous (compressed sparse rows).
+ */
+final class FlowNetwork {
+
+	static final int NO_EDGE = -1;
+
+	final int n;
+	final int m;
+	final int[] tail;
+	final int[] head;
+	final int[] lower;
+	final int[] upper;
+	// residual capacity and target of each arc
+	final int[] residual;
+	final int[] arcHead;
+	// arcs leaving v: arcs[start[v]] to arcs[start[v + 1] - 1]
+	final int[] start;
+	final int[] arcs;
+	// id in the graph index of each edge, NO_EDGE for an added edge
+	int[] ids;
+	// breadth first searches of augment, allocated on the first one
+	private int[] parent;
+	private int[] queue;
+	private int[] visit;
+	private int visits;
+
+	/**
+	 * Create a network with the flow lower[i] on each edge i.
+	 */
+	FlowNetwork(int n, int[] tail, int[] head, int[] lower, int[] upper) {
+		this.n = n;
+		this.m = tail.length;
+		this.tail = tail;
+		this.head = head;
+		this.lower = lower;
+		this.upper = upper;
+		residual = new int[2 * m];
+		arcHead = new int[2 * m];
+		start = new int[n + 1];
+		arcs = new int[2 * m];
+		for (int i = 0; i < m; i++) {
+			if (lower[i] > upper[i])
+				throw new IllegalArgumentException("lower bound " + lower[i]
+						+ " > capacity " + upper[i]);
+			residual[2 * i] = upper[i] - lower[i];
+			arcHead[2 * i] = head[i];
+			arcHead[2 * i + 1] = tail[i];
+			start[tail[i] + 1]++;
+			start[head[i] + 1]++;
+		}
+		for (int v = 0; v < n; v++)
+			start[v + 1] += start[v];
+		int[] position = Arrays.copyOf(start, n);
+		for (int i = 0; i < m; i++) {
+			arcs[position[tail[i]]++] = 2 * i;
+			arcs[position[head[i]]++] = 2 * i + 1;
+		}
+	}
+
+	/**
+	 * The network of the edges of a graph, the vertices and edges being
+	 * numbered by their ids in index, with extra vertices after them.
+	 * 
+	 * @param b
+	 *            lower bounds, null for 0
+	 * @param c
+	 *            capacities
+	 */
+	static <V, E extends Graph.Edge<V>> FlowNetwork of(GraphIndex<V, E> index,
+			int extraVertices, ToIntFunction<? super E> b,
+			ToIntFunction<? super E> c) {
+		int m = 0;
+		for (int id = 0; id < index.edgeIdBound(); id++)
+			if (index.edge(id) != null)
+				m++;
+		int[] ids = new int[m];
+		int[] tail = new int[m];
+		int[] head = new int[m];
+		int[] lower = new int[m];
+		int[] upper = new int[m];
+		IntUnaryOperator lowerBound = b == null ? null : EdgeAttributes
+				.intsById(index, b);
+		IntUnaryOperator capacity = EdgeAttributes.intsById(index, c);
+		int i = 0;
+		for (int id = 0; id < index.edgeIdBound(); id++) {
+			E e = index.edge(id);
+			if (e == null)
+				continue;
+			ids[i] = id;
+			tail[i] = index.vertexId(e.source());
+			head[i] = index.vertexId(e.target());
+			lower[i] = b == null ? 0 : lowerBound.applyAsInt(id);
+			upper[i++] = capacity.applyAsInt(id);
+		}
+		FlowNetwork network = new FlowNetwork(index.vertexIdBound()
+				+ extraVertices, tail, head, lower, upper);
+		network.ids = ids;
+		return network;
+	}
+
+	/**
+	 * The network of the edges of a graph with lower bounds, with a flow from
+	 * s to t respecting the bounds. The flow is a feasible circulation of an
+	 * auxiliary network: the flow starts at the lower bounds, a new source
+	 * sends to each vertex the flow entering it in excess and a new sink
+	 * takes the flow leaving it in excess, while edges from s to t and t to s
+	 * let the value be anything. The added edges are then closed, their lower
+	 * bound and capacity being set to their flow, so that the flow can be
+	 * maximized from s to t on the edges of the graph.
+	 * 
+	 * @param b
+	 *            lower bounds
+	 * @param c
+	 *            capacities
+	 * @return null if no flow respects the bounds
+	 */
+	static <V, E extends Graph.Edge<V>> FlowNetwork feasible(
+			GraphIndex<V, E> index, int s, int t, ToIntFunction<? super E> b,
+			ToIntFunction<? super E> c) {
+		int n = index.vertexIdBound();
+		// flow entering minus flow leaving each vertex at the lower bounds
+		long[] excess = new long[n];
+		IntUnaryOperator lowerBound = EdgeAttributes.intsById(index, b);
+		IntUnaryOperator capacity = EdgeAttributes.intsById(index, c);
+		int m = 0;
+		for (int id = 0; id < index.edgeIdBound(); id++) {
+			E e = index.edge(id);
+			if (e == null)
+				continue;
+			int x = lowerBound.applyAsInt(id);
+			excess[index.vertexId(e.source())] -= x;
+			excess[index.vertexId(e.target())] += x;
+			m++;
+		}
+		int k = 2;
+		for (int v = 0; v < n; v++)
+			if (excess[v] != 0)
+				k++;
+		int[] ids = new int[m + k];
+		int[] tail = new int[m + k];
+		int[] head = new int[m + k];
+		int[] lower = new int[m + k];
+		int[] upper = new int[m + k];
+		int i = 0;
+		for (int id = 0; id < index.edgeIdBound(); id++) {
+			E e = index.edge(id);
+			if (e == null)
+				continue;
+			ids[i] = id;
+			tail[i] = index.vertexId(e.source());
+			head[i] = index.vertexId(e.target());
+			lower[i] = lowerBound.applyAsInt(id);
+			upper[i++] = capacity.applyAsInt(id);
+		}
+		Arrays.fill(ids, m, m + k, NO_EDGE);
+		int source = n;
+		int sink = n + 1;
+		for (int v = 0; v < n; v++) {
+			if (excess[v] > 0) {
+				tail[i] = source;
+				head[i] = v;
+			} else if (excess[v] < 0) {
+				tail[i] = v;
+				head[i] = sink;
+			} else
+				continue;
+			upper[i++] = Math.toIntExact(Math.abs(excess[v]));
+		}
+		tail[i] = s;
+		head[i] = t;
+		upper[i++] = Integer.MAX_VALUE;
+		tail[i] = t;
+		head[i] = s;
+		upper[i++] = Integer.MAX_VALUE;
+		FlowNetwork network = new FlowNetwork(n + 2, tail, head, lower, upper);
+		network.ids = ids;
+		network.dinic(source, sink);
+		for (int j = m; j < m + k; j++) {
+			int x = network.flow(j);
+			if (tail[j] == source && x < upper[j])
+				return null;
+			lower[j] = x;
+			network.setUpper(j, x);
+		}
+		return network;
+	}
+
+	int flow(int edge) {
+		return upper[edge] - residual[2 * edge];
+	}
+
+	void setFlow(int edge, int x) {
+		residual[2 * edge] = upper[edge] - x;
+		residual[2 * edge + 1] = x - lower[edge];
+	}
+
+	/**
+	 * Change the capacity of an edge, which must not be smaller than its flow.
+	 */
+	void setUpper(int edge, int c) {
+		int x = flow(edge);
+		upper[edge] = c;
+		setFlow(edge, x);
+	}
+
+	/*
+	 * Push x units along arc a.
+	 */
+	void push(int a, int x) {
+		residual[a] -= x;
+		residual[a ^ 1] += x;
+	}
+
+	/**
+	 * Returns the flow leaving v minus the flow entering v.
+	 */
+	long outflow(int v) {
+		long value = 0;
+		for (int i = start[v]; i < start[v + 1]; i++) {
+			int e = arcs[i] >> 1;
+			if (tail[e] != head[e])
+				value += (arcs[i] & 1) == 0 ? flow(e) : -flow(e);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the vertices which can be reached from s in the residual
+	 * network.
+	 */
+	boolean[] reachable(int s) {
+		boolean[] reached = new boolean[n];
+		int[] queue = new int[n];
+		int size = 0;
+		queue[size++] = s;
+		reached[s] = true;
+		for (int k = 0; k < size; k++) {
+			int v = queue[k];
+			for (int i = start[v]; i < start[v + 1]; i++) {
+				int a = arcs[i];
+				if (residual[a] > 0 && !reached[arcHead[a]]) {
+					reached[arcHead[a]] = true;
+					queue[size++] = arcHead[a];
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Increase the flow from s to t as much as possible using Dinic's
+	 * algorithm: the residual network is layered by a breadth first search
+	 * from s, then a blocking flow is found by depth first searches using only
+	 * the arcs from a layer to the next; each vertex keeps its current arc, so
+	 * that an arc found useless is not scanned again in the phase.
+	 * 
+	 * @return the value added to the flow
+	 */
+	long dinic(int s, int t) {
+		if (s == t)
+			return 0;
+		int[] level = new int[n];
+		int[] current = new int[n];
+		int[] queue = new int[n];
+		int[] path = new int[n];
+		long total = 0;
+		while (true) {
+			Arrays.fill(level, -1);
+			level[s] = 0;
+			int size = 0;
+			queue[size++] = s;
+			for (int k = 0; k < size && level[t] < 0; k++) {
+				int v = queue[k];
+				for (int i = start[v]; i < start[v + 1]; i++) {
+					int a = arcs[i];
+					int w = arcHead[a];
+					if (residual[a] > 0 && level[w] < 0) {
+						level[w] = level[v] + 1;
+						queue[size++] = w;
+					}
+				}
+			}
+			if (level[t] < 0)
+				return total;
+			System.arraycopy(start, 0, current, 0, n);
+			int depth = 0;
+			int v = s;
+			while (true) {
+				if (v == t) {
+					int x = Integer.MAX_VALUE;
+					for (int k = 0; k < depth; k++)
+						x = Math.min(x, residual[path[k]]);
+					int saturated = -1;
+					for (int k = 0; k < depth; k++) {
+						push(path[k], x);
+						if (saturated < 0 && residual[path[k]] == 0)
+							saturated = k;
+					}
+					total += x;
+					depth = saturated;
+					v = arcHead[path[depth] ^ 1];
+					continue;
+				}
+				int a = -1;
+				for (; current[v] < start[v + 1]; current[v]++) {
+					int b = arcs[current[v]];
+					if (residual[b] > 0 && level[arcHead[b]] == level[v] + 1) {
+						a = b;
+						break;
+					}
+				}
+				if (a >= 0) {
+					path[depth++] = a;
+					v = arcHead[a];
+				} else {
+					// dead end, v is removed from the layers
+					level[v] = -1;
+					if (depth == 0)
+						break;
+					v = arcHead[path[--depth] ^ 1];
+					current[v]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Increase the flow from s to t by at most limit along shortest augmenting
+	 * paths, found by breadth first searches (Edmonds-Karp's algorithm). Only
+	 * the arcs of each path are updated.
+	 * 
+	 * @return the value added to the flow
+	 */
+	long augment(int s, int t, long limit) {
+		if (s == t)
+			return 0;
+		if (parent == null) {
+			parent = new int[n];
+			queue = new int[n];
+			visit = new int[n];
+		}
+		long total = 0;
+		while (total < limit) {
+			// the vertices reached by this search are marked by visits
+			if (++visits == Integer.MAX_VALUE) {
+				Arrays.fill(visit, 0);
+				visits = 1;
+			}
+			visit[s] = visits;
+			int size = 0;
+			queue[size++] = s;
+			for (int k = 0; k < size && visit[t] != visits; k++) {
+				int v = queue[k];
+				for (int i = start[v]; i < start[v + 1]; i++) {
+					int a = arcs[i];
+					int w = arcHead[a];
+					if (residual[a] > 0 && visit[w] != visits) {
+						visit[w] = visits;
+						parent[w] = a;
+						queue[size++] = w;
+					}
+				}
+			}
+			if (visit[t] != visits)
+				return total;
+			long x = limit - total;
+			for (int v = t; v != s; v = arcHead[parent[v] ^ 1])
+				x = Math.min(x, residual[parent[v]]);
+			for (int v = t; v != s; v = arcHead[parent[v] ^ 1])
+				push(parent[v], (int) x);
+			total += x;
+		}
+		return total;
+	}
+
+	/**
+	 * Increase the flow from s to t as much as possible using the highest
+	 * label push-relabel algorithm, with the gap and global relabeling
+	 * heuristics. The first phase finds a maximum preflow, the second one
+	 * sends the excesses which cannot reach t back to s.
+	 * 
+	 * @return the value added to the flow
+	 */
+	long pushRelabel(int s, int t) {
+		if (s == t)
+			return 0;
+		return new PushRelabel(s, t).run();
+	}
+
+	private final class PushRelabel {
+		final int s;
+		final int t;
+		final int[] height = new int[n];
+		final long[] excess = new long[n];
+		final int[] current = new int[n];
+		// active vertices of height h < n: a list from bucket[h] by next
+		final int[] bucket = new int[n];
+		final int[] next = new int[n];
+		// number of vertices of each height smaller than n
+		final int[] count = new int[n];
+		final int[] queue = new int[n];
+		int highest;
+		int relabels;
+		// end of the FIFO queue of the second phase
+		int tailOfQueue;
+
+		PushRelabel(int s, int t) {
+			this.s = s;
+			this.t = t;
+		}
+
+		long run() {
+			long before = excessOf(t);
+			for (int i = start[s]; i < start[s + 1]; i++) {
+				int a = arcs[i];
+				int x = residual[a];
+				if (x > 0 && arcHead[a] != s) {
+					push(a, x);
+					excess[arcHead[a]] += x;
+				}
+			}
+			globalRelabel();
+			while (highest >= 0) {
+				int v = bucket[highest];
+				if (v < 0) {
+					highest--;
+					continue;
+				}
+				bucket[highest] = next[v];
+				if (height[v] < n)
+					discharge(v, true);
+				if (relabels > n) {
+					relabels = 0;
+					globalRelabel();
+				}
+			}
+			long value = excessOf(t) - before;
+			returnExcesses();
+			return value;
+		}
+
+		long excessOf(int v) {
+			return -outflow(v);
+		}
+
+		/*
+		 * Exact heights from a breadth first search to t in the residual
+		 * network, n for the vertices which cannot reach t.
+		 */
+		void globalRelabel() {
+			Arrays.fill(height, n);
+			Arrays.fill(bucket, -1);
+			Arrays.fill(count, 0);
+			height[t] = 0;
+			int size = 0;
+			queue[size++] = t;
+			highest = -1;
+			for (int k = 0; k < size; k++) {
+				int w = queue[k];
+				count[height[w]]++;
+				if (excess[w] > 0 && w != s && w != t) {
+					next[w] = bucket[height[w]];
+					bucket[height[w]] = w;
+					highest = height[w];
+				}
+				for (int i = start[w]; i < start[w + 1]; i++) {
+					// arc from v to w
+					int a = arcs[i] ^ 1;
+					int v = arcHead[a ^ 1];
+					if (residual[a] > 0 && height[v] == n && v != s) {
+						height[v] = height[w] + 1;
+						queue[size++] = v;
+					}
+				}
+			}
+			System.arraycopy(start, 0, current, 0, n);
+		}
+
+		/*
+		 * Push the excess of v to its neighbors, relabeling v when it has no
+		 * admissible arc. In the first phase the vertices reaching height n
+		 * are left aside.
+		 */
+		void discharge(int v, boolean first) {
+			while (excess[v] > 0) {
+				if (current[v] == start[v + 1]) {
+					relabel(v, first);
+					if (first && height[v] >= n)
+						return;
+					continue;
+				}
+				int a = arcs[current[v]];
+				int w = arcHead[a];
+				if (residual[a] > 0 && height[v] == height[w] + 1) {
+					int x = (int) Math.min(excess[v], residual[a]);
+					push(a, x);
+					excess[v] -= x;
+					if (excess[w] == 0 && w != s && w != t)
+						activate(w, first);
+					excess[w] += x;
+				} else
+					current[v]++;
+			}
+		}
+
+		void activate(int w, boolean first) {
+			if (first) {
+				if (height[w] < n) {
+					next[w] = bucket[height[w]];
+					bucket[height[w]] = w;
+					highest = Math.max(highest, height[w]);
+				}
+			} else
+				queue[tailOfQueue++ % n] = w;
+		}
+
+		void relabel(int v, boolean first) {
+			relabels++;
+			int old = height[v];
+			int h = Integer.MAX_VALUE;
+			for (int i = start[v]; i < start[v + 1]; i++) {
+				int a = arcs[i];
+				if (residual[a] > 0)
+					h = Math.min(h, height[arcHead[a]] + 1);
+			}
+			current[v] = start[v];
+			if (!first) {
+				height[v] = h;
+				return;
+			}
+			height[v] = Math.min(h, n);
+			if (old < n && --count[old] == 0) {
+				// gap: the vertices above old cannot reach t anymore
+				for (int w = 0; w < n; w++)
+					if (height[w] > old && height[w] < n) {
+						count[height[w]]--;
+						height[w] = n;
+					}
+				height[v] = n;
+			}
+			if (height[v] < n)
+				count[height[v]]++;
+		}
+
+		/*
+		 * Second phase: heights from a breadth first search to s, then the
+		 * active vertices are discharged in FIFO order.
+		 */
+		void returnExcesses() {
+			Arrays.fill(height, Integer.MAX_VALUE / 2);
+			height[s] = 0;
+			int size = 0;
+			queue[size++] = s;
+			for (int k = 0; k < size; k++) {
+				int w = queue[k];
+				for (int i = start[w]; i < start[w + 1]; i++) {
+					int a = arcs[i] ^ 1;
+					int v = arcHead[a ^ 1];
+					if (residual[a] > 0 && height[v] == Integer.MAX_VALUE / 2) {
+						height[v] = height[w] + 1;
+						queue[size++] = v;
+					}
+				}
+			}
+			System.arraycopy(start, 0, current, 0, n);
+			int head = 0;
+			tailOfQueue = 0;
+			for (int v = 0; v < n; v++)
+				if (excess[v] > 0 && v != s && v != t)
+					queue[tailOfQueue++] = v;
+			while (head < tailOfQueue) {
+				int v = queue[head++ % n];
+				discharge(v, false);
+			}
+		}
+	}
+}
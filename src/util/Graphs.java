@@ -16,13 +16,18 @@
  ******************************************************************************/
 package util;
 
+import collections.IndexedHeap;
 import graph.DirectedEdge;
+import graph.EdgeAttributes;
 import graph.Graph;
 import graph.Graph.Edge;
+import graph.GraphIndex;
 import graph.MultiGraph;
 import graph.PartialGraph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -34,6 +39,13 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
 
 public class Graphs {
 
@@ -46,21 +58,24 @@ public class Graphs {
 		@SuppressWarnings("unchecked")
 		PartialGraph<V, E> bfsTree = g
 				.partialGraph((Set<E>) Collections.EMPTY_SET);
-		Set<V> markedVertices = new HashSet<V>();
+		GraphIndex<V, E> index = g.index();
+		BitSet markedVertices = new BitSet(index.vertexIdBound());
 		Queue<V> queue = new LinkedList<V>();
 		queue.add(root);
-		markedVertices.add(root);
+		if (index.vertexId(root) >= 0)
+			markedVertices.set(index.vertexId(root));
 
 		while (!queue.isEmpty()) {
 			V currentVertex = queue.poll();
-			for (E e : g.incidentEdges(currentVertex)) {
+			g.forEachIncidentEdge(currentVertex, e -> {
 				V neighbor = e.getOpposite(currentVertex);
-				if (!markedVertices.contains(neighbor)) {
+				int id = index.vertexId(neighbor);
+				if (!markedVertices.get(id)) {
 					queue.add(neighbor);
-					markedVertices.add(neighbor);
+					markedVertices.set(id);
 					bfsTree.addEdge(e);
 				}
-			}
+			});
 		}
 		return bfsTree;
 	}
@@ -117,6 +132,25 @@ public class Graphs {
 		}
 	}
 
+	/**
+	 * A path from a source to a target, given by the list of its vertices,
+	 * and its length.
+	 */
+	public static class Path<V> {
+		public final double length;
+		public final List<V> vertices;
+
+		public Path(double length, List<V> vertices) {
+			this.length = length;
+			this.vertices = vertices;
+		}
+
+		@Override
+		public String toString() {
+			return vertices + ":" + length;
+		}
+	}
+
 	private static <V, E extends Graph.Edge<V>> ShortestPaths<V> initializeShortestPaths(
 			Graph<V, E> g, V source) {
 		ShortestPaths<V> result = new ShortestPaths<V>();
@@ -163,31 +197,543 @@ public class Graphs {
 	public static <V, E extends Graph.Edge<V>> ShortestPaths<V> dijskstra(
 			Graph<V, E> g, V source, Map<E, Double> weights)
 			throws NegativeEdgeException {
-		final ShortestPaths<V> result = initializeShortestPaths(g, source);
-		Queue<V> q = new PriorityQueue<V>(g.order(), new Comparator<V>() {
-			@Override
-			public int compare(V o1, V o2) {
-				return result.distances.get(o1).compareTo(
-						result.distances.get(o2));
+		return dijskstra(g, source, weights::get);
+	}
+
+	/**
+	 * Same as {@link #dijskstra(Graph, Object, Map)}, the weights being given
+	 * by a function, for instance a column of {@link graph.EdgeAttributes}.
+	 */
+	public static <V, E extends Graph.Edge<V>> ShortestPaths<V> dijskstra(
+			Graph<V, E> g, V source, ToDoubleFunction<? super E> weights)
+			throws NegativeEdgeException {
+		GraphIndex<V, E> index = g.index();
+		double[] distances = new double[index.vertexIdBound()];
+		int[] predecessors = new int[distances.length];
+		dijskstra(g, index, index.vertexId(source), -1, weights, distances,
+				predecessors);
+		ShortestPaths<V> result = new ShortestPaths<V>();
+		for (V v : g.vertices()) {
+			int id = index.vertexId(v);
+			result.distances.put(v, distances[id]);
+			result.predecessors.put(v, predecessors[id] < 0 ? null
+					: index.vertex(predecessors[id]));
+		}
+		return result;
+	}
+
+	/**
+	 * Point to point shortest path using Dijskstra's algorithm. The search
+	 * stops as soon as the target is reached.
+	 * 
+	 * @param g
+	 *            graph
+	 * @param source
+	 *            source vertex
+	 * @param target
+	 *            target vertex
+	 * @param weights
+	 *            for each edge of g, distance between the origin and the target
+	 *            of the edge. The weights must be not negative.
+	 * @return a shortest path from source to target, or null if target cannot
+	 *         be reached from source
+	 * @throws NegativeEdgeException
+	 *             if an edge with a negative weight is met
+	 */
+	public static <V, E extends Graph.Edge<V>> Path<V> dijskstra(Graph<V, E> g,
+			V source, V target, ToDoubleFunction<? super E> weights)
+			throws NegativeEdgeException {
+		GraphIndex<V, E> index = g.index();
+		double[] distances = new double[index.vertexIdBound()];
+		int[] predecessors = new int[distances.length];
+		int t = index.vertexId(target);
+		if (t < 0)
+			return null;
+		dijskstra(g, index, index.vertexId(source), t, weights, distances,
+				predecessors);
+		return path(index, distances, predecessors, t);
+	}
+
+	/*
+	 * Dijskstra's algorithm on the ids of the vertices: distances and
+	 * predecessors (-1 if there is none) are filled for the vertices reached
+	 * from source. Only the reached vertices are put in the heap, and the
+	 * search stops when target is removed from it.
+	 */
+	private static <V, E extends Graph.Edge<V>> void dijskstra(Graph<V, E> g,
+			GraphIndex<V, E> index, int source, int target,
+			ToDoubleFunction<? super E> weights, double[] distances,
+			int[] predecessors) throws NegativeEdgeException {
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(predecessors, -1);
+		if (source < 0)
+			return;
+		IndexedHeap q = new IndexedHeap(distances.length);
+		distances[source] = 0;
+		q.insert(source, 0);
+		// the edge with a negative weight, if one is found
+		List<E> negative = new ArrayList<E>(1);
+		while (!q.isEmpty()) {
+			int u = q.poll();
+			if (u == target)
+				return;
+			boolean nonNegative = g.forEachOutgoingEdgeWhile(index.vertex(u), e -> {
+				double we = weights.applyAsDouble(e);
+				if (we < 0) {
+					negative.add(e);
+					return false;
+				}
+				int v = index.vertexId(e.target());
+				if (distances[u] + we < distances[v]) {
+					distances[v] = distances[u] + we;
+					predecessors[v] = u;
+					q.insertOrDecrease(v, distances[v]);
+				}
+				return true;
+			});
+			if (!nonNegative)
+				throw new NegativeEdgeException(negative.get(0),
+						weights.applyAsDouble(negative.get(0)));
+		}
+	}
+
+	/**
+	 * Point to point shortest path using a bidirectional Dijskstra's
+	 * algorithm: a search from the source on the outgoing edges and a search
+	 * from the target on the incoming edges are run alternately, until the
+	 * smallest distances in their heaps prove that no shorter path than the
+	 * best one found can exist.
+	 * 
+	 * @param g
+	 *            graph
+	 * @param source
+	 *            source vertex
+	 * @param target
+	 *            target vertex
+	 * @param weights
+	 *            for each edge of g, distance between the origin and the target
+	 *            of the edge. The weights must be not negative.
+	 * @return a shortest path from source to target, or null if target cannot
+	 *         be reached from source
+	 * @throws NegativeEdgeException
+	 *             if an edge with a negative weight is met
+	 */
+	public static <V, E extends Graph.Edge<V>> Path<V> bidirectionalDijskstra(
+			Graph<V, E> g, V source, V target,
+			ToDoubleFunction<? super E> weights) throws NegativeEdgeException {
+		GraphIndex<V, E> index = g.index();
+		int s = index.vertexId(source);
+		int t = index.vertexId(target);
+		if (s < 0 || t < 0)
+			return null;
+		int n = index.vertexIdBound();
+		// forward search from s, backward search from t
+		double[] df = new double[n];
+		double[] db = new double[n];
+		int[] pf = new int[n];
+		int[] pb = new int[n];
+		Arrays.fill(df, Double.POSITIVE_INFINITY);
+		Arrays.fill(db, Double.POSITIVE_INFINITY);
+		Arrays.fill(pf, -1);
+		Arrays.fill(pb, -1);
+		IndexedHeap qf = new IndexedHeap(n);
+		IndexedHeap qb = new IndexedHeap(n);
+		df[s] = 0;
+		db[t] = 0;
+		qf.insert(s, 0);
+		qb.insert(t, 0);
+		// best[0] is the length of the shortest path found, through meeting[0]
+		double[] best = { s == t ? 0 : Double.POSITIVE_INFINITY };
+		int[] meeting = { s == t ? s : -1 };
+		List<E> negative = new ArrayList<E>(1);
+		while (!qf.isEmpty() && !qb.isEmpty()
+				&& qf.priority(qf.peek()) + qb.priority(qb.peek()) < best[0]) {
+			boolean forward = qf.size() <= qb.size();
+			IndexedHeap q = forward ? qf : qb;
+			double[] d = forward ? df : db;
+			double[] other = forward ? db : df;
+			int[] p = forward ? pf : pb;
+			int u = q.poll();
+			Predicate<E> relax = e -> {
+				double we = weights.applyAsDouble(e);
+				if (we < 0) {
+					negative.add(e);
+					return false;
+				}
+				int v = index.vertexId(forward ? e.target() : e.source());
+				if (d[u] + we < d[v]) {
+					d[v] = d[u] + we;
+					p[v] = u;
+					q.insertOrDecrease(v, d[v]);
+				}
+				if (d[v] + other[v] < best[0]) {
+					best[0] = d[v] + other[v];
+					meeting[0] = v;
+				}
+				return true;
+			};
+			boolean nonNegative;
+			if (forward)
+				nonNegative = g.forEachOutgoingEdgeWhile(index.vertex(u), relax);
+			else {
+				nonNegative = true;
+				for (E e : g.incomingEdges(index.vertex(u)))
+					if (!relax.test(e)) {
+						nonNegative = false;
+						break;
+					}
 			}
-		});
-		q.addAll(g.vertices());
+			if (!nonNegative)
+				throw new NegativeEdgeException(negative.get(0),
+						weights.applyAsDouble(negative.get(0)));
+		}
+		if (meeting[0] < 0)
+			return null;
+		List<V> vertices = new ArrayList<V>();
+		for (int v = meeting[0]; v >= 0; v = pf[v])
+			vertices.add(index.vertex(v));
+		Collections.reverse(vertices);
+		for (int v = pb[meeting[0]]; v >= 0; v = pb[v])
+			vertices.add(index.vertex(v));
+		return new Path<V>(best[0], vertices);
+	}
+
+	/**
+	 * Point to point shortest path using the A* algorithm: the vertices are
+	 * explored following their distance from the source plus an estimation
+	 * of their distance to the target, given by an heuristic. The heuristic
+	 * must be admissible, that is never overestimate the distance to the
+	 * target; the search is faster when it is also consistent (h(u) &lt;= w(e)
+	 * + h(v) for each edge e from u to v) since no vertex is then explored
+	 * twice. With the null heuristic, A* is Dijskstra's algorithm.
+	 * 
+	 * @param g
+	 *            graph
+	 * @param source
+	 *            source vertex
+	 * @param target
+	 *            target vertex
+	 * @param weights
+	 *            for each edge of g, distance between the origin and the target
+	 *            of the edge. The weights must be not negative.
+	 * @param heuristic
+	 *            for each vertex, a lower bound of its distance to target, see
+	 *            for instance
+	 *            {@link #euclideanHeuristic(Object, ToDoubleFunction, ToDoubleFunction)}
+	 * @return a shortest path from source to target, or null if target cannot
+	 *         be reached from source
+	 * @throws NegativeEdgeException
+	 *             if an edge with a negative weight is met
+	 */
+	public static <V, E extends Graph.Edge<V>> Path<V> aStar(Graph<V, E> g,
+			V source, V target, ToDoubleFunction<? super E> weights,
+			ToDoubleFunction<? super V> heuristic)
+			throws NegativeEdgeException {
+		GraphIndex<V, E> index = g.index();
+		int s = index.vertexId(source);
+		int t = index.vertexId(target);
+		if (s < 0 || t < 0)
+			return null;
+		int n = index.vertexIdBound();
+		double[] distances = new double[n];
+		int[] predecessors = new int[n];
+		// estimations of the distances to the target, computed once
+		double[] h = new double[n];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(predecessors, -1);
+		Arrays.fill(h, Double.NaN);
+		IndexedHeap q = new IndexedHeap(n);
+		distances[s] = 0;
+		q.insert(s, 0);
+		List<E> negative = new ArrayList<E>(1);
 		while (!q.isEmpty()) {
-			V u = q.remove();
-			for (E e : g.outgoingEdges(u)) {
-				double we = weights.get(e);
-				if (we < 0)
-					throw new NegativeEdgeException(e, we);
-				if (relax(e, result, we)) {
-					V v = e.target();
-					q.remove(v);
-					q.add(v);
+			int u = q.poll();
+			if (u == t)
+				break;
+			boolean nonNegative = g.forEachOutgoingEdgeWhile(index.vertex(u), e -> {
+				double we = weights.applyAsDouble(e);
+				if (we < 0) {
+					negative.add(e);
+					return false;
+				}
+				int v = index.vertexId(e.target());
+				if (distances[u] + we < distances[v]) {
+					distances[v] = distances[u] + we;
+					predecessors[v] = u;
+					if (Double.isNaN(h[v]))
+						h[v] = heuristic.applyAsDouble(e.target());
+					q.insertOrDecrease(v, distances[v] + h[v]);
+				}
+				return true;
+			});
+			if (!nonNegative)
+				throw new NegativeEdgeException(negative.get(0),
+						weights.applyAsDouble(negative.get(0)));
+		}
+		return path(index, distances, predecessors, t);
+	}
+
+	/**
+	 * Returns the heuristic for {@link #aStar} giving the euclidean distance
+	 * from a vertex to the target, the vertices being points of the plane.
+	 * This heuristic is consistent when the weight of each edge is at least
+	 * the euclidean distance between its extremities, for instance for the
+	 * graphs drawn in the editor with {@code model.Vertex::getX} and
+	 * {@code model.Vertex::getY}.
+	 * 
+	 * @param target
+	 *            target vertex
+	 * @param x
+	 *            abscissa of the vertices
+	 * @param y
+	 *            ordinate of the vertices
+	 * @return the euclidean heuristic
+	 */
+	public static <V> ToDoubleFunction<V> euclideanHeuristic(V target,
+			ToDoubleFunction<? super V> x, ToDoubleFunction<? super V> y) {
+		double tx = x.applyAsDouble(target);
+		double ty = y.applyAsDouble(target);
+		return v -> Math.hypot(x.applyAsDouble(v) - tx, y.applyAsDouble(v) - ty);
+	}
+
+	/*
+	 * The path to target given by an array of predecessors, or null if target
+	 * has not been reached.
+	 */
+	private static <V> Path<V> path(GraphIndex<V, ?> index, double[] distances,
+			int[] predecessors, int target) {
+		if (distances[target] == Double.POSITIVE_INFINITY)
+			return null;
+		List<V> vertices = new ArrayList<V>();
+		for (int v = target; v >= 0; v = predecessors[v])
+			vertices.add(index.vertex(v));
+		Collections.reverse(vertices);
+		return new Path<V>(distances[target], vertices);
+	}
+
+	/**
+	 * Same as {@link #deltaStepping(Graph, Object, ToDoubleFunction, double, ForkJoinPool)}
+	 * on the common fork/join pool, delta being the largest weight divided by
+	 * the average out-degree.
+	 */
+	public static <V, E extends Graph.Edge<V>> ShortestPaths<V> deltaStepping(
+			Graph<V, E> g, V source, ToDoubleFunction<? super E> weights)
+			throws NegativeEdgeException {
+		return deltaStepping(g, source, weights, 0, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Single source shortest paths using the parallel delta-stepping
+	 * algorithm. The vertices are kept in buckets of width delta following
+	 * their distance from the source. The vertices of the first non empty
+	 * bucket are handled in parallel: their light edges (of weight at most
+	 * delta), which can lead back to the bucket, are relaxed until the bucket
+	 * is empty, then the heavy edges of all these vertices are relaxed once.
+	 * The distances are updated atomically. A small delta does less useless
+	 * relaxations, a large one gives more parallelism.
+	 * 
+	 * @param g
+	 *            graph
+	 * @param source
+	 *            source vertex
+	 * @param weights
+	 *            for each edge of g, distance between the origin and the target
+	 *            of the edge. The weights must be not negative.
+	 * @param delta
+	 *            width of the buckets, raised if needed so that the edges do
+	 *            not span more than 2<sup>20</sup> buckets. If not positive, the
+	 *            largest weight divided by the average out-degree is used.
+	 * @param pool
+	 *            pool running the relaxations
+	 * @return the same result as {@link #dijskstra(Graph, Object, ToDoubleFunction)}
+	 * @throws NegativeEdgeException
+	 *             if an edge has a negative weight
+	 */
+	public static <V, E extends Graph.Edge<V>> ShortestPaths<V> deltaStepping(
+			Graph<V, E> g, V source, ToDoubleFunction<? super E> weights,
+			double delta, ForkJoinPool pool) throws NegativeEdgeException {
+		GraphIndex<V, E> index = g.index();
+		int n = index.vertexIdBound();
+		int s = index.vertexId(source);
+		if (s < 0)
+			throw new IllegalArgumentException("Unknown vertex " + source);
+		// outgoing arcs of each vertex, the light ones first
+		int m = g.size();
+		int[] tails = new int[m];
+		int[] targets = new int[m];
+		double[] edgeWeights = new double[m];
+		int[] start = new int[n + 1];
+		double maxWeight = 0;
+		IntToDoubleFunction weight = EdgeAttributes.doublesById(index, weights);
+		int k = 0;
+		for (int id = 0; id < index.edgeIdBound(); id++) {
+			E e = index.edge(id);
+			if (e == null)
+				continue;
+			double w = weight.applyAsDouble(id);
+			if (w < 0)
+				throw new NegativeEdgeException(e, w);
+			maxWeight = Math.max(maxWeight, w);
+			tails[k] = index.vertexId(e.source());
+			targets[k] = index.vertexId(e.target());
+			edgeWeights[k++] = w;
+			start[tails[k - 1] + 1]++;
+		}
+		for (int v = 0; v < n; v++)
+			start[v + 1] += start[v];
+		if (!(delta > 0))
+			delta = m == 0 || maxWeight == 0 ? 1 : maxWeight * g.order() / m;
+		delta = Math.max(delta, maxWeight / (1 << 20));
+		int[] heads = new int[m];
+		double[] arcWeights = new double[m];
+		int[] light = Arrays.copyOf(start, n);
+		int[] heavy = new int[n];
+		for (int i = 0; i < m; i++)
+			if (edgeWeights[i] <= delta) {
+				heads[light[tails[i]]] = targets[i];
+				arcWeights[light[tails[i]]++] = edgeWeights[i];
+			}
+		for (int v = 0; v < n; v++)
+			heavy[v] = light[v];
+		for (int i = 0; i < m; i++)
+			if (edgeWeights[i] > delta) {
+				heads[heavy[tails[i]]] = targets[i];
+				arcWeights[heavy[tails[i]]++] = edgeWeights[i];
+			}
+		// light[v] is now the end of the light arcs of v
+		AtomicLongArray distances = new AtomicLongArray(n);
+		long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+		for (int v = 0; v < n; v++)
+			distances.set(v, infinity);
+		distances.set(s, Double.doubleToLongBits(0));
+		// cyclic array of buckets, enough for the longest edge
+		int slots = (int) (maxWeight / delta) + 2;
+		int[][] buckets = new int[slots][];
+		int[] bucketSizes = new int[slots];
+		// last light phase and last bucket in which each vertex was handled
+		int[] stamps = new int[n];
+		long[] settledIn = new long[n];
+		Arrays.fill(stamps, -1);
+		Arrays.fill(settledIn, -1);
+		int[] settled = new int[16];
+		buckets[0] = new int[] { s };
+		bucketSizes[0] = 1;
+		int pending = 1;
+		int stamp = 0;
+		double width = delta;
+		for (long current = 0; pending > 0; current++) {
+			int slot = (int) (current % slots);
+			if (bucketSizes[slot] == 0)
+				continue;
+			int settledSize = 0;
+			while (bucketSizes[slot] > 0) {
+				int[] frontier = new int[bucketSizes[slot]];
+				int size = 0;
+				pending -= bucketSizes[slot];
+				stamp++;
+				for (int i = 0; i < bucketSizes[slot]; i++) {
+					int v = buckets[slot][i];
+					double d = Double.longBitsToDouble(distances.get(v));
+					if ((long) (d / width) == current && stamps[v] != stamp) {
+						stamps[v] = stamp;
+						frontier[size++] = v;
+						if (settledIn[v] != current) {
+							settledIn[v] = current;
+							if (settledSize == settled.length)
+								settled = Arrays.copyOf(settled, 2 * settledSize);
+							settled[settledSize++] = v;
+						}
+					}
+				}
+				bucketSizes[slot] = 0;
+				int[] f = Arrays.copyOf(frontier, size);
+				int[] improved = pool.submit(
+						() -> IntStream.of(f).parallel()
+								.flatMap(v -> relax(v, start[v], light[v], heads,
+										arcWeights, distances)).toArray()).join();
+				pending += distribute(improved, distances, width, slots,
+						buckets, bucketSizes);
+			}
+			int[] r = Arrays.copyOf(settled, settledSize);
+			int[] improved = pool.submit(
+					() -> IntStream.of(r).parallel()
+							.flatMap(v -> relax(v, light[v], start[v + 1], heads,
+									arcWeights, distances)).toArray()).join();
+			pending += distribute(improved, distances, width, slots, buckets,
+					bucketSizes);
+		}
+		// predecessors on a tree of tight arcs, built from the source
+		int[] predecessors = new int[n];
+		Arrays.fill(predecessors, -1);
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+		queue[tail++] = s;
+		while (head < tail) {
+			int u = queue[head++];
+			double du = Double.longBitsToDouble(distances.get(u));
+			for (int i = start[u]; i < start[u + 1]; i++) {
+				int v = heads[i];
+				if (v != s && predecessors[v] < 0
+						&& du + arcWeights[i] == Double.longBitsToDouble(distances
+								.get(v))) {
+					predecessors[v] = u;
+					queue[tail++] = v;
 				}
 			}
 		}
+		ShortestPaths<V> result = new ShortestPaths<V>();
+		for (V v : g.vertices()) {
+			int id = index.vertexId(v);
+			result.distances.put(v, Double.longBitsToDouble(distances.get(id)));
+			result.predecessors.put(v, predecessors[id] < 0 ? null
+					: index.vertex(predecessors[id]));
+		}
 		return result;
 	}
 
+	/*
+	 * Relax the arcs from..to of u, returns the vertices whose distance
+	 * decreased.
+	 */
+	private static IntStream relax(int u, int from, int to, int[] heads,
+			double[] weights, AtomicLongArray distances) {
+		double du = Double.longBitsToDouble(distances.get(u));
+		int[] improved = new int[to - from];
+		int size = 0;
+		for (int i = from; i < to; i++) {
+			int v = heads[i];
+			double d = du + weights[i];
+			while (true) {
+				long current = distances.get(v);
+				if (d >= Double.longBitsToDouble(current))
+					break;
+				if (distances.compareAndSet(v, current, Double.doubleToLongBits(d))) {
+					improved[size++] = v;
+					break;
+				}
+			}
+		}
+		return IntStream.of(improved).limit(size);
+	}
+
+	/*
+	 * Put the vertices in the buckets of their distances, returns their
+	 * number.
+	 */
+	private static int distribute(int[] vertices, AtomicLongArray distances,
+			double delta, int slots, int[][] buckets, int[] bucketSizes) {
+		for (int v : vertices) {
+			double d = Double.longBitsToDouble(distances.get(v));
+			int slot = (int) ((long) (d / delta) % slots);
+			if (buckets[slot] == null)
+				buckets[slot] = new int[16];
+			else if (bucketSizes[slot] == buckets[slot].length)
+				buckets[slot] = Arrays.copyOf(buckets[slot], 2 * bucketSizes[slot]);
+			buckets[slot][bucketSizes[slot]++] = v;
+		}
+		return vertices.length;
+	}
+
 	/**
 	 * Single source shortest path using Bellman-Ford's algorithm to find the
 	 * shortest path
@@ -208,17 +754,27 @@ public class Graphs {
 	public static <V, E extends Graph.Edge<V>> ShortestPaths<V> bellmanFord(
 			Graph<V, E> g, V source, Map<E, Double> weights)
 			throws NegativeCircuitException {
+		return bellmanFord(g, source, weights::get);
+	}
+
+	/**
+	 * Same as {@link #bellmanFord(Graph, Object, Map)}, the weights being
+	 * given by a function.
+	 */
+	public static <V, E extends Graph.Edge<V>> ShortestPaths<V> bellmanFord(
+			Graph<V, E> g, V source, ToDoubleFunction<? super E> weights)
+			throws NegativeCircuitException {
 		final ShortestPaths<V> result = initializeShortestPaths(g, source);
 		boolean modified = true;
 		for (int i = 0; i < g.order() - 1 && modified; i++) {
 			modified = false;
 			for (E e : g.edges()) {
-				modified |= relax(e, result, weights.get(e));
+				modified |= relax(e, result, weights.applyAsDouble(e));
 			}
 		}
 		if (modified) {
 			for (E e : g.edges()) {
-				if (relax(e, result, weights.get(e))) {
+				if (relax(e, result, weights.applyAsDouble(e))) {
 					List<V> circuit = new ArrayList<V>();
 					V u = e.source();
 					V v = e.target();
@@ -235,6 +791,190 @@ public class Graphs {
 		return result;
 	}
 
+	/**
+	 * Same as {@link #bellmanFordQueue(Graph, Object, ToDoubleFunction)}, the
+	 * weights being given by a map.
+	 */
+	public static <V, E extends Graph.Edge<V>> ShortestPaths<V> bellmanFordQueue(
+			Graph<V, E> g, V source, Map<E, Double> weights)
+			throws NegativeCircuitException {
+		return bellmanFordQueue(g, source, weights::get);
+	}
+
+	/**
+	 * Single source shortest paths using a queue based Bellman-Ford's
+	 * algorithm: only the outgoing edges of the vertices whose distance
+	 * decreased are relaxed. The shortest paths tree is kept during the
+	 * search (Tarjan's subtree disassembly): when the distance of a vertex
+	 * decreases, its subtree is removed from the tree and its descendants are
+	 * not scanned until they are reached again. A negative circuit is found
+	 * as soon as a vertex would become its own descendant.
+	 * 
+	 * @param g
+	 *            graph
+	 * @param source
+	 *            source vertex
+	 * @param weights
+	 *            for each edge of g, distance between the origin and the target
+	 *            of the edge.
+	 * @return the same result as
+	 *         {@link #bellmanFord(Graph, Object, ToDoubleFunction)}
+	 * @throws NegativeCircuitException
+	 *             if a negative circuit can be reached from the source.
+	 */
+	public static <V, E extends Graph.Edge<V>> ShortestPaths<V> bellmanFordQueue(
+			Graph<V, E> g, V source, ToDoubleFunction<? super E> weights)
+			throws NegativeCircuitException {
+		GraphIndex<V, E> index = g.index();
+		Arcs arcs = new Arcs(g, index, weights, false);
+		int s = index.vertexId(source);
+		if (s < 0)
+			throw new IllegalArgumentException("Unknown vertex " + source);
+		double[] distances = new double[arcs.order()];
+		int[] parent = bellmanFordQueue(arcs, s, index, distances);
+		ShortestPaths<V> result = new ShortestPaths<V>();
+		for (V v : g.vertices()) {
+			int id = index.vertexId(v);
+			result.distances.put(v, distances[id]);
+			result.predecessors.put(v, parent[id] < 0 ? null
+					: index.vertex(parent[id]));
+		}
+		return result;
+	}
+
+	/*
+	 * Queue based Bellman-Ford's algorithm from s on arcs, returns the
+	 * parents in the shortest paths tree.
+	 */
+	private static <V> int[] bellmanFordQueue(Arcs arcs, int s,
+			GraphIndex<V, ?> index, double[] distances)
+			throws NegativeCircuitException {
+		int n = arcs.order();
+		int[] parent = new int[n];
+		// the tree is a circular list in preorder, depth is -1 out of the tree
+		int[] next = new int[n];
+		int[] previous = new int[n];
+		int[] depth = new int[n];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(parent, -1);
+		Arrays.fill(depth, -1);
+		distances[s] = 0;
+		next[s] = previous[s] = s;
+		depth[s] = 0;
+		int[] queue = new int[n];
+		boolean[] queued = new boolean[n];
+		int head = 0, size = 1;
+		queue[0] = s;
+		queued[s] = true;
+		while (size > 0) {
+			int u = queue[head];
+			head = head + 1 == n ? 0 : head + 1;
+			size--;
+			queued[u] = false;
+			if (depth[u] < 0)
+				continue;
+			for (int i = arcs.start[u]; i < arcs.start[u + 1]; i++) {
+				int v = arcs.heads[i];
+				double d = distances[u] + arcs.weights[i];
+				if (d >= distances[v])
+					continue;
+				if (depth[v] >= 0) {
+					// remove the subtree of v
+					int x = next[v];
+					if (u == v)
+						x = -1;
+					while (x >= 0 && depth[x] > depth[v]) {
+						if (x == u) {
+							x = -1;
+							break;
+						}
+						depth[x] = -1;
+						x = next[x];
+					}
+					if (x < 0) {
+						List<V> circuit = new ArrayList<V>();
+						for (int w = u; w != v; w = parent[w])
+							circuit.add(index.vertex(w));
+						circuit.add(index.vertex(v));
+						Collections.reverse(circuit);
+						throw new NegativeCircuitException(circuit);
+					}
+					next[previous[v]] = x;
+					previous[x] = previous[v];
+				}
+				distances[v] = d;
+				parent[v] = u;
+				depth[v] = depth[u] + 1;
+				next[v] = next[u];
+				previous[next[u]] = v;
+				next[u] = v;
+				previous[v] = u;
+				if (!queued[v]) {
+					queue[(head + size) % n] = v;
+					size++;
+					queued[v] = true;
+				}
+			}
+		}
+		return parent;
+	}
+
+	/*
+	 * The edges of a graph as arrays of arcs sorted by source, with their
+	 * weights read once. With a virtual source, an extra vertex after the
+	 * vertices of g has an arc of weight 0 to each of them.
+	 */
+	private static class Arcs {
+		final int[] start;
+		final int[] heads;
+		final double[] weights;
+		boolean negative;
+
+		<V, E extends Graph.Edge<V>> Arcs(Graph<V, E> g, GraphIndex<V, E> index,
+				ToDoubleFunction<? super E> weights, boolean virtualSource) {
+			int bound = index.vertexIdBound();
+			int n = virtualSource ? bound + 1 : bound;
+			int m = virtualSource ? g.size() + g.order() : g.size();
+			int[] tails = new int[m];
+			start = new int[n + 1];
+			heads = new int[m];
+			this.weights = new double[m];
+			double[] w = new double[m];
+			IntToDoubleFunction weight = EdgeAttributes.doublesById(index,
+					weights);
+			int k = 0;
+			for (int id = 0; id < index.edgeIdBound(); id++) {
+				E e = index.edge(id);
+				if (e == null)
+					continue;
+				tails[k] = index.vertexId(e.source());
+				heads[k] = index.vertexId(e.target());
+				w[k] = weight.applyAsDouble(id);
+				negative |= w[k] < 0;
+				start[tails[k++] + 1]++;
+			}
+			if (virtualSource)
+				for (V v : g.vertices()) {
+					tails[k] = bound;
+					heads[k] = index.vertexId(v);
+					start[tails[k++] + 1]++;
+				}
+			for (int v = 0; v < n; v++)
+				start[v + 1] += start[v];
+			int[] position = Arrays.copyOf(start, n);
+			int[] targets = heads.clone();
+			for (int i = 0; i < m; i++) {
+				int p = position[tails[i]]++;
+				heads[p] = targets[i];
+				this.weights[p] = w[i];
+			}
+		}
+
+		int order() {
+			return start.length - 1;
+		}
+	}
+
 	/**
 	 * 
 	 * @author baudon
@@ -283,6 +1023,117 @@ public class Graphs {
 		}
 	}
 
+	/**
+	 * The shortest paths between all the pairs of vertices, kept in flat
+	 * arrays: the distance from the vertex of row s to the vertex of row t is
+	 * at index s * n + t, and so is the row of the predecessor of t on a
+	 * shortest path from s (-1 if there is none). The paths are rebuilt on
+	 * demand from the predecessors.
+	 */
+	public static class DistanceMatrix<V> {
+		private final Object[] vertices;
+		private final Map<V, Integer> rows;
+		final double[] distances;
+		final int[] predecessors;
+
+		DistanceMatrix(Object[] vertices, Map<V, Integer> rows) {
+			int n = vertices.length;
+			if ((long) n * n > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Too many vertices: " + n);
+			this.vertices = vertices;
+			this.rows = rows;
+			distances = new double[n * n];
+			predecessors = new int[n * n];
+		}
+
+		/**
+		 * Returns the number of vertices.
+		 */
+		public int order() {
+			return vertices.length;
+		}
+
+		/**
+		 * Returns the row of a vertex, -1 if it is not a vertex of the graph.
+		 */
+		public int row(V v) {
+			Integer row = rows.get(v);
+			return row == null ? -1 : row;
+		}
+
+		/**
+		 * Returns the vertex of a row.
+		 */
+		@SuppressWarnings("unchecked")
+		public V vertex(int row) {
+			return (V) vertices[row];
+		}
+
+		/**
+		 * Returns the length of a shortest path from s to t, infinity if t
+		 * cannot be reached from s.
+		 */
+		public double distance(V s, V t) {
+			return distances[index(s, t)];
+		}
+
+		/**
+		 * Returns the predecessor of t on a shortest path from s, null if
+		 * there is none.
+		 */
+		public V predecessor(V s, V t) {
+			int p = predecessors[index(s, t)];
+			return p < 0 ? null : vertex(p);
+		}
+
+		/**
+		 * Returns a shortest path from s to t, or null if t cannot be reached
+		 * from s.
+		 */
+		public Path<V> path(V s, V t) {
+			int i = index(s, t);
+			if (distances[i] == Double.POSITIVE_INFINITY)
+				return null;
+			int n = vertices.length;
+			int row = i / n;
+			List<V> path = new ArrayList<V>();
+			for (int v = i % n; v != row; v = predecessors[row * n + v])
+				path.add(vertex(v));
+			path.add(s);
+			Collections.reverse(path);
+			return new Path<V>(distances[i], path);
+		}
+
+		/**
+		 * Returns the same result with maps.
+		 */
+		public ShortestPathsMatrices<V> toShortestPathsMatrices() {
+			int n = vertices.length;
+			ShortestPathsMatrices<V> result = new ShortestPathsMatrices<V>();
+			for (int s = 0; s < n; s++) {
+				Map<V, Double> dist = new HashMap<V, Double>();
+				Map<V, V> pred = new HashMap<V, V>();
+				for (int t = 0; t < n; t++) {
+					dist.put(vertex(t), distances[s * n + t]);
+					int p = predecessors[s * n + t];
+					pred.put(vertex(t), p < 0 ? null : vertex(p));
+				}
+				result.distances.put(vertex(s), dist);
+				result.predecessors.put(vertex(s), pred);
+			}
+			return result;
+		}
+
+		private int index(V s, V t) {
+			int i = row(s);
+			int j = row(t);
+			if (i < 0 || j < 0)
+				throw new IllegalArgumentException("Unknown vertex "
+						+ (i < 0 ? s : t));
+			return i * vertices.length + j;
+		}
+	}
+
 	/**
 	 * All-pair shortest path using Floyd-Warshall's algorithm to find all pair
 	 * shortest paths
@@ -297,56 +1148,305 @@ public class Graphs {
 	 */
 	public static <V, E extends Graph.Edge<V>> ShortestPathsMatrices<V> floydWarshall(
 			Graph<V, E> g, Map<E, Double> weights) throws NegativeCircuitException {
-		ShortestPathsMatrices<V> result = new ShortestPathsMatrices<V>();
-		for (V v : g.vertices()) {
-			Map<V, Double> dist = new HashMap<V, Double>();
-			Map<V, V> pred = new HashMap<V, V>();
-			result.distances.put(v, dist);
-			result.predecessors.put(v, pred);
-			for (V w : g.vertices()) {
-				dist.put(w, Double.POSITIVE_INFINITY);
-				pred.put(w, null);
-			}
-			dist.put(v, 0.0);
-		}
+		return floydWarshall(g, weights::get);
+	}
+
+	/**
+	 * Same as {@link #floydWarshall(Graph, Map)}, the weights being given by
+	 * a function.
+	 */
+	public static <V, E extends Graph.Edge<V>> ShortestPathsMatrices<V> floydWarshall(
+			Graph<V, E> g, ToDoubleFunction<? super E> weights)
+			throws NegativeCircuitException {
+		return floydWarshallMatrix(g, weights).toShortestPathsMatrices();
+	}
+
+	/**
+	 * Same as {@link #floydWarshallMatrix(Graph, ToDoubleFunction, ForkJoinPool)}
+	 * on the common fork/join pool.
+	 */
+	public static <V, E extends Graph.Edge<V>> DistanceMatrix<V> floydWarshallMatrix(
+			Graph<V, E> g, ToDoubleFunction<? super E> weights)
+			throws NegativeCircuitException {
+		return floydWarshallMatrix(g, weights, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Floyd-Warshall's algorithm on flat matrices. The matrices are cut in
+	 * square blocks which fit in the cache. For each block of intermediate
+	 * vertices k, the diagonal block is updated first, then the blocks of row
+	 * k and column k in parallel, then all the other blocks in parallel.
+	 * 
+	 * @param g
+	 *            graph
+	 * @param weights
+	 *            for each edge of g, distance between the origin and the target
+	 *            of the edge.
+	 * @param pool
+	 *            pool updating the blocks
+	 * @throws NegativeCircuitException
+	 *             if the graph contains a negative circuit.
+	 */
+	public static <V, E extends Graph.Edge<V>> DistanceMatrix<V> floydWarshallMatrix(
+			Graph<V, E> g, ToDoubleFunction<? super E> weights, ForkJoinPool pool)
+			throws NegativeCircuitException {
+		DistanceMatrix<V> result = distanceMatrix(g);
+		int n = result.order();
+		double[] d = result.distances;
+		int[] p = result.predecessors;
+		Arrays.fill(d, Double.POSITIVE_INFINITY);
+		Arrays.fill(p, -1);
+		for (int v = 0; v < n; v++)
+			d[v * n + v] = 0;
 		for (E e : g.edges()) {
-			V u = e.source();
-			V v = e.target();
+			int u = result.row(e.source());
+			int v = result.row(e.target());
 			// the following test is necessary only in case of multiple edges
-			if (result.distances.get(u).get(v) > weights.get(e)) {
-				result.distances.get(u).put(v, weights.get(e));
-				result.predecessors.get(u).put(v, u);
+			double we = weights.applyAsDouble(e);
+			if (d[u * n + v] > we) {
+				d[u * n + v] = we;
+				p[u * n + v] = u;
 			}
 		}
-		for (V u : g.vertices()) {
-			for (V v : g.vertices()) {
-				for (V w : g.vertices()) {
-					double d = result.distances
-							.get(v).get(u) + result.distances.get(u).get(w);
-					if (result.distances.get(v).get(w) > result.distances
-							.get(v).get(u) + result.distances.get(u).get(w)) {
-						result.distances.get(v).put(w, d);
-						result.predecessors.get(v).put(w, result.predecessors.get(u).get(w));
+		int blocks = (n + FW_BLOCK - 1) / FW_BLOCK;
+		for (int k = 0; k < blocks; k++) {
+			int kb = k;
+			updateBlock(d, p, n, kb, kb, kb);
+			pool.submit(() -> IntStream.range(0, 2 * blocks).parallel()
+					.forEach(b -> {
+						if (b % blocks != kb) {
+							if (b < blocks)
+								updateBlock(d, p, n, kb, kb, b);
+							else
+								updateBlock(d, p, n, kb, b - blocks, kb);
+						}
+					})).join();
+			pool.submit(() -> IntStream.range(0, blocks * blocks).parallel()
+					.forEach(b -> {
+						int i = b / blocks;
+						int j = b % blocks;
+						if (i != kb && j != kb)
+							updateBlock(d, p, n, kb, i, j);
+					})).join();
+		}
+		for (int u = 0; u < n; u++)
+			if (d[u * n + u] < 0) {
+				negativeCircuit(g, weights);
+				break;
+			}
+		return result;
+	}
+
+	// side of the blocks of Floyd-Warshall's algorithm
+	private static final int FW_BLOCK = 64;
+
+	/*
+	 * Update the block (i, j) with the intermediate vertices of block k.
+	 */
+	private static void updateBlock(double[] d, int[] p, int n, int k, int i,
+			int j) {
+		int kEnd = Math.min(n, (k + 1) * FW_BLOCK);
+		int iEnd = Math.min(n, (i + 1) * FW_BLOCK);
+		int jStart = j * FW_BLOCK;
+		int jEnd = Math.min(n, jStart + FW_BLOCK);
+		for (int w = k * FW_BLOCK; w < kEnd; w++) {
+			for (int u = i * FW_BLOCK; u < iEnd; u++) {
+				double duw = d[u * n + w];
+				if (duw == Double.POSITIVE_INFINITY)
+					continue;
+				for (int v = jStart, uv = u * n + jStart, wv = w * n + jStart; v < jEnd; v++, uv++, wv++) {
+					double dv = duw + d[wv];
+					if (dv < d[uv]) {
+						d[uv] = dv;
+						p[uv] = p[wv];
 					}
 				}
 			}
 		}
-		for (V u : g.vertices()) {
-			if (result.distances.get(u).get(u) < 0) {
-				List<V> circuit = new ArrayList<V>();
-				V v = result.predecessors.get(u).get(u);
-				circuit.add(u);
-				while (!v.equals(u)) {
-					circuit.add(v);
-					v = result.predecessors.get(u).get(v);
+	}
+
+	/*
+	 * A matrix for the vertices of g.
+	 */
+	private static <V, E extends Graph.Edge<V>> DistanceMatrix<V> distanceMatrix(
+			Graph<V, E> g) {
+		Object[] vertices = new Object[g.order()];
+		Map<V, Integer> rows = new HashMap<V, Integer>();
+		for (V v : g.vertices()) {
+			vertices[rows.size()] = v;
+			rows.put(v, rows.size());
+		}
+		return new DistanceMatrix<V>(vertices, rows);
+	}
+
+	/*
+	 * Throws the exception of a negative circuit of g. Once a distance went
+	 * through a negative circuit, the predecessors of Floyd-Warshall's
+	 * algorithm no longer follow the edges, so the circuit is searched by
+	 * the queue based Bellman-Ford's algorithm from a virtual source linked
+	 * to every vertex. Nothing is thrown if the negative distance was only a
+	 * rounding error.
+	 */
+	private static <V, E extends Graph.Edge<V>> void negativeCircuit(
+			Graph<V, E> g, ToDoubleFunction<? super E> weights)
+			throws NegativeCircuitException {
+		GraphIndex<V, E> index = g.index();
+		Arcs arcs = new Arcs(g, index, weights, true);
+		bellmanFordQueue(arcs, arcs.order() - 1, index,
+				new double[arcs.order()]);
+	}
+
+	/**
+	 * Receives the shortest paths from a source computed by
+	 * {@link Graphs#johnson(Graph, ToDoubleFunction, RowConsumer, ForkJoinPool)}.
+	 */
+	@FunctionalInterface
+	public static interface RowConsumer<V> {
+		/**
+		 * @param index
+		 *            index of the graph giving the vertex of each id, the
+		 *            same for every row
+		 * @param source
+		 *            source vertex
+		 * @param distances
+		 *            length of a shortest path from the source to each vertex,
+		 *            by vertex id of the index
+		 * @param predecessors
+		 *            id of the predecessor of each vertex on a shortest path
+		 *            from the source, -1 if there is none. The arrays are
+		 *            reused for the next source and must be copied to be kept.
+		 */
+		void accept(GraphIndex<V, ?> index, V source, double[] distances,
+				int[] predecessors);
+	}
+
+	/**
+	 * Same as {@link #johnson(Graph, ToDoubleFunction, RowConsumer, ForkJoinPool)}
+	 * on the common fork/join pool, the results being kept in a matrix.
+	 */
+	public static <V, E extends Graph.Edge<V>> DistanceMatrix<V> johnson(
+			Graph<V, E> g, ToDoubleFunction<? super E> weights)
+			throws NegativeCircuitException {
+		DistanceMatrix<V> result = distanceMatrix(g);
+		GraphIndex<V, E> index = g.index();
+		int n = result.order();
+		int[] rows = new int[index.vertexIdBound()];
+		for (int r = 0; r < n; r++)
+			rows[index.vertexId(result.vertex(r))] = r;
+		johnson(g, index, weights, (i, source, distances, predecessors) -> {
+			int offset = rows[index.vertexId(source)] * n;
+			for (int id = 0; id < distances.length; id++) {
+				if (index.vertex(id) == null)
+					continue;
+				result.distances[offset + rows[id]] = distances[id];
+				result.predecessors[offset + rows[id]] = predecessors[id] < 0 ? -1
+						: rows[predecessors[id]];
+			}
+		}, ForkJoinPool.commonPool());
+		return result;
+	}
+
+	/**
+	 * All pairs shortest paths using Johnson's algorithm, for sparse graphs.
+	 * When there are negative weights, a Bellman-Ford's search from a virtual
+	 * source linked to every vertex gives a potential h such that the reduced
+	 * weights w(u, v) + h(u) - h(v) are not negative. Then a Dijskstra's
+	 * search is run from each vertex, the searches being spread over the
+	 * threads of the pool; each row of results is given to a consumer as
+	 * soon as it is computed.
+	 * 
+	 * @param g
+	 *            graph
+	 * @param weights
+	 *            for each edge of g, distance between the origin and the target
+	 *            of the edge.
+	 * @param rows
+	 *            consumer of the results, called concurrently by the threads
+	 *            of the pool
+	 * @param pool
+	 *            pool running the Dijskstra's searches
+	 * @throws NegativeCircuitException
+	 *             if the graph contains a negative circuit.
+	 */
+	public static <V, E extends Graph.Edge<V>> void johnson(Graph<V, E> g,
+			ToDoubleFunction<? super E> weights, RowConsumer<V> rows,
+			ForkJoinPool pool) throws NegativeCircuitException {
+		johnson(g, g.index(), weights, rows, pool);
+	}
+
+	/*
+	 * Johnson's algorithm on an index of g, taken once by the caller since
+	 * some graphs build a new one at each call.
+	 */
+	private static <V, E extends Graph.Edge<V>> void johnson(Graph<V, E> g,
+			GraphIndex<V, E> index, ToDoubleFunction<? super E> weights,
+			RowConsumer<V> rows, ForkJoinPool pool)
+			throws NegativeCircuitException {
+		Arcs arcs = new Arcs(g, index, weights, true);
+		int n = arcs.order() - 1;
+		double[] h = new double[n + 1];
+		if (arcs.negative)
+			bellmanFordQueue(arcs, n, index, h);
+		double[] reduced = new double[arcs.heads.length];
+		for (int u = 0; u < n; u++)
+			for (int i = arcs.start[u]; i < arcs.start[u + 1]; i++)
+				reduced[i] = Math.max(0, arcs.weights[i] + h[u]
+						- h[arcs.heads[i]]);
+		int[] sources = new int[g.order()];
+		int k = 0;
+		for (V v : g.vertices())
+			sources[k++] = index.vertexId(v);
+		ThreadLocal<JohnsonSearch> searches = ThreadLocal
+				.withInitial(() -> new JohnsonSearch(n));
+		pool.submit(() -> IntStream.of(sources).parallel().forEach(s -> {
+			JohnsonSearch search = searches.get();
+			search.run(arcs, reduced, s);
+			rows.accept(index, index.vertex(s), search.distances,
+					search.predecessors);
+		})).join();
+	}
+
+	/*
+	 * Dijskstra's search on the reduced weights, the distances being summed
+	 * with the weights of the arcs.
+	 */
+	private static class JohnsonSearch {
+		final double[] distances;
+		final int[] predecessors;
+		final double[] reducedDistances;
+		final IndexedHeap heap;
+
+		JohnsonSearch(int n) {
+			distances = new double[n];
+			predecessors = new int[n];
+			reducedDistances = new double[n];
+			heap = new IndexedHeap(n);
+		}
+
+		void run(Arcs arcs, double[] reduced, int s) {
+			Arrays.fill(distances, Double.POSITIVE_INFINITY);
+			Arrays.fill(reducedDistances, Double.POSITIVE_INFINITY);
+			Arrays.fill(predecessors, -1);
+			distances[s] = 0;
+			reducedDistances[s] = 0;
+			heap.insert(s, 0);
+			while (!heap.isEmpty()) {
+				int u = heap.poll();
+				for (int i = arcs.start[u]; i < arcs.start[u + 1]; i++) {
+					int v = arcs.heads[i];
+					double d = reducedDistances[u] + reduced[i];
+					if (d < reducedDistances[v]) {
+						reducedDistances[v] = d;
+						distances[v] = distances[u] + arcs.weights[i];
+						predecessors[v] = u;
+						heap.insertOrDecrease(v, d);
+					}
 				}
-				Collections.reverse(circuit);
-				throw new NegativeCircuitException(circuit);
 			}
 		}
-		return result;
 	}
 
+
 //	/**
 //	 * 
 //	 * @author baudon
@@ -771,12 +1871,17 @@ public class Graphs {
 	}
 	
 	public static <V, E extends Graph.Edge<V>> PartialGraph<V, E> kruskal(Graph<V, E> g, final Map<E, Integer> weight){
+		return kruskal(g, (ToDoubleFunction<E>) weight::get);
+	}
+
+	public static <V, E extends Graph.Edge<V>> PartialGraph<V, E> kruskal(Graph<V, E> g, final ToDoubleFunction<? super E> weight){
 		@SuppressWarnings("unchecked")
 		PartialGraph<V, E> tree = g.partialGraph((Set<E>) Collections.EMPTY_SET);
 		Queue<E> q = new PriorityQueue<E>(g.order(), new Comparator<E>() {
 			@Override
 			public int compare(E o1, E o2) {
-				return weight.get(o1).compareTo(weight.get(o2));
+				return Double.compare(weight.applyAsDouble(o1),
+						weight.applyAsDouble(o2));
 			}
 		});
 		//make-set
@@ -808,12 +1913,17 @@ public class Graphs {
 	
 	
 	public static <V, E extends Graph.Edge<V>> PartialGraph<V, E> prim(Graph<V, E> g, final Map<E, Integer> weight, V root){
+		return prim(g, (ToDoubleFunction<E>) weight::get, root);
+	}
+
+	public static <V, E extends Graph.Edge<V>> PartialGraph<V, E> prim(Graph<V, E> g, final ToDoubleFunction<? super E> weight, V root){
 		@SuppressWarnings("unchecked")
 		PartialGraph<V, E> tree = g.partialGraph((Set<E>) Collections.EMPTY_SET);
 		Queue<E> q = new PriorityQueue<E>(g.order(), new Comparator<E>() {
 			@Override
 			public int compare(E o1, E o2) {
-				return weight.get(o1).compareTo(weight.get(o2));
+				return Double.compare(weight.applyAsDouble(o1),
+						weight.applyAsDouble(o2));
 			}
 		});		
 		Set<V> marked = new HashSet<V>();
@@ -1075,294 +2185,279 @@ public class Graphs {
 		}
 	}
 	
-	private static <V, E extends Graph.Edge<V>> E hasUsefulEdge(Graph<V, E> g,
-			Map<E, Integer> b,
-			Map<E, Integer> c, 
-			FlowResults<E> f, Map<V, Lamda<E>> lamda){
-		E edge = null;
-		for (E e : g.edges()){
-			int be = b!=null?b.get(e):0;
-			if ((lamda.get(e.source())!=null
-					&&lamda.get(e.target())==null
-					&&f.maximumFlow.get(e)<c.get(e))
-				||
-				(lamda.get(e.source())==null
-					&&lamda.get(e.target())!=null
-					&&f.maximumFlow.get(e)>be)){
-				return e;
-			}
-		}
-		return edge;
-	}
-	
-	private static <V, E extends Graph.Edge<V>> void label(Graph<V, E> g, V target,
-			Map<E, Integer> b,
-			Map<E, Integer> c, 
-			FlowResults<E> f, 
-			Map<V, Lamda<E>> lamda, 
-			Map<E, Integer> delta){
-		E edge = hasUsefulEdge(g, b, c, f, lamda);
-		while (edge!=null && lamda.get(target)==null){
-			int be = b!=null?b.get(edge):0;
-			if (lamda.get(edge.source())!=null){
-				lamda.put(edge.target(), new Lamda<E>(edge, 1));
-				delta.put(edge, c.get(edge) - f.maximumFlow.get(edge));
-			}
-			else{
-				lamda.put(edge.source(), new Lamda<E>(edge, -1));
-				delta.put(edge, f.maximumFlow.get(edge)-be);
-			}
-			edge = hasUsefulEdge(g, b, c, f, lamda);
-		}		
-		if (edge==null){
-			for (E e : g.edges()){
-				if ((lamda.get(e.source())!=null
-						&&lamda.get(e.target())==null)
-					||
-					(lamda.get(e.source())==null
-						&&lamda.get(e.target())!=null)){
-					f.minimumCut.add(e);					
+	/*
+	 * State of the labelling algorithm of fordFulkersonV01, indexed by the ids
+	 * of the vertices and edges of the graph (see Graph.index()). lamda[v] is
+	 * the id of the edge by which v is labelled, -1 if v is not labelled and
+	 * -2 for the source. forward[v] tells if the flow on this edge is
+	 * increased or decreased by an augmentation.
+	 */
+	private static final class Labelling {
+		final int[] tail;
+		final int[] head;
+		final int[] lower;
+		final int[] upper;
+		final int[] flow;
+		final int[] delta;
+		final int[] lamda;
+		final boolean[] forward;
+		final int source;
+		final int target;
+
+		<V, E extends Graph.Edge<V>> Labelling(GraphIndex<V, E> index, V source,
+				V target, ToIntFunction<? super E> b,
+				ToIntFunction<? super E> c) {
+			int m = index.edgeIdBound();
+			tail = new int[m];
+			head = new int[m];
+			lower = new int[m];
+			upper = new int[m];
+			flow = new int[m];
+			delta = new int[m];
+			for (int id = 0; id < m; id++) {
+				E e = index.edge(id);
+				if (e == null) {
+					tail[id] = -1;
+					continue;
 				}
-			}			
-		}
-	}
-	
-	private static <V, E extends Graph.Edge<V>> void augment(Graph<V, E> g,V source, V target,  
-			FlowResults<E> f, 
-			Map<V, Lamda<E>> lamda, 
-			Map<E, Integer> delta){
-		Queue<Lamda<E>> q = new LinkedList<Lamda<E>>();
-		int vDelta = Integer.MAX_VALUE;
-		V v = target;
-		while (!v.equals(source)){
-			q.add(lamda.get(v));
-			E e = lamda.get(v).edge;
-			int vE = delta.get(e);
-			vDelta = vDelta < vE ? vDelta : vE;
-			v = e.getOpposite(v);
-		}
-		while (!q.isEmpty()){
-			Lamda<E> ld = q.poll();
-			if (ld.value==1) {
-				f.maximumFlow.put(ld.edge, f.maximumFlow.get(ld.edge) + vDelta);
-			}else{
-				f.maximumFlow.put(ld.edge, f.maximumFlow.get(ld.edge) - vDelta);
+				tail[id] = index.vertexId(e.source());
+				head[id] = index.vertexId(e.target());
+				lower[id] = b != null ? b.applyAsInt(e) : 0;
+				upper[id] = c.applyAsInt(e);
 			}
+			lamda = new int[index.vertexIdBound()];
+			forward = new boolean[lamda.length];
+			this.source = index.vertexId(source);
+			this.target = index.vertexId(target);
+			if (this.source < 0 || this.target < 0)
+				throw new IllegalArgumentException();
 		}
-		
-	}
-	
-	public static <V, E extends Graph.Edge<V>> FlowResults<E> fordFulkersonV01(Graph<V, E> g,V source, V target, Map<E, Integer> b, Map<E, Integer> c){
-		FlowResults<E> result = new FlowResults<E>();
-		for (E e : g.edges()){
-			result.maximumFlow.put(e, 0);
-		}		
-		Map<V, Lamda<E>> lamda = new HashMap<V, Lamda<E>>();
-		for (V v : g.vertices()){
-			lamda.put(v, null);
+
+		boolean labelled(int v) {
+			return lamda[v] != -1;
 		}
-		lamda.put(source, new Lamda<E>());
-		Map<E, Integer> delta = new HashMap<E, Integer>();	
-		
-		label(g, target, b, c, result , lamda, delta);
-		while (lamda.get(target)!=null){
-			augment(g, source, target, result, lamda, delta);
-			for (V v: g.vertices()){
-				if (v.equals(source)) continue;
-				lamda.put(v, null);				
+
+		int usefulEdge() {
+			for (int e = 0; e < tail.length; e++) {
+				if (tail[e] < 0)
+					continue;
+				if (labelled(tail[e]) && !labelled(head[e]) && flow[e] < upper[e]
+						|| !labelled(tail[e]) && labelled(head[e])
+								&& flow[e] > lower[e])
+					return e;
 			}
-			label(g, target, b, c, result, lamda, delta);
+			return -1;
 		}
-		for (E e : g.edges()) {
-			if (e.source().equals(source)) {
-				result.value += result.maximumFlow.get(e);
+
+		/*
+		 * Label the vertices from the source, returns true if the target is
+		 * labelled.
+		 */
+		boolean label() {
+			Arrays.fill(lamda, -1);
+			lamda[source] = -2;
+			if (source == target)
+				return false;
+			for (int e = usefulEdge(); e >= 0 && !labelled(target); e = usefulEdge()) {
+				if (labelled(tail[e])) {
+					lamda[head[e]] = e;
+					forward[head[e]] = true;
+					delta[e] = upper[e] - flow[e];
+				} else {
+					lamda[tail[e]] = e;
+					forward[tail[e]] = false;
+					delta[e] = flow[e] - lower[e];
+				}
 			}
+			return labelled(target);
+		}
+
+		void augment() {
+			int vDelta = Integer.MAX_VALUE;
+			for (int v = target; v != source; v = forward[v] ? tail[lamda[v]] : head[lamda[v]])
+				vDelta = Math.min(vDelta, delta[lamda[v]]);
+			for (int v = target; v != source; v = forward[v] ? tail[lamda[v]] : head[lamda[v]])
+				flow[lamda[v]] += forward[v] ? vDelta : -vDelta;
 		}
-		return result;	
 	}
 	
-	public static <V, E extends Graph.Edge<V>> FlowResults<E> networkLowerUpperBound(Graph<V, E> g,V source, V target,  
-			Map<E, Integer> b, Map<E, Integer> c) throws NotLegalFlowException {
-		if (!hasLegalFlow(g, source, target, b, c)) {
-			throw new NotLegalFlowException();
+	public static <V, E extends Graph.Edge<V>> FlowResults<E> fordFulkersonV01(Graph<V, E> g,V source, V target, Map<E, Integer> b, Map<E, Integer> c){
+		return fordFulkersonV01(g, source, target, b == null ? null : (ToIntFunction<E>) b::get, c::get);
+	}
+
+	/**
+	 * Same as {@link #fordFulkersonV01(Graph, Object, Object, Map, Map)}, the
+	 * lower bounds (which may be null) and the capacities being given by
+	 * functions.
+	 */
+	public static <V, E extends Graph.Edge<V>> FlowResults<E> fordFulkersonV01(Graph<V, E> g,V source, V target, ToIntFunction<? super E> b, ToIntFunction<? super E> c){
+		GraphIndex<V, E> index = g.index();
+		Labelling l = new Labelling(index, source, target, b, c);
+		while (l.label()) {
+			l.augment();
 		}
 		FlowResults<E> result = new FlowResults<E>();
-		result = fordFulkersonV01(g, source, target, b, c);
+		for (int id = 0; id < l.tail.length; id++) {
+			if (l.tail[id] < 0)
+				continue;
+			E e = index.edge(id);
+			result.maximumFlow.put(e, l.flow[id]);
+			if (l.tail[id] == l.source)
+				result.value += l.flow[id];
+			if (l.labelled(l.tail[id]) != l.labelled(l.head[id]))
+				result.minimumCut.add(e);
+		}
 		return result;	
 	}
-	
-	private static <V, E extends Graph.Edge<V>> boolean hasLegalFlow(Graph<V, E> g,V source, V target, Map<E, Integer> b, Map<E, Integer> c){
-		Graph<String, Graph.Edge<String>> g2 = new MultiGraph<String, Graph.Edge<String>>();		
-		Map<Graph.Edge<String>, Integer> c2 = new HashMap<Graph.Edge<String>, Integer>();
-		for (E e : g.edges()){
-			V u = e.source();
-			V v = e.target();
-			g2.addVertex(u.toString());
-			g2.addVertex(v.toString());
-			Edge<String> edge = new DirectedEdge<String>(u.toString(),v.toString());
-			g2.addEdge(edge);
-			c2.put(edge, c.get(e)-b.get(e));
-		}
-		g2.addVertex(source+"'");
-		g2.addVertex(target+"'");
-		for (V v : g.vertices()){
-			Edge<String> edge=null;
-			int ce=0;
-			if (!v.equals(target)){
-				edge = new DirectedEdge<String>(v.toString(),target+"'");
-				g2.addEdge(edge);
-				ce = 0;
-				for (E e : g.outgoingEdges(v)) {
-					ce += b.get(e);
-				}
-				c2.put(edge, ce);
-			}
-			if (!v.equals(source)){
-				edge = new DirectedEdge<String>(source+"'", v.toString());
-				g2.addEdge(edge);
-				ce = 0;
-				for (E e : g.incomingEdges(v)) {
-					ce += b.get(e);
-				}
-				c2.put(edge, ce);
-			}
-		}
-		
-		Edge<String> edge = new DirectedEdge<String>(source.toString(),target.toString());
-		g2.addEdge(edge);
-		c2.put(edge, Integer.MAX_VALUE);
-		edge = new DirectedEdge<String>(target.toString(),source.toString());
-		g2.addEdge(edge);
-		c2.put(edge, Integer.MAX_VALUE);
-		
-		FlowResults<Graph.Edge<String>> fr = fordFulkersonV01(g2, source+"'", target+"'", null, c2);
-		
-		for (Graph.Edge<String> e: g2.outgoingEdges(source+"'")){
-			if (fr.maximumFlow.get(e)!= c2.get(e)) return false;
-		}
-		
-		return true;
+
+	/**
+	 * Maximum flow using Dinic's algorithm on int arrays.
+	 * 
+	 * @param g
+	 *            the graph
+	 * @param source
+	 *            the source vertex
+	 * @param target
+	 *            the sink vertex
+	 * @param c
+	 *            the capacities of the edges
+	 * @return the flow on each edge, its value and a minimum cut
+	 */
+	public static <V, E extends Graph.Edge<V>> FlowResults<E> dinic(
+			Graph<V, E> g, V source, V target, ToIntFunction<? super E> c) {
+		GraphIndex<V, E> index = g.index();
+		int s = flowVertex(index, source);
+		FlowNetwork network = FlowNetwork.of(index, 0, null, c);
+		network.dinic(s, flowVertex(index, target));
+		return flowResults(index, network, s);
 	}
-	
-	public static <V, E extends Graph.Edge<V>> FlowResults<E> fordFulkersonV02(Graph<V, E> g, V source, V target, Map<E, Integer> c) {
-		FlowResults<E> result = new FlowResults<E>();	
-		for (E e : g.edges()){
-			result.maximumFlow.put(e, 0);		
-		}
-		Graph<V, E> residual = new MultiGraph<V, E>();
-		Map<E, Integer> cResidual = new HashMap<E, Integer>();
-		updateResidualGraph(g, c, result.maximumFlow, residual, cResidual);
-		Set<E> path = findArgumentPathByBFS(residual, cResidual, source, target); 
-		while (path!=null){
-			System.out.println(path);
-			int min = getMin(path, cResidual);
-			for (E e : path){
-				if (g.containsEdge(e)){
-					result.maximumFlow.put(e, result.maximumFlow.get(e) + min);
-				}else{
-					E e1 = g.outgoingEdges(e.target(), e.source()).iterator().next();
-					result.maximumFlow.put(e1, result.maximumFlow.get(e1) - min);
-				}
-			}
-			residual = new MultiGraph<V, E>();
-			cResidual = new HashMap<E, Integer>();
-			updateResidualGraph(g, c, result.maximumFlow, residual, cResidual);
-			path = findArgumentPathByBFS(residual, cResidual, source, target);
-		}
-		updateFlowResult(g, residual, source, result);
-		return result;
+
+	/**
+	 * Maximum flow using the highest label push-relabel algorithm with the
+	 * gap heuristic, on int arrays. It is often faster than
+	 * {@link #dinic(Graph, Object, Object, ToIntFunction)} on dense networks.
+	 * 
+	 * @param g
+	 *            the graph
+	 * @param source
+	 *            the source vertex
+	 * @param target
+	 *            the sink vertex
+	 * @param c
+	 *            the capacities of the edges
+	 * @return the flow on each edge, its value and a minimum cut
+	 */
+	public static <V, E extends Graph.Edge<V>> FlowResults<E> pushRelabel(
+			Graph<V, E> g, V source, V target, ToIntFunction<? super E> c) {
+		GraphIndex<V, E> index = g.index();
+		int s = flowVertex(index, source);
+		FlowNetwork network = FlowNetwork.of(index, 0, null, c);
+		network.pushRelabel(s, flowVertex(index, target));
+		return flowResults(index, network, s);
 	}
-	
-	private static <V, E extends Graph.Edge<V>> void updateFlowResult(Graph<V, E> g,Graph<V, E> residual, V source, FlowResults<E> result){
-		//update minimum cutset of result
-		Set<V> marked = new HashSet<V>();
-		Queue<V> q = new LinkedList<V>();
-		q.add(source);
-		while (!q.isEmpty()){
-			V v = q.poll();
-			marked.add(v);
-			for (V v1 : residual.successors(v)){
-				if (!marked.contains(v1)) {
-					q.add(v1);
-				}
+
+	private static <V> int flowVertex(GraphIndex<V, ?> index, V v) {
+		int id = index.vertexId(v);
+		if (id < 0)
+			throw new IllegalArgumentException("Unknown vertex " + v);
+		return id;
+	}
+
+	/*
+	 * The flow of the network on the edges of the graph, the minimum cut
+	 * being given by the vertices reached from s in the residual network.
+	 */
+	private static <V, E extends Graph.Edge<V>> FlowResults<E> flowResults(
+			GraphIndex<V, E> index, FlowNetwork network, int s) {
+		FlowResults<E> result = new FlowResults<E>();
+		boolean[] reached = network.reachable(s);
+		for (int i = 0; i < network.m; i++) {
+			if (network.ids[i] == FlowNetwork.NO_EDGE)
+				continue;
+			E e = index.edge(network.ids[i]);
+			int flow = network.flow(i);
+			result.maximumFlow.put(e, flow);
+			if (network.tail[i] != network.head[i]) {
+				if (network.tail[i] == s)
+					result.value += flow;
+				else if (network.head[i] == s)
+					result.value -= flow;
 			}
-		}
-		for (E e : g.edges()) {
-			if (marked.contains(e.source()) && !marked.contains(e.target())
-					|| !marked.contains(e.source())	&& marked.contains(e.target()))
+			if (reached[network.tail[i]] != reached[network.head[i]])
 				result.minimumCut.add(e);
 		}
-		//update value of result
-		for (E e : g.outgoingEdges(source)){
-			result.value += result.maximumFlow.get(e);
-		}
+		return result;
 	}
 	
-	private static <V, E extends Graph.Edge<V>> void updateResidualGraph(Graph<V, E> g, Map<E, Integer> c, 
-			Map<E, Integer> f, Graph<V, E> r, Map<E, Integer> cR) {
-		for (V v : g.vertices()) { r.addVertex(v); }
-		for (E e : g.edges()){				
-			Iterator<E> iter= g.outgoingEdges(e.target(), e.source()).iterator();
-			//has reversal edge?
-			if (iter.hasNext()){
-				E reversal = iter.next();
-				int i = c.get(e) + f.get(reversal) - f.get(e); 
-				if (i > 0){
-					r.addEdge(e);
-					cR.put(e, i);
-				}				
-			}else{	
-				int i = c.get(e)-f.get(e); 
-				if (i > 0){
-					r.addEdge(e);
-					cR.put(e, i);
-				}
-				if (f.get(e)>0){
-					@SuppressWarnings("unchecked")
-					E reversal = (E) new DirectedEdge<V>(e.target(), e.source());
-					r.addEdge(reversal);
-					cR.put(reversal, f.get(e));	
-				}				
-			}
-		}
+	/**
+	 * Maximum flow with lower bounds on the flow of the edges. A flow
+	 * respecting the bounds is first found as a circulation of an auxiliary
+	 * network, then it is increased to a maximum flow by Dinic's algorithm, on
+	 * the same int arrays.
+	 * 
+	 * @param g
+	 *            the graph
+	 * @param source
+	 *            the source vertex
+	 * @param target
+	 *            the sink vertex
+	 * @param b
+	 *            the lower bounds of the edges
+	 * @param c
+	 *            the capacities of the edges
+	 * @return the flow on each edge, its value and a minimum cut
+	 * @throws NotLegalFlowException
+	 *             if no flow respects the bounds
+	 */
+	public static <V, E extends Graph.Edge<V>> FlowResults<E> networkLowerUpperBound(Graph<V, E> g,V source, V target,  
+			Map<E, Integer> b, Map<E, Integer> c) throws NotLegalFlowException {
+		return networkLowerUpperBound(g, source, target, (ToIntFunction<E>) b::get, (ToIntFunction<E>) c::get);
 	}
-	
-	private static <V, E extends Graph.Edge<V>> Set<E> findArgumentPathByBFS(Graph<V, E> r, Map<E, Integer> cR, V s, V t) {		
-		Set<V> marked = new HashSet<V>();
-		Map<V,E> parent = new HashMap<V, E>();
-		Queue<V> q = new LinkedList<V>();
-		q.add(s);
-		while (!q.isEmpty()){
-			V v = q.poll();
-			marked.add(v);
-			for (E e : r.outgoingEdges(v)){
-				if (!marked.contains(e.target())){
-					parent.put(e.target(),e);
-					if (e.target().equals(t)){
-						Set<E> path = new HashSet<E>();
-						E e1 = parent.get(t);
-						path.add(e1);
-						while(!e1.source().equals(s)){
-							e1 = parent.get(e1.source());
-							path.add(e1);
-						}
-						return path;
-					}else{
-						 q.add(e.target());
-					}
-				}				 
-			}
-		}
-		return null;
+
+	/**
+	 * Same as {@link #networkLowerUpperBound(Graph, Object, Object, Map, Map)},
+	 * the bounds being given by functions.
+	 */
+	public static <V, E extends Graph.Edge<V>> FlowResults<E> networkLowerUpperBound(Graph<V, E> g, V source, V target,
+			ToIntFunction<? super E> b, ToIntFunction<? super E> c) throws NotLegalFlowException {
+		GraphIndex<V, E> index = g.index();
+		int s = flowVertex(index, source);
+		int t = flowVertex(index, target);
+		FlowNetwork network = FlowNetwork.feasible(index, s, t, b, c);
+		if (network == null)
+			throw new NotLegalFlowException();
+		network.dinic(s, t);
+		return flowResults(index, network, s);
 	}
-	
-	private static <V, E extends Graph.Edge<V>> int getMin(Set<E> path, Map<E, Integer> cR) {
-		// TODO Auto-generated method stub
-		int min = Integer.MAX_VALUE;
-		for (E e : path){
-			int cf = cR.get(e);
-			min = cf < min ? cf :min;
-		}
-		return min;
+
+	/**
+	 * Maximum flow using Edmonds-Karp's algorithm: the flow is increased along
+	 * shortest augmenting paths, found by breadth first searches in a residual
+	 * network of which only the arcs of each path are updated.
+	 * 
+	 * @param g
+	 *            the graph
+	 * @param source
+	 *            the source vertex
+	 * @param target
+	 *            the sink vertex
+	 * @param c
+	 *            the capacities of the edges
+	 * @return the flow on each edge, its value and a minimum cut
+	 */
+	public static <V, E extends Graph.Edge<V>> FlowResults<E> fordFulkersonV02(Graph<V, E> g, V source, V target, Map<E, Integer> c) {
+		return fordFulkersonV02(g, source, target, (ToIntFunction<E>) c::get);
+	}
+
+	/**
+	 * Same as {@link #fordFulkersonV02(Graph, Object, Object, Map)}, the
+	 * capacities being given by a function.
+	 */
+	public static <V, E extends Graph.Edge<V>> FlowResults<E> fordFulkersonV02(Graph<V, E> g, V source, V target, ToIntFunction<? super E> c) {
+		GraphIndex<V, E> index = g.index();
+		int s = flowVertex(index, source);
+		FlowNetwork network = FlowNetwork.of(index, 0, null, c);
+		network.augment(s, flowVertex(index, target), Long.MAX_VALUE);
+		return flowResults(index, network, s);
 	}
 }
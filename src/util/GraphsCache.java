@@ -0,0 +1,378 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import graph.Graph;
+import graph.GraphListener;
+import graph.PartialGraph;
+import util.Graphs.ShortestPaths;
+import util.Graphs.ShortestPathsMatrices;
+
+import static graph.Graph.Edge;
+
+/**
+ * A cache of the results of some algorithms of {@link Graphs}. A result is
+ * kept with the version of the graph it was computed on (see
+ * {@link Graph#version()}) and reused as long as the graph has the same
+ * version, for the same parameters. Source vertices are compared with
+ * equals, weight maps by identity: a weight map must not be modified while
+ * results computed with it are in the cache.
+ * <p>
+ * The cache keeps at most a given number of results, the least recently used
+ * ones are evicted first. The results of a graph which supports listeners
+ * are evicted as soon as it is modified. The cache does not keep the graphs
+ * and the weight maps from being garbage collected, their results being
+ * evicted with them. Results of graphs which do not keep track of their
+ * version are not cached.
+ * <p>
+ * Each caller gets its own result object: the maps of shortest paths are
+ * unmodifiable views of the cached ones, and a new partial graph is created
+ * for each breadth first search tree.
+ */
+public class GraphsCache {
+
+	/*
+	 * A weak reference compared by the identity of its referent.
+	 */
+	private static final class IdentityReference extends WeakReference<Object> {
+		final int hash;
+
+		IdentityReference(Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			hash = System.identityHashCode(referent);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof IdentityReference))
+				return false;
+			Object referent = get();
+			return referent != null && referent == ((IdentityReference) o).get();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static final class Key {
+		final String algorithm;
+		final IdentityReference graph;
+		final Object vertex;
+		final IdentityReference weights;
+
+		Key(String algorithm, IdentityReference graph, Object vertex,
+				IdentityReference weights) {
+			this.algorithm = algorithm;
+			this.graph = graph;
+			this.vertex = vertex;
+			this.weights = weights;
+		}
+
+		boolean cleared() {
+			return graph.get() == null || weights != null
+					&& weights.get() == null;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return algorithm.equals(k.algorithm) && graph.equals(k.graph)
+					&& Objects.equals(vertex, k.vertex)
+					&& Objects.equals(weights, k.weights);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(algorithm, graph, vertex, weights);
+		}
+	}
+
+	private static final class Result {
+		final long version;
+		final Object value;
+
+		Result(long version, Object value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
+
+	/*
+	 * Evicts the results of a graph when it is modified. The listener does not
+	 * keep the cache from being garbage collected, and unregisters itself
+	 * once it is.
+	 */
+	private static final class Eviction<V, E extends Edge<V>> implements
+			GraphListener<V, E> {
+		private final WeakReference<GraphsCache> cache;
+		// false if there is no result of the graph in the cache
+		volatile boolean cached;
+
+		Eviction(GraphsCache cache) {
+			this.cache = new WeakReference<GraphsCache>(cache);
+		}
+
+		private void modified(Graph<V, E> graph) {
+			GraphsCache c = cache.get();
+			if (c == null)
+				graph.removeGraphListener(this);
+			else if (cached) {
+				cached = false;
+				c.evict(graph);
+			}
+		}
+
+		@Override
+		public void vertexAdded(Graph<V, E> graph, V vertex) {
+			modified(graph);
+		}
+
+		@Override
+		public void vertexRemoved(Graph<V, E> graph, V vertex) {
+			modified(graph);
+		}
+
+		@Override
+		public void edgeAdded(Graph<V, E> graph, E edge) {
+			modified(graph);
+		}
+
+		@Override
+		public void edgeRemoved(Graph<V, E> graph, E edge) {
+			modified(graph);
+		}
+
+		@Override
+		public void idsCompacted(Graph<V, E> graph, int[] vertexIds,
+				int[] edgeIds) {
+			modified(graph);
+		}
+	}
+
+	private final int maximumSize;
+	private final LinkedHashMap<Key, Result> results;
+	private final ReferenceQueue<Object> cleared = new ReferenceQueue<Object>();
+	// listeners of the graphs of the cache, null for the graphs without
+	private final Map<IdentityReference, Eviction<?, ?>> evictions = new HashMap<IdentityReference, Eviction<?, ?>>();
+	private int hits;
+	private int misses;
+
+	/**
+	 * @param maximumSize
+	 *            maximum number of results kept by the cache
+	 */
+	@SuppressWarnings("serial")
+	public GraphsCache(int maximumSize) {
+		if (maximumSize <= 0)
+			throw new IllegalArgumentException();
+		this.maximumSize = maximumSize;
+		this.results = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+				return size() > GraphsCache.this.maximumSize;
+			}
+		};
+	}
+
+	private Key key(String algorithm, Graph<?, ?> graph, Object vertex,
+			Object weights) {
+		return new Key(algorithm, new IdentityReference(graph, cleared),
+				vertex, weights == null ? null : new IdentityReference(weights,
+						cleared));
+	}
+
+	/*
+	 * Removes the results of the graphs and weights garbage collected.
+	 */
+	private void purge() {
+		boolean purge = false;
+		while (cleared.poll() != null)
+			purge = true;
+		if (purge) {
+			results.keySet().removeIf(Key::cleared);
+			evictions.keySet().removeIf(r -> r.get() == null);
+		}
+	}
+
+	private synchronized void evict(Graph<?, ?> graph) {
+		results.keySet().removeIf(k -> k.graph.get() == graph);
+	}
+
+	/*
+	 * Returns the cached result, or null if there is none for this version of
+	 * the graph. An outdated result is removed.
+	 */
+	private synchronized Object get(Key key, long version) {
+		purge();
+		Result r = results.get(key);
+		if (r == null || r.version != version) {
+			if (r != null)
+				results.remove(key);
+			misses++;
+			return null;
+		}
+		hits++;
+		return r.value;
+	}
+
+	private synchronized <V, E extends Edge<V>> void put(Key key,
+			Graph<V, E> graph, long version, Object value) {
+		if (version < 0)
+			return;
+		results.put(key, new Result(version, value));
+		Eviction<?, ?> eviction = evictions.get(key.graph);
+		if (eviction == null && !evictions.containsKey(key.graph)) {
+			Eviction<V, E> listener = new Eviction<V, E>(this);
+			try {
+				graph.addGraphListener(listener);
+				eviction = listener;
+			} catch (UnsupportedOperationException e) {
+				// the results are checked against the version of the graph
+			}
+			evictions.put(key.graph, eviction);
+		}
+		if (eviction != null)
+			eviction.cached = true;
+	}
+
+	/**
+	 * Cached version of {@link Graphs#isConnected(Graph)}.
+	 */
+	public <V, E extends Edge<V>> boolean isConnected(Graph<V, E> g) {
+		Key key = key("isConnected", g, null, null);
+		long version = g.version();
+		Boolean connected = (Boolean) get(key, version);
+		if (connected == null) {
+			connected = Graphs.isConnected(g);
+			put(key, g, version, connected);
+		}
+		return connected;
+	}
+
+	/**
+	 * Cached version of {@link Graphs#breadthFirstSearch(Graph, Object)}. The
+	 * edges of the tree are cached, and a new partial graph of g is returned.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V, E extends Edge<V>> PartialGraph<V, E> breadthFirstSearch(
+			Graph<V, E> g, V root) {
+		Key key = key("breadthFirstSearch", g, root, null);
+		long version = g.version();
+		Set<E> edges = (Set<E>) get(key, version);
+		if (edges == null) {
+			PartialGraph<V, E> tree = Graphs.breadthFirstSearch(g, root);
+			edges = new HashSet<E>(tree.edges());
+			put(key, g, version, edges);
+			return tree;
+		}
+		return g.partialGraph(edges);
+	}
+
+	/**
+	 * Cached version of {@link Graphs#dijskstra(Graph, Object, Map)}. The maps
+	 * of the result are unmodifiable.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V, E extends Edge<V>> ShortestPaths<V> dijskstra(Graph<V, E> g,
+			V source, Map<E, Double> weights) throws NegativeEdgeException {
+		Key key = key("dijskstra", g, source, weights);
+		long version = g.version();
+		ShortestPaths<V> sp = (ShortestPaths<V>) get(key, version);
+		if (sp == null) {
+			sp = Graphs.dijskstra(g, source, weights);
+			put(key, g, version, sp);
+		}
+		ShortestPaths<V> view = new ShortestPaths<V>();
+		view.distances = Collections.unmodifiableMap(sp.distances);
+		view.predecessors = Collections.unmodifiableMap(sp.predecessors);
+		return view;
+	}
+
+	/**
+	 * Cached version of {@link Graphs#floydWarshall(Graph, Map)}. The maps of
+	 * the result are unmodifiable.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V, E extends Edge<V>> ShortestPathsMatrices<V> floydWarshall(
+			Graph<V, E> g, Map<E, Double> weights)
+			throws NegativeCircuitException {
+		Key key = key("floydWarshall", g, null, weights);
+		long version = g.version();
+		ShortestPathsMatrices<V> spm = (ShortestPathsMatrices<V>) get(key,
+				version);
+		if (spm == null) {
+			spm = Graphs.floydWarshall(g, weights);
+			put(key, g, version, spm);
+		}
+		ShortestPathsMatrices<V> view = new ShortestPathsMatrices<V>();
+		view.distances = unmodifiable(spm.distances);
+		view.predecessors = unmodifiable(spm.predecessors);
+		return view;
+	}
+
+	private static <V, T> Map<V, Map<V, T>> unmodifiable(Map<V, Map<V, T>> rows) {
+		Map<V, Map<V, T>> view = new HashMap<V, Map<V, T>>(rows.size() * 2);
+		for (Map.Entry<V, Map<V, T>> row : rows.entrySet())
+			view.put(row.getKey(), Collections.unmodifiableMap(row.getValue()));
+		return Collections.unmodifiableMap(view);
+	}
+
+	/**
+	 * Remove all the results from the cache.
+	 */
+	public synchronized void clear() {
+		results.clear();
+	}
+
+	/**
+	 * Returns the number of results in the cache.
+	 */
+	public synchronized int size() {
+		purge();
+		return results.size();
+	}
+
+	/**
+	 * Returns the number of calls answered from the cache.
+	 */
+	public synchronized int hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of calls which computed their result.
+	 */
+	public synchronized int misses() {
+		return misses;
+	}
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (C) 2018 Olivier Baudon
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package util;
+
+import graph.Graph;
+import graph.Graph.Edge;
+import util.Graphs.FlowResults;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * A maximum flow which is kept up to date while the network changes, for
+ * instance in a loop tweaking a few capacities. The solver takes a copy of
+ * the edges of a graph and of their capacities; then the capacities can be
+ * changed and edges added or removed. Each {@link #solve()} starts from the
+ * previous flow instead of zero.
+ * <p>
+ * When the capacity of an edge e = (u, v) becomes smaller than its flow, the
+ * flow on e is decreased and the flow is repaired around it: the excess
+ * left at u is sent to v along other paths if possible, else to the target
+ * or back to the source, and the missing flow at v is taken from the source
+ * or from the target. Only the augmenting paths of the repair are explored.
+ * Increasing a capacity or adding an edge keeps the flow as it is, until
+ * the next {@link #solve()} augments it.
+ */
+public class MaxFlowSolver<V, E extends Edge<V>> {
+
+	private final V source;
+	private final V target;
+	private final List<V> vertices = new ArrayList<V>();
+	private final Map<V, Integer> vertexIds = new HashMap<V, Integer>();
+	// edges of the network, edge i has the number i in network
+	private final List<E> edges = new ArrayList<E>();
+	private final Map<E, Integer> edgeNumbers = new HashMap<E, Integer>();
+	private int[] tail;
+	private int[] head;
+	private int[] capacity;
+	private int[] flow;
+	private int removed;
+	// null when edges were added or removed since it was built
+	private FlowNetwork network;
+
+	/**
+	 * @param g
+	 *            the graph
+	 * @param source
+	 *            the source vertex
+	 * @param target
+	 *            the sink vertex
+	 * @param c
+	 *            the capacities of the edges
+	 */
+	public MaxFlowSolver(Graph<V, E> g, V source, V target,
+			ToIntFunction<? super E> c) {
+		if (!g.containsVertex(source) || !g.containsVertex(target))
+			throw new IllegalArgumentException();
+		this.source = source;
+		this.target = target;
+		for (V v : g.vertices())
+			vertexId(v);
+		int m = Math.max(g.size(), 4);
+		tail = new int[m];
+		head = new int[m];
+		capacity = new int[m];
+		flow = new int[m];
+		for (E e : g.edges())
+			addEdge(e, c.applyAsInt(e));
+	}
+
+	private int vertexId(V v) {
+		Integer id = vertexIds.get(v);
+		if (id == null) {
+			id = vertices.size();
+			vertices.add(v);
+			vertexIds.put(v, id);
+		}
+		return id;
+	}
+
+	private int number(E e) {
+		Integer i = edgeNumbers.get(e);
+		if (i == null)
+			throw new IllegalArgumentException("Unknown edge " + e);
+		return i;
+	}
+
+	/**
+	 * Returns the capacity of an edge.
+	 */
+	public int capacity(E e) {
+		return capacity[number(e)];
+	}
+
+	/**
+	 * Change the capacity of an edge.
+	 */
+	public void setCapacity(E e, int c) {
+		if (c < 0)
+			throw new IllegalArgumentException("capacity " + c + " < 0");
+		// building the network may renumber the edges
+		FlowNetwork network = network();
+		int i = number(e);
+		capacity[i] = c;
+		int x = network.flow(i);
+		if (c < x) {
+			network.setFlow(i, c);
+			network.setUpper(i, c);
+			repair(network, tail[i], head[i], x - c);
+		} else
+			network.setUpper(i, c);
+	}
+
+	/**
+	 * Add an edge, and its extremities if they are new, with no flow.
+	 */
+	public void addEdge(E e, int c) {
+		if (c < 0)
+			throw new IllegalArgumentException("capacity " + c + " < 0");
+		if (edgeNumbers.containsKey(e))
+			throw new IllegalArgumentException("Edge " + e + " already added");
+		saveFlow();
+		int i = edges.size();
+		if (i == tail.length) {
+			tail = Arrays.copyOf(tail, 2 * i);
+			head = Arrays.copyOf(head, 2 * i);
+			capacity = Arrays.copyOf(capacity, 2 * i);
+			flow = Arrays.copyOf(flow, 2 * i);
+		}
+		edges.add(e);
+		edgeNumbers.put(e, i);
+		tail[i] = vertexId(e.source());
+		head[i] = vertexId(e.target());
+		capacity[i] = c;
+		flow[i] = 0;
+	}
+
+	/**
+	 * Remove an edge, its flow being first repaired as for a null capacity.
+	 */
+	public void removeEdge(E e) {
+		setCapacity(e, 0);
+		int i = edgeNumbers.remove(e);
+		saveFlow();
+		edges.set(i, null);
+		capacity[i] = 0;
+		removed++;
+	}
+
+	/*
+	 * Keep the flow of the network in flow before its structure changes.
+	 */
+	private void saveFlow() {
+		if (network == null)
+			return;
+		for (int i = 0; i < network.m; i++)
+			flow[i] = network.flow(i);
+		network = null;
+	}
+
+	/*
+	 * The network of the edges with the saved flow, the removed edges being
+	 * dropped when they are many.
+	 */
+	private FlowNetwork network() {
+		if (network != null)
+			return network;
+		if (removed > edges.size() / 2) {
+			int k = 0;
+			edgeNumbers.clear();
+			for (int i = 0; i < edges.size(); i++) {
+				E e = edges.get(i);
+				if (e == null)
+					continue;
+				edges.set(k, e);
+				edgeNumbers.put(e, k);
+				tail[k] = tail[i];
+				head[k] = head[i];
+				capacity[k] = capacity[i];
+				flow[k++] = flow[i];
+			}
+			edges.subList(k, edges.size()).clear();
+			removed = 0;
+		}
+		int m = edges.size();
+		network = new FlowNetwork(vertices.size(), Arrays.copyOf(tail, m),
+				Arrays.copyOf(head, m), new int[m], Arrays.copyOf(capacity, m));
+		for (int i = 0; i < m; i++)
+			network.setFlow(i, flow[i]);
+		return network;
+	}
+
+	/*
+	 * The flow on the edge from u to v was decreased by x: u has an excess
+	 * and v a deficit of x, unless they are the source or the target.
+	 */
+	private void repair(FlowNetwork network, int u, int v, int x) {
+		if (u == v)
+			return;
+		int s = vertexIds.get(source);
+		int t = vertexIds.get(target);
+		long rerouted = network.augment(u, v, x);
+		long excess = u == s || u == t ? 0 : x - rerouted;
+		long deficit = v == s || v == t ? 0 : x - rerouted;
+		excess -= network.augment(u, t, excess);
+		excess -= network.augment(u, s, excess);
+		deficit -= network.augment(s, v, deficit);
+		deficit -= network.augment(t, v, deficit);
+		if (excess > 0 || deficit > 0)
+			throw new IllegalStateException("flow not repaired");
+	}
+
+	/**
+	 * Returns the value of the current flow.
+	 */
+	public int value() {
+		return (int) network().outflow(vertexIds.get(source));
+	}
+
+	/**
+	 * Augment the current flow to a maximum flow using Dinic's algorithm.
+	 * 
+	 * @return the flow on each edge, its value and a minimum cut
+	 */
+	public FlowResults<E> solve() {
+		FlowNetwork network = network();
+		int s = vertexIds.get(source);
+		network.dinic(s, vertexIds.get(target));
+		boolean[] reached = network.reachable(s);
+		FlowResults<E> result = new FlowResults<E>();
+		for (int i = 0; i < network.m; i++) {
+			E e = edges.get(i);
+			if (e == null)
+				continue;
+			result.maximumFlow.put(e, network.flow(i));
+			if (reached[tail[i]] != reached[head[i]])
+				result.minimumCut.add(e);
+		}
+		result.value = (int) network.outflow(s);
+		return result;
+	}
+}
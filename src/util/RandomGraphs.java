@@ -18,6 +18,8 @@ package util;
 
 import graph.DirectedEdge;
 import graph.Graph;
+import graph.GraphBuilder;
+import graph.IntMultiGraph;
 import graph.MultiGraph;
 
 import java.util.Random;
@@ -43,16 +45,21 @@ public class RandomGraphs {
 	 * pseudo-random tree generator. 
 	 */
 	public static Graph<Integer, Edge<Integer>> randomTree(int n) {
+		return toMultiGraph(randomIntTree(n));
+	}
+
+	/**
+	 * Pseudo-random tree generator writing directly into an IntMultiGraph.
+	 * The vertices are the integers from 0 to n - 1.
+	 */
+	public static IntMultiGraph randomIntTree(int n) {
 		int[] code = new int[n-2];
 		for (int i = 0; i < n-2; i++) {
 			code[i] = rand.nextInt(n-2);
 		}
-		Graph<Integer, Edge<Integer>> tree = new MultiGraph<Integer, Edge<Integer>>();
+		IntMultiGraph tree = new IntMultiGraph(n, n-1);
 		int[] d = new int[n];
-		for (int i = 0; i < n; i++) {
-			tree.addVertex(i);
-			d[i] = 0;
-		}
+		tree.addVertices(n);
 		int index = 0;
 		for (int i = 0; i < n-2; i++) {
 			d[code[i]]++;
@@ -65,7 +72,7 @@ public class RandomGraphs {
 		int v = index;
 		for (int i = 0; i < n-2; i++) {
 			int w = code[i];
-			tree.addEdge(new DirectedEdge<Integer>(v, w));
+			tree.addEdge(v, w);
 			d[w]--;
 			if (w < index && d[w] == 0) {
 				v = w;
@@ -77,26 +84,62 @@ public class RandomGraphs {
 				v = index;
 			}
 		}
-		tree.addEdge(new DirectedEdge<Integer>(v, n-1));
+		tree.addEdge(v, n-1);
 		return tree;
 	}
 	
 	public static Graph<Integer, Edge<Integer>> randomDirectedGraph(
 			int n, double p) {
+		return toGraph(randomIntDirectedGraph(n, p));
+	}
+
+	/**
+	 * Pseudo-random directed graph generator writing directly into an
+	 * IntMultiGraph. Each of the n * n possible edges (loops included) is
+	 * added with probability p.
+	 */
+	public static IntMultiGraph randomIntDirectedGraph(int n, double p) {
 		if (p < 0 || p > 1)
 			throw new IllegalArgumentException("The probability " + p
 					+ "is not between 0 and 1");
-		Graph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
-		for (int i = 0; i < n; i++) {
-			g.addVertex(i);
-		}
+		IntMultiGraph g = new IntMultiGraph(n, (int) Math.min(
+				Integer.MAX_VALUE - 8, p * n * n));
+		g.addVertices(n);
 		for (int i = 0; i < n; i++)
 			for (int j = 0; j < n; j++) {
 				if (rand.nextDouble() < p) {
-					g.addEdge(new DirectedEdge<Integer>(i, j));
+					g.addEdge(i, j);
 				}
 			}
 		return g;
 	}
 
+	/*
+	 * Copy ig into a DenseGraph or a MultiGraph, following its density.
+	 */
+	private static Graph<Integer, Edge<Integer>> toGraph(IntMultiGraph ig) {
+		GraphBuilder<Integer, Edge<Integer>> builder = new GraphBuilder<Integer, Edge<Integer>>(
+				ig.order(), ig.size());
+		for (int v = 0; v < ig.order(); v++) {
+			builder.addVertex(v);
+		}
+		for (int e = 0; e < ig.edgeIdBound(); e++) {
+			if (ig.containsEdge(e))
+				builder.addEdge(new DirectedEdge<Integer>(ig.source(e), ig.target(e)));
+		}
+		return builder.build();
+	}
+
+	private static Graph<Integer, Edge<Integer>> toMultiGraph(IntMultiGraph ig) {
+		Graph<Integer, Edge<Integer>> g = new MultiGraph<Integer, Edge<Integer>>();
+		for (int v = 0; v < ig.order(); v++) {
+			g.addVertex(v);
+		}
+		for (int e = 0; e < ig.edgeIdBound(); e++) {
+			if (ig.containsEdge(e))
+				g.addEdge(new DirectedEdge<Integer>(ig.source(e), ig.target(e)));
+		}
+		return g;
+	}
+
 }